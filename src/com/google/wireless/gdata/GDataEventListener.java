@@ -0,0 +1,62 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata;
+
+/**
+ * Receives events about requests, parses and serializations as they
+ * complete.  Install one with {@link GDataEvents#setListener} to forward the
+ * events to a platform's tracing or profiling facility, e.g. Java Flight
+ * Recorder on a desktop VM.
+ *
+ * Events are delivered synchronously on the thread doing the work, so
+ * implementations must be cheap and thread safe.
+ */
+public interface GDataEventListener {
+
+    /**
+     * Called when a request made through a
+     * {@link com.google.wireless.gdata.client.GDataServiceClient} completes.
+     * For requests that return a parser, this covers the time until the
+     * response is available, not the time to parse it.
+     *
+     * @param service The name of the service.
+     * @param operation The operation, e.g. "feed_get" or "entry_update".
+     * @param urlTemplate The request URL with its query and user-specific
+     * path segments removed; see {@link GDataEvents#toUrlTemplate}.
+     * @param durationNanos How long the request took.
+     * @param succeeded Whether the request succeeded.
+     */
+    void onRequest(String service, String operation, String urlTemplate,
+            long durationNanos, boolean succeeded);
+
+    /**
+     * Called when a feed parser is closed.
+     *
+     * @param entryType The class name of the entries in the feed.
+     * @param entryCount The number of entries parsed.
+     * @param durationNanos The time between starting to parse the feed and
+     * closing the parser, including time the caller spent between entries.
+     */
+    void onFeedParse(String entryType, int entryCount, long durationNanos);
+
+    /**
+     * Called when one entry of a feed, or a standalone entry, has been parsed.
+     *
+     * @param entryType The class name of the entry.
+     * @param durationNanos How long parsing the entry took.
+     * @param succeeded Whether the entry was parsed successfully.
+     */
+    void onEntryParse(String entryType, long durationNanos, boolean succeeded);
+
+    /**
+     * Called when an entry has been serialized.
+     *
+     * @param entryType The class name of the entry.
+     * @param format The serialization format, one of the
+     * {@link com.google.wireless.gdata.serializer.GDataSerializer} FORMAT_
+     * constants.
+     * @param bytes The number of bytes written.
+     * @param durationNanos How long serialization took.
+     */
+    void onSerialize(String entryType, int format, long bytes, long durationNanos);
+}
@@ -0,0 +1,90 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata;
+
+/**
+ * Holds the {@link GDataEventListener} that instrumented code reports to.
+ * There is no listener by default; instrumented code reads the listener once
+ * and skips all timing and counting when it is null, so the events cost a
+ * single volatile read when nobody is listening.
+ */
+public final class GDataEvents {
+    private static volatile GDataEventListener listener = null;
+
+    private GDataEvents() {
+    }
+
+    /**
+     * Installs the listener events are delivered to.
+     * @param newListener The listener, or null to stop delivering events.
+     */
+    public static void setListener(GDataEventListener newListener) {
+        listener = newListener;
+    }
+
+    /**
+     * @return the listener events should be delivered to, or null if events
+     * are disabled
+     */
+    public static GDataEventListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Reduces a URL to a template suitable for grouping events: the query
+     * and fragment are removed, and path segments that identify a user or an
+     * item (those containing digits or an '@') are replaced with "*".  For
+     * example, "http://host/calendar/feeds/joe%40gmail.com/private/full?q=x"
+     * becomes "http://host/calendar/feeds/*&#47;private/full".
+     *
+     * @param url The URL.
+     * @return The URL template.
+     */
+    public static String toUrlTemplate(String url) {
+        if (url == null) {
+            return null;
+        }
+        int end = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        int scheme = url.indexOf("://");
+        int pathStart = url.indexOf('/', scheme < 0 ? 0 : scheme + 3);
+        if (pathStart < 0 || pathStart >= end) {
+            return url.substring(0, end);
+        }
+
+        StringBuffer sb = new StringBuffer(end);
+        sb.append(url.substring(0, pathStart));
+        int start = pathStart;
+        while (start < end) {
+            int next = url.indexOf('/', start + 1);
+            if (next < 0 || next > end) {
+                next = end;
+            }
+            sb.append('/');
+            if (isIdentifier(url, start + 1, next)) {
+                sb.append('*');
+            } else {
+                sb.append(url.substring(start + 1, next));
+            }
+            start = next;
+        }
+        return sb.toString();
+    }
+
+    private static boolean isIdentifier(String url, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '@') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,6 +3,7 @@
 package com.google.wireless.gdata.calendar.client;
 
 import com.google.wireless.gdata.calendar.data.CalendarEntry;
+import com.google.wireless.gdata.client.FeedUrlTemplate;
 import com.google.wireless.gdata.client.GDataClient;
 import com.google.wireless.gdata.client.GDataParserFactory;
 import com.google.wireless.gdata.client.GDataServiceClient;
@@ -12,7 +13,6 @@ import com.google.wireless.gdata.parser.GDataParser;
 import com.google.wireless.gdata.parser.ParseException;
 
 import java.io.IOException;
-import java.io.InputStream;
 
 /**
  * GDataServiceClient for accessing Google Calendar.  This client can access and
@@ -32,6 +32,14 @@ public class CalendarClient extends GDataServiceClient {
     private static final String CALENDAR_BASE_FEED_URL =
         "http://www.google.com/calendar/feeds/";
 
+    /** Url of a user's calendars meta feed. */
+    private static final FeedUrlTemplate USER_CALENDARS_URL =
+        new FeedUrlTemplate(CALENDAR_BASE_FEED_URL + "{username}");
+
+    /** Url of a user's default calendar, with the projection appended as is. */
+    private static final FeedUrlTemplate DEFAULT_CALENDAR_URL =
+        new FeedUrlTemplate(CALENDAR_BASE_FEED_URL + "{username}{+projection}");
+
     /**
      * Create a new CalendarClient.  Uses the standard base URL for calendar feeds.
      * @param client The GDataClient that should be used to authenticate
@@ -59,12 +67,7 @@ public class CalendarClient extends GDataServiceClient {
      * @return The url that should be used to retrieve a user's default feed.
      */
     public String getDefaultCalendarUrl(String username, String projection, QueryParams params) {
-        String feedUrl = CALENDAR_BASE_FEED_URL + getGDataClient().encodeUri(username);
-        feedUrl += projection;
-        if (params == null) {
-            return feedUrl;
-        }
-        return params.generateQueryUrl(feedUrl);
+        return DEFAULT_CALENDAR_URL.expand(new String[] { username, projection }, params);
     }
 
     /**
@@ -74,7 +77,7 @@ public class CalendarClient extends GDataServiceClient {
      * @return The url that should be used to retrieve a user's default feed.
      */
     public String getUserCalendarsUrl(String username) {
-        return CALENDAR_BASE_FEED_URL + getGDataClient().encodeUri(username);
+        return USER_CALENDARS_URL.expand(username);
     }
 
     /**
@@ -89,8 +92,6 @@ public class CalendarClient extends GDataServiceClient {
      */
     public GDataParser getParserForUserCalendars(String feedUrl, String authToken)
             throws ParseException, IOException, HttpException {
-        GDataClient gDataClient = getGDataClient();
-        InputStream is = gDataClient.getFeedAsStream(feedUrl, authToken);
-        return getGDataParserFactory().createParser(CalendarEntry.class, is);
+        return getParserForFeed(CalendarEntry.class, feedUrl, authToken);
     }
 }
@@ -36,12 +36,18 @@ public class CalendarEntry extends Entry {
      */
     public static final byte ACCESS_OWNER = 4;
     
-    private byte accessLevel = ACCESS_READ;
+    /* Layout of flags: the access level in the low byte, then the booleans. */
+    private static final int ACCESS_LEVEL_MASK = 0xff;
+    private static final int FLAG_HIDDEN = 1 << 8;
+    private static final int FLAG_SELECTED = 1 << 9;
+
+    private static final int DEFAULT_FLAGS = ACCESS_READ | FLAG_SELECTED;
+
+    /* access level, hidden and selected. */
+    private int flags = DEFAULT_FLAGS;
     // TODO: rename to feed Url?
     private String alternateLink = null;
     private String color = null;
-    private boolean hidden = false;
-    private boolean selected = true;
     private String timezone = null;
     
     /**
@@ -52,11 +58,9 @@ public class CalendarEntry extends Entry {
 
     public void clear() {
         super.clear();
-        accessLevel = ACCESS_READ;
+        flags = DEFAULT_FLAGS;
         alternateLink = null;
         color = null;
-        hidden = false;
-        selected = true;
         timezone = null;
     }
 
@@ -64,14 +68,14 @@ public class CalendarEntry extends Entry {
      * @return the accessLevel
      */
     public byte getAccessLevel() {
-        return accessLevel;
+        return (byte) (flags & ACCESS_LEVEL_MASK);
     }
 
     /**
      * @param accessLevel the accessLevel to set
      */
     public void setAccessLevel(byte accessLevel) {
-        this.accessLevel = accessLevel;
+        flags = (flags & ~ACCESS_LEVEL_MASK) | (accessLevel & ACCESS_LEVEL_MASK);
     }
 
     /**
@@ -106,28 +110,28 @@ public class CalendarEntry extends Entry {
      * @return the hidden
      */
     public boolean isHidden() {
-        return hidden;
+        return (flags & FLAG_HIDDEN) != 0;
     }
 
     /**
      * @param hidden the hidden to set
      */
     public void setHidden(boolean hidden) {
-        this.hidden = hidden;
+        flags = hidden ? flags | FLAG_HIDDEN : flags & ~FLAG_HIDDEN;
     }
 
     /**
      * @return the selected
      */
     public boolean isSelected() {
-        return selected;
+        return (flags & FLAG_SELECTED) != 0;
     }
 
     /**
      * @param selected the selected to set
      */
     public void setSelected(boolean selected) {
-        this.selected = selected;
+        flags = selected ? flags | FLAG_SELECTED : flags & ~FLAG_SELECTED;
     }
 
     /**
@@ -146,15 +150,15 @@ public class CalendarEntry extends Entry {
     
     public void toString(StringBuffer sb) {
         sb.append("ACCESS LEVEL: ");
-        sb.append(accessLevel);
+        sb.append(getAccessLevel());
         sb.append('\n');
         appendIfNotNull(sb, "ALTERNATE LINK", alternateLink);
         appendIfNotNull(sb, "COLOR", color);
         sb.append("HIDDEN: ");
-        sb.append(hidden);
+        sb.append(isHidden());
         sb.append('\n');
         sb.append("SELECTED: ");
-        sb.append(selected);
+        sb.append(isSelected());
         sb.append('\n');
         appendIfNotNull(sb, "TIMEZONE", timezone);
     }
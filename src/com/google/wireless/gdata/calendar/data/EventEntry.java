@@ -2,19 +2,18 @@
 
 package com.google.wireless.gdata.calendar.data;
 
+import com.google.wireless.gdata.data.CompactList;
+import com.google.wireless.gdata.data.CompactMap;
 import com.google.wireless.gdata.data.Entry;
 
-import java.util.Hashtable;
-import java.util.Vector;
-import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Entry containing information about an event in a calendar.
  */
 public class EventEntry extends Entry {
 
-    // TODO: pack all of these enums into an int
-
     /**
      * Status constant indicating that a user's attendance at an event is
      * tentative.
@@ -65,18 +64,26 @@ public class EventEntry extends Entry {
      */
     public static final byte TRANSPARENCY_TRANSPARENT = 1;
 
-    private byte status = STATUS_TENTATIVE;
+    /* Positions of the status, visibility and transparency within flags. */
+    private static final int STATUS_SHIFT = 0;
+    private static final int VISIBILITY_SHIFT = 8;
+    private static final int TRANSPARENCY_SHIFT = 16;
+
+    private static final int DEFAULT_FLAGS = pack(STATUS_TENTATIVE, STATUS_SHIFT)
+            | pack(VISIBILITY_DEFAULT, VISIBILITY_SHIFT)
+            | pack(TRANSPARENCY_OPAQUE, TRANSPARENCY_SHIFT);
+
+    /* status, visibility and transparency, one byte each. */
+    private int flags = DEFAULT_FLAGS;
     private String recurrence = null;
-    private byte visibility = VISIBILITY_DEFAULT;
-    private byte transparency = TRANSPARENCY_OPAQUE;
-    private Vector attendees = new Vector();
-    private Vector whens = new Vector();
-    private Vector reminders = null;
+    private final WhoList attendees = new WhoList();
+    private final CompactList whens = new CompactList();
+    private CompactList reminders = null;
     private String originalEventId = null;
     private String originalEventStartTime = null;
     private String where = null;
     private String commentsUri = null;
-    private Hashtable extendedProperties = null;
+    private CompactMap extendedProperties = null;
 
     /**
      * Creates a new empty event entry.
@@ -90,18 +97,23 @@ public class EventEntry extends Entry {
      */
     public void clear() {
         super.clear();
-        status = STATUS_TENTATIVE;
+        flags = DEFAULT_FLAGS;
         recurrence = null;
-        visibility = VISIBILITY_DEFAULT;
-        transparency = TRANSPARENCY_OPAQUE;
-        attendees.removeAllElements();
-        whens.removeAllElements();
-        reminders = null;
+        attendees.clear();
+        whens.clear();
+        clearReminders();
         originalEventId = null;
         originalEventStartTime = null;
         where = null;
         commentsUri = null;
-        extendedProperties = null;
+        clearExtendedProperties();
+    }
+
+    /**
+     * @return the status, visibility and transparency, packed one byte each
+     */
+    int getFlags() {
+        return flags;
     }
 
     /**
@@ -122,53 +134,76 @@ public class EventEntry extends Entry {
      * @return the status
      */
     public byte getStatus() {
-        return status;
+        return unpack(STATUS_SHIFT);
     }
 
     /**
      * @param status the status to set
      */
     public void setStatus(byte status) {
-        this.status = status;
+        repack(STATUS_SHIFT, status);
     }
 
     /**
      * @return the transparency
      */
     public byte getTransparency() {
-        return transparency;
+        return unpack(TRANSPARENCY_SHIFT);
     }
 
     /**
      * @param transparency the transparency to set
      */
     public void setTransparency(byte transparency) {
-        this.transparency = transparency;
+        repack(TRANSPARENCY_SHIFT, transparency);
     }
 
     /**
      * @return the visibility
      */
     public byte getVisibility() {
-        return visibility;
+        return unpack(VISIBILITY_SHIFT);
     }
 
     /**
      * @param visibility the visibility to set
      */
     public void setVisibility(byte visibility) {
-        this.visibility = visibility;
+        repack(VISIBILITY_SHIFT, visibility);
     }
 
     public void clearAttendees() {
         attendees.clear();
     }
 
+    /**
+     * Adds a copy of an attendee.  Later changes to attendee do not change
+     * this entry.
+     */
     public void addAttendee(Who attendee) {
         attendees.add(attendee);
     }
 
-    public Vector getAttendees() {
+    /**
+     * Adds an attendee without allocating a {@link Who}.
+     * @see WhoList#add(String, String, byte, byte, byte)
+     */
+    public void addAttendee(String email, String value, byte relationship, byte type,
+            byte status) {
+        attendees.add(email, value, relationship, type, status);
+    }
+
+    /**
+     * @return a read-only view of the attendees, as {@link Who} copies
+     */
+    public List getAttendees() {
+        return attendees.asList();
+    }
+
+    /**
+     * @return the attendees, which can be read without allocating
+     */
+    public WhoList getAttendeeList() {
         return attendees;
     }
 
@@ -180,30 +215,41 @@ public class EventEntry extends Entry {
         whens.add(when);
     }
 
-    public Vector getWhens() {
-        return whens;
+    /**
+     * @return a read-only view of the whens
+     */
+    public List getWhens() {
+        return whens.asList();
     }
 
     public When getFirstWhen() {
         if (whens.isEmpty()) {
             return null;
         }
-        return (When) whens.elementAt(0);
+        return (When) whens.get(0);
     }
 
-    public Vector getReminders() {
-        return reminders;
+    /**
+     * @return a read-only view of the reminders, or null if there are none
+     */
+    public List getReminders() {
+        if (reminders == null || reminders.isEmpty()) {
+            return null;
+        }
+        return reminders.asList();
     }
 
     public void addReminder(Reminder reminder) {
         if (reminders == null) {
-            reminders = new Vector();
+            reminders = new CompactList();
         }
         reminders.add(reminder);
     }
 
     public void clearReminders() {
-        reminders = null;
+        if (reminders != null) {
+            reminders.clear();
+        }
     }
 
     public String getOriginalEventId() {
@@ -236,30 +282,35 @@ public class EventEntry extends Entry {
         this.where = where;
     }
 
-    public Hashtable getExtendedProperties() {
-        return extendedProperties;
+    /**
+     * @return a read-only view of the extended properties, in the order they
+     * were added, or null if there are none
+     */
+    public Map getExtendedProperties() {
+        if (extendedProperties == null || extendedProperties.isEmpty()) {
+            return null;
+        }
+        return extendedProperties.asMap();
     }
 
     public String getExtendedProperty(String name) {
         if (extendedProperties == null) {
             return null;
         }
-        String value = null;
-        if (extendedProperties.containsKey(name)) {
-            value = (String) extendedProperties.get(name);
-        }
-        return value;
+        return (String) extendedProperties.get(name);
     }
 
     public void addExtendedProperty(String name, String value) {
         if (extendedProperties == null) {
-            extendedProperties = new Hashtable();
+            extendedProperties = new CompactMap();
         }
         extendedProperties.put(name, value);
     }
 
     public void clearExtendedProperties() {
-        extendedProperties = null;
+        if (extendedProperties != null) {
+            extendedProperties.clear();
+        }
     }
 
     public String getCommentsUri() {
@@ -272,39 +323,34 @@ public class EventEntry extends Entry {
 
     public void toString(StringBuffer sb) {
         super.toString(sb);
-        sb.append("STATUS: " + status + "\n");
+        sb.append("STATUS: " + getStatus() + "\n");
         appendIfNotNull(sb, "RECURRENCE", recurrence);
-        sb.append("VISIBILITY: " + visibility + "\n");
-        sb.append("TRANSPARENCY: " + transparency + "\n");
+        sb.append("VISIBILITY: " + getVisibility() + "\n");
+        sb.append("TRANSPARENCY: " + getTransparency() + "\n");
         
         appendIfNotNull(sb, "ORIGINAL_EVENT_ID", originalEventId);
         appendIfNotNull(sb, "ORIGINAL_START_TIME", originalEventStartTime);
 
-        Enumeration whos = this.attendees.elements();
-        while (whos.hasMoreElements()) {
-            Who who = (Who) whos.nextElement();
-            who.toString(sb);
+        for (int i = 0; i < attendees.size(); i++) {
+            attendees.get(i).toString(sb);
         }
 
-        Enumeration times = this.whens.elements();
-        while (times.hasMoreElements()) {
-            When when = (When) times.nextElement();
+        for (int i = 0; i < whens.size(); i++) {
+            When when = (When) whens.get(i);
             when.toString(sb);
         }
         if (reminders != null) {
-            Enumeration alarms = reminders.elements();
-            while (alarms.hasMoreElements()) {
-                Reminder reminder = (Reminder) alarms.nextElement();
+            for (int i = 0; i < reminders.size(); i++) {
+                Reminder reminder = (Reminder) reminders.get(i);
                 reminder.toString(sb);
             }
         }
         appendIfNotNull(sb, "WHERE", where);
         appendIfNotNull(sb, "COMMENTS", commentsUri);
         if (extendedProperties != null) {
-            Enumeration entryNames = extendedProperties.keys();
-            while (entryNames.hasMoreElements()) {
-                String name = (String) entryNames.nextElement();
-                String value = (String) extendedProperties.get(name);
+            for (int i = 0; i < extendedProperties.size(); i++) {
+                String name = (String) extendedProperties.keyAt(i);
+                String value = (String) extendedProperties.valueAt(i);
                 sb.append(name);
                 sb.append(':');
                 sb.append(value);
@@ -312,4 +358,16 @@ public class EventEntry extends Entry {
             }
         }
     }
+
+    private static int pack(byte value, int shift) {
+        return (value & 0xff) << shift;
+    }
+
+    private byte unpack(int shift) {
+        return (byte) (flags >>> shift);
+    }
+
+    private void repack(int shift, byte value) {
+        flags = (flags & ~(0xff << shift)) | pack(value, shift);
+    }
 }
@@ -0,0 +1,466 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.calendar.data;
+
+import com.google.wireless.gdata.data.DateTimeUtils;
+import com.google.wireless.gdata.data.StringDictionary;
+import com.google.wireless.gdata.parser.GDataParser;
+import com.google.wireless.gdata.parser.ParseException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Columnar, in-memory store of calendar events, for computations over very
+ * large numbers of events (free/busy, conflict detection, agendas) without
+ * one {@link EventEntry} object per event.
+ *
+ * Each row is one instance of an event, i.e. one {@link When}; an event with
+ * several whens has several rows, and an event without any has a single row
+ * with no time.  The columns are parallel primitive arrays:
+ * <ul>
+ *   <li>start and end, in milliseconds since the epoch (UTC)</li>
+ *   <li>the event's packed status, visibility and transparency, plus whether
+ *   the instance is all-day</li>
+ *   <li>the event's id and title, encoded with a {@link StringDictionary}</li>
+ *   <li>a range of the attendee columns, which hold each attendee's
+ *   dictionary-encoded email and packed relationship, type and status</li>
+ * </ul>
+ * Time-range queries are plain loops over the start and end columns.
+ *
+ * Rows are only ever appended.  Instances of this class are not thread safe.
+ */
+public class EventStore {
+    /** The start and end of rows that have no time. */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    /* Set in a row's flags when its start is a date without a time. */
+    private static final int FLAG_ALL_DAY = 1 << 24;
+    /* Positions of the status, visibility and transparency within EventEntry's flags. */
+    private static final int STATUS_SHIFT = 0;
+    private static final int VISIBILITY_SHIFT = 8;
+    private static final int TRANSPARENCY_SHIFT = 16;
+
+    private final StringDictionary ids = new StringDictionary(1024);
+    private final StringDictionary titles = new StringDictionary(1024);
+    private final StringDictionary emails = new StringDictionary(1024);
+
+    private int size = 0;
+    private long[] starts;
+    private long[] ends;
+    private int[] flags;
+    private int[] idCodes;
+    private int[] titleCodes;
+    private int[] attendeeStarts;
+    private int[] attendeeEnds;
+
+    private int attendeeCount = 0;
+    private int[] attendeeEmails;
+    private int[] attendeeFlags;
+
+    /**
+     * Creates a new, empty EventStore.
+     * @param expectedRows How many rows the store is expected to hold.
+     */
+    public EventStore(int expectedRows) {
+        int capacity = Math.max(16, expectedRows);
+        starts = new long[capacity];
+        ends = new long[capacity];
+        flags = new int[capacity];
+        idCodes = new int[capacity];
+        titleCodes = new int[capacity];
+        attendeeStarts = new int[capacity];
+        attendeeEnds = new int[capacity];
+        attendeeEmails = new int[capacity];
+        attendeeFlags = new int[capacity];
+    }
+
+    /**
+     * Reads every remaining entry from an events feed parser into the store,
+     * reusing a single {@link EventEntry}.  The caller is responsible for
+     * closing the parser.
+     * @param parser A parser for an events feed, after {@link GDataParser#init}.
+     * @return The number of rows added.
+     */
+    public int ingest(GDataParser parser) throws ParseException, IOException {
+        int before = size;
+        EventEntry entry = null;
+        while (parser.hasMoreData()) {
+            entry = (EventEntry) parser.readNextEntry(entry);
+            add(entry);
+        }
+        return size - before;
+    }
+
+    /**
+     * Adds an event, as one row per {@link When}.
+     * @param entry The event.
+     * @return The number of rows added.
+     */
+    public int add(EventEntry entry) {
+        int firstAttendee = attendeeCount;
+        WhoList attendees = entry.getAttendeeList();
+        for (int i = 0; i < attendees.size(); i++) {
+            addAttendee(emails.intern(attendees.getEmail(i)), attendees.getFlags(i));
+        }
+        int id = ids.intern(entry.getId());
+        int title = titles.intern(entry.getTitle());
+        int eventFlags = entry.getFlags();
+
+        List whens = entry.getWhens();
+        if (whens.isEmpty()) {
+            addRow(NO_TIME, NO_TIME, eventFlags, id, title, firstAttendee);
+            return 1;
+        }
+        for (int i = 0; i < whens.size(); i++) {
+            When when = (When) whens.get(i);
+            String startTime = when.getStartTime();
+            long start = DateTimeUtils.parseRfc3339(startTime, NO_TIME);
+            long end = DateTimeUtils.parseRfc3339(when.getEndTime(), start);
+            int rowFlags = eventFlags;
+            if (startTime != null && startTime.length() == 10) {
+                rowFlags |= FLAG_ALL_DAY;
+            }
+            addRow(start, start == NO_TIME ? NO_TIME : end, rowFlags, id, title,
+                    firstAttendee);
+        }
+        return whens.size();
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the start of a row, or {@link #NO_TIME}
+     */
+    public long getStart(int row) {
+        checkRow(row);
+        return starts[row];
+    }
+
+    /**
+     * @return the end of a row, or {@link #NO_TIME}
+     */
+    public long getEnd(int row) {
+        checkRow(row);
+        return ends[row];
+    }
+
+    /**
+     * @return whether a row's start is a date without a time
+     */
+    public boolean isAllDay(int row) {
+        checkRow(row);
+        return (flags[row] & FLAG_ALL_DAY) != 0;
+    }
+
+    /**
+     * @return the status of a row, one of the EventEntry.STATUS_* constants
+     */
+    public byte getStatus(int row) {
+        checkRow(row);
+        return (byte) (flags[row] >>> STATUS_SHIFT);
+    }
+
+    /**
+     * @return the visibility of a row, one of the EventEntry.VISIBILITY_*
+     * constants
+     */
+    public byte getVisibility(int row) {
+        checkRow(row);
+        return (byte) (flags[row] >>> VISIBILITY_SHIFT);
+    }
+
+    /**
+     * @return the transparency of a row, one of the EventEntry.TRANSPARENCY_*
+     * constants
+     */
+    public byte getTransparency(int row) {
+        checkRow(row);
+        return (byte) (flags[row] >>> TRANSPARENCY_SHIFT);
+    }
+
+    /**
+     * @return the id of a row's event
+     */
+    public String getId(int row) {
+        checkRow(row);
+        return ids.get(idCodes[row]);
+    }
+
+    /**
+     * @return the title of a row's event
+     */
+    public String getTitle(int row) {
+        checkRow(row);
+        return titles.get(titleCodes[row]);
+    }
+
+    /**
+     * @return the number of attendees of a row's event
+     */
+    public int getAttendeeCount(int row) {
+        checkRow(row);
+        return attendeeEnds[row] - attendeeStarts[row];
+    }
+
+    /**
+     * @return the email of one of the attendees of a row's event
+     */
+    public String getAttendeeEmail(int row, int attendee) {
+        return emails.get(attendeeEmails[attendeeIndex(row, attendee)]);
+    }
+
+    /**
+     * @return the status of one of the attendees of a row's event, one of the
+     * Who.STATUS_* constants
+     */
+    public byte getAttendeeStatus(int row, int attendee) {
+        return Who.unpack(attendeeFlags[attendeeIndex(row, attendee)], Who.STATUS_SHIFT);
+    }
+
+    /**
+     * @return the relationship of one of the attendees of a row's event, one
+     * of the Who.RELATIONSHIP_* constants
+     */
+    public byte getAttendeeRelationship(int row, int attendee) {
+        return Who.unpack(attendeeFlags[attendeeIndex(row, attendee)],
+                Who.RELATIONSHIP_SHIFT);
+    }
+
+    /**
+     * Finds the rows that overlap a time range.  Rows without a time never
+     * match; a row with no duration matches if it starts within the range.
+     * @param from The start of the range, inclusive.
+     * @param to The end of the range, exclusive.
+     * @return The matching rows, in the order they were added.
+     */
+    public int[] selectOverlapping(long from, long to) {
+        return select(from, to, false /* busyOnly */, StringDictionary.NULL_CODE);
+    }
+
+    /**
+     * Finds the rows that make their time busy in a range: opaque rows that
+     * are not canceled.
+     * @param from The start of the range, inclusive.
+     * @param to The end of the range, exclusive.
+     * @return The matching rows, in the order they were added.
+     */
+    public int[] selectBusy(long from, long to) {
+        return select(from, to, true /* busyOnly */, StringDictionary.NULL_CODE);
+    }
+
+    /**
+     * Finds the rows that make an attendee busy in a range: busy rows (see
+     * {@link #selectBusy}) that the attendee has not declined.
+     * @param email The attendee's email.
+     * @param from The start of the range, inclusive.
+     * @param to The end of the range, exclusive.
+     * @return The matching rows, in the order they were added.
+     */
+    public int[] selectBusy(String email, long from, long to) {
+        int code = emails.lookup(email);
+        if (code == StringDictionary.NULL_CODE) {
+            return new int[0];
+        }
+        return select(from, to, true /* busyOnly */, code);
+    }
+
+    /**
+     * Computes the busy time within a range, as sorted, non-overlapping
+     * intervals: the union of the rows returned by {@link #selectBusy},
+     * clipped to the range.
+     * @param from The start of the range, inclusive.
+     * @param to The end of the range, exclusive.
+     * @return The intervals, as start, end, start, end...
+     */
+    public long[] getBusyIntervals(long from, long to) {
+        int[] rows = selectBusy(from, to);
+        sortByStart(rows, 0, rows.length - 1);
+        long[] intervals = new long[rows.length * 2];
+        int n = 0;
+        for (int i = 0; i < rows.length; i++) {
+            long start = Math.max(from, starts[rows[i]]);
+            long end = Math.min(to, ends[rows[i]]);
+            if (end <= start) {
+                continue;
+            }
+            if (n > 0 && start <= intervals[n - 1]) {
+                intervals[n - 1] = Math.max(intervals[n - 1], end);
+            } else {
+                intervals[n++] = start;
+                intervals[n++] = end;
+            }
+        }
+        long[] result = new long[n];
+        System.arraycopy(intervals, 0, result, 0, n);
+        return result;
+    }
+
+    /**
+     * Shrinks the columns to the number of rows, e.g. once all events have
+     * been added.
+     */
+    public void trimToSize() {
+        starts = copyOf(starts, size);
+        ends = copyOf(ends, size);
+        flags = copyOf(flags, size);
+        idCodes = copyOf(idCodes, size);
+        titleCodes = copyOf(titleCodes, size);
+        attendeeStarts = copyOf(attendeeStarts, size);
+        attendeeEnds = copyOf(attendeeEnds, size);
+        attendeeEmails = copyOf(attendeeEmails, attendeeCount);
+        attendeeFlags = copyOf(attendeeFlags, attendeeCount);
+    }
+
+    private int[] select(long from, long to, boolean busyOnly, int emailCode) {
+        // count first, so that the result is allocated exactly once.
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (matches(row, from, to, busyOnly, emailCode)) {
+                ++count;
+            }
+        }
+        int[] rows = new int[count];
+        int n = 0;
+        for (int row = 0; n < count; row++) {
+            if (matches(row, from, to, busyOnly, emailCode)) {
+                rows[n++] = row;
+            }
+        }
+        return rows;
+    }
+
+    private boolean matches(int row, long from, long to, boolean busyOnly, int emailCode) {
+        long start = starts[row];
+        if (start == NO_TIME || start >= to) {
+            return false;
+        }
+        long end = ends[row];
+        if (end > start ? end <= from : start < from) {
+            return false;
+        }
+        if (busyOnly) {
+            int f = flags[row];
+            if ((byte) (f >>> STATUS_SHIFT) == EventEntry.STATUS_CANCELED
+                    || (byte) (f >>> TRANSPARENCY_SHIFT) == EventEntry.TRANSPARENCY_TRANSPARENT) {
+                return false;
+            }
+        }
+        if (emailCode != StringDictionary.NULL_CODE) {
+            for (int a = attendeeStarts[row]; a < attendeeEnds[row]; a++) {
+                if (attendeeEmails[a] == emailCode) {
+                    return Who.unpack(attendeeFlags[a], Who.STATUS_SHIFT) != Who.STATUS_DECLINED;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private void addRow(long start, long end, int rowFlags, int id, int title,
+            int firstAttendee) {
+        if (size == starts.length) {
+            int capacity = Math.max(16, size * 2);
+            starts = copyOf(starts, capacity);
+            ends = copyOf(ends, capacity);
+            flags = copyOf(flags, capacity);
+            idCodes = copyOf(idCodes, capacity);
+            titleCodes = copyOf(titleCodes, capacity);
+            attendeeStarts = copyOf(attendeeStarts, capacity);
+            attendeeEnds = copyOf(attendeeEnds, capacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        flags[size] = rowFlags;
+        idCodes[size] = id;
+        titleCodes[size] = title;
+        // every instance of an event shares the event's attendees.
+        attendeeStarts[size] = firstAttendee;
+        attendeeEnds[size] = attendeeCount;
+        ++size;
+    }
+
+    private void addAttendee(int email, int attendeeFlag) {
+        if (attendeeCount == attendeeEmails.length) {
+            int capacity = Math.max(16, attendeeCount * 2);
+            attendeeEmails = copyOf(attendeeEmails, capacity);
+            attendeeFlags = copyOf(attendeeFlags, capacity);
+        }
+        attendeeEmails[attendeeCount] = email;
+        attendeeFlags[attendeeCount] = attendeeFlag;
+        ++attendeeCount;
+    }
+
+    private int attendeeIndex(int row, int attendee) {
+        checkRow(row);
+        int index = attendeeStarts[row] + attendee;
+        if (attendee < 0 || index >= attendeeEnds[row]) {
+            throw new IndexOutOfBoundsException("Attendee: " + attendee + ", count: "
+                    + (attendeeEnds[row] - attendeeStarts[row]));
+        }
+        return index;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        }
+    }
+
+    /** Sorts rows[lo..hi] by start. */
+    private void sortByStart(int[] rows, int lo, int hi) {
+        while (hi - lo > 16) {
+            long pivot = starts[rows[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (starts[rows[i]] < pivot) {
+                    ++i;
+                }
+                while (starts[rows[j]] > pivot) {
+                    --j;
+                }
+                if (i <= j) {
+                    int t = rows[i];
+                    rows[i++] = rows[j];
+                    rows[j--] = t;
+                }
+            }
+            // recurse into the smaller half to bound the stack depth.
+            if (j - lo < hi - i) {
+                sortByStart(rows, lo, j);
+                lo = i;
+            } else {
+                sortByStart(rows, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            int row = rows[i];
+            long start = starts[row];
+            int j = i - 1;
+            while (j >= lo && starts[rows[j]] > start) {
+                rows[j + 1] = rows[j];
+                --j;
+            }
+            rows[j + 1] = row;
+        }
+    }
+
+    private static long[] copyOf(long[] array, int length) {
+        long[] copy = new long[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(length, array.length));
+        return copy;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(length, array.length));
+        return copy;
+    }
+}
@@ -79,11 +79,15 @@ public class Who {
      */
     public static final byte STATUS_TENTATIVE = 4;
 
+    /* Positions of the relationship, type and status within the flags. */
+    static final int RELATIONSHIP_SHIFT = 0;
+    static final int TYPE_SHIFT = 8;
+    static final int STATUS_SHIFT = 16;
+
     private String email;
     private String value;
-    private byte relationship = RELATIONSHIP_NONE;
-    private byte type = TYPE_NONE;
-    private byte status = STATUS_NONE;
+    /* relationship, type and status, one byte each; see pack(). */
+    private int flags = pack(RELATIONSHIP_NONE, TYPE_NONE, STATUS_NONE);
 
     /**
      * Creates a new Who, representing event attendee information.
@@ -91,6 +95,42 @@ public class Who {
     public Who() {
     }
 
+    Who(String email, String value, int flags) {
+        this.email = email;
+        this.value = value;
+        this.flags = flags;
+    }
+
+    /**
+     * Packs a relationship, type and status into a single int.
+     */
+    static int pack(byte relationship, byte type, byte status) {
+        return ((relationship & 0xff) << RELATIONSHIP_SHIFT)
+                | ((type & 0xff) << TYPE_SHIFT)
+                | ((status & 0xff) << STATUS_SHIFT);
+    }
+
+    /**
+     * Extracts one of the bytes packed by {@link #pack}.
+     */
+    static byte unpack(int flags, int shift) {
+        return (byte) (flags >>> shift);
+    }
+
+    /**
+     * Replaces one of the bytes packed by {@link #pack}.
+     */
+    static int repack(int flags, int shift, byte value) {
+        return (flags & ~(0xff << shift)) | ((value & 0xff) << shift);
+    }
+
+    /**
+     * @return the relationship, type and status, as packed by {@link #pack}
+     */
+    int getFlags() {
+        return flags;
+    }
+
     public String getEmail() {
         return email;
     }
@@ -108,27 +148,27 @@ public class Who {
     }
 
     public byte getRelationship() {
-        return relationship;
+        return unpack(flags, RELATIONSHIP_SHIFT);
     }
 
     public void setRelationship(byte relationship) {
-        this.relationship = relationship;
+        flags = repack(flags, RELATIONSHIP_SHIFT, relationship);
     }
 
     public byte getType() {
-        return type;
+        return unpack(flags, TYPE_SHIFT);
     }
 
     public void setType(byte type) {
-        this.type = type;
+        flags = repack(flags, TYPE_SHIFT, type);
     }
 
     public byte getStatus() {
-        return status;
+        return unpack(flags, STATUS_SHIFT);
     }
 
     public void setStatus(byte status) {
-        this.status = status;
+        flags = repack(flags, STATUS_SHIFT, status);
     }
 
     protected void toString(StringBuffer sb) {
@@ -140,9 +180,9 @@ public class Who {
             sb.append("VALUE: " + value + "\n");
         }
 
-        sb.append("RELATIONSHIP: " + relationship + "\n");
-        sb.append("TYPE: " + type + "\n");
-        sb.append("STATUS: " + status + "\n");
+        sb.append("RELATIONSHIP: " + getRelationship() + "\n");
+        sb.append("TYPE: " + getType() + "\n");
+        sb.append("STATUS: " + getStatus() + "\n");
     }
 
     public String toString() {
@@ -0,0 +1,188 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.calendar.data;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Compact list of event attendees.  Instead of one {@link Who} object per
+ * attendee, the emails, values and packed relationship/type/status of all
+ * attendees are kept in three parallel arrays, which matters for events with
+ * hundreds of guests.
+ *
+ * Attendees can be read by index without allocating anything.
+ * {@link #get(int)} and the {@link #asList()} view return a new {@link Who}
+ * copy of an attendee, so changing it does not change the list.
+ *
+ * Instances of this class are not thread safe.
+ */
+public final class WhoList {
+    private static final String[] EMPTY_STRINGS = new String[0];
+    private static final int[] EMPTY_INTS = new int[0];
+
+    private String[] emails = EMPTY_STRINGS;
+    private String[] values = EMPTY_STRINGS;
+    private int[] flags = EMPTY_INTS;
+    private int size = 0;
+
+    /** Read-only view of a WhoList, as Who copies. */
+    private static class ListView extends AbstractList {
+        private final WhoList list;
+
+        ListView(WhoList list) {
+            this.list = list;
+        }
+
+        public Object get(int index) {
+            return list.get(index);
+        }
+
+        public int size() {
+            return list.size;
+        }
+    }
+
+    /**
+     * Creates a new, empty WhoList.
+     */
+    public WhoList() {
+    }
+
+    /**
+     * Appends a copy of an attendee.
+     * @param who The attendee.
+     */
+    public void add(Who who) {
+        add(who.getEmail(), who.getValue(), who.getFlags());
+    }
+
+    /**
+     * Appends an attendee.
+     * @param email The attendee's email.
+     * @param value The attendee's display value.
+     * @param relationship One of the Who.RELATIONSHIP_* constants.
+     * @param type One of the Who.TYPE_* constants.
+     * @param status One of the Who.STATUS_* constants.
+     */
+    public void add(String email, String value, byte relationship, byte type, byte status) {
+        add(email, value, Who.pack(relationship, type, status));
+    }
+
+    private void add(String email, String value, int packed) {
+        if (size == flags.length) {
+            int capacity = size == 0 ? 1 : size * 2;
+            String[] newEmails = new String[capacity];
+            String[] newValues = new String[capacity];
+            int[] newFlags = new int[capacity];
+            System.arraycopy(emails, 0, newEmails, 0, size);
+            System.arraycopy(values, 0, newValues, 0, size);
+            System.arraycopy(flags, 0, newFlags, 0, size);
+            emails = newEmails;
+            values = newValues;
+            flags = newFlags;
+        }
+        emails[size] = email;
+        values[size] = value;
+        flags[size] = packed;
+        ++size;
+    }
+
+    /**
+     * @return the number of attendees
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return whether there are no attendees
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the email of the attendee at index
+     */
+    public String getEmail(int index) {
+        checkIndex(index);
+        return emails[index];
+    }
+
+    /**
+     * @return the display value of the attendee at index
+     */
+    public String getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * @return the relationship of the attendee at index
+     */
+    public byte getRelationship(int index) {
+        checkIndex(index);
+        return Who.unpack(flags[index], Who.RELATIONSHIP_SHIFT);
+    }
+
+    /**
+     * @return the type of the attendee at index
+     */
+    public byte getType(int index) {
+        checkIndex(index);
+        return Who.unpack(flags[index], Who.TYPE_SHIFT);
+    }
+
+    /**
+     * @return the status of the attendee at index
+     */
+    public byte getStatus(int index) {
+        checkIndex(index);
+        return Who.unpack(flags[index], Who.STATUS_SHIFT);
+    }
+
+    /**
+     * @return the packed relationship, type and status of the attendee at index
+     */
+    int getFlags(int index) {
+        checkIndex(index);
+        return flags[index];
+    }
+
+    /**
+     * Returns a copy of an attendee.
+     * @param index The index of the attendee.
+     * @return A new Who with the attendee's information.
+     */
+    public Who get(int index) {
+        checkIndex(index);
+        return new Who(emails[index], values[index], flags[index]);
+    }
+
+    /**
+     * Removes every attendee, keeping the allocated arrays.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            emails[i] = null;
+            values[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns a read-only view of this list, whose elements are {@link Who}
+     * copies of the attendees.
+     * @return The view.
+     */
+    public List asList() {
+        return new ListView(this);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
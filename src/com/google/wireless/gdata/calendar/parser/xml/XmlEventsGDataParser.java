@@ -209,9 +209,6 @@ public class XmlEventsGDataParser extends XmlGDataParser {
         String value =
                 parser.getAttributeValue(null /* ns */, "valueString");
 
-        Who who = new Who();
-        who.setEmail(email);
-        who.setValue(value);
         byte rel = Who.RELATIONSHIP_NONE;
         if ("http://schemas.google.com/g/2005#event.attendee".equals(relString)) {
             rel = Who.RELATIONSHIP_ATTENDEE;
@@ -226,9 +223,8 @@ public class XmlEventsGDataParser extends XmlGDataParser {
         } else {
             throw new ParseException("Unexpected rel: " + relString);
         }
-        who.setRelationship(rel);
-
-        eventEntry.addAttendee(who);
+        byte status = Who.STATUS_NONE;
+        byte type = Who.TYPE_NONE;
 
         while (eventType != XmlPullParser.END_DOCUMENT) {
             switch (eventType) {
@@ -237,7 +233,6 @@ public class XmlEventsGDataParser extends XmlGDataParser {
                     if ("attendeeStatus".equals(name)) {
                         String statusString =
                                 parser.getAttributeValue(null /* ns */, "value");
-                        byte status = Who.STATUS_NONE;
                         if ("http://schemas.google.com/g/2005#event.accepted".
                                 equals(statusString)) {
                             status = Who.STATUS_ACCEPTED;
@@ -255,10 +250,8 @@ public class XmlEventsGDataParser extends XmlGDataParser {
                         } else {
                             throw new ParseException("Unexpected status: " + statusString);
                         }
-                        who.setStatus(status);
                     } else if ("attendeeType".equals(name)) {
                         String typeString= XmlUtils.extractChildText(parser);
-                        byte type = Who.TYPE_NONE;
                         if ("http://schemas.google.com/g/2005#event.optional".equals(typeString)) {
                             type = Who.TYPE_OPTIONAL;
                         } else if ("http://schemas.google.com/g/2005#event.required".
@@ -269,12 +262,13 @@ public class XmlEventsGDataParser extends XmlGDataParser {
                         } else {
                             throw new ParseException("Unexpected type: " + typeString);
                         }
-                        who.setType(type);
                     }
                     break;
                 case XmlPullParser.END_TAG:
                     name = parser.getName();
                     if ("who".equals(name)) {
+                        // the attendee is stored packed, so add it once it is complete.
+                        eventEntry.addAttendee(email, value, rel, type, status);
                         return;
                     }
                 default:
@@ -6,6 +6,7 @@ import com.google.wireless.gdata.calendar.data.EventEntry;
 import com.google.wireless.gdata.calendar.data.When;
 import com.google.wireless.gdata.calendar.data.Reminder;
 import com.google.wireless.gdata.calendar.data.Who;
+import com.google.wireless.gdata.calendar.data.WhoList;
 import com.google.wireless.gdata.data.StringUtils;
 import com.google.wireless.gdata.parser.xml.XmlGDataParser;
 import com.google.wireless.gdata.parser.xml.XmlParserFactory;
@@ -15,8 +16,9 @@ import com.google.wireless.gdata.serializer.xml.XmlEntryGDataSerializer;
 import org.xmlpull.v1.XmlSerializer;
 
 import java.io.IOException;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -54,27 +56,26 @@ public class XmlEventEntryGDataSerializer extends XmlEntryGDataSerializer {
         serializeEventStatus(serializer, entry.getStatus());
         serializeTransparency(serializer, entry.getTransparency());
         serializeVisibility(serializer, entry.getVisibility());
-        Enumeration attendees = entry.getAttendees().elements();
-        while (attendees.hasMoreElements()) {
-            Who attendee = (Who) attendees.nextElement();
-            serializeWho(serializer, entry, attendee);
+        WhoList attendees = entry.getAttendeeList();
+        for (int i = 0; i < attendees.size(); i++) {
+            serializeWho(serializer, attendees, i);
         }
 
         serializeRecurrence(serializer, entry.getRecurrence());
         // either serialize reminders directly under the entry, or serialize
         // whens (with reminders within the whens) -- should be just one.
         if (entry.getRecurrence() != null) {
-            if (entry.getReminders() != null) {
-                Enumeration reminders = entry.getReminders().elements();
-                while (reminders.hasMoreElements()) {
-                    Reminder reminder = (Reminder) reminders.nextElement();
+            List reminders = entry.getReminders();
+            if (reminders != null) {
+                for (int i = 0; i < reminders.size(); i++) {
+                    Reminder reminder = (Reminder) reminders.get(i);
                     serializeReminder(serializer, reminder);
                 }
             }
         } else {
-            Enumeration whens = entry.getWhens().elements();
-            while (whens.hasMoreElements()) {
-                When when = (When) whens.nextElement();
+            List whens = entry.getWhens();
+            for (int i = 0; i < whens.size(); i++) {
+                When when = (When) whens.get(i);
                 serializeWhen(serializer, entry, when);
             }
         }
@@ -85,13 +86,13 @@ public class XmlEventEntryGDataSerializer extends XmlEntryGDataSerializer {
 
         serializeCommentsUri(serializer, entry.getCommentsUri());
 
-        Hashtable extendedProperties = entry.getExtendedProperties();
+        Map extendedProperties = entry.getExtendedProperties();
         if (extendedProperties != null) {
-            Enumeration propertyNames = extendedProperties.keys();
-            while (propertyNames.hasMoreElements()) {
-                String propertyName = (String) propertyNames.nextElement();
-                String propertyValue = (String) extendedProperties.get(propertyName);
-                serializeExtendedProperty(serializer, propertyName, propertyValue);
+            Iterator properties = extendedProperties.entrySet().iterator();
+            while (properties.hasNext()) {
+                Map.Entry property = (Map.Entry) properties.next();
+                serializeExtendedProperty(serializer, (String) property.getKey(),
+                        (String) property.getValue());
             }
         }
     }
@@ -194,22 +195,23 @@ public class XmlEventEntryGDataSerializer extends XmlEntryGDataSerializer {
     }
 
     private static void serializeWho(XmlSerializer serializer,
-            EventEntry entry,
-            Who who)
+            WhoList attendees,
+            int index)
             throws IOException, ParseException {
         serializer.startTag(XmlGDataParser.NAMESPACE_GD_URI, "who");
-        String email = who.getEmail();
+        String email = attendees.getEmail(index);
         if (!StringUtils.isEmpty(email)) {
             serializer.attribute(null /* ns */, "email", email);
         }
 
-        String value = who.getValue();
+        String value = attendees.getValue(index);
         if (!StringUtils.isEmpty(value)) {
             serializer.attribute(null /* ns */, "valueString", value);
         }
 
         String rel = null;
-        switch (who.getRelationship()) {
+        byte relationship = attendees.getRelationship(index);
+        switch (relationship) {
             case Who.RELATIONSHIP_NONE:
                 break;
             case Who.RELATIONSHIP_ATTENDEE:
@@ -225,14 +227,15 @@ public class XmlEventEntryGDataSerializer extends XmlEntryGDataSerializer {
                 rel = "http://schemas.google.com/g/2005#event.speaker";
                 break;
             default:
-                throw new ParseException("Unexpected rel: " + who.getRelationship());
+                throw new ParseException("Unexpected rel: " + relationship);
         }
         if (!StringUtils.isEmpty(rel)) {
             serializer.attribute(null /* ns */, "rel", rel);
         }
 
         String status = null;
-        switch (who.getStatus()) {
+        byte attendeeStatus = attendees.getStatus(index);
+        switch (attendeeStatus) {
             case Who.STATUS_NONE:
                 break;
             case Who.STATUS_ACCEPTED:
@@ -248,7 +251,7 @@ public class XmlEventEntryGDataSerializer extends XmlEntryGDataSerializer {
                 status = "http://schemas.google.com/g/2005#event.tentative";
                 break;
             default:
-                throw new ParseException("Unexpected status: " + who.getStatus());
+                throw new ParseException("Unexpected status: " + attendeeStatus);
         }
         if (!StringUtils.isEmpty(status)) {
             serializer.startTag(XmlGDataParser.NAMESPACE_GD_URI,
@@ -259,7 +262,8 @@ public class XmlEventEntryGDataSerializer extends XmlEntryGDataSerializer {
         }
 
         String type = null;
-        switch (who.getType()) {
+        byte attendeeType = attendees.getType(index);
+        switch (attendeeType) {
             case Who.TYPE_NONE:
                 break;
             case Who.TYPE_REQUIRED:
@@ -269,7 +273,7 @@ public class XmlEventEntryGDataSerializer extends XmlEntryGDataSerializer {
                 type = "http://schemas.google.com/g/2005#event.optional";
                 break;
             default:
-                throw new ParseException("Unexpected type: " + who.getType());
+                throw new ParseException("Unexpected type: " + attendeeType);
         }
         if (!StringUtils.isEmpty(type)) {
             serializer.startTag(XmlGDataParser.NAMESPACE_GD_URI,
@@ -296,10 +300,10 @@ public class XmlEventEntryGDataSerializer extends XmlEntryGDataSerializer {
         if (!StringUtils.isEmpty(endTime)) {
             serializer.attribute(null /* ns */, "endTime", endTime);
         }
-        if (entry.getReminders() != null) {
-            Enumeration reminders = entry.getReminders().elements();
-            while (reminders.hasMoreElements()) {
-                Reminder reminder = (Reminder) reminders.nextElement();
+        List reminders = entry.getReminders();
+        if (reminders != null) {
+            for (int i = 0; i < reminders.size(); i++) {
+                Reminder reminder = (Reminder) reminders.get(i);
                 serializeReminder(serializer, reminder);
             }
         }
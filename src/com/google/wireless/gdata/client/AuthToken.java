@@ -0,0 +1,48 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+/**
+ * An authentication token for one account and service, together with the
+ * time it expires.
+ */
+public class AuthToken {
+    /** Expiry time for tokens whose lifetime is not known. */
+    public static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
+    private final String token;
+    private final long expiresAt;
+
+    /**
+     * Creates a new AuthToken.
+     * @param token The token value, as passed to a {@link GDataClient}.
+     * @param expiresAt When the token expires, in milliseconds since the
+     * epoch, or {@link #NEVER_EXPIRES} if unknown.
+     */
+    public AuthToken(String token, long expiresAt) {
+        if (token == null) {
+            throw new NullPointerException("token must not be null");
+        }
+        this.token = token;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return the token value
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return when the token expires, in milliseconds since the epoch
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public String toString() {
+        // never include the token itself; it ends up in logs.
+        return "AuthToken expiresAt:" + expiresAt;
+    }
+}
@@ -0,0 +1,211 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Hashtable;
+
+/**
+ * Caches authentication tokens per (account, service) pair.
+ *
+ * A token that is close to expiring is refreshed on a background thread
+ * while the current token keeps being handed out, so callers normally never
+ * wait for a login round trip.  Only when there is no usable token at all
+ * does a caller fetch one itself, and concurrent callers for the same account
+ * and service share that single fetch.  After a failed fetch, background
+ * refreshes back off exponentially so that an unavailable login service is
+ * not flooded.
+ *
+ * Instances of this class are thread safe.
+ */
+public class AuthTokenCache {
+    /* The wait before the first background refresh after a failure. */
+    private static final long MIN_REFRESH_BACKOFF_MILLIS = 5 * 1000;
+
+    /* The longest wait between background refreshes after failures. */
+    private static final long MAX_REFRESH_BACKOFF_MILLIS = 5 * 60 * 1000;
+
+    /** The cached state for one account and service; guarded by the cache. */
+    private static class Slot {
+        AuthToken token = null;
+        boolean fetching = false;
+        int generation = 0;
+        Exception failure = null;
+        /* no background refresh starts before this time. */
+        long nextRefreshAt = 0;
+        long refreshBackoffMillis = 0;
+    }
+
+    private final AuthTokenFetcher fetcher;
+    private final long refreshAheadMillis;
+    private final Hashtable slots = new Hashtable();
+
+    /**
+     * Creates a new AuthTokenCache.
+     * @param fetcher The fetcher used to obtain new tokens.
+     * @param refreshAheadMillis How long before a token expires it should be
+     * refreshed in the background.
+     */
+    public AuthTokenCache(AuthTokenFetcher fetcher, long refreshAheadMillis) {
+        this.fetcher = fetcher;
+        this.refreshAheadMillis = refreshAheadMillis;
+    }
+
+    /**
+     * Returns a valid authentication token for the account and service,
+     * fetching one if none is cached.
+     *
+     * @param account The account the token is for.
+     * @param service The name of the service the token is for.
+     * @return The token value.
+     * @throws IOException Thrown if a token had to be fetched and the fetch
+     * failed.
+     * @throws HttpException Thrown if a token had to be fetched and the login
+     * service returned an error response.
+     */
+    public String getAuthToken(String account, String service)
+            throws HttpException, IOException {
+        Slot slot;
+        String token = null;
+        boolean refresh = false;
+        synchronized (this) {
+            slot = getSlot(account, service);
+            while (true) {
+                long now = System.currentTimeMillis();
+                if (slot.token != null && now < slot.token.getExpiresAt()) {
+                    token = slot.token.getToken();
+                    if (!slot.fetching && now >= slot.nextRefreshAt
+                            && now >= slot.token.getExpiresAt() - refreshAheadMillis) {
+                        slot.fetching = true;
+                        refresh = true;
+                    }
+                    break;
+                }
+                if (!slot.fetching) {
+                    slot.fetching = true;
+                    break;
+                }
+                // another thread is fetching a token; share its result.
+                int generation = slot.generation;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a token");
+                }
+                if (slot.generation != generation && slot.token == null
+                        && slot.failure != null) {
+                    rethrow(slot.failure);
+                }
+            }
+        }
+
+        if (token == null) {
+            return fetch(slot, account, service).getToken();
+        }
+        if (refresh) {
+            refreshInBackground(slot, account, service);
+        }
+        return token;
+    }
+
+    /**
+     * Removes a token that the server rejected, so that the next call to
+     * {@link #getAuthToken} fetches a new one.  Does nothing if the cached
+     * token has already been replaced.
+     *
+     * @param account The account the token is for.
+     * @param service The name of the service the token is for.
+     * @param token The rejected token value.
+     */
+    public synchronized void invalidateAuthToken(String account, String service, String token) {
+        Slot slot = getSlot(account, service);
+        if (slot.token != null && slot.token.getToken().equals(token)) {
+            slot.token = null;
+        }
+    }
+
+    /**
+     * Removes all cached tokens.
+     */
+    public synchronized void clear() {
+        slots.clear();
+    }
+
+    private Slot getSlot(String account, String service) {
+        String key = account + '\0' + service;
+        Slot slot = (Slot) slots.get(key);
+        if (slot == null) {
+            slot = new Slot();
+            slots.put(key, slot);
+        }
+        return slot;
+    }
+
+    private AuthToken fetch(Slot slot, String account, String service)
+            throws HttpException, IOException {
+        AuthToken token = null;
+        Exception failure = null;
+        try {
+            token = fetcher.fetchAuthToken(account, service);
+            if (token == null) {
+                failure = new IOException("No token returned for " + service);
+            }
+        } catch (HttpException e) {
+            failure = e;
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        synchronized (this) {
+            slot.fetching = false;
+            ++slot.generation;
+            slot.failure = failure;
+            if (token != null) {
+                slot.token = token;
+                slot.nextRefreshAt = 0;
+                slot.refreshBackoffMillis = 0;
+            } else {
+                slot.refreshBackoffMillis = slot.refreshBackoffMillis == 0
+                        ? MIN_REFRESH_BACKOFF_MILLIS
+                        : Math.min(MAX_REFRESH_BACKOFF_MILLIS, slot.refreshBackoffMillis * 2);
+                slot.nextRefreshAt = System.currentTimeMillis() + slot.refreshBackoffMillis;
+            }
+            notifyAll();
+        }
+        if (failure != null) {
+            rethrow(failure);
+        }
+        return token;
+    }
+
+    private void refreshInBackground(final Slot slot, final String account,
+            final String service) {
+        Thread thread = new Thread("GDataAuthTokenRefresh") {
+            public void run() {
+                try {
+                    fetch(slot, account, service);
+                } catch (HttpException e) {
+                    // keep using the current token until it expires.
+                } catch (IOException e) {
+                    // keep using the current token until it expires.
+                } catch (RuntimeException e) {
+                    // keep using the current token until it expires.
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void rethrow(Exception e) throws HttpException, IOException {
+        if (e instanceof HttpException) {
+            throw (HttpException) e;
+        } else if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        throw (RuntimeException) e;
+    }
+}
@@ -0,0 +1,31 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.IOException;
+
+/**
+ * Obtains new authentication tokens.  Specific platforms provide their own
+ * implementations using whatever account and login mechanisms are available
+ * on that platform.
+ *
+ * @see AuthTokenCache
+ */
+public interface AuthTokenFetcher {
+
+    /**
+     * Obtains a new authentication token.  This may involve a network round
+     * trip.
+     *
+     * @param account The account the token is for.
+     * @param service The name of the service the token is for, as returned by
+     * {@link GDataServiceClient#getServiceName()}.
+     * @return A new token.
+     * @throws IOException Thrown if an io error occurs while obtaining the
+     * token.
+     * @throws HttpException Thrown if the login service returns an error
+     * response.
+     */
+    AuthToken fetchAuthToken(String account, String service)
+        throws HttpException, IOException;
+}
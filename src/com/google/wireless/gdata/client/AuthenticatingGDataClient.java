@@ -0,0 +1,194 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link GDataClient} that supplies authentication tokens from an
+ * {@link AuthTokenCache} for one account and service.
+ *
+ * Calls made with a null authToken use the cached token.  If the server
+ * rejects it with a 401, the token is invalidated and the request is sent
+ * once more with a fresh token.  Media updates are only sent again if the
+ * media stream can be reset.  Calls made with an explicit authToken are
+ * passed through unchanged.
+ *
+ * Clients that key responses by authToken, such as
+ * {@link CachingGDataClient} and {@link CoalescingGDataClient}, must be
+ * wrapped by this client rather than wrap it: above it the token is null and
+ * says nothing about the account, so one account's responses could be served
+ * to another.  Their constructors reject an AuthenticatingGDataClient
+ * delegate.
+ *
+ * Instances of this class are thread safe.
+ */
+public class AuthenticatingGDataClient extends DelegatingGDataClient {
+
+    /** A single attempt at a request, with the token to use. */
+    private interface Attempt {
+        Object run(String authToken) throws HttpException, IOException;
+    }
+
+    private final AuthTokenCache cache;
+    private final String account;
+    private final String service;
+
+    /**
+     * Creates a new AuthenticatingGDataClient.
+     * @param delegate The GDataClient that should be used for each request.
+     * @param cache The cache tokens are obtained from.
+     * @param account The account requests are made for.
+     * @param service The name of the service requests are made to, as returned
+     * by {@link GDataServiceClient#getServiceName()}.
+     */
+    public AuthenticatingGDataClient(GDataClient delegate, AuthTokenCache cache,
+            String account, String service) {
+        super(delegate);
+        this.cache = cache;
+        this.account = account;
+        this.service = service;
+    }
+
+    public InputStream getFeedAsStream(final String feedUrl, String authToken)
+            throws HttpException, IOException {
+        return (InputStream) execute(authToken, new Attempt() {
+            public Object run(String token) throws HttpException, IOException {
+                return getDelegate().getFeedAsStream(feedUrl, token);
+            }
+        }, true /* replayable */);
+    }
+
+    public InputStream getMediaEntryAsStream(final String mediaEntryUrl, String authToken)
+            throws HttpException, IOException {
+        return (InputStream) execute(authToken, new Attempt() {
+            public Object run(String token) throws HttpException, IOException {
+                return getDelegate().getMediaEntryAsStream(mediaEntryUrl, token);
+            }
+        }, true /* replayable */);
+    }
+
+    public RangeResponse getMediaEntryRange(final String mediaEntryUrl, String authToken,
+            final long firstBytePosition, final long lastBytePosition, final String ifRange)
+            throws HttpException, IOException {
+        return (RangeResponse) execute(authToken, new Attempt() {
+            public Object run(String token) throws HttpException, IOException {
+                return AuthenticatingGDataClient.super.getMediaEntryRange(mediaEntryUrl, token,
+                        firstBytePosition, lastBytePosition, ifRange);
+            }
+        }, true /* replayable */);
+    }
+
+    public InputStream createEntry(final String feedUrl, String authToken,
+            final GDataSerializer entry) throws HttpException, IOException {
+        // a 401 means the entry was not created, so it is safe to send again.
+        return (InputStream) execute(authToken, new Attempt() {
+            public Object run(String token) throws HttpException, IOException {
+                return getDelegate().createEntry(feedUrl, token, entry);
+            }
+        }, true /* replayable */);
+    }
+
+    public InputStream updateEntry(final String editUri, String authToken,
+            final GDataSerializer entry) throws HttpException, IOException {
+        return (InputStream) execute(authToken, new Attempt() {
+            public Object run(String token) throws HttpException, IOException {
+                return getDelegate().updateEntry(editUri, token, entry);
+            }
+        }, true /* replayable */);
+    }
+
+    public InputStream patchEntry(final String editUri, String authToken,
+            final GDataSerializer entry) throws HttpException, IOException {
+        return (InputStream) execute(authToken, new Attempt() {
+            public Object run(String token) throws HttpException, IOException {
+                return AuthenticatingGDataClient.super.patchEntry(editUri, token, entry);
+            }
+        }, true /* replayable */);
+    }
+
+    public void deleteEntry(final String editUri, String authToken)
+            throws HttpException, IOException {
+        execute(authToken, new Attempt() {
+            public Object run(String token) throws HttpException, IOException {
+                getDelegate().deleteEntry(editUri, token);
+                return null;
+            }
+        }, true /* replayable */);
+    }
+
+    public InputStream updateMediaEntry(final String editUri, String authToken,
+            final InputStream mediaEntryInputStream, final String contentType)
+            throws HttpException, IOException {
+        // the media can only be sent again if the stream can be rewound.
+        final boolean resettable = mediaEntryInputStream.markSupported();
+        if (resettable) {
+            mediaEntryInputStream.mark(Integer.MAX_VALUE);
+        }
+        return (InputStream) execute(authToken, new Attempt() {
+            private boolean sent = false;
+
+            public Object run(String token) throws HttpException, IOException {
+                if (sent) {
+                    mediaEntryInputStream.reset();
+                }
+                sent = true;
+                return getDelegate().updateMediaEntry(editUri, token,
+                        mediaEntryInputStream, contentType);
+            }
+        }, resettable);
+    }
+
+    private Object execute(String authToken, Attempt attempt, boolean replayable)
+            throws HttpException, IOException {
+        if (authToken != null) {
+            return attempt.run(authToken);
+        }
+        String token = cache.getAuthToken(account, service);
+        try {
+            return attempt.run(token);
+        } catch (HttpException e) {
+            if (e.getStatusCode() != HttpException.SC_UNAUTHORIZED) {
+                throw e;
+            }
+            cache.invalidateAuthToken(account, service, token);
+            if (!replayable) {
+                throw e;
+            }
+            closeQuietly(e.getResponseStream());
+        }
+        return attempt.run(cache.getAuthToken(account, service));
+    }
+
+    /**
+     * Throws if an AuthenticatingGDataClient is among the clients a client
+     * that keys responses by authToken would wrap.
+     * @param delegate The client that would be wrapped.
+     * @throws IllegalArgumentException Thrown if the delegate authenticates
+     * requests itself, or wraps a client that does.
+     */
+    static void checkNotAuthenticating(GDataClient delegate) {
+        GDataClient client = delegate;
+        while (client instanceof DelegatingGDataClient) {
+            if (client instanceof AuthenticatingGDataClient) {
+                throw new IllegalArgumentException("Responses keyed by authToken must not be "
+                        + "shared above an AuthenticatingGDataClient; wrap this client in it "
+                        + "instead");
+            }
+            client = ((DelegatingGDataClient) client).getDelegate();
+        }
+    }
+
+    private static void closeQuietly(InputStream is) {
+        if (is != null) {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.data.Entry;
+
+import java.util.Vector;
+
+/**
+ * Accumulates inserts, updates and deletes of the entries of one feed, to
+ * be sent together with {@link GDataServiceClient#executeBatch}.
+ *
+ * Instances of this class are not thread safe.
+ */
+public class BatchRequest {
+    /** The batch:operation type for creating an entry. */
+    public static final String OPERATION_INSERT = "insert";
+    /** The batch:operation type for updating an entry. */
+    public static final String OPERATION_UPDATE = "update";
+    /** The batch:operation type for deleting an entry. */
+    public static final String OPERATION_DELETE = "delete";
+
+    private final Vector operations = new Vector();
+    private final Vector entries = new Vector();
+
+    /**
+     * Creates a new, empty BatchRequest.
+     */
+    public BatchRequest() {
+    }
+
+    /**
+     * Adds an entry to create.
+     * @param entry The entry.
+     * @return The index of the operation.
+     */
+    public int addInsert(Entry entry) {
+        return add(OPERATION_INSERT, entry);
+    }
+
+    /**
+     * Adds an entry to update.
+     * @param entry The entry, with its id and edit uri.
+     * @return The index of the operation.
+     */
+    public int addUpdate(Entry entry) {
+        return add(OPERATION_UPDATE, entry);
+    }
+
+    /**
+     * Adds an entry to delete.
+     * @param entry The entry, with its id and edit uri.
+     * @return The index of the operation.
+     */
+    public int addDelete(Entry entry) {
+        return add(OPERATION_DELETE, entry);
+    }
+
+    /**
+     * @return the number of operations
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the type of the operation at index, one of the OPERATION_*
+     * constants
+     */
+    public String getOperation(int index) {
+        return (String) operations.elementAt(index);
+    }
+
+    /**
+     * @return the entry of the operation at index
+     */
+    public Entry getEntry(int index) {
+        return (Entry) entries.elementAt(index);
+    }
+
+    /**
+     * Removes every operation.
+     */
+    public void clear() {
+        operations.removeAllElements();
+        entries.removeAllElements();
+    }
+
+    private int add(String operation, Entry entry) {
+        if (entry == null) {
+            throw new NullPointerException("entry must not be null");
+        }
+        operations.addElement(operation);
+        entries.addElement(entry);
+        return entries.size() - 1;
+    }
+}
@@ -0,0 +1,78 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.data.Entry;
+
+/**
+ * The outcome of one operation of a {@link BatchRequest}.
+ */
+public class BatchResult {
+    /** The status of an operation the server did not report on. */
+    public static final int STATUS_NOT_PROCESSED = -1;
+
+    private final String operation;
+    private final int statusCode;
+    private final String reason;
+    private final Entry entry;
+
+    /**
+     * Creates a new BatchResult.
+     * @param operation The type of the operation.
+     * @param statusCode The HTTP status code of the operation, or
+     * {@link #STATUS_NOT_PROCESSED}.
+     * @param reason The reason given with the status, or null.
+     * @param entry The entry returned by the server, or null.
+     */
+    public BatchResult(String operation, int statusCode, String reason, Entry entry) {
+        this.operation = operation;
+        this.statusCode = statusCode;
+        this.reason = reason;
+        this.entry = entry;
+    }
+
+    /**
+     * @return the type of the operation, one of the BatchRequest.OPERATION_*
+     * constants
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the HTTP status code of the operation, or
+     * {@link #STATUS_NOT_PROCESSED} if the server did not report on it
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the reason given with the status, or null
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Returns the entry returned by the server: the created or updated entry
+     * for a successful insert or update.  Entries of failed operations and
+     * deletes only carry their batch status.
+     * @return The entry, or null if the server did not report on the
+     * operation.
+     */
+    public Entry getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return whether the operation succeeded
+     */
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    public String toString() {
+        return operation + " " + statusCode + (reason == null ? "" : " " + reason);
+    }
+}
@@ -0,0 +1,80 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} that reads directly out of a {@link ByteBuffer}, such
+ * as a memory-mapped region of a file.  The bytes are not copied until the
+ * caller reads them into its own buffer.  Instances of this class are not
+ * thread safe.
+ */
+public class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new ByteBufferInputStream over the remaining bytes of the
+     * provided buffer.  The buffer's position and limit are not modified.
+     * @param buffer The buffer that should be read.
+     */
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    public int read() {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int remaining = buffer.remaining();
+        if (remaining == 0) {
+            return -1;
+        }
+        if (len > remaining) {
+            len = remaining;
+        }
+        buffer.get(b, off, len);
+        return len;
+    }
+
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        int skipped = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    public int available() {
+        return buffer.remaining();
+    }
+
+    public boolean markSupported() {
+        return true;
+    }
+
+    public void mark(int readlimit) {
+        buffer.mark();
+    }
+
+    public void reset() {
+        buffer.reset();
+    }
+
+    /**
+     * Returns a read-only view of the bytes that have not been read yet.
+     * @return The unread bytes of this stream.
+     */
+    public ByteBuffer remaining() {
+        return buffer.asReadOnlyBuffer();
+    }
+}
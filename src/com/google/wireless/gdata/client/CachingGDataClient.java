@@ -0,0 +1,105 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link GDataClient} that serves repeated reads of feeds and media entries
+ * (worksheets, calendar lists, contact photos, etc.) out of a
+ * {@link DiskResponseCache}.  Cache hits are returned as streams over
+ * memory-mapped files and can be handed directly to a
+ * {@link GDataParserFactory}.
+ *
+ * Writes are always passed through to the wrapped client.  A successful write
+ * removes the cached responses under the written url; other feeds that contain
+ * the written entry stay cached until they expire, so the maximum age of the
+ * cache bounds how stale a read can be.
+ */
+public class CachingGDataClient extends DelegatingGDataClient {
+    private final DiskResponseCache cache;
+
+    /**
+     * Creates a new CachingGDataClient.
+     * @param delegate The GDataClient that should be used on a cache miss.
+     * Must not be, or wrap, an {@link AuthenticatingGDataClient}, since
+     * responses are keyed by the authToken passed to this client.
+     * @param cache The cache responses should be stored in.
+     */
+    public CachingGDataClient(GDataClient delegate, DiskResponseCache cache) {
+        super(delegate);
+        AuthenticatingGDataClient.checkNotAuthenticating(delegate);
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache used by this client.
+     * @return The cache used by this client.
+     */
+    public DiskResponseCache getCache() {
+        return cache;
+    }
+
+    public InputStream getFeedAsStream(String feedUrl, String authToken)
+            throws HttpException, IOException {
+        InputStream is = cache.get(feedUrl, authToken);
+        if (is != null) {
+            return is;
+        }
+        return cache.put(feedUrl, authToken, getDelegate().getFeedAsStream(feedUrl, authToken));
+    }
+
+    public InputStream getMediaEntryAsStream(String mediaEntryUrl, String authToken)
+            throws HttpException, IOException {
+        InputStream is = cache.get(mediaEntryUrl, authToken);
+        if (is != null) {
+            return is;
+        }
+        return cache.put(mediaEntryUrl, authToken,
+                getDelegate().getMediaEntryAsStream(mediaEntryUrl, authToken));
+    }
+
+    public InputStream createEntry(String feedUrl, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        InputStream is = getDelegate().createEntry(feedUrl, authToken, entry);
+        cache.invalidate(stripQuery(feedUrl));
+        return is;
+    }
+
+    public InputStream updateEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        InputStream is = getDelegate().updateEntry(editUri, authToken, entry);
+        cache.invalidate(stripQuery(editUri));
+        return is;
+    }
+
+    public InputStream patchEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        InputStream is = super.patchEntry(editUri, authToken, entry);
+        cache.invalidate(stripQuery(editUri));
+        return is;
+    }
+
+    public void deleteEntry(String editUri, String authToken)
+            throws HttpException, IOException {
+        getDelegate().deleteEntry(editUri, authToken);
+        cache.invalidate(stripQuery(editUri));
+    }
+
+    public InputStream updateMediaEntry(String editUri, String authToken,
+            InputStream mediaEntryInputStream, String contentType)
+            throws HttpException, IOException {
+        InputStream is = getDelegate().updateMediaEntry(editUri, authToken,
+                mediaEntryInputStream, contentType);
+        cache.invalidate(stripQuery(editUri));
+        return is;
+    }
+
+    private static String stripQuery(String url) {
+        int index = url.indexOf('?');
+        return index < 0 ? url : url.substring(0, index);
+    }
+}
@@ -0,0 +1,183 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Hashtable;
+
+/**
+ * {@link GDataClient} that coalesces concurrent, identical feed fetches.
+ * If a thread asks for a feed url with an authentication token while another
+ * thread is already fetching the same url with the same token, it waits for
+ * that fetch instead of starting its own.  The response body is read into a
+ * single byte array, and each waiter gets its own stream over the shared
+ * bytes, so {@link GDataServiceClient#getParserForFeed} and
+ * {@link GDataServiceClient#getEntry} each build their own parser.
+ *
+ * Only fetches that overlap in time are coalesced; nothing is cached once a
+ * fetch completes.  Because the body must be read completely before it can be
+ * shared, every fetch through this client is buffered in memory, so it should
+ * not be used for very large feeds.
+ */
+public class CoalescingGDataClient extends DelegatingGDataClient {
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    /** A fetch in progress, and its outcome. */
+    private static class Flight {
+        /* guarded by this. */
+        boolean done = false;
+        /* true if the fetch produced no body, e.g. because of an Error. */
+        boolean failed = false;
+        byte[] body = null;
+        HttpException httpException = null;
+        IOException ioException = null;
+        RuntimeException runtimeException = null;
+    }
+
+    /* Maps url + token to the Flight fetching it; guarded by itself. */
+    private final Hashtable flights = new Hashtable();
+
+    /* guarded by flights. */
+    private long fetchCount = 0;
+    private long coalescedCount = 0;
+
+    /**
+     * Creates a new CoalescingGDataClient.
+     * @param delegate The GDataClient that should be used to fetch feeds.
+     * Must not be, or wrap, an {@link AuthenticatingGDataClient}, since
+     * fetches are keyed by the authToken passed to this client.
+     */
+    public CoalescingGDataClient(GDataClient delegate) {
+        super(delegate);
+        AuthenticatingGDataClient.checkNotAuthenticating(delegate);
+    }
+
+    public InputStream getFeedAsStream(String feedUrl, String authToken)
+            throws HttpException, IOException {
+        String key = feedUrl + '\0' + (authToken == null ? "" : authToken);
+        Flight flight;
+        boolean leader = false;
+        synchronized (flights) {
+            flight = (Flight) flights.get(key);
+            if (flight == null) {
+                flight = new Flight();
+                flights.put(key, flight);
+                leader = true;
+                ++fetchCount;
+            } else {
+                ++coalescedCount;
+            }
+        }
+
+        if (leader) {
+            return lead(key, flight, feedUrl, authToken);
+        }
+        return follow(flight);
+    }
+
+    /**
+     * @return the number of feed fetches sent to the wrapped client
+     */
+    public long getFetchCount() {
+        synchronized (flights) {
+            return fetchCount;
+        }
+    }
+
+    /**
+     * @return the number of feed fetches that were served by another
+     * thread's fetch
+     */
+    public long getCoalescedCount() {
+        synchronized (flights) {
+            return coalescedCount;
+        }
+    }
+
+    private InputStream lead(String key, Flight flight, String feedUrl, String authToken)
+            throws HttpException, IOException {
+        try {
+            InputStream is = getDelegate().getFeedAsStream(feedUrl, authToken);
+            byte[] body;
+            try {
+                body = readFully(is);
+            } finally {
+                is.close();
+            }
+            synchronized (flight) {
+                flight.body = body;
+            }
+            return new ByteArrayInputStream(body);
+        } catch (HttpException e) {
+            synchronized (flight) {
+                flight.httpException = e;
+            }
+            throw e;
+        } catch (IOException e) {
+            synchronized (flight) {
+                flight.ioException = e;
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            synchronized (flight) {
+                flight.runtimeException = e;
+            }
+            throw e;
+        } finally {
+            synchronized (flights) {
+                flights.remove(key);
+            }
+            synchronized (flight) {
+                flight.done = true;
+                flight.failed = flight.body == null;
+                flight.notifyAll();
+            }
+        }
+    }
+
+    private static InputStream follow(Flight flight) throws HttpException, IOException {
+        synchronized (flight) {
+            try {
+                while (!flight.done) {
+                    flight.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a shared fetch");
+            }
+            if (!flight.failed) {
+                return new ByteArrayInputStream(flight.body);
+            }
+            if (flight.httpException != null) {
+                // the error response stream belongs to the thread that fetched it.
+                HttpException e = flight.httpException;
+                throw new HttpException(e.getMessage(), e.getStatusCode(), null,
+                        e.getRetryAfterSeconds());
+            }
+            if (flight.ioException != null) {
+                // the same instance keeps its type, e.g. so that decorators
+                // above do not retry a ConcurrencyLimitExceededException.
+                throw flight.ioException;
+            }
+            if (flight.runtimeException != null) {
+                throw flight.runtimeException;
+            }
+            // the leader failed with an Error, which is not shared.
+            throw new IOException("The shared fetch failed");
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(COPY_BUFFER_SIZE);
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int n;
+        while ((n = is.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,44 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown by a {@link ConcurrencyLimiter} when a request could not
+ * get a slot, either because the wait queue was full or because no slot
+ * became available in time.  The request was never sent to the server.
+ * {@link RetryingGDataClient} does not retry these rejections, which would
+ * add to the overload the limiter is shedding.
+ */
+public class ConcurrencyLimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String serviceName;
+    private final int limit;
+
+    /**
+     * Creates a new ConcurrencyLimitExceededException.
+     * @param serviceName The name of the limited service.
+     * @param limit The concurrency limit at the time of the rejection.
+     */
+    public ConcurrencyLimitExceededException(String serviceName, int limit) {
+        super("Too many concurrent requests to " + serviceName + " (limit " + limit + ")");
+        this.serviceName = serviceName;
+        this.limit = limit;
+    }
+
+    /**
+     * @return the name of the limited service
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * @return the concurrency limit at the time of the rejection
+     */
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,203 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link GDataClient} that sends every request through a
+ * {@link ConcurrencyLimiter}.  A slot is held from the moment the request is
+ * sent until the server's response starts arriving (i.e., until the wrapped
+ * client returns), and the outcome is fed back to the limiter.
+ *
+ * Typical use, with one registry shared by the whole process:
+ * <pre>
+ *   GDataClient limited = new ConcurrencyLimitedGDataClient(
+ *       gDataClient, registry.getLimiter(ContactsClient.SERVICE));
+ *   ContactsClient contacts = new ContactsClient(limited, factory);
+ * </pre>
+ */
+public class ConcurrencyLimitedGDataClient extends DelegatingGDataClient {
+    private final ConcurrencyLimiter limiter;
+
+    /**
+     * Creates a new ConcurrencyLimitedGDataClient.
+     * @param delegate The GDataClient that should be used to send requests.
+     * @param limiter The limiter for the service the requests are sent to.
+     */
+    public ConcurrencyLimitedGDataClient(GDataClient delegate, ConcurrencyLimiter limiter) {
+        super(delegate);
+        this.limiter = limiter;
+    }
+
+    /**
+     * Returns the limiter used by this client.
+     * @return The limiter used by this client.
+     */
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    public InputStream getFeedAsStream(String feedUrl, String authToken)
+            throws HttpException, IOException {
+        long start = begin();
+        boolean overloaded = true;
+        try {
+            InputStream is = getDelegate().getFeedAsStream(feedUrl, authToken);
+            overloaded = false;
+            return is;
+        } catch (HttpException e) {
+            overloaded = isOverloaded(e);
+            throw e;
+        } finally {
+            end(start, overloaded);
+        }
+    }
+
+    public InputStream getMediaEntryAsStream(String mediaEntryUrl, String authToken)
+            throws HttpException, IOException {
+        long start = begin();
+        boolean overloaded = true;
+        try {
+            InputStream is = getDelegate().getMediaEntryAsStream(mediaEntryUrl, authToken);
+            overloaded = false;
+            return is;
+        } catch (HttpException e) {
+            overloaded = isOverloaded(e);
+            throw e;
+        } finally {
+            end(start, overloaded);
+        }
+    }
+
+    public RangeResponse getMediaEntryRange(String mediaEntryUrl, String authToken,
+            long firstBytePosition, long lastBytePosition, String ifRange)
+            throws HttpException, IOException {
+        if (!(getDelegate() instanceof RangedGDataClient)) {
+            // fails without a request; it says nothing about the service's load.
+            return super.getMediaEntryRange(mediaEntryUrl, authToken, firstBytePosition,
+                    lastBytePosition, ifRange);
+        }
+        long start = begin();
+        boolean overloaded = true;
+        try {
+            RangeResponse response = super.getMediaEntryRange(mediaEntryUrl, authToken,
+                    firstBytePosition, lastBytePosition, ifRange);
+            overloaded = false;
+            return response;
+        } catch (HttpException e) {
+            overloaded = isOverloaded(e);
+            throw e;
+        } finally {
+            end(start, overloaded);
+        }
+    }
+
+    public InputStream createEntry(String feedUrl, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        long start = begin();
+        boolean overloaded = true;
+        try {
+            InputStream is = getDelegate().createEntry(feedUrl, authToken, entry);
+            overloaded = false;
+            return is;
+        } catch (HttpException e) {
+            overloaded = isOverloaded(e);
+            throw e;
+        } finally {
+            end(start, overloaded);
+        }
+    }
+
+    public InputStream updateEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        long start = begin();
+        boolean overloaded = true;
+        try {
+            InputStream is = getDelegate().updateEntry(editUri, authToken, entry);
+            overloaded = false;
+            return is;
+        } catch (HttpException e) {
+            overloaded = isOverloaded(e);
+            throw e;
+        } finally {
+            end(start, overloaded);
+        }
+    }
+
+    public InputStream patchEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        if (!(getDelegate() instanceof PatchingGDataClient)) {
+            // fails without a request; it says nothing about the service's load.
+            return super.patchEntry(editUri, authToken, entry);
+        }
+        long start = begin();
+        boolean overloaded = true;
+        try {
+            InputStream is = super.patchEntry(editUri, authToken, entry);
+            overloaded = false;
+            return is;
+        } catch (HttpException e) {
+            overloaded = isOverloaded(e);
+            throw e;
+        } finally {
+            end(start, overloaded);
+        }
+    }
+
+    public void deleteEntry(String editUri, String authToken)
+            throws HttpException, IOException {
+        long start = begin();
+        boolean overloaded = true;
+        try {
+            getDelegate().deleteEntry(editUri, authToken);
+            overloaded = false;
+        } catch (HttpException e) {
+            overloaded = isOverloaded(e);
+            throw e;
+        } finally {
+            end(start, overloaded);
+        }
+    }
+
+    public InputStream updateMediaEntry(String editUri, String authToken,
+            InputStream mediaEntryInputStream, String contentType)
+            throws HttpException, IOException {
+        long start = begin();
+        boolean overloaded = true;
+        try {
+            InputStream is = getDelegate().updateMediaEntry(editUri, authToken,
+                    mediaEntryInputStream, contentType);
+            overloaded = false;
+            return is;
+        } catch (HttpException e) {
+            overloaded = isOverloaded(e);
+            throw e;
+        } finally {
+            end(start, overloaded);
+        }
+    }
+
+    private long begin() throws IOException {
+        limiter.acquire();
+        return System.currentTimeMillis();
+    }
+
+    private void end(long start, boolean overloaded) {
+        limiter.release(System.currentTimeMillis() - start, overloaded);
+    }
+
+    /**
+     * Returns whether an error response indicates that the service is
+     * overloaded.  Client errors (4xx) say nothing about the service's load,
+     * and neither does a method the service does not implement (501).
+     */
+    private static boolean isOverloaded(HttpException e) {
+        int status = e.getStatusCode();
+        return status >= HttpException.SC_INTERNAL_SERVER_ERROR
+                && status != HttpException.SC_NOT_IMPLEMENTED;
+    }
+}
@@ -0,0 +1,201 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Limits the number of requests in flight to a single GData service, and
+ * adapts that limit to how the service is behaving (additive increase,
+ * multiplicative decrease).
+ *
+ * Each successful request that completes without a latency spike grows the
+ * limit by roughly one request per round trip.  A request that fails with an
+ * overload signal (a 5xx response or an IO error), or whose latency is well
+ * above the long-term average, shrinks the limit by a constant factor.  This
+ * keeps the number of concurrent requests close to what the service can
+ * absorb, instead of letting a burst of threads push it into returning 503s.
+ *
+ * Requests over the limit either wait in a bounded queue or, if the queue is
+ * full or disabled, fail immediately with a
+ * {@link ConcurrencyLimitExceededException}.
+ *
+ * Instances of this class are thread safe.
+ */
+public class ConcurrencyLimiter {
+    /* Weight of each sample in the long-term latency average. */
+    private static final double LATENCY_SMOOTHING = 0.05;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final int maxQueueLength;
+    private final long maxQueueWaitMillis;
+
+    /* guarded by this. */
+    private double limit;
+    private int inFlight = 0;
+    private int waiting = 0;
+    private double averageLatency = -1;
+    private long rejectedCount = 0;
+    private long droppedLimitCount = 0;
+
+    /**
+     * Creates a new ConcurrencyLimiter.
+     *
+     * @param name The name of the limited service, used in error messages.
+     * @param initialLimit The number of concurrent requests allowed at first.
+     * @param minLimit The limit never drops below this.
+     * @param maxLimit The limit never grows beyond this.
+     * @param backoffRatio The factor (between 0 and 1) the limit is multiplied
+     * by when the service shows signs of overload.
+     * @param latencyTolerance How many times slower than the long-term
+     * average a request may be before it counts as a sign of overload.
+     * @param maxQueueLength How many requests may wait for a slot.  0 makes
+     * the limiter fail fast.
+     * @param maxQueueWaitMillis How long a request may wait for a slot.
+     */
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+            double backoffRatio, double latencyTolerance,
+            int maxQueueLength, long maxQueueWaitMillis) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Need 1 <= minLimit <= maxLimit");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be in (0, 1)");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.maxQueueLength = maxQueueLength;
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Waits for a slot to become available and takes it.  Every successful
+     * call must be followed by exactly one call to {@link #release}.
+     *
+     * @throws ConcurrencyLimitExceededException Thrown if no slot became
+     * available in time, or if the queue is full.
+     * @throws InterruptedIOException Thrown if the thread is interrupted
+     * while waiting.
+     */
+    public synchronized void acquire()
+            throws ConcurrencyLimitExceededException, InterruptedIOException {
+        if (inFlight < (int) limit) {
+            ++inFlight;
+            return;
+        }
+        if (waiting >= maxQueueLength) {
+            ++rejectedCount;
+            throw new ConcurrencyLimitExceededException(name, (int) limit);
+        }
+        ++waiting;
+        try {
+            long deadline = System.currentTimeMillis() + maxQueueWaitMillis;
+            long remaining = maxQueueWaitMillis;
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    ++rejectedCount;
+                    throw new ConcurrencyLimitExceededException(name, (int) limit);
+                }
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            ++inFlight;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + name);
+        } finally {
+            --waiting;
+        }
+    }
+
+    /**
+     * Gives back a slot taken by {@link #acquire}, and adjusts the limit based
+     * on the outcome of the request.
+     *
+     * @param latencyMillis How long the request took.
+     * @param overloaded Whether the request failed in a way that indicates the
+     * service is overloaded.
+     */
+    public synchronized void release(long latencyMillis, boolean overloaded) {
+        --inFlight;
+        if (!overloaded && averageLatency > 0
+                && latencyMillis > averageLatency * latencyTolerance) {
+            overloaded = true;
+        }
+        if (averageLatency < 0) {
+            averageLatency = latencyMillis;
+        } else if (!overloaded) {
+            averageLatency += (latencyMillis - averageLatency) * LATENCY_SMOOTHING;
+        }
+
+        if (overloaded) {
+            double newLimit = Math.max(minLimit, limit * backoffRatio);
+            if ((int) newLimit < (int) limit) {
+                ++droppedLimitCount;
+            }
+            limit = newLimit;
+        } else if (inFlight + 1 >= (int) limit) {
+            // only grow the limit when it is actually being used.
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return the name of the limited service
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the current number of requests allowed in flight
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return the number of requests currently in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return the number of requests currently waiting for a slot
+     */
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * @return the number of requests rejected because no slot was available
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return the number of times the limit was lowered
+     */
+    public synchronized long getDroppedLimitCount() {
+        return droppedLimitCount;
+    }
+
+    /**
+     * @return the long-term average latency of successful requests, in
+     * milliseconds, or -1 if no request has completed yet
+     */
+    public synchronized long getAverageLatencyMillis() {
+        return (long) averageLatency;
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.util.Hashtable;
+
+/**
+ * Holds one {@link ConcurrencyLimiter} per GData service, keyed by the
+ * service name returned by {@link GDataServiceClient#getServiceName()}
+ * (e.g., "cl", "cp", "wise", "mail").  All clients for the same service that
+ * share a registry share a limit, no matter how many threads use them.
+ *
+ * Instances of this class are thread safe.
+ */
+public class ConcurrencyLimiterRegistry {
+    private final Hashtable limiters = new Hashtable();
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final int maxQueueLength;
+    private final long maxQueueWaitMillis;
+
+    /**
+     * Creates a new ConcurrencyLimiterRegistry whose limiters start at 10
+     * concurrent requests, adapt between 1 and 100, and let up to 100
+     * requests wait for up to 30 seconds.
+     */
+    public ConcurrencyLimiterRegistry() {
+        this(10, 1, 100, 0.9, 2.0, 100, 30 * 1000);
+    }
+
+    /**
+     * Creates a new ConcurrencyLimiterRegistry whose limiters use the
+     * provided settings.
+     * @see ConcurrencyLimiter#ConcurrencyLimiter
+     */
+    public ConcurrencyLimiterRegistry(int initialLimit, int minLimit, int maxLimit,
+            double backoffRatio, double latencyTolerance,
+            int maxQueueLength, long maxQueueWaitMillis) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.maxQueueLength = maxQueueLength;
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+    }
+
+    /**
+     * Returns the limiter for the service, creating it if necessary.
+     * @param serviceName The name of the service.
+     * @return The limiter for the service.
+     */
+    public synchronized ConcurrencyLimiter getLimiter(String serviceName) {
+        ConcurrencyLimiter limiter = (ConcurrencyLimiter) limiters.get(serviceName);
+        if (limiter == null) {
+            limiter = new ConcurrencyLimiter(serviceName, initialLimit, minLimit, maxLimit,
+                    backoffRatio, latencyTolerance, maxQueueLength, maxQueueWaitMillis);
+            limiters.put(serviceName, limiter);
+        }
+        return limiter;
+    }
+}
@@ -0,0 +1,102 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link GDataClient} that forwards every call to another GDataClient.
+ * Decorators (caching, retrying, etc.) extend this class and override only
+ * the operations they are interested in.  Partial updates and range
+ * requests are forwarded if the delegate is a {@link PatchingGDataClient} or
+ * a {@link RangedGDataClient} respectively, and fail with
+ * {@link HttpException#SC_NOT_IMPLEMENTED} otherwise.
+ */
+public class DelegatingGDataClient implements PatchingGDataClient, RangedGDataClient {
+    private final GDataClient delegate;
+
+    /**
+     * Creates a new DelegatingGDataClient.
+     * @param delegate The GDataClient that calls should be forwarded to.
+     */
+    public DelegatingGDataClient(GDataClient delegate) {
+        if (delegate == null) {
+            throw new NullPointerException("delegate must not be null");
+        }
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the {@link GDataClient} calls are forwarded to.
+     * @return The {@link GDataClient} calls are forwarded to.
+     */
+    protected GDataClient getDelegate() {
+        return delegate;
+    }
+
+    public void close() {
+        delegate.close();
+    }
+
+    public String encodeUri(String uri) {
+        return delegate.encodeUri(uri);
+    }
+
+    public QueryParams createQueryParams() {
+        return delegate.createQueryParams();
+    }
+
+    public InputStream getFeedAsStream(String feedUrl, String authToken)
+            throws HttpException, IOException {
+        return delegate.getFeedAsStream(feedUrl, authToken);
+    }
+
+    public InputStream getMediaEntryAsStream(String mediaEntryUrl, String authToken)
+            throws HttpException, IOException {
+        return delegate.getMediaEntryAsStream(mediaEntryUrl, authToken);
+    }
+
+    public RangeResponse getMediaEntryRange(String mediaEntryUrl, String authToken,
+            long firstBytePosition, long lastBytePosition, String ifRange)
+            throws HttpException, IOException {
+        if (!(delegate instanceof RangedGDataClient)) {
+            throw new HttpException("Range requests are not supported",
+                    HttpException.SC_NOT_IMPLEMENTED, null /* responseStream */);
+        }
+        return ((RangedGDataClient) delegate).getMediaEntryRange(mediaEntryUrl, authToken,
+                firstBytePosition, lastBytePosition, ifRange);
+    }
+
+    public InputStream createEntry(String feedUrl, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        return delegate.createEntry(feedUrl, authToken, entry);
+    }
+
+    public InputStream updateEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        return delegate.updateEntry(editUri, authToken, entry);
+    }
+
+    public InputStream patchEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        if (!(delegate instanceof PatchingGDataClient)) {
+            throw new HttpException("Partial updates are not supported",
+                    HttpException.SC_NOT_IMPLEMENTED, null /* responseStream */);
+        }
+        return ((PatchingGDataClient) delegate).patchEntry(editUri, authToken, entry);
+    }
+
+    public void deleteEntry(String editUri, String authToken)
+            throws HttpException, IOException {
+        delegate.deleteEntry(editUri, authToken);
+    }
+
+    public InputStream updateMediaEntry(String editUri, String authToken,
+            InputStream mediaEntryInputStream, String contentType)
+            throws HttpException, IOException {
+        return delegate.updateMediaEntry(editUri, authToken, mediaEntryInputStream, contentType);
+    }
+}
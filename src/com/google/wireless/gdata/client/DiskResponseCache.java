@@ -0,0 +1,463 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * Size-bounded, least-recently-used cache of response bodies, stored as one
+ * file per response in a directory.  Cached bodies are served from
+ * memory-mapped regions of those files, so a cache hit does not copy the body
+ * onto the heap.
+ *
+ * Responses are keyed by URL and authentication token, so one user can never
+ * be served a response that was fetched with another user's credentials.  The
+ * token itself is never written to disk; only a digest of it is used as part
+ * of the file name.
+ *
+ * Each file is written under a temporary name and renamed into place once it
+ * is complete.  On construction the directory is scanned and the in-memory
+ * index is rebuilt from the files that are present, discarding any partially
+ * written or truncated files left behind by a crash.
+ *
+ * Instances of this class are thread safe.
+ */
+public class DiskResponseCache {
+    private static final int MAGIC = 0x47444331; // "GDC1"
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Information about a single cached response. */
+    private static class Record {
+        final String url;
+        final File file;
+        final long storedAt;
+        final long bodyOffset;
+        final long bodyLength;
+
+        Record(String url, File file, long storedAt, long bodyOffset, long bodyLength) {
+            this.url = url;
+            this.file = file;
+            this.storedAt = storedAt;
+            this.bodyOffset = bodyOffset;
+            this.bodyLength = bodyLength;
+        }
+    }
+
+    private final File directory;
+    private final long maxSize;
+    private final long maxEntrySize;
+    private final long maxAgeMillis;
+
+    /* Maps keys to Records, in least-recently-used order. */
+    private final LinkedHashMap index = new LinkedHashMap(32, 0.75f, true /* accessOrder */);
+    private long totalSize = 0;
+    private int tempCounter = 0;
+
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    /**
+     * Creates a new DiskResponseCache, recovering any responses already stored
+     * in the directory.
+     *
+     * @param directory The directory the responses should be stored in.  It is
+     * created if it does not exist.  It should not be used for anything else.
+     * @param maxSize The maximum total number of body bytes to keep.
+     * @param maxEntrySize The largest body that will be cached.  Larger bodies
+     * are passed through to the caller without being stored.
+     * @param maxAgeMillis How long a cached response may be served, in
+     * milliseconds.  Older responses are discarded and fetched again.
+     * @throws IOException Thrown if the directory cannot be created or read.
+     */
+    public DiskResponseCache(File directory, long maxSize, long maxEntrySize, long maxAgeMillis)
+            throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create cache directory " + directory);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+        this.maxAgeMillis = maxAgeMillis;
+        recover();
+    }
+
+    /**
+     * Returns the cached body for the url, as fetched with the authToken, or
+     * null if there is no fresh cached response.  The caller is responsible
+     * for closing the returned {@link InputStream}.
+     *
+     * @param url The url of the response.
+     * @param authToken The authentication token the response was fetched with.
+     * @return The cached body, or null.
+     */
+    public InputStream get(String url, String authToken) {
+        String key = getKey(url, authToken);
+        Record record;
+        synchronized (this) {
+            record = (Record) index.get(key);
+            if (record == null || !url.equals(record.url)) {
+                ++missCount;
+                return null;
+            }
+            if (System.currentTimeMillis() - record.storedAt > maxAgeMillis) {
+                removeRecord(key);
+                ++missCount;
+                return null;
+            }
+        }
+        try {
+            InputStream is = new ByteBufferInputStream(
+                    map(record.file, record.bodyOffset, record.bodyLength));
+            // persist the access order so that it survives a restart.
+            record.file.setLastModified(System.currentTimeMillis());
+            synchronized (this) {
+                ++hitCount;
+            }
+            return is;
+        } catch (IOException ioe) {
+            // the file has gone away or is unreadable -- treat as a miss.
+            synchronized (this) {
+                if (index.get(key) == record) {
+                    removeRecord(key);
+                }
+                ++missCount;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Stores the body for the url, as fetched with the authToken, and returns
+     * a stream over the stored copy.  The provided stream is always consumed
+     * or handed back inside the returned stream; the caller is responsible for
+     * closing the returned {@link InputStream}.
+     *
+     * @param url The url of the response.
+     * @param authToken The authentication token the response was fetched with.
+     * @param body The response body, as returned by the server.
+     * @return A stream containing the same bytes as body.
+     * @throws IOException Thrown if body cannot be read or the cache cannot
+     * be written.
+     */
+    public InputStream put(String url, String authToken, InputStream body) throws IOException {
+        String key = getKey(url, authToken);
+        File temp;
+        synchronized (this) {
+            temp = new File(directory, key + "." + (tempCounter++) + TEMP_SUFFIX);
+        }
+
+        long storedAt = System.currentTimeMillis();
+        long bodyOffset;
+        long bodyLength = 0;
+        boolean complete = false;
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp), COPY_BUFFER_SIZE));
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(storedAt);
+            out.writeUTF(url);
+            // the body length is not known yet; it is filled in below.
+            out.writeLong(0);
+            bodyOffset = out.size();
+
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            while (true) {
+                int toRead = (int) Math.min(buffer.length, maxEntrySize - bodyLength + 1);
+                int n = body.read(buffer, 0, toRead);
+                if (n < 0) {
+                    complete = true;
+                    break;
+                }
+                out.write(buffer, 0, n);
+                bodyLength += n;
+                if (bodyLength > maxEntrySize) {
+                    break;
+                }
+            }
+        } catch (IOException ioe) {
+            out.close();
+            temp.delete();
+            body.close();
+            throw ioe;
+        }
+        out.close();
+
+        if (!complete) {
+            // too large to cache.  hand back what has been read so far, followed by
+            // the rest of the original stream.
+            InputStream head = new ByteBufferInputStream(map(temp, bodyOffset, bodyLength));
+            temp.delete();
+            return new SequenceInputStream(head, body);
+        }
+        body.close();
+
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try {
+            raf.seek(bodyOffset - 8);
+            raf.writeLong(bodyLength);
+        } finally {
+            raf.close();
+        }
+
+        File file = new File(directory, key + ENTRY_SUFFIX);
+        synchronized (this) {
+            removeRecord(key);
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Unable to rename " + temp + " to " + file);
+            }
+            Record record = new Record(url, file, storedAt, bodyOffset, bodyLength);
+            index.put(key, record);
+            totalSize += bodyLength;
+            trimToSize(key);
+        }
+        return new ByteBufferInputStream(map(file, bodyOffset, bodyLength));
+    }
+
+    /**
+     * Removes all cached responses whose url starts with the provided prefix,
+     * for all users.
+     * @param urlPrefix The prefix of the urls that should be removed.
+     */
+    public synchronized void invalidate(String urlPrefix) {
+        Vector keys = new Vector();
+        Iterator it = index.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry mapEntry = (Map.Entry) it.next();
+            Record record = (Record) mapEntry.getValue();
+            if (record.url.startsWith(urlPrefix)) {
+                keys.addElement(mapEntry.getKey());
+            }
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            removeRecord((String) keys.elementAt(i));
+        }
+    }
+
+    /**
+     * Removes all cached responses.
+     */
+    public synchronized void clear() {
+        Iterator it = index.values().iterator();
+        while (it.hasNext()) {
+            ((Record) it.next()).file.delete();
+        }
+        index.clear();
+        totalSize = 0;
+    }
+
+    /**
+     * @return The total number of body bytes currently cached.
+     */
+    public synchronized long getSize() {
+        return totalSize;
+    }
+
+    /**
+     * @return The number of responses currently cached.
+     */
+    public synchronized int getEntryCount() {
+        return index.size();
+    }
+
+    /**
+     * @return The number of lookups that were served from the cache.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return The number of lookups that were not served from the cache.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    private void removeRecord(String key) {
+        Record record = (Record) index.remove(key);
+        if (record != null) {
+            totalSize -= record.bodyLength;
+            record.file.delete();
+        }
+    }
+
+    /**
+     * Evicts least recently used responses until the cache fits within
+     * maxSize.  Never evicts the response identified by keepKey.
+     */
+    private void trimToSize(String keepKey) {
+        Iterator it = index.entrySet().iterator();
+        while (totalSize > maxSize && it.hasNext()) {
+            Map.Entry mapEntry = (Map.Entry) it.next();
+            if (keepKey.equals(mapEntry.getKey())) {
+                continue;
+            }
+            Record record = (Record) mapEntry.getValue();
+            it.remove();
+            totalSize -= record.bodyLength;
+            record.file.delete();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the files in the cache directory, deleting
+     * anything that is not a complete response.
+     */
+    private synchronized void recover() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // order the responses by last access, oldest first.
+        sortByLastModified(files);
+        for (int i = 0; i < files.length; i++) {
+            File file = files[i];
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+            if (!name.endsWith(ENTRY_SUFFIX)) {
+                continue;
+            }
+            Record record = readRecord(file);
+            if (record == null) {
+                file.delete();
+                continue;
+            }
+            String key = name.substring(0, name.length() - ENTRY_SUFFIX.length());
+            index.put(key, record);
+            totalSize += record.bodyLength;
+        }
+        Iterator it = index.entrySet().iterator();
+        while (totalSize > maxSize && it.hasNext()) {
+            Record record = (Record) ((Map.Entry) it.next()).getValue();
+            it.remove();
+            totalSize -= record.bodyLength;
+            record.file.delete();
+        }
+    }
+
+    private static Record readRecord(File file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            long storedAt = in.readLong();
+            String url = in.readUTF();
+            long bodyLength = in.readLong();
+            // magic + storedAt + (length-prefixed utf url) + bodyLength
+            long bodyOffset = 4 + 8 + 2 + utfLength(url) + 8;
+            if (bodyLength < 0 || file.length() != bodyOffset + bodyLength) {
+                return null;
+            }
+            return new Record(url, file, storedAt, bodyOffset, bodyLength);
+        } catch (IOException ioe) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ioe) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length += 1;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    private static void sortByLastModified(File[] files) {
+        long[] times = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            times[i] = files[i].lastModified();
+        }
+        // insertion sort; cache directories are small.
+        for (int i = 1; i < files.length; i++) {
+            File file = files[i];
+            long time = times[i];
+            int j = i - 1;
+            while (j >= 0 && times[j] > time) {
+                files[j + 1] = files[j];
+                times[j + 1] = times[j];
+                --j;
+            }
+            files[j + 1] = file;
+            times[j + 1] = time;
+        }
+    }
+
+    private static MappedByteBuffer map(File file, long offset, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // the mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static String getKey(String url, String authToken) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available");
+        }
+        try {
+            digest.update(url.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            if (authToken != null) {
+                digest.update(authToken.getBytes("UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not available");
+        }
+        byte[] bytes = digest.digest();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,852 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.data.DateTimeUtils;
+import com.google.wireless.gdata.data.StringUtils;
+import com.google.wireless.gdata.parser.ParseException;
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Random;
+
+/**
+ * In-process {@link GDataClient} that serves synthetic feeds, for load tests
+ * and regression tests that must not depend on the network.  It can be
+ * passed to the existing {@link GDataServiceClient} subclasses and parser
+ * factories, which then run end to end against it.
+ *
+ * Feeds are recognized by the path of the requested URL:
+ * <ul>
+ *   <li>calendar: ".../calendar/feeds/&lt;user&gt;" (calendars) and
+ *   ".../calendar/feeds/&lt;calendar&gt;/private/full" (events)</li>
+ *   <li>contacts: ".../m8/feeds/contacts/..." and ".../m8/feeds/groups/..."</li>
+ *   <li>spreadsheets: ".../feeds/spreadsheets/...", ".../feeds/worksheets/...",
+ *   ".../feeds/cells/..." and ".../feeds/list/..."</li>
+ *   <li>subscribed feeds: any path containing "/subscribedfeeds/"</li>
+ * </ul>
+ * Every feed has the same number of entries.  Entry i was last updated
+ * {@link #setUpdateInterval update interval} * i after a fixed base time, so
+ * updated-min filtering is deterministic.  Feeds honor start-index,
+ * max-results, updated-min and showdeleted, cells feeds also min-row and
+ * max-row, and feeds report openSearch totals and a rel="next" link.  Entry
+ * URLs ("&lt;feed&gt;/e&lt;i&gt;") can be fetched individually.  Worksheets
+ * report the row and column counts of their cells feed.
+ *
+ * Writes are not stored: created and updated entries are echoed back with
+ * an id, edit link and updated time added.  Entries and media carry ETags
+ * (gd:etag on entries, the validator of ranged media responses), but
+ * GDataClient cannot send If-Match, so write conflicts are simulated with
+ * {@link #setConflictRate}.
+ *
+ * Faults and network conditions are injected deterministically from the
+ * seed: 503 responses with a Retry-After, 409 conflicts on writes, a fixed
+ * latency per request and a bandwidth limit on response bodies.
+ *
+ * Instances of this class are thread safe.
+ */
+public class FakeGDataClient implements RangedGDataClient, PatchingGDataClient {
+    private static final String NS_ATOM = "http://www.w3.org/2005/Atom";
+    private static final String NS_OPENSEARCH = "http://a9.com/-/spec/opensearchrss/1.0/";
+    private static final String NS_GD = "http://schemas.google.com/g/2005";
+    private static final String NS_GCAL = "http://schemas.google.com/gCal/2005";
+    private static final String NS_GCONTACT = "http://schemas.google.com/contact/2008";
+    private static final String NS_GS = "http://schemas.google.com/spreadsheets/2006";
+    private static final String NS_GSX = "http://schemas.google.com/spreadsheets/2006/extended";
+    private static final String NS_GSYNC = "http://schemas.google.com/gsync/data";
+    private static final String GD_REL = "http://schemas.google.com/g/2005#";
+
+    /** 2008-01-01T00:00:00Z, the update time of entry 0. */
+    private static final long BASE_TIME = 1199145600000L;
+
+    private static final int KIND_CALENDARS = 0;
+    private static final int KIND_EVENTS = 1;
+    private static final int KIND_CONTACTS = 2;
+    private static final int KIND_GROUPS = 3;
+    private static final int KIND_SPREADSHEETS = 4;
+    private static final int KIND_WORKSHEETS = 5;
+    private static final int KIND_CELLS = 6;
+    private static final int KIND_LIST = 7;
+    private static final int KIND_SUBSCRIBED_FEEDS = 8;
+
+    private static final String[] KIND_TITLES = {
+        "Calendar", "Event", "Contact", "Group", "Spreadsheet", "Worksheet", "Cell", "Row",
+        "Subscription"
+    };
+
+    private static final int CELL_COLUMNS = 10;
+
+    /* The row range parameters of cells feeds. */
+    private static final String MIN_ROW_PARAM = "min-row";
+    private static final String MAX_ROW_PARAM = "max-row";
+
+    /** Limits how fast a response body can be read. */
+    private static class ThrottledInputStream extends InputStream {
+        private final InputStream in;
+        private final long bytesPerSecond;
+        private final long start = System.currentTimeMillis();
+        private long count = 0;
+
+        ThrottledInputStream(InputStream in, long bytesPerSecond) {
+            this.in = in;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            // read in slices of 1/10s of bandwidth so the rate stays smooth.
+            int n = in.read(b, off, (int) Math.min(len, Math.max(1, bytesPerSecond / 10)));
+            if (n > 0) {
+                count += n;
+                long due = start + count * 1000 / bytesPerSecond;
+                sleep(due - System.currentTimeMillis());
+            }
+            return n;
+        }
+
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /** The parsed parts of a request URL. */
+    private static class Request {
+        String base;
+        int kind;
+        int entryIndex = -1;
+        int startIndex = 1;
+        int maxResults = -1;
+        long updatedMin = Long.MIN_VALUE;
+        boolean showDeleted = false;
+        int minRow = 1;
+        int maxRow = Integer.MAX_VALUE;
+    }
+
+    private final Random random;
+
+    /* Configuration and counters; guarded by this. */
+    private int entryCount = 100;
+    private int pageSize = 25;
+    private long updateIntervalMillis = 60 * 1000L;
+    private int deletedInterval = 0;
+    private int mediaSize = 32 * 1024;
+    private long latencyMillis = 0;
+    private long bytesPerSecond = 0;
+    private double unavailableRate = 0;
+    private int retryAfterSeconds = 1;
+    private double conflictRate = 0;
+    private int mediaVersion = 1;
+    private long requestCount = 0;
+
+    /**
+     * Creates a new FakeGDataClient.
+     * @param seed The seed for fault injection and synthetic media.
+     */
+    public FakeGDataClient(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Sets how many entries each feed has.  Defaults to 100.
+     */
+    public synchronized void setEntryCount(int entryCount) {
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Sets how many entries are returned per page when the request has no
+     * max-results.  Defaults to 25.
+     */
+    public synchronized void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Sets the time between the updates of consecutive entries.  Defaults to
+     * one minute.
+     */
+    public synchronized void setUpdateInterval(long updateIntervalMillis) {
+        this.updateIntervalMillis = updateIntervalMillis;
+    }
+
+    /**
+     * Makes every nth entry a deleted entry, which is only returned with
+     * showdeleted=true.  0, the default, means no entries are deleted.
+     */
+    public synchronized void setDeletedInterval(int deletedInterval) {
+        this.deletedInterval = deletedInterval;
+    }
+
+    /**
+     * Sets the size of every media entry, in bytes.  Defaults to 32k.
+     */
+    public synchronized void setMediaSize(int mediaSize) {
+        this.mediaSize = mediaSize;
+    }
+
+    /**
+     * Sets the delay before every response.
+     */
+    public synchronized void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Limits how fast response bodies can be read.  0, the default, means
+     * unlimited.
+     */
+    public synchronized void setBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Sets the fraction of requests that fail with 503 Service Unavailable.
+     * @param rate The fraction, between 0 and 1.
+     * @param retryAfterSeconds The Retry-After delay the failures carry.
+     */
+    public synchronized void setUnavailableRate(double rate, int retryAfterSeconds) {
+        this.unavailableRate = rate;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Sets the fraction of updates and deletes that fail with 409 Conflict.
+     * @param rate The fraction, between 0 and 1.
+     */
+    public synchronized void setConflictRate(double rate) {
+        this.conflictRate = rate;
+    }
+
+    /**
+     * @return the number of requests made to this client
+     */
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    public void close() {
+    }
+
+    public String encodeUri(String uri) {
+        return UriEncoder.encode(uri);
+    }
+
+    public QueryParams createQueryParams() {
+        return new HttpQueryParams();
+    }
+
+    public InputStream getFeedAsStream(String feedUrl, String authToken)
+            throws HttpException, IOException {
+        begin();
+        Request request = parse(feedUrl);
+        String body;
+        if (request.entryIndex >= 0) {
+            body = "<?xml version='1.0' encoding='UTF-8'?>"
+                    + entry(request, request.entryIndex, true /* declare namespaces */);
+        } else {
+            body = feed(request);
+        }
+        return respond(body);
+    }
+
+    public InputStream getMediaEntryAsStream(String mediaEntryUrl, String authToken)
+            throws HttpException, IOException {
+        begin();
+        return respond(media(mediaEntryUrl), 0, Integer.MAX_VALUE);
+    }
+
+    public RangeResponse getMediaEntryRange(String mediaEntryUrl, String authToken,
+            long firstBytePosition, long lastBytePosition, String ifRange)
+            throws HttpException, IOException {
+        begin();
+        byte[] media = media(mediaEntryUrl);
+        String validator;
+        synchronized (this) {
+            validator = "\"" + mediaVersion + "\"";
+        }
+        if (ifRange != null && !ifRange.equals(validator)) {
+            return new RangeResponse(respond(media, 0, media.length), false /* partial */, 0,
+                    media.length - 1, media.length, validator);
+        }
+        if (firstBytePosition >= media.length) {
+            throw new HttpException("Requested Range Not Satisfiable: " + mediaEntryUrl,
+                    HttpException.SC_REQUESTED_RANGE_NOT_SATISFIABLE, null /* responseStream */);
+        }
+        long last = lastBytePosition < 0 || lastBytePosition >= media.length
+                ? media.length - 1 : lastBytePosition;
+        int offset = (int) firstBytePosition;
+        int length = (int) (last - firstBytePosition + 1);
+        return new RangeResponse(respond(media, offset, length), true /* partial */,
+                firstBytePosition, last, media.length, validator);
+    }
+
+    public InputStream createEntry(String feedUrl, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        begin();
+        Request request = parse(feedUrl);
+        int index;
+        synchronized (this) {
+            index = entryCount + (int) requestCount;
+        }
+        return respond(echo(request, index, entry, GDataSerializer.FORMAT_CREATE));
+    }
+
+    public InputStream updateEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        begin();
+        Request request = parse(editUri);
+        checkConflict(request);
+        return respond(echo(request, Math.max(0, request.entryIndex), entry,
+                GDataSerializer.FORMAT_UPDATE));
+    }
+
+    public InputStream patchEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        begin();
+        Request request = parse(editUri);
+        checkConflict(request);
+        // entries are not stored, so only the changed fields are echoed.
+        return respond(echo(request, Math.max(0, request.entryIndex), entry,
+                GDataSerializer.FORMAT_PARTIAL_UPDATE));
+    }
+
+    public void deleteEntry(String editUri, String authToken)
+            throws HttpException, IOException {
+        begin();
+        checkConflict(parse(editUri));
+    }
+
+    public InputStream updateMediaEntry(String editUri, String authToken,
+            InputStream mediaEntryInputStream, String contentType)
+            throws HttpException, IOException {
+        begin();
+        byte[] buffer = new byte[8192];
+        while (mediaEntryInputStream.read(buffer) >= 0) {
+            // drain the upload.
+        }
+        int version;
+        synchronized (this) {
+            version = ++mediaVersion;
+        }
+        String base = stripQuery(editUri);
+        StringBuffer sb = new StringBuffer();
+        sb.append("<?xml version='1.0' encoding='UTF-8'?><entry xmlns='").append(NS_ATOM)
+                .append("'><id>").append(escape(base)).append("</id><updated>")
+                .append(DateTimeUtils.formatRfc3339(System.currentTimeMillis()))
+                .append("</updated><title>Media</title><link rel='edit-media' type='")
+                .append(escape(contentType)).append("' href='").append(escape(base))
+                .append("'/><link rel='edit' href='").append(escape(base)).append("/v")
+                .append(version).append("'/></entry>");
+        return respond(sb.toString());
+    }
+
+    /**
+     * Counts the request, waits out the latency and injects 503s.
+     */
+    private void begin() throws HttpException, IOException {
+        long latency;
+        boolean unavailable;
+        int retryAfter;
+        synchronized (this) {
+            ++requestCount;
+            latency = latencyMillis;
+            unavailable = unavailableRate > 0 && random.nextDouble() < unavailableRate;
+            retryAfter = retryAfterSeconds;
+        }
+        sleep(latency);
+        if (unavailable) {
+            throw new HttpException("Service Unavailable",
+                    HttpException.SC_SERVICE_UNAVAILABLE, null, retryAfter);
+        }
+    }
+
+    private void checkConflict(Request request) throws HttpException {
+        boolean conflict;
+        synchronized (this) {
+            conflict = conflictRate > 0 && random.nextDouble() < conflictRate;
+        }
+        if (conflict) {
+            // like the real service, send the current version of the entry.
+            String current = "<?xml version='1.0' encoding='UTF-8'?>"
+                    + entry(request, Math.max(0, request.entryIndex), true);
+            throw new HttpException("Conflict", HttpException.SC_CONFLICT,
+                    new ByteArrayInputStream(utf8(current)));
+        }
+    }
+
+    /**
+     * Works out which feed, and possibly which entry, a URL refers to.
+     */
+    private Request parse(String url) throws HttpException {
+        Request request = new Request();
+        String path = stripQuery(url);
+
+        // entry and edit URLs: <feed>/e<i> and <feed>/e<i>/v<version>
+        int slash = path.lastIndexOf('/');
+        if (slash >= 0 && isNumbered(path, slash + 1, 'v')) {
+            path = path.substring(0, slash);
+            slash = path.lastIndexOf('/');
+        }
+        if (slash >= 0 && isNumbered(path, slash + 1, 'e')) {
+            request.entryIndex = Integer.parseInt(path.substring(slash + 2));
+            path = path.substring(0, slash);
+        }
+        request.base = path;
+
+        if (path.indexOf("/subscribedfeeds/") >= 0 || path.endsWith("/subscribedfeeds")) {
+            request.kind = KIND_SUBSCRIBED_FEEDS;
+        } else if (path.indexOf("/m8/feeds/contacts/") >= 0) {
+            request.kind = KIND_CONTACTS;
+        } else if (path.indexOf("/m8/feeds/groups/") >= 0) {
+            request.kind = KIND_GROUPS;
+        } else if (path.indexOf("/calendar/feeds/") >= 0) {
+            String rest = path.substring(path.indexOf("/calendar/feeds/") + 16);
+            request.kind = rest.indexOf('/') < 0 || rest.indexOf("calendars/") >= 0
+                    ? KIND_CALENDARS : KIND_EVENTS;
+        } else if (path.indexOf("/feeds/spreadsheets/") >= 0) {
+            request.kind = KIND_SPREADSHEETS;
+        } else if (path.indexOf("/feeds/worksheets/") >= 0) {
+            request.kind = KIND_WORKSHEETS;
+        } else if (path.indexOf("/feeds/cells/") >= 0) {
+            request.kind = KIND_CELLS;
+        } else if (path.indexOf("/feeds/list/") >= 0) {
+            request.kind = KIND_LIST;
+        } else {
+            throw new HttpException("Not Found: " + path, HttpException.SC_NOT_FOUND, null);
+        }
+
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            String[] params = split(url.substring(query + 1), '&');
+            for (int i = 0; i < params.length; i++) {
+                int equals = params[i].indexOf('=');
+                if (equals < 0) {
+                    continue;
+                }
+                String name = params[i].substring(0, equals);
+                String value = decode(params[i].substring(equals + 1));
+                if (QueryParams.START_INDEX_PARAM.equals(name)) {
+                    request.startIndex = Math.max(1, StringUtils.parseInt(value, 1));
+                } else if (QueryParams.MAX_RESULTS_PARAM.equals(name)) {
+                    request.maxResults = StringUtils.parseInt(value, -1);
+                } else if (QueryParams.UPDATED_MIN_PARAM.equals(name)) {
+                    request.updatedMin = DateTimeUtils.parseRfc3339(value, Long.MIN_VALUE);
+                } else if (QueryParams.SHOW_DELETED_PARAM.equals(name)) {
+                    request.showDeleted = "true".equals(value);
+                } else if (MIN_ROW_PARAM.equals(name)) {
+                    request.minRow = StringUtils.parseInt(value, 1);
+                } else if (MAX_ROW_PARAM.equals(name)) {
+                    request.maxRow = StringUtils.parseInt(value, Integer.MAX_VALUE);
+                }
+            }
+        }
+        return request;
+    }
+
+    private String feed(Request request) {
+        int count;
+        int defaultPageSize;
+        synchronized (this) {
+            count = entryCount;
+            defaultPageSize = pageSize;
+        }
+        int perPage = request.maxResults > 0 ? request.maxResults : defaultPageSize;
+
+        // the entries that match the filters, in order.
+        int[] matches = new int[count];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            if (getUpdated(i) < request.updatedMin) {
+                continue;
+            }
+            if (isDeleted(i) && !request.showDeleted) {
+                continue;
+            }
+            if (request.kind == KIND_CELLS) {
+                int row = i / CELL_COLUMNS + 1;
+                if (row < request.minRow || row > request.maxRow) {
+                    continue;
+                }
+            }
+            matches[total++] = i;
+        }
+
+        int first = request.startIndex - 1;
+        int end = Math.min(total, first + perPage);
+
+        StringBuffer sb = new StringBuffer(1024 + perPage * 768);
+        sb.append("<?xml version='1.0' encoding='UTF-8'?><feed");
+        appendNamespaces(sb);
+        sb.append('>');
+        sb.append("<id>").append(escape(request.base)).append("</id>");
+        sb.append("<updated>")
+                .append(DateTimeUtils.formatRfc3339(getUpdated(Math.max(0, count - 1))))
+                .append("</updated>");
+        sb.append("<title>").append(KIND_TITLES[request.kind]).append(" feed</title>");
+        appendLink(sb, GD_REL + "post", "application/atom+xml", request.base);
+        if (end < total) {
+            appendLink(sb, "next", "application/atom+xml", request.base + "?"
+                    + QueryParams.START_INDEX_PARAM + "=" + (end + 1) + "&"
+                    + QueryParams.MAX_RESULTS_PARAM + "=" + perPage
+                    + (request.updatedMin == Long.MIN_VALUE ? "" : "&"
+                            + QueryParams.UPDATED_MIN_PARAM + "="
+                            + DateTimeUtils.formatRfc3339(request.updatedMin))
+                    + (request.showDeleted ? "&" + QueryParams.SHOW_DELETED_PARAM + "=true" : "")
+                    + (request.minRow > 1 ? "&" + MIN_ROW_PARAM + "=" + request.minRow : "")
+                    + (request.maxRow < Integer.MAX_VALUE
+                            ? "&" + MAX_ROW_PARAM + "=" + request.maxRow : ""));
+        }
+        if (request.kind == KIND_EVENTS || request.kind == KIND_CALENDARS) {
+            sb.append("<gCal:timezone value='America/Los_Angeles'/>");
+        }
+        sb.append("<openSearch:totalResults>").append(total).append("</openSearch:totalResults>");
+        sb.append("<openSearch:startIndex>").append(request.startIndex)
+                .append("</openSearch:startIndex>");
+        sb.append("<openSearch:itemsPerPage>").append(perPage)
+                .append("</openSearch:itemsPerPage>");
+        for (int i = first; i < end; i++) {
+            sb.append(entry(request, matches[i], false /* declare namespaces */));
+        }
+        sb.append("</feed>");
+        return sb.toString();
+    }
+
+    private String entry(Request request, int i, boolean declareNamespaces) {
+        String id = request.base + "/e" + i;
+        StringBuffer sb = new StringBuffer(768);
+        sb.append("<entry");
+        if (declareNamespaces) {
+            appendNamespaces(sb);
+        }
+        sb.append(" gd:etag='&quot;").append(i).append("&quot;'>");
+        sb.append("<id>").append(escape(id)).append("</id>");
+        sb.append("<updated>").append(DateTimeUtils.formatRfc3339(getUpdated(i)))
+                .append("</updated>");
+        sb.append("<title>").append(KIND_TITLES[request.kind]).append(' ').append(i)
+                .append("</title>");
+        appendLink(sb, "edit", null, id + "/v1");
+        if (isDeleted(i)) {
+            sb.append("<gd:deleted/>");
+        }
+
+        switch (request.kind) {
+            case KIND_CALENDARS:
+                sb.append("<gCal:accesslevel value='").append(i == 0 ? "owner" : "read")
+                        .append("'/>");
+                sb.append("<gCal:color value='#2952A3'/>");
+                sb.append("<gCal:hidden value='false'/>");
+                sb.append("<gCal:selected value='").append(i % 2 == 0).append("'/>");
+                sb.append("<gCal:timezone value='America/Los_Angeles'/>");
+                appendLink(sb, "alternate", "application/atom+xml",
+                        "http://www.google.com/calendar/feeds/calendar" + i + "/private/full");
+                break;
+            case KIND_EVENTS: {
+                long start = getUpdated(i) + 24 * 60 * 60 * 1000L;
+                sb.append("<gd:eventStatus value='").append(GD_REL).append("event.")
+                        .append(i % 10 == 9 ? "tentative" : "confirmed").append("'/>");
+                sb.append("<gd:visibility value='").append(GD_REL)
+                        .append("event.default'/>");
+                sb.append("<gd:transparency value='").append(GD_REL)
+                        .append("event.opaque'/>");
+                sb.append("<gd:when startTime='").append(DateTimeUtils.formatRfc3339(start))
+                        .append("' endTime='")
+                        .append(DateTimeUtils.formatRfc3339(start + 60 * 60 * 1000L))
+                        .append("'><gd:reminder minutes='10' method='alert'/></gd:when>");
+                sb.append("<gd:where valueString='Room ").append(i % 20).append("'/>");
+                for (int a = 0; a < 3; a++) {
+                    sb.append("<gd:who email='user").append((i + a) % 50)
+                            .append("@example.com' rel='").append(GD_REL).append("event.")
+                            .append(a == 0 ? "organizer" : "attendee")
+                            .append("' valueString='User ").append((i + a) % 50)
+                            .append("'><gd:attendeeStatus value='").append(GD_REL)
+                            .append(a == 2 ? "event.invited" : "event.accepted")
+                            .append("'/></gd:who>");
+                }
+                break;
+            }
+            case KIND_CONTACTS:
+                sb.append("<gd:email rel='").append(GD_REL).append("home' address='contact")
+                        .append(i).append("@example.com'/>");
+                sb.append("<gd:phoneNumber rel='").append(GD_REL).append("mobile'>+1 555 01")
+                        .append(i % 100 < 10 ? "0" : "").append(i % 100)
+                        .append("</gd:phoneNumber>");
+                sb.append("<gd:postalAddress rel='").append(GD_REL).append("work'>").append(i)
+                        .append(" Main St</gd:postalAddress>");
+                sb.append("<gContact:groupMembershipInfo href='")
+                        .append(escape(groupsUrl(request.base))).append("/e").append(i % 5)
+                        .append("' deleted='false'/>");
+                appendLink(sb, "http://schemas.google.com/contacts/2008/rel#edit-photo",
+                        "image/*", id + "/photo");
+                appendLink(sb, "http://schemas.google.com/contacts/2008/rel#photo", "image/*",
+                        id + "/photo");
+                break;
+            case KIND_GROUPS:
+                if (i == 0) {
+                    sb.append("<gContact:systemGroup id='Contacts'/>");
+                }
+                break;
+            case KIND_SPREADSHEETS:
+                appendLink(sb, "http://schemas.google.com/spreadsheets/2006#worksheetsfeed",
+                        "application/atom+xml",
+                        "http://spreadsheets.google.com/feeds/worksheets/key" + i
+                                + "/private/full");
+                break;
+            case KIND_WORKSHEETS: {
+                String key = segmentAfter(request.base, "/feeds/worksheets/");
+                int cells;
+                synchronized (this) {
+                    cells = entryCount;
+                }
+                sb.append("<gs:rowCount>").append((cells + CELL_COLUMNS - 1) / CELL_COLUMNS)
+                        .append("</gs:rowCount><gs:colCount>")
+                        .append(Math.min(cells, CELL_COLUMNS)).append("</gs:colCount>");
+                appendLink(sb, "http://schemas.google.com/spreadsheets/2006#cellsfeed",
+                        "application/atom+xml", "http://spreadsheets.google.com/feeds/cells/"
+                                + key + "/od" + i + "/private/full");
+                appendLink(sb, "http://schemas.google.com/spreadsheets/2006#listfeed",
+                        "application/atom+xml", "http://spreadsheets.google.com/feeds/list/"
+                                + key + "/od" + i + "/private/full");
+                break;
+            }
+            case KIND_CELLS: {
+                int row = i / CELL_COLUMNS + 1;
+                int col = i % CELL_COLUMNS + 1;
+                int value = row * col;
+                sb.append("<gs:cell row='").append(row).append("' col='").append(col)
+                        .append("' inputValue='=R").append(row).append("*C").append(col)
+                        .append("' numericValue='").append(value).append(".0'>").append(value)
+                        .append("</gs:cell>");
+                break;
+            }
+            case KIND_LIST:
+                sb.append("<gsx:name>Row ").append(i).append("</gsx:name>");
+                sb.append("<gsx:region>").append(i % 2 == 0 ? "north" : "south")
+                        .append("</gsx:region>");
+                sb.append("<gsx:amount>").append(i * 3).append("</gsx:amount>");
+                break;
+            case KIND_SUBSCRIBED_FEEDS:
+                sb.append("<gsync:feedurl value='http://www.google.com/calendar/feeds/calendar")
+                        .append(i).append("/private/full' service='cl' authtoken=''/>");
+                sb.append("<gsync:routingInfo>routing").append(i)
+                        .append("</gsync:routingInfo>");
+                sb.append("<gsync:clientToken>token").append(i).append("</gsync:clientToken>");
+                break;
+            default:
+                break;
+        }
+        sb.append("</entry>");
+        return sb.toString();
+    }
+
+    /**
+     * Serializes the entry that was sent and adds the fields the server
+     * would assign, after the sent ones so that they take precedence.
+     */
+    private String echo(Request request, int index, GDataSerializer entry, int format)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            entry.serialize(out, format);
+        } catch (ParseException e) {
+            throw new IOException("Unable to serialize entry: " + e.getMessage());
+        }
+        String body = new String(out.toByteArray(), "UTF-8");
+        int end = body.lastIndexOf("</");
+        if (end < 0) {
+            throw new IOException("Not an entry: " + body);
+        }
+        String id = request.base + "/e" + index;
+        StringBuffer sb = new StringBuffer(body.length() + 256);
+        sb.append(body.substring(0, end));
+        sb.append("<id>").append(escape(id)).append("</id>");
+        sb.append("<updated>").append(DateTimeUtils.formatRfc3339(System.currentTimeMillis()))
+                .append("</updated>");
+        sb.append("<link rel='edit' href='").append(escape(id)).append("/v2'/>");
+        sb.append(body.substring(end));
+        return sb.toString();
+    }
+
+    private byte[] media(String url) {
+        int size;
+        int version;
+        synchronized (this) {
+            size = mediaSize;
+            version = mediaVersion;
+        }
+        byte[] media = new byte[size];
+        new Random(stripQuery(url).hashCode() * 31L + version).nextBytes(media);
+        return media;
+    }
+
+    private synchronized long getUpdated(int i) {
+        return BASE_TIME + i * updateIntervalMillis;
+    }
+
+    private synchronized boolean isDeleted(int i) {
+        return deletedInterval > 0 && i % deletedInterval == deletedInterval - 1;
+    }
+
+    private InputStream respond(String body) {
+        byte[] bytes = utf8(body);
+        return respond(bytes, 0, bytes.length);
+    }
+
+    private InputStream respond(byte[] body, int offset, int length) {
+        long bandwidth;
+        synchronized (this) {
+            bandwidth = bytesPerSecond;
+        }
+        InputStream is = new ByteArrayInputStream(body, offset,
+                Math.min(length, body.length - offset));
+        return bandwidth > 0 ? new ThrottledInputStream(is, bandwidth) : is;
+    }
+
+    private static void appendNamespaces(StringBuffer sb) {
+        sb.append(" xmlns='").append(NS_ATOM).append('\'');
+        sb.append(" xmlns:openSearch='").append(NS_OPENSEARCH).append('\'');
+        sb.append(" xmlns:gd='").append(NS_GD).append('\'');
+        sb.append(" xmlns:gCal='").append(NS_GCAL).append('\'');
+        sb.append(" xmlns:gContact='").append(NS_GCONTACT).append('\'');
+        sb.append(" xmlns:gs='").append(NS_GS).append('\'');
+        sb.append(" xmlns:gsx='").append(NS_GSX).append('\'');
+        sb.append(" xmlns:gsync='").append(NS_GSYNC).append('\'');
+    }
+
+    private static void appendLink(StringBuffer sb, String rel, String type, String href) {
+        sb.append("<link rel='").append(escape(rel)).append('\'');
+        if (type != null) {
+            sb.append(" type='").append(escape(type)).append('\'');
+        }
+        sb.append(" href='").append(escape(href)).append("'/>");
+    }
+
+    private static String groupsUrl(String contactsUrl) {
+        int index = contactsUrl.indexOf("/m8/feeds/contacts/");
+        if (index < 0) {
+            return contactsUrl;
+        }
+        return contactsUrl.substring(0, index) + "/m8/feeds/groups/"
+                + contactsUrl.substring(index + 19);
+    }
+
+    private static String segmentAfter(String path, String prefix) {
+        int start = path.indexOf(prefix);
+        if (start < 0) {
+            return "";
+        }
+        start += prefix.length();
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.substring(start) : path.substring(start, end);
+    }
+
+    private static boolean isNumbered(String path, int start, char prefix) {
+        int length = path.length();
+        if (start + 1 >= length || path.charAt(start) != prefix) {
+            return false;
+        }
+        for (int i = start + 1; i < length; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return length - start - 1 <= 9;
+    }
+
+    private static String stripQuery(String url) {
+        int query = url.indexOf('?');
+        return query < 0 ? url : url.substring(0, query);
+    }
+
+    private static String[] split(String s, char separator) {
+        int count = 1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == separator) {
+                ++count;
+            }
+        }
+        String[] parts = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = s.indexOf(separator, start);
+            if (end < 0) {
+                end = s.length();
+            }
+            parts[i] = s.substring(start, end);
+            start = end + 1;
+        }
+        return parts;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported");
+        } catch (IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    private static String escape(String value) {
+        StringBuffer sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement;
+            switch (c) {
+                case '&': replacement = "&amp;"; break;
+                case '<': replacement = "&lt;"; break;
+                case '>': replacement = "&gt;"; break;
+                case '\'': replacement = "&apos;"; break;
+                case '"': replacement = "&quot;"; break;
+                default: replacement = null; break;
+            }
+            if (replacement != null && sb == null) {
+                sb = new StringBuffer(value.length() + 16);
+                sb.append(value.substring(0, i));
+            }
+            if (sb != null) {
+                if (replacement != null) {
+                    sb.append(replacement);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb == null ? value : sb.toString();
+    }
+
+    private static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported");
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while simulating the network");
+        }
+    }
+}
@@ -0,0 +1,344 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.data.Entry;
+import com.google.wireless.gdata.data.Feed;
+import com.google.wireless.gdata.parser.GDataParser;
+import com.google.wireless.gdata.parser.ParseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Vector;
+
+/**
+ * Iterates over the entries of a feed across all of its pages.  The next
+ * page is found by following the feed's rel="next" link or, if the feed has
+ * none, by advancing the start-index query parameter using the feed's
+ * openSearch totals.
+ *
+ * With a prefetch depth greater than zero, a background thread fetches and
+ * starts parsing up to that many pages ahead while the caller is consuming
+ * the current page, so that the time spent waiting on the network overlaps
+ * with the time spent parsing.  Prefetched pages are held in memory.
+ *
+ * The caller is responsible for calling {@link #close()}.  Instances of this
+ * class are not thread safe.
+ *
+ * @see GDataServiceClient#getFeedIterator
+ */
+public class FeedIterator {
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    /** A fetched page, ready to be read. */
+    private static class Page {
+        final GDataParser parser;
+        final Feed feed;
+        final Exception failure;
+
+        Page(GDataParser parser, Feed feed, Exception failure) {
+            this.parser = parser;
+            this.feed = feed;
+            this.failure = failure;
+        }
+    }
+
+    /** Marks the end of the feed in the queue of pages. */
+    private static final Page END = new Page(null, null, null);
+
+    private final GDataClient gDataClient;
+    private final GDataParserFactory gDataParserFactory;
+    private final Class entryClass;
+    private final String authToken;
+    private final int prefetchDepth;
+
+    /* The url of the next page to fetch in the caller's thread (no prefetch). */
+    private String nextUrl;
+
+    /* Pages fetched by the prefetch thread; guarded by itself. */
+    private final Vector pages = new Vector();
+    private boolean closed = false;
+
+    private Page current = null;
+    private Feed firstFeed = null;
+    private boolean finished = false;
+
+    /**
+     * Creates a new FeedIterator.  Use
+     * {@link GDataServiceClient#getFeedIterator} instead of calling this
+     * directly.
+     *
+     * @param gDataClient The GDataClient used to fetch each page.
+     * @param gDataParserFactory The factory used to parse each page.
+     * @param entryClass The class of entry contained in the feed.
+     * @param feedUrl The url of the first page.
+     * @param authToken The authentication token for this user.
+     * @param prefetchDepth How many pages may be fetched ahead of the page
+     * being read.  0 fetches each page only when it is needed.
+     */
+    public FeedIterator(GDataClient gDataClient, GDataParserFactory gDataParserFactory,
+            Class entryClass, String feedUrl, String authToken, int prefetchDepth) {
+        this.gDataClient = gDataClient;
+        this.gDataParserFactory = gDataParserFactory;
+        this.entryClass = entryClass;
+        this.authToken = authToken;
+        this.prefetchDepth = Math.max(0, prefetchDepth);
+        this.nextUrl = feedUrl;
+        if (this.prefetchDepth > 0) {
+            startPrefetching(feedUrl);
+        }
+    }
+
+    /**
+     * Returns information about the feed, from its first page.
+     * @return The {@link Feed} for the first page.
+     */
+    public Feed getFeed() throws ParseException, IOException, HttpException {
+        if (firstFeed == null && !finished) {
+            advancePage();
+        }
+        return firstFeed;
+    }
+
+    /**
+     * Returns whether there are more entries, fetching the next page if the
+     * current one has been consumed.
+     */
+    public boolean hasNext() throws ParseException, IOException, HttpException {
+        while (!finished && (current == null || !current.parser.hasMoreData())) {
+            advancePage();
+        }
+        return !finished;
+    }
+
+    /**
+     * Reads the next entry.  As with {@link GDataParser#readNextEntry}, the
+     * provided entry is cleared and reused if it is not null.
+     *
+     * @param entry The entry that should be filled, or null.
+     * @return The next entry.
+     */
+    public Entry next(Entry entry) throws ParseException, IOException, HttpException {
+        if (!hasNext()) {
+            throw new IllegalStateException("you shouldn't call this if hasNext() is false");
+        }
+        return current.parser.readNextEntry(entry);
+    }
+
+    /**
+     * Stops prefetching and releases any pages that have been fetched.
+     */
+    public void close() {
+        if (current != null) {
+            current.parser.close();
+            current = null;
+        }
+        finished = true;
+        synchronized (pages) {
+            discardPages();
+        }
+    }
+
+    /** Marks the iterator closed and releases the queued pages; called with pages held. */
+    private void discardPages() {
+        closed = true;
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = (Page) pages.elementAt(i);
+            if (page.parser != null) {
+                page.parser.close();
+            }
+        }
+        pages.removeAllElements();
+        pages.notifyAll();
+    }
+
+    private void advancePage() throws ParseException, IOException, HttpException {
+        if (current != null) {
+            current.parser.close();
+            current = null;
+        }
+        Page page;
+        if (prefetchDepth > 0) {
+            page = takePage();
+        } else if (nextUrl == null) {
+            page = END;
+        } else {
+            page = fetchPage(nextUrl);
+            if (page.failure == null) {
+                nextUrl = getNextUrl(nextUrl, page.feed);
+            }
+        }
+
+        if (page == END) {
+            finished = true;
+            return;
+        }
+        if (page.failure != null) {
+            finished = true;
+            rethrow(page.failure);
+        }
+        if (firstFeed == null) {
+            firstFeed = page.feed;
+        }
+        current = page;
+    }
+
+    private Page takePage() throws InterruptedIOException {
+        synchronized (pages) {
+            try {
+                while (pages.isEmpty() && !closed) {
+                    pages.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the next page");
+            }
+            if (closed) {
+                return END;
+            }
+            Page page = (Page) pages.elementAt(0);
+            pages.removeElementAt(0);
+            pages.notifyAll();
+            return page;
+        }
+    }
+
+    private void startPrefetching(final String feedUrl) {
+        Thread thread = new Thread("GDataFeedPrefetch") {
+            public void run() {
+                // the reader waits for a last page, so one is offered even
+                // if fetching fails with an Error.
+                Page last = END;
+                try {
+                    String url = feedUrl;
+                    while (url != null) {
+                        Page page = fetchPage(url);
+                        url = page.failure == null ? getNextUrl(url, page.feed) : null;
+                        if (!offer(page)) {
+                            return;
+                        }
+                    }
+                } catch (Error e) {
+                    IOException failure = new IOException("Prefetching the feed failed: " + e);
+                    failure.initCause(e);
+                    last = new Page(null, null, failure);
+                    throw e;
+                } finally {
+                    offer(last);
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hands a page to the reader, waiting while prefetchDepth pages are
+     * already waiting.  Returns false if the iterator has been closed.
+     */
+    private boolean offer(Page page) {
+        synchronized (pages) {
+            try {
+                while (pages.size() >= prefetchDepth && !closed) {
+                    pages.wait();
+                }
+            } catch (InterruptedException e) {
+                discardPages();
+            }
+            if (closed) {
+                if (page.parser != null) {
+                    page.parser.close();
+                }
+                return false;
+            }
+            pages.addElement(page);
+            pages.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Fetches a whole page into memory and parses its feed header, leaving the
+     * parser positioned at the first entry.
+     */
+    private Page fetchPage(String url) {
+        GDataParser parser = null;
+        try {
+            InputStream is = gDataClient.getFeedAsStream(url, authToken);
+            byte[] body;
+            try {
+                body = readFully(is);
+            } finally {
+                is.close();
+            }
+            parser = gDataParserFactory.createParser(entryClass, new ByteArrayInputStream(body));
+            Feed feed = parser.init();
+            return new Page(parser, feed, null);
+        } catch (Exception e) {
+            if (parser != null) {
+                parser.close();
+            }
+            return new Page(null, null, e);
+        }
+    }
+
+    /**
+     * Returns the url of the page after the one at url, or null if that was
+     * the last page.
+     */
+    private static String getNextUrl(String url, Feed feed) {
+        if (feed.getNextLink() != null) {
+            return feed.getNextLink();
+        }
+        int startIndex = feed.getStartIndex();
+        int itemsPerPage = feed.getItemsPerPage();
+        int totalResults = feed.getTotalResults();
+        if (startIndex <= 0 || itemsPerPage <= 0
+                || startIndex + itemsPerPage > totalResults) {
+            return null;
+        }
+        return setStartIndex(url, startIndex + itemsPerPage);
+    }
+
+    private static String setStartIndex(String url, int startIndex) {
+        String param = QueryParams.START_INDEX_PARAM + "=";
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            int start = url.indexOf(param, query);
+            while (start >= 0) {
+                char before = url.charAt(start - 1);
+                if (before == '?' || before == '&') {
+                    int end = url.indexOf('&', start);
+                    return url.substring(0, start) + param + startIndex
+                            + (end < 0 ? "" : url.substring(end));
+                }
+                start = url.indexOf(param, start + 1);
+            }
+        }
+        return url + (query >= 0 ? '&' : '?') + param + startIndex;
+    }
+
+    private static void rethrow(Exception e) throws ParseException, IOException, HttpException {
+        if (e instanceof ParseException) {
+            throw (ParseException) e;
+        } else if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof HttpException) {
+            throw (HttpException) e;
+        }
+        throw (RuntimeException) e;
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(COPY_BUFFER_SIZE);
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int n;
+        while ((n = is.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,121 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+/**
+ * Immutable, precompiled template for feed URLs, such as
+ * "http://www.google.com/calendar/feeds/{username}{+projection}".
+ *
+ * The template is split into its literal text and its variables once, when
+ * it is compiled.  A variable written as {name} is encoded with
+ * {@link UriEncoder}; one written as {+name} is inserted as is, for values
+ * that are already URL text, such as projections.  Variables are filled in
+ * by position, in the order they appear in the template.
+ *
+ * Instances of this class are thread safe and are meant to be kept in
+ * static fields.
+ */
+public final class FeedUrlTemplate {
+    private final String template;
+    /* literals[i] precedes variable i; the last literal follows the last variable. */
+    private final String[] literals;
+    private final boolean[] encoded;
+    private final int literalLength;
+
+    /**
+     * Compiles a template.
+     * @param template The template.
+     * @throws IllegalArgumentException Thrown if a variable is not closed.
+     */
+    public FeedUrlTemplate(String template) {
+        this.template = template;
+        int count = 0;
+        for (int i = template.indexOf('{'); i >= 0; i = template.indexOf('{', i + 1)) {
+            ++count;
+        }
+        literals = new String[count + 1];
+        encoded = new boolean[count];
+        int length = 0;
+        int start = 0;
+        for (int v = 0; v < count; v++) {
+            int open = template.indexOf('{', start);
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed variable in " + template);
+            }
+            literals[v] = template.substring(start, open);
+            length += literals[v].length();
+            encoded[v] = template.charAt(open + 1) != '+';
+            start = close + 1;
+        }
+        literals[count] = template.substring(start);
+        literalLength = length + literals[count].length();
+    }
+
+    /**
+     * @return the number of variables in this template
+     */
+    public int getVariableCount() {
+        return encoded.length;
+    }
+
+    /**
+     * Expands a template with a single variable.
+     * @param value The value of the variable.
+     * @return The URL.
+     */
+    public String expand(String value) {
+        return expand(new String[] { value }, null);
+    }
+
+    /**
+     * Expands a template with two variables.
+     * @param first The value of the first variable.
+     * @param second The value of the second variable.
+     * @return The URL.
+     */
+    public String expand(String first, String second) {
+        return expand(new String[] { first, second }, null);
+    }
+
+    /**
+     * Expands the template and applies query parameters.
+     * @param values The values of the variables, in order.
+     * @param params The query parameters, or null.
+     * @return The URL.
+     */
+    public String expand(String[] values, QueryParams params) {
+        StringBuffer sb = new StringBuffer(literalLength + 16 * values.length);
+        appendTo(sb, values);
+        String url = sb.toString();
+        return params == null ? url : params.generateQueryUrl(url);
+    }
+
+    /**
+     * Expands the template into a caller's buffer, so that the buffer can be
+     * reused across requests.
+     * @param sb The buffer the URL should be appended to.
+     * @param values The values of the variables, in order.
+     * @throws IllegalArgumentException Thrown if the number of values does not
+     * match the number of variables.
+     */
+    public void appendTo(StringBuffer sb, String[] values) {
+        if (values.length != encoded.length) {
+            throw new IllegalArgumentException("Expected " + encoded.length
+                    + " values for " + template + ", got " + values.length);
+        }
+        for (int v = 0; v < encoded.length; v++) {
+            sb.append(literals[v]);
+            if (encoded[v]) {
+                UriEncoder.encode(sb, values[v]);
+            } else {
+                sb.append(values[v]);
+            }
+        }
+        sb.append(literals[encoded.length]);
+    }
+
+    public String toString() {
+        return template;
+    }
+}
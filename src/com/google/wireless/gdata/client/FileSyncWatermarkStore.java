@@ -0,0 +1,115 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+ * {@link SyncWatermarkStore} that keeps all watermarks in a single file.
+ *
+ * The watermarks are held in memory and the whole file is rewritten on every
+ * change: it is written under a temporary name, synced to disk, and renamed
+ * over the old file, so that a crash leaves either the old or the new
+ * watermarks, never a mix.
+ *
+ * Instances of this class are thread safe.  Only one instance should use a
+ * given file at a time.
+ */
+public class FileSyncWatermarkStore implements SyncWatermarkStore {
+    private static final int MAGIC = 0x47445731; // "GDW1"
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File file;
+    /* Maps feed urls to watermarks; guarded by this. */
+    private final Hashtable watermarks = new Hashtable();
+
+    /**
+     * Creates a new FileSyncWatermarkStore, loading the watermarks already
+     * stored in the file, if any.
+     * @param file The file the watermarks should be stored in.
+     * @throws IOException Thrown if the file exists but cannot be read.
+     */
+    public FileSyncWatermarkStore(File file) throws IOException {
+        this.file = file;
+        // a leftover temp file is a write that never completed.
+        new File(file.getPath() + TEMP_SUFFIX).delete();
+        if (file.exists()) {
+            load();
+        }
+    }
+
+    public synchronized String getWatermark(String feedUrl) {
+        return (String) watermarks.get(feedUrl);
+    }
+
+    public synchronized void setWatermark(String feedUrl, String watermark)
+            throws IOException {
+        Object previous = watermark == null
+                ? watermarks.remove(feedUrl) : watermarks.put(feedUrl, watermark);
+        try {
+            save();
+        } catch (IOException ioe) {
+            // keep memory consistent with the file.
+            if (previous == null) {
+                watermarks.remove(feedUrl);
+            } else {
+                watermarks.put(feedUrl, previous);
+            }
+            throw ioe;
+        }
+    }
+
+    private void load() throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a watermark file: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String feedUrl = in.readUTF();
+                watermarks.put(feedUrl, in.readUTF());
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void save() throws IOException {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        FileOutputStream fos = new FileOutputStream(temp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(watermarks.size());
+            Enumeration e = watermarks.keys();
+            while (e.hasMoreElements()) {
+                String feedUrl = (String) e.nextElement();
+                out.writeUTF(feedUrl);
+                out.writeUTF((String) watermarks.get(feedUrl));
+            }
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException ioe) {
+            fos.close();
+            temp.delete();
+            throw ioe;
+        }
+        fos.close();
+        // renameTo does not replace an existing file on every platform.
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            temp.delete();
+            throw new IOException("Unable to rename " + temp + " to " + file);
+        }
+    }
+}
@@ -21,20 +21,20 @@ public interface GDataClient {
     void close();
 
     /**
-     * URI encodes the supplied uri (using UTF-8).
+     * URI encodes the supplied uri (using UTF-8).  Implementations should
+     * return the same result as {@link UriEncoder#encode(String)}, which
+     * callers in this library use directly.
      * @param uri The uri that should be encoded.
      * @return The encoded URI.
      */
-    // TODO: get rid of this, if we write our own URI encoding library.
     String encodeUri(String uri);
 
     /**
      * Creates a new QueryParams that should be used to restrict the feed
-     * contents that are fetched.
+     * contents that are fetched.  {@link HttpQueryParams} encodes its own
+     * params/values and can also be created directly.
      * @return A new QueryParams.
      */
-    // TODO: get rid of this, if we write a generic QueryParams that can encode
-    // querystring params/values.
     QueryParams createQueryParams();
 
     /**
@@ -70,7 +70,7 @@ public interface GDataClient {
     InputStream getMediaEntryAsStream(String mediaEntryUrl, String authToken)
         throws HttpException, IOException;
 
-    // TODO: support batch update
+    // batch requests are posted with createEntry; see GDataServiceClient#executeBatch.
 
     /**
      * Connects to a GData server (specified by the feedUrl) and creates a new
@@ -0,0 +1,208 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects request and parse metrics recorded by {@link MetricsGDataClient}
+ * and {@link MetricsGDataParserFactory}, and exports them to a
+ * {@link MetricsSink}.
+ *
+ * Series are looked up once, when a decorator is created; recording into
+ * them afterwards only touches atomic counters.
+ *
+ * Instances of this class are thread safe.
+ */
+public class GDataMetrics {
+    /** Operation name for fetching a feed or entry. */
+    public static final String OP_GET_FEED = "feed_get";
+    /** Operation name for fetching a media entry. */
+    public static final String OP_GET_MEDIA = "media_get";
+    /** Operation name for creating an entry. */
+    public static final String OP_CREATE = "entry_create";
+    /** Operation name for updating an entry. */
+    public static final String OP_UPDATE = "entry_update";
+    /** Operation name for partially updating an entry. */
+    public static final String OP_PATCH = "entry_patch";
+    /** Operation name for deleting an entry. */
+    public static final String OP_DELETE = "entry_delete";
+    /** Operation name for updating a media entry. */
+    public static final String OP_UPDATE_MEDIA = "media_update";
+    /** Operation name for sending a batch of operations. */
+    public static final String OP_BATCH = "batch";
+
+    /** The metrics of one operation of one service. */
+    static class RequestSeries {
+        final String service;
+        final String operation;
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong bytesIn = new AtomicLong();
+        final AtomicLong bytesOut = new AtomicLong();
+        final LatencyHistogram firstByte = new LatencyHistogram();
+        final LatencyHistogram body = new LatencyHistogram();
+        final LatencyHistogram total = new LatencyHistogram();
+
+        RequestSeries(String service, String operation) {
+            this.service = service;
+            this.operation = operation;
+        }
+    }
+
+    /** The parse metrics of one service. */
+    static class ParseSeries {
+        final String service;
+        final AtomicLong entries = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final LatencyHistogram duration = new LatencyHistogram();
+
+        ParseSeries(String service) {
+            this.service = service;
+        }
+    }
+
+    /* Series, by key and in creation order; guarded by this. */
+    private final Hashtable requestSeriesByKey = new Hashtable();
+    private final Vector requestSeries = new Vector();
+    private final Hashtable parseSeriesByService = new Hashtable();
+    private final Vector parseSeries = new Vector();
+
+    /* Retrying clients whose counts are exported, by service; guarded by this. */
+    private final Vector retryingServices = new Vector();
+    private final Vector retryingClients = new Vector();
+
+    /**
+     * Returns the series for an operation of a service, creating it if
+     * needed.
+     */
+    synchronized RequestSeries getRequestSeries(String service, String operation) {
+        String key = service + '\0' + operation;
+        RequestSeries series = (RequestSeries) requestSeriesByKey.get(key);
+        if (series == null) {
+            series = new RequestSeries(service, operation);
+            requestSeriesByKey.put(key, series);
+            requestSeries.addElement(series);
+        }
+        return series;
+    }
+
+    /**
+     * Returns the parse series for a service, creating it if needed.
+     */
+    synchronized ParseSeries getParseSeries(String service) {
+        ParseSeries series = (ParseSeries) parseSeriesByService.get(service);
+        if (series == null) {
+            series = new ParseSeries(service);
+            parseSeriesByService.put(service, series);
+            parseSeries.addElement(series);
+        }
+        return series;
+    }
+
+    /**
+     * Exports the retry counts of a {@link RetryingGDataClient} along with
+     * the other metrics of a service.
+     * @param service The service the client talks to.
+     * @param client The client whose counts should be exported.
+     */
+    public synchronized void addRetryingClient(String service, RetryingGDataClient client) {
+        retryingServices.addElement(service);
+        retryingClients.addElement(client);
+    }
+
+    /**
+     * Writes every metric to a sink.
+     * @param sink The sink the metrics should be written to.
+     * @throws IOException Thrown if the sink fails.
+     */
+    public void export(MetricsSink sink) throws IOException {
+        RequestSeries[] requests;
+        ParseSeries[] parses;
+        String[] services;
+        RetryingGDataClient[] clients;
+        synchronized (this) {
+            requests = new RequestSeries[requestSeries.size()];
+            requestSeries.copyInto(requests);
+            parses = new ParseSeries[parseSeries.size()];
+            parseSeries.copyInto(parses);
+            services = new String[retryingServices.size()];
+            retryingServices.copyInto(services);
+            clients = new RetryingGDataClient[retryingClients.size()];
+            retryingClients.copyInto(clients);
+        }
+
+        sink.beginFamily("gdata_requests_total", MetricsSink.TYPE_COUNTER,
+                "Requests made.");
+        for (int i = 0; i < requests.length; i++) {
+            sink.writeCounter(requests[i].service, requests[i].operation,
+                    requests[i].requests.get());
+        }
+        sink.beginFamily("gdata_request_errors_total", MetricsSink.TYPE_COUNTER,
+                "Requests that failed with an error response or io error.");
+        for (int i = 0; i < requests.length; i++) {
+            sink.writeCounter(requests[i].service, requests[i].operation,
+                    requests[i].errors.get());
+        }
+        sink.beginFamily("gdata_time_to_first_byte_seconds", MetricsSink.TYPE_HISTOGRAM,
+                "Time until the response headers were received.");
+        for (int i = 0; i < requests.length; i++) {
+            sink.writeHistogram(requests[i].service, requests[i].operation,
+                    requests[i].firstByte);
+        }
+        sink.beginFamily("gdata_body_duration_seconds", MetricsSink.TYPE_HISTOGRAM,
+                "Time spent reading the response body.");
+        for (int i = 0; i < requests.length; i++) {
+            sink.writeHistogram(requests[i].service, requests[i].operation, requests[i].body);
+        }
+        sink.beginFamily("gdata_request_duration_seconds", MetricsSink.TYPE_HISTOGRAM,
+                "Time from sending the request until the response body was closed.");
+        for (int i = 0; i < requests.length; i++) {
+            sink.writeHistogram(requests[i].service, requests[i].operation,
+                    requests[i].total);
+        }
+        sink.beginFamily("gdata_bytes_received_total", MetricsSink.TYPE_COUNTER,
+                "Response body bytes read.");
+        for (int i = 0; i < requests.length; i++) {
+            sink.writeCounter(requests[i].service, requests[i].operation,
+                    requests[i].bytesIn.get());
+        }
+        sink.beginFamily("gdata_bytes_sent_total", MetricsSink.TYPE_COUNTER,
+                "Request body bytes written.");
+        for (int i = 0; i < requests.length; i++) {
+            sink.writeCounter(requests[i].service, requests[i].operation,
+                    requests[i].bytesOut.get());
+        }
+
+        sink.beginFamily("gdata_entries_parsed_total", MetricsSink.TYPE_COUNTER,
+                "Entries parsed.");
+        for (int i = 0; i < parses.length; i++) {
+            sink.writeCounter(parses[i].service, null, parses[i].entries.get());
+        }
+        sink.beginFamily("gdata_parse_errors_total", MetricsSink.TYPE_COUNTER,
+                "Responses that could not be parsed.");
+        for (int i = 0; i < parses.length; i++) {
+            sink.writeCounter(parses[i].service, null, parses[i].errors.get());
+        }
+        sink.beginFamily("gdata_parse_duration_seconds", MetricsSink.TYPE_HISTOGRAM,
+                "Time spent parsing each response.");
+        for (int i = 0; i < parses.length; i++) {
+            sink.writeHistogram(parses[i].service, null, parses[i].duration);
+        }
+
+        sink.beginFamily("gdata_retries_total", MetricsSink.TYPE_COUNTER,
+                "Requests retried.");
+        for (int i = 0; i < clients.length; i++) {
+            sink.writeCounter(services[i], null, clients[i].getRetryCount());
+        }
+        sink.beginFamily("gdata_retries_denied_total", MetricsSink.TYPE_COUNTER,
+                "Retries not made because the retry budget was empty.");
+        for (int i = 0; i < clients.length; i++) {
+            sink.writeCounter(services[i], null, clients[i].getRetriesDeniedCount());
+        }
+        sink.finish();
+    }
+}
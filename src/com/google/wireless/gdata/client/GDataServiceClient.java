@@ -2,20 +2,61 @@
 
 package com.google.wireless.gdata.client;
 
+import com.google.wireless.gdata.GDataEventListener;
+import com.google.wireless.gdata.GDataEvents;
 import com.google.wireless.gdata.data.Entry;
 import com.google.wireless.gdata.data.MediaEntry;
 import com.google.wireless.gdata.data.StringUtils;
 import com.google.wireless.gdata.parser.GDataParser;
 import com.google.wireless.gdata.parser.ParseException;
 import com.google.wireless.gdata.serializer.GDataSerializer;
+import com.google.wireless.gdata.serializer.xml.XmlBatchGDataSerializer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 
 /**
  * Abstract base class for service-specific clients to access GData feeds.
  */
 public abstract class GDataServiceClient {
+    /** The default maximum number of operations sent in one batch request. */
+    public static final int DEFAULT_BATCH_OPERATIONS = 500;
+
+    /** The default maximum size of one batch request, in bytes. */
+    public static final int DEFAULT_BATCH_BYTES = 1024 * 1024;
+
+    private static final long MEDIA_TRANSFER_CHUNK_SIZE = 64 * 1024;
+
+    /** Writes a request body that has already been serialized. */
+    private static class SerializedBody implements GDataSerializer {
+        private final String contentType;
+        private final byte[] body;
+
+        SerializedBody(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public void serialize(OutputStream out, int format) throws IOException {
+            out.write(body);
+        }
+    }
+
+    /** A request to the {@link GDataClient}, reported to the event listener. */
+    private interface Request {
+        Object run() throws HttpException, IOException;
+    }
+
     private final GDataClient gDataClient;
     private final GDataParserFactory gDataParserFactory;
 
@@ -27,6 +68,8 @@ public abstract class GDataServiceClient {
 
     /**
      * Returns the {@link GDataClient} being used by this GDataServiceClient.
+     * Requests sent through it directly are not reported to the
+     * {@link GDataEventListener}.
      * @return The {@link GDataClient} being used by this GDataServiceClient.
      */
     protected GDataClient getGDataClient() {
@@ -73,10 +116,35 @@ public abstract class GDataServiceClient {
      */
     public GDataParser getParserForFeed(Class feedEntryClass, String feedUrl, String authToken)
             throws ParseException, IOException, HttpException {
-        InputStream is = gDataClient.getFeedAsStream(feedUrl, authToken);
+        InputStream is = getFeedAsStream(feedUrl, authToken);
         return gDataParserFactory.createParser(feedEntryClass, is);
     }
 
+    /**
+     * Returns a {@link FeedIterator} over all of the entries of a feed, across
+     * all of its pages.  The caller is responsible for closing the returned
+     * {@link FeedIterator}.
+     *
+     * @param feedEntryClass the class of Entry that is contained in the feed
+     * @param feedUrl The URL of the first page of the feed.
+     * @param authToken The authentication token for this user.
+     * @param prefetchDepth How many pages should be fetched in the background
+     * ahead of the page being read.  0 disables prefetching.
+     * @return A {@link FeedIterator} for the requested feed.
+     */
+    public FeedIterator getFeedIterator(Class feedEntryClass, String feedUrl, String authToken,
+            int prefetchDepth) {
+        // fetch the pages through getFeedAsStream so that they are reported.
+        GDataClient pageClient = new DelegatingGDataClient(gDataClient) {
+            public InputStream getFeedAsStream(String pageUrl, String pageAuthToken)
+                    throws HttpException, IOException {
+                return GDataServiceClient.this.getFeedAsStream(pageUrl, pageAuthToken);
+            }
+        };
+        return new FeedIterator(pageClient, gDataParserFactory, feedEntryClass, feedUrl,
+                authToken, prefetchDepth);
+    }
+
     /**
      * Fetches a media entry as an InputStream.  The caller is responsible for closing the
      * returned {@link InputStream}.
@@ -87,9 +155,67 @@ public abstract class GDataServiceClient {
      * @throws IOException Thrown if an error occurs while communicating with
      * the GData service.
      */
-    public InputStream getMediaEntryAsStream(String mediaEntryUrl, String authToken)
+    public InputStream getMediaEntryAsStream(final String mediaEntryUrl, final String authToken)
             throws IOException, HttpException {
-        return gDataClient.getMediaEntryAsStream(mediaEntryUrl, authToken);
+        return (InputStream) execute(GDataMetrics.OP_GET_MEDIA, mediaEntryUrl, new Request() {
+            public Object run() throws HttpException, IOException {
+                return gDataClient.getMediaEntryAsStream(mediaEntryUrl, authToken);
+            }
+        });
+    }
+
+    /**
+     * Fetches a media entry directly into a file.  If the response is
+     * available as a {@link ByteBufferInputStream} (e.g., from a
+     * {@link CachingGDataClient}) it is written to the channel without being
+     * copied onto the heap; otherwise it is moved with
+     * {@link FileChannel#transferFrom}.
+     *
+     * @param mediaEntryUrl The URL of the media entry that should be fetched.
+     * @param authToken The authentication token for this user.
+     * @param channel The channel the media should be written to.
+     * @param position The position in the channel where the media should be
+     * written.  Must not be greater than the channel's current size.
+     * @param listener The listener progress should be reported to, or null.
+     * @return The number of bytes written.
+     * @throws IOException Thrown if an error occurs while communicating with
+     * the GData service or writing to the channel.
+     * @throws HttpException if the service returns an error response
+     */
+    public long getMediaEntry(String mediaEntryUrl, String authToken, FileChannel channel,
+            long position, ProgressListener listener) throws IOException, HttpException {
+        if (position > channel.size()) {
+            throw new IllegalArgumentException("position " + position
+                    + " is past the end of the channel");
+        }
+        InputStream is = getMediaEntryAsStream(mediaEntryUrl, authToken);
+        try {
+            if (is instanceof ByteBufferInputStream) {
+                ByteBuffer buffer = ((ByteBufferInputStream) is).remaining();
+                long total = buffer.remaining();
+                long written = 0;
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, position + written);
+                    if (listener != null) {
+                        listener.onProgress(written, total);
+                    }
+                }
+                return written;
+            }
+            ReadableByteChannel source = Channels.newChannel(is);
+            long transferred = 0;
+            long n;
+            while ((n = channel.transferFrom(source, position + transferred,
+                    MEDIA_TRANSFER_CHUNK_SIZE)) > 0) {
+                transferred += n;
+                if (listener != null) {
+                    listener.onProgress(transferred, -1);
+                }
+            }
+            return transferred;
+        } finally {
+            is.close();
+        }
     }
 
     /**
@@ -106,10 +232,14 @@ public abstract class GDataServiceClient {
      * the GData service.
      * @throws HttpException if the service returns an error response
      */
-    public Entry createEntry(String feedUrl, String authToken, Entry entry)
+    public Entry createEntry(final String feedUrl, final String authToken, Entry entry)
             throws ParseException, IOException, HttpException {
-        GDataSerializer serializer = gDataParserFactory.createSerializer(entry);
-        InputStream is = gDataClient.createEntry(feedUrl, authToken, serializer);
+        final GDataSerializer serializer = gDataParserFactory.createSerializer(entry);
+        InputStream is = (InputStream) execute(GDataMetrics.OP_CREATE, feedUrl, new Request() {
+            public Object run() throws HttpException, IOException {
+                return gDataClient.createEntry(feedUrl, authToken, serializer);
+            }
+        });
         return parseEntry(entry.getClass(), is);
     }
 
@@ -126,7 +256,7 @@ public abstract class GDataServiceClient {
    */
     public Entry getEntry(Class entryClass, String id, String authToken)
           throws ParseException, IOException, HttpException {
-        InputStream is = getGDataClient().getFeedAsStream(id, authToken);
+        InputStream is = getFeedAsStream(id, authToken);
         return parseEntry(entryClass, is);
     }
 
@@ -143,15 +273,72 @@ public abstract class GDataServiceClient {
      * the GData service.
      * @throws HttpException if the service returns an error response
      */
-    public Entry updateEntry(Entry entry, String authToken)
+    public Entry updateEntry(Entry entry, final String authToken)
+            throws ParseException, IOException, HttpException {
+        final String editUri = entry.getEditUri();
+        if (StringUtils.isEmpty(editUri)) {
+            throw new ParseException("No edit URI -- cannot update.");
+        }
+
+        final GDataSerializer serializer = gDataParserFactory.createSerializer(entry);
+        InputStream is = (InputStream) execute(GDataMetrics.OP_UPDATE, editUri, new Request() {
+            public Object run() throws HttpException, IOException {
+                return gDataClient.updateEntry(editUri, authToken, serializer);
+            }
+        });
+        return parseEntry(entry.getClass(), is);
+    }
+
+    /**
+     * Updates only the fields of an existing entry that changed since it was
+     * parsed, see {@link Entry#getDirtyFields()}.  Nothing is sent if no
+     * field changed.  The entry is updated in full, with
+     * {@link #updateEntry(Entry, String)}, if the {@link GDataClient} is not
+     * a {@link PatchingGDataClient}, if the server does not support partial
+     * updates, or if the entry does not track all of its changes.
+     *
+     * @param entry The entry that should be updated.
+     * @param authToken The authentication token for this user.
+     * @return The entry returned by the server as a result of updating the
+     * provided entry, or the provided entry if no field changed.
+     * @throws ParseException Thrown if the server response cannot be parsed.
+     * @throws IOException Thrown if an error occurs while communicating with
+     * the GData service.
+     * @throws HttpException if the service returns an error response
+     */
+    public Entry patchEntry(Entry entry, final String authToken)
             throws ParseException, IOException, HttpException {
-        String editUri = entry.getEditUri();
+        final String editUri = entry.getEditUri();
         if (StringUtils.isEmpty(editUri)) {
             throw new ParseException("No edit URI -- cannot update.");
         }
+        int dirtyFields = entry.getDirtyFields();
+        if (dirtyFields == 0) {
+            return entry;
+        }
+        if (!(gDataClient instanceof PatchingGDataClient)
+                || (dirtyFields & Entry.FIELD_EXTRA) != 0) {
+            return updateEntry(entry, authToken);
+        }
 
-        GDataSerializer serializer = gDataParserFactory.createSerializer(entry);
-        InputStream is = gDataClient.updateEntry(editUri, authToken, serializer);
+        final GDataSerializer serializer = gDataParserFactory.createSerializer(entry);
+        InputStream is;
+        try {
+            is = (InputStream) execute(GDataMetrics.OP_PATCH, editUri, new Request() {
+                public Object run() throws HttpException, IOException {
+                    return ((PatchingGDataClient) gDataClient).patchEntry(editUri, authToken,
+                            serializer);
+                }
+            });
+        } catch (HttpException e) {
+            int status = e.getStatusCode();
+            if (status != HttpException.SC_METHOD_NOT_ALLOWED
+                    && status != HttpException.SC_NOT_IMPLEMENTED) {
+                throw e;
+            }
+            closeQuietly(e.getResponseStream());
+            return updateEntry(entry, authToken);
+        }
         return parseEntry(entry.getClass(), is);
     }
 
@@ -171,16 +358,55 @@ public abstract class GDataServiceClient {
      * @throws IOException Thrown if an error occurs while communicating with
      * the GData service.
      */
-    public MediaEntry updateMediaEntry(String editUri, InputStream inputStream, String contentType,
-            String authToken) throws IOException, HttpException, ParseException {
+    public MediaEntry updateMediaEntry(final String editUri, final InputStream inputStream,
+            final String contentType, final String authToken)
+            throws IOException, HttpException, ParseException {
         if (StringUtils.isEmpty(editUri)) {
             throw new IllegalArgumentException("No edit URI -- cannot update.");
         }
 
-        InputStream is = gDataClient.updateMediaEntry(editUri, authToken, inputStream, contentType);
+        InputStream is = (InputStream) execute(GDataMetrics.OP_UPDATE_MEDIA, editUri,
+                new Request() {
+                    public Object run() throws HttpException, IOException {
+                        return gDataClient.updateMediaEntry(editUri, authToken, inputStream,
+                                contentType);
+                    }
+                });
         return (MediaEntry)parseEntry(MediaEntry.class, is);
     }
 
+    /**
+     * Updates an existing media entry with the contents of a file.  The file
+     * is memory-mapped rather than read onto the heap, and the resulting
+     * stream supports mark/reset so that decorators such as
+     * {@link RetryingGDataClient} can resend it.
+     *
+     * @param editUri The URI of the resource that should be updated.
+     * @param channel The channel that contains the new value of the media
+     *   entry.  Everything from position 0 to the channel's size is sent.
+     * @param contentType The content type of the new media entry
+     * @param authToken The authentication token for this user.
+     * @param listener The listener upload progress should be reported to, or
+     *   null.
+     * @return The entry returned by the server as a result of updating the
+     * provided entry.
+     * @throws HttpException if the service returns an error response
+     * @throws ParseException Thrown if the server response cannot be parsed.
+     * @throws IOException Thrown if an error occurs while communicating with
+     * the GData service.
+     */
+    public MediaEntry updateMediaEntry(String editUri, FileChannel channel, String contentType,
+            String authToken, ProgressListener listener)
+            throws IOException, HttpException, ParseException {
+        long size = channel.size();
+        InputStream media = new ByteBufferInputStream(
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        if (listener != null) {
+            media = new ProgressInputStream(media, listener, size);
+        }
+        return updateMediaEntry(editUri, media, contentType, authToken);
+    }
+
     /**
      * Deletes an existing entry.
      *
@@ -190,9 +416,203 @@ public abstract class GDataServiceClient {
      * the GData service.
      * @throws HttpException if the service returns an error response
      */
-    public void deleteEntry(String editUri, String authToken)
+    public void deleteEntry(final String editUri, final String authToken)
             throws IOException, HttpException {
-        gDataClient.deleteEntry(editUri, authToken);
+        execute(GDataMetrics.OP_DELETE, editUri, new Request() {
+            public Object run() throws HttpException, IOException {
+                gDataClient.deleteEntry(editUri, authToken);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Sends a batch of operations, with {@link #DEFAULT_BATCH_OPERATIONS} and
+     * {@link #DEFAULT_BATCH_BYTES} as the limits of each request.
+     *
+     * @see #executeBatch(String, String, BatchRequest, int, int)
+     */
+    public BatchResult[] executeBatch(String batchUrl, String authToken,
+            BatchRequest request) throws ParseException, IOException, HttpException {
+        return executeBatch(batchUrl, authToken, request, DEFAULT_BATCH_OPERATIONS,
+                DEFAULT_BATCH_BYTES);
+    }
+
+    /**
+     * Sends a batch of operations on the entries of a feed, split into as few
+     * requests as the limits allow.  The requests are sent one after the
+     * other, in order.
+     *
+     * @param batchUrl The batch url of the feed, usually the feed url
+     * followed by "/batch".
+     * @param authToken The authentication token for this user.
+     * @param request The operations.
+     * @param maxOperations The most operations to send in one request.
+     * @param maxBytes The largest request body to send, unless it holds a
+     * single operation.
+     * @return The result of each operation, in the order of the request.
+     * Operations in a request that the server stopped processing part way have
+     * the status {@link BatchResult#STATUS_NOT_PROCESSED}.  Once any operation
+     * has a result, a failed request no longer throws, so that the results
+     * of the operations the server applied are always returned: the
+     * operations of a request the service rejected have its HTTP status,
+     * those of a request that could not be sent or read have
+     * {@link BatchResult#STATUS_NOT_PROCESSED} and the failure as their
+     * reason, and later operations are not sent.
+     * @throws ParseException Thrown if an entry of the first request cannot be
+     * serialized, or its response cannot be parsed before any result is read.
+     * @throws IOException Thrown if an error occurs while communicating with
+     * the GData service for the first request, before any result is read.
+     * @throws HttpException if the service returns an error response for the
+     * first request.
+     */
+    public BatchResult[] executeBatch(String batchUrl, String authToken,
+            BatchRequest request, int maxOperations, int maxBytes)
+            throws ParseException, IOException, HttpException {
+        int size = request.size();
+        BatchResult[] results = new BatchResult[size];
+        int start = 0;
+        while (start < size) {
+            int count = Math.min(maxOperations, size - start);
+            try {
+                byte[] body = serializeBatch(request, start, count);
+                while (body.length > maxBytes && count > 1) {
+                    count = (count + 1) / 2;
+                    body = serializeBatch(request, start, count);
+                }
+                sendBatch(batchUrl, authToken, request, start, count, body, results);
+            } catch (HttpException e) {
+                if (start == 0) {
+                    throw e;
+                }
+                // earlier requests were applied; keep their results.
+                closeQuietly(e.getResponseStream());
+                setResults(request, results, start, count, e.getStatusCode(), e.getMessage());
+                break;
+            } catch (IOException e) {
+                if (start == 0 && !hasResults(results, start, count)) {
+                    throw e;
+                }
+                // part of the response may have been read; keep what was applied.
+                setResults(request, results, start, count, BatchResult.STATUS_NOT_PROCESSED,
+                        e.getMessage());
+                break;
+            } catch (ParseException e) {
+                if (start == 0 && !hasResults(results, start, count)) {
+                    throw e;
+                }
+                setResults(request, results, start, count, BatchResult.STATUS_NOT_PROCESSED,
+                        e.getMessage());
+                break;
+            }
+            start += count;
+        }
+        for (int i = 0; i < size; i++) {
+            if (results[i] == null) {
+                results[i] = new BatchResult(request.getOperation(i),
+                        BatchResult.STATUS_NOT_PROCESSED, null /* reason */, null /* entry */);
+            }
+        }
+        return results;
+    }
+
+    /** Returns whether any operation in [start, start + count) has a result. */
+    private static boolean hasResults(BatchResult[] results, int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            if (results[i] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Fills in the operations in [start, start + count) without a result. */
+    private static void setResults(BatchRequest request, BatchResult[] results, int start,
+            int count, int statusCode, String reason) {
+        for (int i = start; i < start + count; i++) {
+            if (results[i] == null) {
+                results[i] = new BatchResult(request.getOperation(i), statusCode, reason,
+                        null /* entry */);
+            }
+        }
+    }
+
+    private byte[] serializeBatch(BatchRequest request, int start, int count)
+            throws ParseException, IOException {
+        GDataSerializer[] serializers = new GDataSerializer[count];
+        String[] operations = new String[count];
+        String[] batchIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            serializers[i] = gDataParserFactory.createSerializer(request.getEntry(start + i));
+            operations[i] = request.getOperation(start + i);
+            // the index in the request, to match results across requests.
+            batchIds[i] = Integer.toString(start + i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new XmlBatchGDataSerializer(serializers, operations, batchIds)
+                .serialize(out, GDataSerializer.FORMAT_UPDATE);
+        return out.toByteArray();
+    }
+
+    private void sendBatch(final String batchUrl, final String authToken, BatchRequest request,
+            int start, int count, final byte[] body, BatchResult[] results)
+            throws ParseException, IOException, HttpException {
+        InputStream is = (InputStream) execute(GDataMetrics.OP_BATCH, batchUrl, new Request() {
+            public Object run() throws HttpException, IOException {
+                return gDataClient.createEntry(batchUrl, authToken,
+                        new SerializedBody("application/atom+xml", body));
+            }
+        });
+
+        GDataParser parser = null;
+        try {
+            parser = gDataParserFactory.createParser(request.getEntry(start).getClass(), is);
+            parser.init();
+            while (parser.hasMoreData()) {
+                Entry entry = parser.readNextEntry(null);
+                int index = StringUtils.parseInt(entry.getBatchId(), -1);
+                if (index >= start && index < start + count) {
+                    results[index] = new BatchResult(request.getOperation(index),
+                            entry.getBatchStatusCode(), entry.getBatchStatusReason(), entry);
+                }
+            }
+        } finally {
+            if (parser != null) {
+                parser.close();
+            } else {
+                is.close();
+            }
+        }
+    }
+
+    private InputStream getFeedAsStream(final String feedUrl, final String authToken)
+            throws IOException, HttpException {
+        return (InputStream) execute(GDataMetrics.OP_GET_FEED, feedUrl, new Request() {
+            public Object run() throws HttpException, IOException {
+                return gDataClient.getFeedAsStream(feedUrl, authToken);
+            }
+        });
+    }
+
+    /**
+     * Runs a request, reporting its latency and whether it succeeded to the
+     * {@link GDataEventListener}, if there is one.
+     */
+    private Object execute(String operation, String url, Request request)
+            throws HttpException, IOException {
+        GDataEventListener listener = GDataEvents.getListener();
+        long start = listener == null ? 0 : System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Object result = request.run();
+            succeeded = true;
+            return result;
+        } finally {
+            if (listener != null) {
+                listener.onRequest(getServiceName(), operation, GDataEvents.toUrlTemplate(url),
+                        System.nanoTime() - start, succeeded);
+            }
+        }
     }
 
     private Entry parseEntry(Class entryClass, InputStream is) throws ParseException, IOException {
@@ -206,4 +626,14 @@ public abstract class GDataServiceClient {
             }
         }
     }
+
+    private static void closeQuietly(InputStream is) {
+        if (is != null) {
+            try {
+                is.close();
+            } catch (IOException ioe) {
+                // ignore
+            }
+        }
+    }
 }
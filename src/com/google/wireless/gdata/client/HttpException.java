@@ -18,16 +18,30 @@ public class HttpException extends Exception {
 
   public static final int SC_NOT_FOUND = 404;
 
+  public static final int SC_METHOD_NOT_ALLOWED = 405;
+
   public static final int SC_CONFLICT = 409;
 
   public static final int SC_GONE = 410;
 
+  public static final int SC_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
   public static final int SC_INTERNAL_SERVER_ERROR = 500;
 
+  public static final int SC_NOT_IMPLEMENTED = 501;
+
+  public static final int SC_BAD_GATEWAY = 502;
+
+  public static final int SC_SERVICE_UNAVAILABLE = 503;
+
+  public static final int SC_GATEWAY_TIMEOUT = 504;
+
   private final int statusCode;
 
   private final InputStream responseStream;
 
+  private final long retryAfterSeconds;
+
   /**
    * Creates an HttpException with the given message, statusCode and
    * responseStream.
@@ -35,9 +49,23 @@ public class HttpException extends Exception {
   //TODO: also record response headers?
   public HttpException(String message, int statusCode,
       InputStream responseStream) {
+    this(message, statusCode, responseStream, -1);
+  }
+
+  /**
+   * Creates an HttpException with the given message, statusCode,
+   * responseStream and the delay requested by the server's Retry-After
+   * header.
+   *
+   * @param retryAfterSeconds The number of seconds the server asked the
+   * client to wait before retrying, or -1 if the response did not say.
+   */
+  public HttpException(String message, int statusCode,
+      InputStream responseStream, long retryAfterSeconds) {
     super(message);
     this.statusCode = statusCode;
     this.responseStream = responseStream;
+    this.retryAfterSeconds = retryAfterSeconds;
   }
 
   /**
@@ -55,4 +83,12 @@ public class HttpException extends Exception {
   public InputStream getResponseStream() {
     return responseStream;
   }
+
+  /**
+   * @return the number of seconds the server asked the client to wait before
+   * retrying (from the Retry-After header), or -1 if it did not say.
+   */
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
 }
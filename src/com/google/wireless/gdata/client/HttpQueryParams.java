@@ -2,72 +2,106 @@
 
 package com.google.wireless.gdata.client;
 
-import java.util.Hashtable;
-import java.util.Vector;
-
 /**
- * A concrete implementation of QueryParams that uses the encodeUri method of a
- * GDataClient (passed in at construction time) to URL encode parameters.
+ * A concrete implementation of QueryParams that URL encodes parameters with
+ * {@link UriEncoder}.
  *
  * This implementation maintains the order of parameters, which is useful for
- * testing.  Instances of this class are not thread safe.
+ * testing.  Parameters are kept in a pair of parallel arrays, since queries
+ * have only a handful of them.  Instances of this class are not thread safe.
  */
 public class HttpQueryParams extends QueryParams {
 
-  private GDataClient client;
-
-  /* Used to store the mapping of names to values */
-  private Hashtable params;
+  /* The names and values of the parameters, in the order they were added. */
+  private String[] names;
+  private String[] values;
+  private int count;
 
-  /* Used to maintain the order of parameter additions */
-  private Vector names;
+  /**
+   * Constructs a new, empty HttpQueryParams.
+   */
+  public HttpQueryParams() {
+    // We expect most queries to have a relatively small number of parameters.
+    names = new String[4];
+    values = new String[4];
+    count = 0;
+  }
 
   /**
    * Constructs a new, empty HttpQueryParams.
    *
-   * @param client GDataClient whose encodeUri method is used for URL encoding.
+   * @param client Not used; parameters are encoded with {@link UriEncoder}.
    */
   public HttpQueryParams(GDataClient client) {
-    this.client = client;
-    // We expect most queries to have a relatively small number of parameters.
-    names = new Vector(4);
-    params = new Hashtable(7);
+    this();
   }
 
   public String generateQueryUrl(String feedUrl) {
-    StringBuffer url = new StringBuffer(feedUrl);
+    int length = feedUrl.length() + 1;
+    for (int i = 0; i < count; i++) {
+      length += names[i].length() + values[i].length() + 2;
+    }
+    StringBuffer url = new StringBuffer(length + 16);
+    url.append(feedUrl);
     url.append(feedUrl.indexOf('?') >= 0 ? '&' : '?');
 
-    for (int i = 0; i < names.size(); i++) {
+    for (int i = 0; i < count; i++) {
       if (i > 0) {
         url.append('&');
       }
-      String name = (String) names.elementAt(i);
-      url.append(client.encodeUri(name)).append('=');
-      url.append(client.encodeUri(getParamValue(name)));
+      UriEncoder.encode(url, names[i]);
+      url.append('=');
+      UriEncoder.encode(url, values[i]);
     }
     return url.toString();
   }
 
   public String getParamValue(String param) {
-    return (String) params.get(param);
+    int index = indexOf(param);
+    return index >= 0 ? values[index] : null;
   }
 
   public void setParamValue(String param, String value) {
+    int index = indexOf(param);
     if (value != null) {
-      if (!params.containsKey(param)) {
-        names.addElement(param);
+      if (index >= 0) {
+        values[index] = value;
+        return;
       }
-      params.put(param, value);
-    } else {
-      if (params.remove(param) != null) {
-        names.removeElement(param);
+      if (count == names.length) {
+        String[] newNames = new String[count * 2];
+        String[] newValues = new String[count * 2];
+        System.arraycopy(names, 0, newNames, 0, count);
+        System.arraycopy(values, 0, newValues, 0, count);
+        names = newNames;
+        values = newValues;
       }
+      names[count] = param;
+      values[count] = value;
+      ++count;
+    } else if (index >= 0) {
+      --count;
+      System.arraycopy(names, index + 1, names, index, count - index);
+      System.arraycopy(values, index + 1, values, index, count - index);
+      names[count] = null;
+      values[count] = null;
     }
   }
 
   public void clear() {
-    names.removeAllElements();
-    params.clear();
+    for (int i = 0; i < count; i++) {
+      names[i] = null;
+      values[i] = null;
+    }
+    count = 0;
+  }
+
+  private int indexOf(String param) {
+    for (int i = 0; i < count; i++) {
+      if (names[i].equals(param)) {
+        return i;
+      }
+    }
+    return -1;
   }
 }
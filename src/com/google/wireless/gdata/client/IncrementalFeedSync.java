@@ -0,0 +1,136 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.data.DateTimeUtils;
+import com.google.wireless.gdata.data.Entry;
+import com.google.wireless.gdata.data.Feed;
+import com.google.wireless.gdata.parser.ParseException;
+
+import java.io.IOException;
+
+/**
+ * Keeps a local copy of a feed up to date by fetching only what changed
+ * since the previous sync.
+ *
+ * The first sync of a feed fetches every entry.  Each later sync asks for the
+ * entries updated since the feed's watermark (updated-min), including
+ * deleted entries (showdeleted), and hands them to a {@link SyncHandler}.
+ * If the server answers 410 Gone, because it no longer has the deletions
+ * since the watermark, the sync falls back to a full sync.
+ *
+ * The watermark is the latest update time among the entries received.  If
+ * a full sync receives no dated entries, it is the feed's own update time,
+ * or the time of the request if the feed has none, so that an empty feed is
+ * still synced incrementally afterwards.  It is stored only after every
+ * page has been fetched and every change has been applied, so a sync that
+ * fails part way is repeated in full the next time.  Since updated-min is
+ * inclusive, entries updated at exactly the watermark are delivered again by
+ * the next sync.
+ *
+ * Instances of this class are thread safe, as long as each feed is synced
+ * by only one thread at a time.
+ */
+public class IncrementalFeedSync {
+    /** Returned by {@link #sync} when only changes were fetched. */
+    public static final int RESULT_INCREMENTAL = 0;
+    /** Returned by {@link #sync} when the whole feed was fetched. */
+    public static final int RESULT_FULL = 1;
+
+    private final GDataServiceClient serviceClient;
+    private final SyncWatermarkStore store;
+    private final int prefetchDepth;
+
+    /**
+     * Creates a new IncrementalFeedSync.
+     * @param serviceClient The client used to fetch feeds.
+     * @param store The store the watermarks are kept in.
+     * @param prefetchDepth How many pages of a feed may be fetched ahead of
+     * the page being applied.  See {@link FeedIterator}.
+     */
+    public IncrementalFeedSync(GDataServiceClient serviceClient, SyncWatermarkStore store,
+            int prefetchDepth) {
+        this.serviceClient = serviceClient;
+        this.store = store;
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    /**
+     * Syncs a feed.
+     *
+     * @param entryClass The class of entry contained in the feed.
+     * @param feedUrl The url of the feed, without updated-min or showdeleted.
+     * @param authToken The authentication token for this user.
+     * @param handler The handler the changes should be applied with.
+     * @return {@link #RESULT_INCREMENTAL} or {@link #RESULT_FULL}.
+     * @throws HttpException Thrown if the server returns an error other than
+     * 410 Gone for an incremental sync.
+     */
+    public int sync(Class entryClass, String feedUrl, String authToken, SyncHandler handler)
+            throws ParseException, IOException, HttpException {
+        String watermark = store.getWatermark(feedUrl);
+        if (watermark != null) {
+            QueryParams params = serviceClient.createQueryParams();
+            params.setUpdatedMin(watermark);
+            params.setShowDeleted("true");
+            try {
+                String newWatermark = applyChanges(entryClass, params.generateQueryUrl(feedUrl),
+                        authToken, handler, watermark);
+                store.setWatermark(feedUrl, newWatermark);
+                return RESULT_INCREMENTAL;
+            } catch (HttpException e) {
+                if (e.getStatusCode() != HttpException.SC_GONE) {
+                    throw e;
+                }
+                // too old: the server no longer has the deletions since the watermark.
+                store.setWatermark(feedUrl, null);
+            }
+        }
+
+        handler.onFullResync();
+        String newWatermark = applyChanges(entryClass, feedUrl, authToken, handler,
+                null /* watermark */);
+        store.setWatermark(feedUrl, newWatermark);
+        return RESULT_FULL;
+    }
+
+    /**
+     * Applies every entry of the feed at url and returns the new watermark.
+     */
+    private String applyChanges(Class entryClass, String url, String authToken,
+            SyncHandler handler, String watermark)
+            throws ParseException, IOException, HttpException {
+        long watermarkMillis = DateTimeUtils.parseRfc3339(watermark, Long.MIN_VALUE);
+        long requestMillis = System.currentTimeMillis();
+        FeedIterator iterator = serviceClient.getFeedIterator(entryClass, url, authToken,
+                prefetchDepth);
+        try {
+            Entry entry = null;
+            while (iterator.hasNext()) {
+                entry = iterator.next(entry);
+                if (entry.isDeleted()) {
+                    handler.onDeleted(entry);
+                } else {
+                    handler.onEntry(entry);
+                }
+                String updated = entry.getUpdateDate();
+                long updatedMillis = DateTimeUtils.parseRfc3339(updated, Long.MIN_VALUE);
+                if (updatedMillis > watermarkMillis) {
+                    watermarkMillis = updatedMillis;
+                    watermark = updated;
+                }
+            }
+            if (watermark == null) {
+                // an empty feed: without a watermark every later sync would be full.
+                Feed feed = iterator.getFeed();
+                watermark = feed == null ? null : feed.getLastUpdated();
+                if (DateTimeUtils.parseRfc3339(watermark, Long.MIN_VALUE) == Long.MIN_VALUE) {
+                    watermark = DateTimeUtils.formatRfc3339(requestMillis);
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        return watermark;
+    }
+}
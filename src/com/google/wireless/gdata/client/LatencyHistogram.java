@@ -0,0 +1,80 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with fixed, roughly exponential buckets from 1ms
+ * to 60s.  Recording is lock-free, so it can be done on every request; a
+ * reader may observe a count and sum that are momentarily out of step.
+ */
+public class LatencyHistogram {
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /** The upper bound of each bucket, in milliseconds. */
+    private static final long[] BUCKET_BOUNDS_MILLIS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 60000
+    };
+
+    /* One count per bucket, plus one for durations above the last bound. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    /**
+     * Records one duration.
+     * @param nanos The duration, in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length
+                && nanos > BUCKET_BOUNDS_MILLIS[bucket] * NANOS_PER_MILLI) {
+            ++bucket;
+        }
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return the number of finite buckets; {@link #getBucketCount} also
+     * accepts this index, for durations above the last bound
+     */
+    public static int getBucketBoundCount() {
+        return BUCKET_BOUNDS_MILLIS.length;
+    }
+
+    /**
+     * @return the upper bound of the given bucket, in milliseconds
+     */
+    public static long getBucketBoundMillis(int bucket) {
+        return BUCKET_BOUNDS_MILLIS[bucket];
+    }
+
+    /**
+     * @return the number of durations recorded in the given bucket (not
+     * including smaller buckets)
+     */
+    public long getBucketCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    /**
+     * @return the number of durations recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the sum of the durations recorded, in nanoseconds
+     */
+    public long getSumNanos() {
+        return sumNanos.get();
+    }
+}
@@ -0,0 +1,552 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Downloads media entries into files, resuming interrupted downloads and
+ * fetching large media over several connections in parallel.
+ *
+ * While a download is in progress, its state (the entity validator, its
+ * length, and how much of each byte range has been written) is kept in a
+ * sidecar file next to the destination, named after it with a ".part"
+ * suffix.  Downloading to the same file again resumes from the persisted
+ * offsets, using If-Range so that a changed entity is fetched from scratch
+ * rather than spliced.  The sidecar file is deleted once the download
+ * completes.
+ *
+ * Ranges require a {@link RangedGDataClient}.  With any other
+ * {@link GDataClient}, a decorator whose transport cannot send ranges, or if
+ * the server does not support ranges or the entity has no validator, the
+ * media is downloaded over a single connection and an interrupted download
+ * starts over.
+ *
+ * Instances of this class are thread safe, but only one download to a given
+ * file should run at a time.
+ */
+public class MediaDownloader {
+    private static final int STATE_MAGIC = 0x47444d31; // "GDM1"
+    private static final String STATE_SUFFIX = ".part";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long TRANSFER_CHUNK_SIZE = 64 * 1024;
+    private static final long CHECKPOINT_INTERVAL = 1024 * 1024;
+
+    /** Thrown by a worker when the entity changed since the download began. */
+    private static class EntityChangedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        EntityChangedException() {
+            super("Media entry changed during download");
+        }
+    }
+
+    /** A byte range of the entity, [start, end), written up to done. */
+    private static class Part {
+        final long start;
+        final long end;
+        long done;
+        /* The response being read, if any. */
+        RangeResponse response = null;
+
+        Part(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = done;
+        }
+    }
+
+    /** The state of one download; the parts' fields are guarded by this. */
+    private static class Download {
+        final String validator;
+        final long totalLength;
+        final Part[] parts;
+        long sinceCheckpoint = 0;
+        Exception failure = null;
+
+        Download(String validator, long totalLength, Part[] parts) {
+            this.validator = validator;
+            this.totalLength = totalLength;
+            this.parts = parts;
+        }
+
+        /**
+         * Records the first failure and closes the responses the other parts
+         * are reading, so that their threads stop instead of finishing their
+         * ranges.
+         */
+        void fail(Exception e) {
+            RangeResponse[] responses = new RangeResponse[parts.length];
+            synchronized (this) {
+                if (failure != null) {
+                    return;
+                }
+                failure = e;
+                for (int i = 0; i < parts.length; i++) {
+                    responses[i] = parts[i].response;
+                }
+            }
+            for (int i = 0; i < responses.length; i++) {
+                if (responses[i] != null) {
+                    try {
+                        responses[i].close();
+                    } catch (IOException ioe) {
+                        // ignore
+                    }
+                }
+            }
+        }
+
+        long getBytesDone() {
+            long done = 0;
+            for (int i = 0; i < parts.length; i++) {
+                done += parts[i].done - parts[i].start;
+            }
+            return done;
+        }
+    }
+
+    private final GDataClient client;
+    private final int maxConnections;
+    private final long minPartSize;
+
+    /**
+     * Creates a new MediaDownloader.
+     * @param client The GDataClient used to fetch media.  Should be a
+     * {@link RangedGDataClient} to enable resuming and parallel ranges.
+     * @param maxConnections The maximum number of ranges fetched in parallel
+     * for one download.
+     * @param minPartSize The smallest range worth fetching over its own
+     * connection, in bytes.
+     */
+    public MediaDownloader(GDataClient client, int maxConnections, long minPartSize) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be at least 1");
+        }
+        if (minPartSize < 1) {
+            throw new IllegalArgumentException("minPartSize must be positive");
+        }
+        this.client = client;
+        this.maxConnections = maxConnections;
+        this.minPartSize = minPartSize;
+    }
+
+    /**
+     * Downloads a media entry into a file, resuming an earlier interrupted
+     * download to the same file if there is one.
+     *
+     * @param mediaEntryUrl The URL of the media entry that should be fetched.
+     * @param authToken The authentication token for this user.
+     * @param file The file the media should be written to.
+     * @param listener The listener progress should be reported to, or null.
+     * It is called from the threads fetching each range.
+     * @return The length of the media.
+     * @throws IOException Thrown if an error occurs while communicating with
+     * the GData service or writing the file.  Whatever was written is kept
+     * and will be resumed by the next call.
+     * @throws HttpException if the service returns an error response
+     */
+    public long download(String mediaEntryUrl, String authToken, File file,
+            ProgressListener listener) throws HttpException, IOException {
+        File stateFile = new File(file.getPath() + STATE_SUFFIX);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (!(client instanceof RangedGDataClient)) {
+                stateFile.delete();
+                raf.setLength(0);
+                return downloadWhole(mediaEntryUrl, authToken, channel, -1, listener);
+            }
+            RangedGDataClient ranged = (RangedGDataClient) client;
+
+            Download download = readState(stateFile);
+            if (download != null && raf.length() != download.totalLength) {
+                download = null;
+            }
+            if (download != null) {
+                try {
+                    run(ranged, mediaEntryUrl, authToken, channel, stateFile, download,
+                            null /* first response */, listener);
+                    stateFile.delete();
+                    return download.totalLength;
+                } catch (EntityChangedException e) {
+                    // fall through and start over.
+                } catch (HttpException e) {
+                    if (e.getStatusCode() != HttpException.SC_NOT_IMPLEMENTED) {
+                        throw e;
+                    }
+                    // ranges are no longer supported; fall through and start over.
+                }
+            }
+
+            stateFile.delete();
+            raf.setLength(0);
+            RangeResponse first;
+            try {
+                first = ranged.getMediaEntryRange(mediaEntryUrl, authToken,
+                        0, minPartSize - 1, null /* ifRange */);
+            } catch (HttpException e) {
+                if (e.getStatusCode() == HttpException.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                    // only an empty entity has no first byte.
+                    closeQuietly(e.getResponseStream());
+                    return 0;
+                }
+                if (e.getStatusCode() != HttpException.SC_NOT_IMPLEMENTED) {
+                    throw e;
+                }
+                // a decorated client whose transport cannot send ranges.
+                closeQuietly(e.getResponseStream());
+                return downloadWhole(mediaEntryUrl, authToken, channel, -1, listener);
+            }
+            if (!first.isPartial()) {
+                // the server ignored the range and sent the whole entity.
+                try {
+                    return copy(first.getStream(), channel, 0, Long.MAX_VALUE,
+                            first.getTotalLength(), listener);
+                } finally {
+                    first.close();
+                }
+            }
+            if (first.getTotalLength() < 0 || first.getValidator() == null) {
+                // nothing to resume against; fetch the whole entity instead.
+                first.close();
+                return downloadWhole(mediaEntryUrl, authToken, channel, first.getTotalLength(),
+                        listener);
+            }
+
+            long totalLength = first.getTotalLength();
+            download = new Download(first.getValidator(), totalLength,
+                    split(totalLength));
+            raf.setLength(totalLength);
+            writeState(stateFile, download);
+            run(ranged, mediaEntryUrl, authToken, channel, stateFile, download, first,
+                    listener);
+            stateFile.delete();
+            return totalLength;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /** Downloads the whole entity over a single connection. */
+    private long downloadWhole(String mediaEntryUrl, String authToken, FileChannel channel,
+            long totalLength, ProgressListener listener) throws HttpException, IOException {
+        InputStream is = client.getMediaEntryAsStream(mediaEntryUrl, authToken);
+        try {
+            return copy(is, channel, 0, Long.MAX_VALUE, totalLength, listener);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Splits an entity into at most maxConnections parts of at least
+     * minPartSize bytes.
+     */
+    private Part[] split(long totalLength) {
+        long count = Math.min(maxConnections, (totalLength + minPartSize - 1) / minPartSize);
+        if (count < 1) {
+            count = 1;
+        }
+        long partSize = (totalLength + count - 1) / count;
+        Part[] parts = new Part[(int) count];
+        for (int i = 0; i < parts.length; i++) {
+            long start = i * partSize;
+            long end = Math.min(totalLength, start + partSize);
+            parts[i] = new Part(start, end, start);
+        }
+        return parts;
+    }
+
+    /**
+     * Fetches every incomplete part, one thread per part, and waits for all
+     * of them.  The first part is given the response to the initial request,
+     * if there was one.  As soon as one part fails, the others are stopped.
+     */
+    private void run(final RangedGDataClient ranged, final String url, final String authToken,
+            final FileChannel channel, final File stateFile, final Download download,
+            RangeResponse first, final ProgressListener listener)
+            throws HttpException, IOException {
+        Thread[] threads = new Thread[download.parts.length];
+        for (int i = 0; i < download.parts.length; i++) {
+            final Part part = download.parts[i];
+            final RangeResponse initial = i == 0 ? first : null;
+            if (part.done >= part.end) {
+                if (initial != null) {
+                    initial.close();
+                }
+                continue;
+            }
+            threads[i] = new Thread("GDataMediaDownload") {
+                public void run() {
+                    try {
+                        fetchPart(ranged, url, authToken, channel, stateFile, download, part,
+                                initial, listener);
+                    } catch (Exception e) {
+                        download.fail(e);
+                    }
+                }
+            };
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        try {
+            for (int i = 0; i < threads.length; i++) {
+                if (threads[i] != null) {
+                    threads[i].join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted =
+                    new InterruptedIOException("Interrupted while downloading " + url);
+            download.fail(interrupted);
+            throw interrupted;
+        }
+
+        Exception failure;
+        synchronized (download) {
+            failure = download.failure;
+        }
+        if (failure != null) {
+            if (!(failure instanceof EntityChangedException)) {
+                checkpoint(channel, stateFile, download);
+            }
+            if (failure instanceof HttpException) {
+                throw (HttpException) failure;
+            } else if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            throw (RuntimeException) failure;
+        }
+        long done;
+        synchronized (download) {
+            done = download.getBytesDone();
+        }
+        if (done != download.totalLength) {
+            throw new IOException("Downloaded " + done + " of " + download.totalLength
+                    + " bytes of " + url);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Fetches the rest of one part, issuing a new range request whenever the
+     * current response ends before the part does.  Stops early once another
+     * part has failed.
+     */
+    private void fetchPart(RangedGDataClient ranged, String url, String authToken,
+            FileChannel channel, File stateFile, Download download, Part part,
+            RangeResponse response, ProgressListener listener)
+            throws HttpException, IOException {
+        try {
+            while (true) {
+                long position;
+                synchronized (download) {
+                    position = part.done;
+                    if (position >= part.end || download.failure != null) {
+                        break;
+                    }
+                }
+                if (response == null) {
+                    response = ranged.getMediaEntryRange(url, authToken, position,
+                            part.end - 1, download.validator);
+                }
+                synchronized (download) {
+                    if (download.failure != null) {
+                        break;
+                    }
+                    // closed by Download.fail if another part fails meanwhile.
+                    part.response = response;
+                }
+                if (!response.isPartial()
+                        || response.getFirstBytePosition() != position
+                        || response.getTotalLength() != download.totalLength) {
+                    throw new EntityChangedException();
+                }
+                long responseEnd = response.getLastBytePosition() < 0
+                        ? part.end : response.getLastBytePosition() + 1;
+                long end = Math.min(part.end, responseEnd);
+                ReadableByteChannel source = Channels.newChannel(response.getStream());
+                boolean going = true;
+                while (going && position < end) {
+                    long n = channel.transferFrom(source, position,
+                            Math.min(TRANSFER_CHUNK_SIZE, end - position));
+                    if (n <= 0) {
+                        throw new IOException("Connection closed at byte " + position
+                                + " of " + url);
+                    }
+                    position += n;
+                    going = advance(channel, stateFile, download, part, n, listener);
+                }
+                close(download, part, response);
+                response = null;
+            }
+        } finally {
+            if (response != null) {
+                close(download, part, response);
+            }
+        }
+    }
+
+    /** Closes the response a part was reading. */
+    private static void close(Download download, Part part, RangeResponse response)
+            throws IOException {
+        synchronized (download) {
+            part.response = null;
+        }
+        response.close();
+    }
+
+    /**
+     * Records n more bytes of a part as written.
+     * @return false if another part has failed and this one should stop.
+     */
+    private boolean advance(FileChannel channel, File stateFile, Download download, Part part,
+            long n, ProgressListener listener) throws IOException {
+        long done;
+        boolean checkpoint;
+        boolean going;
+        synchronized (download) {
+            part.done += n;
+            download.sinceCheckpoint += n;
+            checkpoint = download.sinceCheckpoint >= CHECKPOINT_INTERVAL;
+            done = download.getBytesDone();
+            going = download.failure == null;
+        }
+        if (checkpoint) {
+            checkpoint(channel, stateFile, download);
+        }
+        if (listener != null) {
+            listener.onProgress(done, download.totalLength);
+        }
+        return going;
+    }
+
+    /**
+     * Persists the download's progress.  The written bytes are forced to disk
+     * first, so the state file never claims bytes that could be lost.
+     */
+    private void checkpoint(FileChannel channel, File stateFile, Download download)
+            throws IOException {
+        synchronized (download) {
+            channel.force(false);
+            writeState(stateFile, download);
+            download.sinceCheckpoint = 0;
+        }
+    }
+
+    /**
+     * Copies a whole stream into the channel with
+     * {@link FileChannel#transferFrom}.
+     */
+    private static long copy(InputStream is, FileChannel channel, long position, long max,
+            long totalLength, ProgressListener listener) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(is);
+        long transferred = 0;
+        long n;
+        while (transferred < max && (n = channel.transferFrom(source, position + transferred,
+                Math.min(TRANSFER_CHUNK_SIZE, max - transferred))) > 0) {
+            transferred += n;
+            if (listener != null) {
+                listener.onProgress(transferred, totalLength);
+            }
+        }
+        channel.force(false);
+        return transferred;
+    }
+
+    /** Writes the state file under a temporary name and renames it into place. */
+    private static void writeState(File stateFile, Download download) throws IOException {
+        File temp = new File(stateFile.getPath() + TEMP_SUFFIX);
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(STATE_MAGIC);
+            out.writeUTF(download.validator);
+            out.writeLong(download.totalLength);
+            out.writeInt(download.parts.length);
+            for (int i = 0; i < download.parts.length; i++) {
+                Part part = download.parts[i];
+                out.writeLong(part.start);
+                out.writeLong(part.end);
+                out.writeLong(part.done);
+            }
+        } finally {
+            out.close();
+        }
+        stateFile.delete();
+        if (!temp.renameTo(stateFile)) {
+            temp.delete();
+            throw new IOException("Unable to rename " + temp + " to " + stateFile);
+        }
+    }
+
+    private static void closeQuietly(InputStream is) {
+        if (is != null) {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Reads a state file, or returns null if there is none or it is not
+     * valid.
+     */
+    private static Download readState(File stateFile) {
+        if (!stateFile.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)));
+            if (in.readInt() != STATE_MAGIC) {
+                return null;
+            }
+            String validator = in.readUTF();
+            long totalLength = in.readLong();
+            int count = in.readInt();
+            if (totalLength < 0 || count < 1 || count > totalLength + 1) {
+                return null;
+            }
+            Part[] parts = new Part[count];
+            for (int i = 0; i < count; i++) {
+                long start = in.readLong();
+                long end = in.readLong();
+                long done = in.readLong();
+                if (start > end || done < start || done > end || end > totalLength) {
+                    return null;
+                }
+                parts[i] = new Part(start, end, done);
+            }
+            return new Download(validator, totalLength, parts);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.parser.ParseException;
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * {@link GDataClient} that records the latency, errors and bytes transferred
+ * of each request in {@link GDataMetrics}.
+ *
+ * Each request's time is split into the time until the delegate returns the
+ * response stream (time to first byte, which includes connecting) and the
+ * time until that stream is closed or fully read (body).  DNS lookup and
+ * connect times are not visible through {@link GDataClient} and are counted
+ * in time to first byte.
+ *
+ * Place this decorator below a {@link RetryingGDataClient} to record every
+ * attempt, or above it to record each request once.
+ *
+ * Instances of this class are thread safe.
+ */
+public class MetricsGDataClient extends DelegatingGDataClient {
+
+    /** Counts the bytes read and records the body time when done. */
+    private static class ResponseStream extends FilterInputStream {
+        private final GDataMetrics.RequestSeries series;
+        private final long startNanos;
+        private final long firstByteNanos;
+        private boolean done = false;
+
+        ResponseStream(InputStream in, GDataMetrics.RequestSeries series, long startNanos,
+                long firstByteNanos) {
+            super(in);
+            this.series = series;
+            this.startNanos = startNanos;
+            this.firstByteNanos = firstByteNanos;
+        }
+
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                series.bytesIn.incrementAndGet();
+            } else {
+                finish();
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                series.bytesIn.addAndGet(n);
+            } else if (n < 0) {
+                finish();
+            }
+            return n;
+        }
+
+        public void close() throws IOException {
+            finish();
+            in.close();
+        }
+
+        private void finish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            long now = System.nanoTime();
+            series.body.record(now - firstByteNanos);
+            series.total.record(now - startNanos);
+        }
+    }
+
+    /** Counts the bytes written to an OutputStream. */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private final GDataMetrics.RequestSeries series;
+
+        CountingOutputStream(OutputStream out, GDataMetrics.RequestSeries series) {
+            super(out);
+            this.series = series;
+        }
+
+        public void write(int b) throws IOException {
+            out.write(b);
+            series.bytesOut.incrementAndGet();
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            series.bytesOut.addAndGet(len);
+        }
+    }
+
+    /** Counts the bytes read from a request body. */
+    private static class CountingInputStream extends FilterInputStream {
+        private final GDataMetrics.RequestSeries series;
+
+        CountingInputStream(InputStream in, GDataMetrics.RequestSeries series) {
+            super(in);
+            this.series = series;
+        }
+
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                series.bytesOut.incrementAndGet();
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                series.bytesOut.addAndGet(n);
+            }
+            return n;
+        }
+    }
+
+    /** Counts the bytes a serializer writes. */
+    private static class CountingSerializer implements GDataSerializer {
+        private final GDataSerializer serializer;
+        private final GDataMetrics.RequestSeries series;
+
+        CountingSerializer(GDataSerializer serializer, GDataMetrics.RequestSeries series) {
+            this.serializer = serializer;
+            this.series = series;
+        }
+
+        public String getContentType() {
+            return serializer.getContentType();
+        }
+
+        public void serialize(OutputStream out, int format) throws IOException, ParseException {
+            serializer.serialize(new CountingOutputStream(out, series), format);
+        }
+    }
+
+    private final GDataMetrics.RequestSeries getFeed;
+    private final GDataMetrics.RequestSeries getMedia;
+    private final GDataMetrics.RequestSeries create;
+    private final GDataMetrics.RequestSeries update;
+    private final GDataMetrics.RequestSeries patch;
+    private final GDataMetrics.RequestSeries delete;
+    private final GDataMetrics.RequestSeries updateMedia;
+
+    /**
+     * Creates a new MetricsGDataClient.
+     * @param delegate The GDataClient that should be used for each request.
+     * @param metrics The metrics requests should be recorded in.
+     * @param service The name of the service requests are made to, as returned
+     * by {@link GDataServiceClient#getServiceName()}.
+     */
+    public MetricsGDataClient(GDataClient delegate, GDataMetrics metrics, String service) {
+        super(delegate);
+        getFeed = metrics.getRequestSeries(service, GDataMetrics.OP_GET_FEED);
+        getMedia = metrics.getRequestSeries(service, GDataMetrics.OP_GET_MEDIA);
+        create = metrics.getRequestSeries(service, GDataMetrics.OP_CREATE);
+        update = metrics.getRequestSeries(service, GDataMetrics.OP_UPDATE);
+        patch = metrics.getRequestSeries(service, GDataMetrics.OP_PATCH);
+        delete = metrics.getRequestSeries(service, GDataMetrics.OP_DELETE);
+        updateMedia = metrics.getRequestSeries(service, GDataMetrics.OP_UPDATE_MEDIA);
+    }
+
+    public InputStream getFeedAsStream(String feedUrl, String authToken)
+            throws HttpException, IOException {
+        long start = begin(getFeed);
+        try {
+            return respond(getDelegate().getFeedAsStream(feedUrl, authToken), getFeed, start);
+        } catch (HttpException e) {
+            getFeed.errors.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            getFeed.errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public InputStream getMediaEntryAsStream(String mediaEntryUrl, String authToken)
+            throws HttpException, IOException {
+        long start = begin(getMedia);
+        try {
+            return respond(getDelegate().getMediaEntryAsStream(mediaEntryUrl, authToken),
+                    getMedia, start);
+        } catch (HttpException e) {
+            getMedia.errors.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            getMedia.errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public InputStream createEntry(String feedUrl, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        long start = begin(create);
+        try {
+            return respond(getDelegate().createEntry(feedUrl, authToken,
+                    new CountingSerializer(entry, create)), create, start);
+        } catch (HttpException e) {
+            create.errors.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            create.errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public InputStream updateEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        long start = begin(update);
+        try {
+            return respond(getDelegate().updateEntry(editUri, authToken,
+                    new CountingSerializer(entry, update)), update, start);
+        } catch (HttpException e) {
+            update.errors.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            update.errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public InputStream patchEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        long start = begin(patch);
+        try {
+            return respond(super.patchEntry(editUri, authToken,
+                    new CountingSerializer(entry, patch)), patch, start);
+        } catch (HttpException e) {
+            patch.errors.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            patch.errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public void deleteEntry(String editUri, String authToken)
+            throws HttpException, IOException {
+        long start = begin(delete);
+        try {
+            getDelegate().deleteEntry(editUri, authToken);
+            long elapsed = System.nanoTime() - start;
+            delete.firstByte.record(elapsed);
+            delete.total.record(elapsed);
+        } catch (HttpException e) {
+            delete.errors.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            delete.errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public InputStream updateMediaEntry(String editUri, String authToken,
+            InputStream mediaEntryInputStream, String contentType)
+            throws HttpException, IOException {
+        long start = begin(updateMedia);
+        try {
+            return respond(getDelegate().updateMediaEntry(editUri, authToken,
+                    new CountingInputStream(mediaEntryInputStream, updateMedia), contentType),
+                    updateMedia, start);
+        } catch (HttpException e) {
+            updateMedia.errors.incrementAndGet();
+            throw e;
+        } catch (IOException e) {
+            updateMedia.errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private static long begin(GDataMetrics.RequestSeries series) {
+        series.requests.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    private static InputStream respond(InputStream is, GDataMetrics.RequestSeries series,
+            long start) {
+        long firstByte = System.nanoTime();
+        series.firstByte.record(firstByte - start);
+        if (is == null) {
+            series.total.record(firstByte - start);
+            return null;
+        }
+        return new ResponseStream(is, series, start, firstByte);
+    }
+}
@@ -0,0 +1,135 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.data.Entry;
+import com.google.wireless.gdata.data.Feed;
+import com.google.wireless.gdata.parser.GDataParser;
+import com.google.wireless.gdata.parser.ParseException;
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link GDataParserFactory} whose parsers record, in {@link GDataMetrics},
+ * how many entries they parse, how long parsing each response takes, and
+ * how many responses fail to parse.
+ *
+ * Parse time only counts time spent inside the parser, not time the caller
+ * spends between entries.  Since the parser reads the response as it goes,
+ * it includes time spent waiting on the network for the rest of the body.
+ */
+public class MetricsGDataParserFactory implements GDataParserFactory {
+
+    /** Forwards to a parser and times each call. */
+    private static class MetricsGDataParser implements GDataParser {
+        private final GDataParser parser;
+        private final GDataMetrics.ParseSeries series;
+        private long elapsedNanos = 0;
+        private boolean failed = false;
+        private boolean closed = false;
+
+        MetricsGDataParser(GDataParser parser, GDataMetrics.ParseSeries series) {
+            this.parser = parser;
+            this.series = series;
+        }
+
+        public Feed init() throws ParseException {
+            long start = System.nanoTime();
+            try {
+                return parser.init();
+            } catch (ParseException e) {
+                fail();
+                throw e;
+            } finally {
+                elapsedNanos += System.nanoTime() - start;
+            }
+        }
+
+        public Entry parseStandaloneEntry() throws ParseException, IOException {
+            long start = System.nanoTime();
+            try {
+                Entry entry = parser.parseStandaloneEntry();
+                series.entries.incrementAndGet();
+                return entry;
+            } catch (ParseException e) {
+                fail();
+                throw e;
+            } finally {
+                elapsedNanos += System.nanoTime() - start;
+            }
+        }
+
+        public boolean hasMoreData() {
+            return parser.hasMoreData();
+        }
+
+        public Entry readNextEntry(Entry entry) throws ParseException, IOException {
+            long start = System.nanoTime();
+            try {
+                Entry result = parser.readNextEntry(entry);
+                series.entries.incrementAndGet();
+                return result;
+            } catch (ParseException e) {
+                fail();
+                throw e;
+            } finally {
+                elapsedNanos += System.nanoTime() - start;
+            }
+        }
+
+        public void close() {
+            if (!closed) {
+                closed = true;
+                series.duration.record(elapsedNanos);
+            }
+            parser.close();
+        }
+
+        private void fail() {
+            // count each response once, however many calls fail.
+            if (!failed) {
+                failed = true;
+                series.errors.incrementAndGet();
+            }
+        }
+    }
+
+    private final GDataParserFactory factory;
+    private final GDataMetrics.ParseSeries series;
+
+    /**
+     * Creates a new MetricsGDataParserFactory.
+     * @param factory The factory that creates the actual parsers.
+     * @param metrics The metrics parsing should be recorded in.
+     * @param service The name of the service whose responses are parsed.
+     */
+    public MetricsGDataParserFactory(GDataParserFactory factory, GDataMetrics metrics,
+            String service) {
+        this.factory = factory;
+        this.series = metrics.getParseSeries(service);
+    }
+
+    public GDataParser createParser(Class entryClass, InputStream is) throws ParseException {
+        try {
+            return new MetricsGDataParser(factory.createParser(entryClass, is), series);
+        } catch (ParseException e) {
+            series.errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public GDataParser createParser(InputStream is) throws ParseException {
+        try {
+            return new MetricsGDataParser(factory.createParser(is), series);
+        } catch (ParseException e) {
+            series.errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public GDataSerializer createSerializer(Entry entry) {
+        return factory.createSerializer(entry);
+    }
+}
@@ -0,0 +1,53 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.IOException;
+
+/**
+ * Receives the values collected by {@link GDataMetrics} when they are
+ * exported.  Values arrive grouped into families: each family is announced
+ * with {@link #beginFamily}, followed by one value or histogram per service
+ * and operation.
+ *
+ * @see PrometheusTextSink
+ */
+public interface MetricsSink {
+    /** Family type for monotonically increasing counts. */
+    public static final String TYPE_COUNTER = "counter";
+
+    /** Family type for {@link LatencyHistogram}s. */
+    public static final String TYPE_HISTOGRAM = "histogram";
+
+    /**
+     * Starts a family of values.
+     * @param name The name of the family, e.g. "gdata_requests_total".
+     * @param type {@link #TYPE_COUNTER} or {@link #TYPE_HISTOGRAM}.
+     * @param help A short description of the family.
+     */
+    void beginFamily(String name, String type, String help) throws IOException;
+
+    /**
+     * Writes one counter value of the current family.
+     * @param service The service the value is for.
+     * @param operation The operation the value is for, or null if the value
+     * covers every operation of the service.
+     * @param value The value.
+     */
+    void writeCounter(String service, String operation, long value) throws IOException;
+
+    /**
+     * Writes one histogram of the current family.
+     * @param service The service the histogram is for.
+     * @param operation The operation the histogram is for, or null if it
+     * covers every operation of the service.
+     * @param histogram The histogram.
+     */
+    void writeHistogram(String service, String operation, LatencyHistogram histogram)
+            throws IOException;
+
+    /**
+     * Called once every family has been written.
+     */
+    void finish() throws IOException;
+}
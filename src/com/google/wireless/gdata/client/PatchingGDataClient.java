@@ -0,0 +1,37 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link GDataClient} that can also send partial updates of entries, as
+ * HTTP PATCH requests.  Platforms whose HTTP stack cannot send PATCH may
+ * send a POST with an "X-HTTP-Method-Override: PATCH" header instead.
+ */
+public interface PatchingGDataClient extends GDataClient {
+
+    /**
+     * Connects to a GData server (specified by the editUri) and partially
+     * updates an existing entry.  The entry is serialized with
+     * {@link GDataSerializer#FORMAT_PARTIAL_UPDATE}.  The response from the
+     * server is returned as an {@link InputStream}.  The caller is
+     * responsible for calling {@link InputStream#close()} on the returned
+     * {@link InputStream}.
+     *
+     * @param editUri The edit uri that should be used for updating the entry.
+     * @param authToken The authentication token that should be used when
+     * updating the entry.
+     * @param entry The changes to the entry.
+     * @throws IOException Thrown if an io error occurs while communicating with
+     * the service.
+     * @throws HttpException if the service returns an error response.
+     */
+    InputStream patchEntry(String editUri,
+                           String authToken,
+                           GDataSerializer entry)
+        throws HttpException, IOException;
+}
@@ -0,0 +1,72 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link FilterInputStream} that reports how many bytes have been read to a
+ * {@link ProgressListener}.  Reads go straight through to the wrapped stream,
+ * so no bytes are copied.  mark/reset are passed through and rewind the
+ * reported count as well, so replayed uploads report correct progress.
+ */
+class ProgressInputStream extends FilterInputStream {
+    private final ProgressListener listener;
+    private final long totalBytes;
+    private long count = 0;
+    private long markedCount = 0;
+
+    /**
+     * Creates a new ProgressInputStream.
+     * @param in The stream that should be read.
+     * @param listener The listener progress should be reported to.
+     * @param totalBytes The number of bytes in the stream, or -1 if unknown.
+     */
+    ProgressInputStream(InputStream in, ProgressListener listener, long totalBytes) {
+        super(in);
+        this.listener = listener;
+        this.totalBytes = totalBytes;
+    }
+
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            advance(1);
+        }
+        return b;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            advance(n);
+        }
+        return n;
+    }
+
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        if (skipped > 0) {
+            advance(skipped);
+        }
+        return skipped;
+    }
+
+    public void mark(int readlimit) {
+        in.mark(readlimit);
+        markedCount = count;
+    }
+
+    public void reset() throws IOException {
+        in.reset();
+        count = markedCount;
+        listener.onProgress(count, totalBytes);
+    }
+
+    private void advance(long n) {
+        count += n;
+        listener.onProgress(count, totalBytes);
+    }
+}
@@ -0,0 +1,20 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+/**
+ * Receives progress updates while media is being uploaded or downloaded.
+ * Updates are delivered on the thread doing the transfer, so implementations
+ * should return quickly.
+ */
+public interface ProgressListener {
+
+    /**
+     * Called after each chunk of a transfer.
+     *
+     * @param bytesTransferred The number of bytes transferred so far.
+     * @param totalBytes The total number of bytes that will be transferred,
+     * or -1 if unknown.
+     */
+    void onProgress(long bytesTransferred, long totalBytes);
+}
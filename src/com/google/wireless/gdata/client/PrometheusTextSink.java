@@ -0,0 +1,89 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@link MetricsSink} that writes the Prometheus text exposition format.
+ * Durations are written in seconds, with service and operation as labels.
+ */
+public class PrometheusTextSink implements MetricsSink {
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+
+    private final Writer writer;
+    private String family;
+
+    /**
+     * Creates a new PrometheusTextSink.
+     * @param writer The writer the exposition text should be written to.  It
+     * is flushed, but not closed, by {@link #finish()}.
+     */
+    public PrometheusTextSink(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void beginFamily(String name, String type, String help) throws IOException {
+        family = name;
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    public void writeCounter(String service, String operation, long value) throws IOException {
+        writeSample(family, service, operation, null, Long.toString(value));
+    }
+
+    public void writeHistogram(String service, String operation, LatencyHistogram histogram)
+            throws IOException {
+        long cumulative = 0;
+        int bounds = LatencyHistogram.getBucketBoundCount();
+        for (int i = 0; i < bounds; i++) {
+            cumulative += histogram.getBucketCount(i);
+            writeSample(family + "_bucket", service, operation,
+                    Double.toString(LatencyHistogram.getBucketBoundMillis(i) / 1000.0),
+                    Long.toString(cumulative));
+        }
+        cumulative += histogram.getBucketCount(bounds);
+        writeSample(family + "_bucket", service, operation, "+Inf", Long.toString(cumulative));
+        writeSample(family + "_sum", service, operation, null,
+                Double.toString(histogram.getSumNanos() / NANOS_PER_SECOND));
+        writeSample(family + "_count", service, operation, null,
+                Long.toString(histogram.getCount()));
+    }
+
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+    private void writeSample(String name, String service, String operation, String le,
+            String value) throws IOException {
+        StringBuffer sb = new StringBuffer(name);
+        sb.append("{service=\"");
+        appendEscaped(sb, service);
+        sb.append('"');
+        if (operation != null) {
+            sb.append(",operation=\"");
+            appendEscaped(sb, operation);
+            sb.append('"');
+        }
+        if (le != null) {
+            sb.append(",le=\"").append(le).append('"');
+        }
+        sb.append("} ").append(value).append('\n');
+        writer.write(sb.toString());
+    }
+
+    private static void appendEscaped(StringBuffer sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+}
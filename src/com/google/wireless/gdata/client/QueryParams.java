@@ -62,6 +62,11 @@ public abstract class QueryParams {
      */
     public static final String MAX_RESULTS_PARAM = "max-results";
 
+    /**
+     * Param name constant for including deleted entries in the results.
+     */
+    public static final String SHOW_DELETED_PARAM = "showdeleted";
+
     private String entryId;
 
     /**
@@ -237,4 +242,18 @@ public abstract class QueryParams {
     public void setUpdatedMin(String updatedMin) {
         setParamValue(UPDATED_MIN_PARAM, updatedMin);
     }
+
+    /**
+     * @return the showDeleted
+     */
+    public String getShowDeleted() {
+        return getParamValue(SHOW_DELETED_PARAM);
+    }
+
+    /**
+     * @param showDeleted the showDeleted to set
+     */
+    public void setShowDeleted(String showDeleted) {
+        setParamValue(SHOW_DELETED_PARAM, showDeleted);
+    }
 }
@@ -0,0 +1,93 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The response to a ranged media request made through a
+ * {@link RangedGDataClient}.
+ */
+public class RangeResponse {
+    private final InputStream stream;
+    private final boolean partial;
+    private final long firstBytePosition;
+    private final long lastBytePosition;
+    private final long totalLength;
+    private final String validator;
+
+    /**
+     * Creates a new RangeResponse.
+     * @param stream The response body.
+     * @param partial Whether the server returned only the requested range
+     * (206) rather than the whole entity (200).
+     * @param firstBytePosition The position of the first byte of the body
+     * within the entity.  0 if the response is not partial.
+     * @param lastBytePosition The position of the last byte of the body within
+     * the entity, or -1 if unknown.
+     * @param totalLength The length of the whole entity, or -1 if unknown.
+     * @param validator The entity's ETag, or its Last-Modified date if it has
+     * no ETag, or null if it has neither.
+     */
+    public RangeResponse(InputStream stream, boolean partial, long firstBytePosition,
+            long lastBytePosition, long totalLength, String validator) {
+        this.stream = stream;
+        this.partial = partial;
+        this.firstBytePosition = firstBytePosition;
+        this.lastBytePosition = lastBytePosition;
+        this.totalLength = totalLength;
+        this.validator = validator;
+    }
+
+    /**
+     * @return the response body
+     */
+    public InputStream getStream() {
+        return stream;
+    }
+
+    /**
+     * @return whether the body is only the requested range of the entity
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * @return the position of the first byte of the body within the entity
+     */
+    public long getFirstBytePosition() {
+        return firstBytePosition;
+    }
+
+    /**
+     * @return the position of the last byte of the body within the entity, or
+     * -1 if unknown
+     */
+    public long getLastBytePosition() {
+        return lastBytePosition;
+    }
+
+    /**
+     * @return the length of the whole entity, or -1 if unknown
+     */
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * @return the entity validator to pass as If-Range on later requests, or
+     * null if the entity has none
+     */
+    public String getValidator() {
+        return validator;
+    }
+
+    /**
+     * Closes the response body.
+     */
+    public void close() throws IOException {
+        stream.close();
+    }
+}
@@ -0,0 +1,38 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.IOException;
+
+/**
+ * Optional extension of {@link GDataClient} for transports that can fetch
+ * byte ranges of media entries.  Used by {@link MediaDownloader} to resume
+ * interrupted downloads and to fetch large media over several connections.
+ */
+public interface RangedGDataClient extends GDataClient {
+
+    /**
+     * Fetches a byte range of a media entry by sending a Range header and, if
+     * a validator is provided, an If-Range header.  The caller is responsible
+     * for closing the returned {@link RangeResponse}.
+     *
+     * If the entity no longer matches ifRange, or the server does not support
+     * ranges, the whole entity is returned and
+     * {@link RangeResponse#isPartial()} is false.
+     *
+     * @param mediaEntryUrl The URL of the media entry that should be fetched.
+     * @param authToken The authentication token for this user.
+     * @param firstBytePosition The position of the first byte to fetch.
+     * @param lastBytePosition The position of the last byte to fetch
+     * (inclusive), or -1 to fetch to the end of the entity.
+     * @param ifRange The validator from an earlier {@link RangeResponse}, or
+     * null.
+     * @return The server's response.
+     * @throws IOException Thrown if an io error occurs while communicating with
+     * the service.
+     * @throws HttpException if the service returns an error response.
+     */
+    RangeResponse getMediaEntryRange(String mediaEntryUrl, String authToken,
+            long firstBytePosition, long lastBytePosition, String ifRange)
+            throws HttpException, IOException;
+}
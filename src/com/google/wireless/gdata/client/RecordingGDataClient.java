@@ -0,0 +1,274 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * {@link GDataClient} that records every response it receives from its
+ * delegate into an archive that {@link ReplayGDataClient} can serve later,
+ * for repeatable, offline benchmarks on real payloads.
+ *
+ * The archive is a directory holding a data file, with the response bodies
+ * back to back, and an index file, with one record per response: the
+ * method and URL, the status code and Retry-After of error responses, how
+ * long the response took, and where its body is in the data file.  Ranged
+ * media requests also record the range requested and the range returned.
+ * Records are appended as each response completes, so an archive is usable
+ * even if the recording process dies; an incomplete last record is ignored
+ * on replay.
+ *
+ * Each response body is read completely before it is returned, so the
+ * recorded timing covers the whole body.  Authentication tokens are never
+ * recorded.  Response headers other than Retry-After are not visible
+ * through {@link GDataClient} and are not recorded.
+ *
+ * Instances of this class are thread safe.
+ */
+public class RecordingGDataClient extends DelegatingGDataClient {
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    /* Guarded by this. */
+    private final RandomAccessFile data;
+    private final DataOutputStream index;
+    private boolean closed = false;
+
+    /**
+     * Creates a new RecordingGDataClient, replacing any archive already in
+     * the directory.
+     * @param delegate The GDataClient that makes the actual requests.
+     * @param directory The directory the archive should be written to.  It is
+     * created if it does not exist.
+     * @throws IOException Thrown if the archive cannot be created.
+     */
+    public RecordingGDataClient(GDataClient delegate, File directory) throws IOException {
+        super(delegate);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create archive directory " + directory);
+        }
+        File dataFile = new File(directory, ReplayGDataClient.DATA_FILE);
+        dataFile.delete();
+        data = new RandomAccessFile(dataFile, "rw");
+        index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                new File(directory, ReplayGDataClient.INDEX_FILE))));
+        index.writeInt(ReplayGDataClient.MAGIC);
+        index.flush();
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                try {
+                    index.close();
+                } catch (IOException ioe) {
+                    // ignore
+                }
+                try {
+                    data.close();
+                } catch (IOException ioe) {
+                    // ignore
+                }
+            }
+        }
+        super.close();
+    }
+
+    public InputStream getFeedAsStream(String feedUrl, String authToken)
+            throws HttpException, IOException {
+        long start = System.nanoTime();
+        InputStream is;
+        try {
+            is = getDelegate().getFeedAsStream(feedUrl, authToken);
+        } catch (HttpException e) {
+            throw recordError(ReplayGDataClient.METHOD_GET, feedUrl, start, e);
+        }
+        return record(ReplayGDataClient.METHOD_GET, feedUrl, start, is);
+    }
+
+    public InputStream getMediaEntryAsStream(String mediaEntryUrl, String authToken)
+            throws HttpException, IOException {
+        long start = System.nanoTime();
+        InputStream is;
+        try {
+            is = getDelegate().getMediaEntryAsStream(mediaEntryUrl, authToken);
+        } catch (HttpException e) {
+            throw recordError(ReplayGDataClient.METHOD_GET, mediaEntryUrl, start, e);
+        }
+        return record(ReplayGDataClient.METHOD_GET, mediaEntryUrl, start, is);
+    }
+
+    public RangeResponse getMediaEntryRange(String mediaEntryUrl, String authToken,
+            long firstBytePosition, long lastBytePosition, String ifRange)
+            throws HttpException, IOException {
+        String key = ReplayGDataClient.rangeKey(mediaEntryUrl, firstBytePosition,
+                lastBytePosition, ifRange);
+        long start = System.nanoTime();
+        RangeResponse response;
+        try {
+            response = super.getMediaEntryRange(mediaEntryUrl, authToken, firstBytePosition,
+                    lastBytePosition, ifRange);
+        } catch (HttpException e) {
+            throw recordError(ReplayGDataClient.METHOD_RANGE, key, start, e);
+        }
+        long firstByte = System.nanoTime() - start;
+        byte[] body = readFully(response.getStream());
+        long total = System.nanoTime() - start;
+        append(ReplayGDataClient.METHOD_RANGE, key, 0 /* status */, -1 /* retryAfterSeconds */,
+                firstByte, total, body, response);
+        return new RangeResponse(new ByteArrayInputStream(body), response.isPartial(),
+                response.getFirstBytePosition(), response.getLastBytePosition(),
+                response.getTotalLength(), response.getValidator());
+    }
+
+    public InputStream createEntry(String feedUrl, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        long start = System.nanoTime();
+        InputStream is;
+        try {
+            is = getDelegate().createEntry(feedUrl, authToken, entry);
+        } catch (HttpException e) {
+            throw recordError(ReplayGDataClient.METHOD_POST, feedUrl, start, e);
+        }
+        return record(ReplayGDataClient.METHOD_POST, feedUrl, start, is);
+    }
+
+    public InputStream updateEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        long start = System.nanoTime();
+        InputStream is;
+        try {
+            is = getDelegate().updateEntry(editUri, authToken, entry);
+        } catch (HttpException e) {
+            throw recordError(ReplayGDataClient.METHOD_PUT, editUri, start, e);
+        }
+        return record(ReplayGDataClient.METHOD_PUT, editUri, start, is);
+    }
+
+    public InputStream patchEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        long start = System.nanoTime();
+        InputStream is;
+        try {
+            is = super.patchEntry(editUri, authToken, entry);
+        } catch (HttpException e) {
+            throw recordError(ReplayGDataClient.METHOD_PATCH, editUri, start, e);
+        }
+        return record(ReplayGDataClient.METHOD_PATCH, editUri, start, is);
+    }
+
+    public void deleteEntry(String editUri, String authToken)
+            throws HttpException, IOException {
+        long start = System.nanoTime();
+        try {
+            getDelegate().deleteEntry(editUri, authToken);
+        } catch (HttpException e) {
+            throw recordError(ReplayGDataClient.METHOD_DELETE, editUri, start, e);
+        }
+        record(ReplayGDataClient.METHOD_DELETE, editUri, start, null);
+    }
+
+    public InputStream updateMediaEntry(String editUri, String authToken,
+            InputStream mediaEntryInputStream, String contentType)
+            throws HttpException, IOException {
+        long start = System.nanoTime();
+        InputStream is;
+        try {
+            is = getDelegate().updateMediaEntry(editUri, authToken, mediaEntryInputStream,
+                    contentType);
+        } catch (HttpException e) {
+            throw recordError(ReplayGDataClient.METHOD_PUT, editUri, start, e);
+        }
+        return record(ReplayGDataClient.METHOD_PUT, editUri, start, is);
+    }
+
+    /**
+     * Reads the response, appends it to the archive and returns a stream over
+     * the recorded copy.
+     */
+    private InputStream record(String method, String url, long start, InputStream is)
+            throws IOException {
+        long firstByte = System.nanoTime() - start;
+        byte[] body = readFully(is);
+        long total = System.nanoTime() - start;
+        append(method, url, 0 /* status */, -1 /* retryAfterSeconds */, firstByte, total, body,
+                null /* range */);
+        return is == null ? null : new ByteArrayInputStream(body);
+    }
+
+    /**
+     * Appends an error response to the archive and returns an equivalent
+     * exception, since the original response stream has been consumed.
+     */
+    private HttpException recordError(String method, String url, long start, HttpException e)
+            throws IOException {
+        long firstByte = System.nanoTime() - start;
+        InputStream is = e.getResponseStream();
+        byte[] body = readFully(is);
+        long total = System.nanoTime() - start;
+        append(method, url, e.getStatusCode(), e.getRetryAfterSeconds(), firstByte, total,
+                body, null /* range */);
+        return new HttpException(e.getMessage(), e.getStatusCode(),
+                is == null ? null : new ByteArrayInputStream(body), e.getRetryAfterSeconds());
+    }
+
+    private synchronized void append(String method, String url, int status,
+            long retryAfterSeconds, long firstByteNanos, long totalNanos, byte[] body,
+            RangeResponse range) throws IOException {
+        if (closed) {
+            throw new IOException("Archive is closed");
+        }
+        long offset = data.length();
+        data.seek(offset);
+        data.write(body);
+        // only index bodies that are completely written.
+        index.writeUTF(method);
+        index.writeUTF(url);
+        index.writeInt(status);
+        index.writeLong(retryAfterSeconds);
+        index.writeLong(firstByteNanos);
+        index.writeLong(totalNanos);
+        index.writeLong(offset);
+        index.writeInt(body.length);
+        if (ReplayGDataClient.METHOD_RANGE.equals(method)) {
+            ReplayGDataClient.writeRange(index, range);
+        }
+        index.flush();
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        if (is == null) {
+            return new byte[0];
+        }
+        try {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int length = 0;
+            while (true) {
+                if (length == buffer.length) {
+                    byte[] larger = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, larger, 0, length);
+                    buffer = larger;
+                }
+                int n = is.read(buffer, length, buffer.length - length);
+                if (n < 0) {
+                    break;
+                }
+                length += n;
+            }
+            byte[] body = new byte[length];
+            System.arraycopy(buffer, 0, body, 0, length);
+            return body;
+        } finally {
+            is.close();
+        }
+    }
+}
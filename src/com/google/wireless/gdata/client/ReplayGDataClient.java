@@ -0,0 +1,445 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.parser.ParseException;
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * {@link GDataClient} that serves the responses recorded by a
+ * {@link RecordingGDataClient}, without any network access.  Use it to
+ * benchmark the parsers and service clients repeatably on real payloads.
+ *
+ * Responses are looked up by method and URL, and ranged media requests also
+ * by the requested range and If-Range validator.  When the same request was
+ * recorded more than once, the recorded responses are served in order and
+ * then start over from the first.  A request that was never recorded fails
+ * with an {@link IOException}.
+ *
+ * The data file is memory-mapped once, and each response is a
+ * {@link ByteBufferInputStream} over its region, so replaying a response
+ * does not copy the body onto the heap.  By default responses are served
+ * immediately; {@link #setTimingScale} replays the recorded latency and
+ * transfer time, scaled by a factor.  Paced responses are not
+ * {@link ByteBufferInputStream}s.
+ *
+ * Writes are not checked against the recording: the entry passed to
+ * createEntry or updateEntry is serialized and discarded, so that write
+ * benchmarks include serialization, and the recorded response is returned.
+ *
+ * Instances of this class are thread safe.
+ */
+public class ReplayGDataClient implements PatchingGDataClient, RangedGDataClient {
+    static final int MAGIC = 0x47445231; // "GDR1"
+    static final String INDEX_FILE = "index";
+    static final String DATA_FILE = "data";
+
+    static final String METHOD_GET = "GET";
+    static final String METHOD_POST = "POST";
+    static final String METHOD_PUT = "PUT";
+    static final String METHOD_PATCH = "PATCH";
+    static final String METHOD_DELETE = "DELETE";
+    /* A GET with a Range header, recorded with the range that was returned. */
+    static final String METHOD_RANGE = "RANGE";
+
+    /** A single recorded response. */
+    private static class Record {
+        final int status;
+        final long retryAfterSeconds;
+        final long firstByteNanos;
+        final long totalNanos;
+        final long offset;
+        final int length;
+        /* For ranged requests that succeeded, the response without its body. */
+        RangeResponse range = null;
+
+        Record(int status, long retryAfterSeconds, long firstByteNanos, long totalNanos,
+                long offset, int length) {
+            this.status = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+            this.firstByteNanos = firstByteNanos;
+            this.totalNanos = totalNanos;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /** The recorded responses to one request, and the next one to serve. */
+    private static class Recording {
+        final Vector records = new Vector();
+        int next = 0;
+    }
+
+    /** Spreads reads of a response over its recorded transfer time. */
+    private static class PacedInputStream extends FilterInputStream {
+        private final long length;
+        private final long durationNanos;
+        private final long startNanos = System.nanoTime();
+        private long count = 0;
+
+        PacedInputStream(InputStream in, long length, long durationNanos) {
+            super(in);
+            this.length = length;
+            this.durationNanos = durationNanos;
+        }
+
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                pace(1);
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                pace(n);
+            }
+            return n;
+        }
+
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            if (skipped > 0) {
+                pace(skipped);
+            }
+            return skipped;
+        }
+
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void pace(long n) throws InterruptedIOException {
+            count += n;
+            long due = startNanos + (long) ((double) durationNanos * count / length);
+            sleepNanos(due - System.nanoTime());
+        }
+    }
+
+    /** Discards everything written to it. */
+    private static class NullOutputStream extends OutputStream {
+        public void write(int b) {
+        }
+
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    private final File dataFile;
+    /* The whole data file, or null if it is too large to map at once. */
+    private final MappedByteBuffer data;
+    /* Maps method + ' ' + url to Recordings. */
+    private final Hashtable recordings = new Hashtable();
+    private final int recordCount;
+
+    /* Guarded by this. */
+    private double timingScale = 0;
+
+    /**
+     * Creates a new ReplayGDataClient over an archive written by
+     * {@link RecordingGDataClient}.
+     * @param directory The directory holding the archive.
+     * @throws IOException Thrown if the archive cannot be read.
+     */
+    public ReplayGDataClient(File directory) throws IOException {
+        dataFile = new File(directory, DATA_FILE);
+        long dataLength = dataFile.length();
+        recordCount = readIndex(new File(directory, INDEX_FILE), dataLength);
+        data = dataLength <= Integer.MAX_VALUE ? map(dataFile, 0, dataLength) : null;
+    }
+
+    /**
+     * Sets how the recorded timing is replayed.  0, the default, serves every
+     * response immediately; 1 replays the recorded time to first byte and
+     * transfer time; other values scale them, e.g. 0.5 for twice as fast.
+     * @param scale The factor the recorded times are multiplied by.
+     */
+    public synchronized void setTimingScale(double scale) {
+        if (scale < 0) {
+            throw new IllegalArgumentException("scale must not be negative");
+        }
+        timingScale = scale;
+    }
+
+    /**
+     * @return the number of responses in the archive
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Starts serving every recorded request from its first response again.
+     */
+    public synchronized void rewind() {
+        Enumeration e = recordings.elements();
+        while (e.hasMoreElements()) {
+            ((Recording) e.nextElement()).next = 0;
+        }
+    }
+
+    public void close() {
+    }
+
+    public String encodeUri(String uri) {
+        return UriEncoder.encode(uri);
+    }
+
+    public QueryParams createQueryParams() {
+        return new HttpQueryParams();
+    }
+
+    public InputStream getFeedAsStream(String feedUrl, String authToken)
+            throws HttpException, IOException {
+        return replay(METHOD_GET, feedUrl);
+    }
+
+    public InputStream getMediaEntryAsStream(String mediaEntryUrl, String authToken)
+            throws HttpException, IOException {
+        return replay(METHOD_GET, mediaEntryUrl);
+    }
+
+    public RangeResponse getMediaEntryRange(String mediaEntryUrl, String authToken,
+            long firstBytePosition, long lastBytePosition, String ifRange)
+            throws HttpException, IOException {
+        String key = rangeKey(mediaEntryUrl, firstBytePosition, lastBytePosition, ifRange);
+        Record record = next(METHOD_RANGE, key);
+        InputStream is = open(METHOD_RANGE, key, record);
+        RangeResponse range = record.range;
+        return new RangeResponse(is, range.isPartial(), range.getFirstBytePosition(),
+                range.getLastBytePosition(), range.getTotalLength(), range.getValidator());
+    }
+
+    public InputStream createEntry(String feedUrl, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        serialize(entry, GDataSerializer.FORMAT_CREATE);
+        return replay(METHOD_POST, feedUrl);
+    }
+
+    public InputStream updateEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        serialize(entry, GDataSerializer.FORMAT_UPDATE);
+        return replay(METHOD_PUT, editUri);
+    }
+
+    public InputStream patchEntry(String editUri, String authToken, GDataSerializer entry)
+            throws HttpException, IOException {
+        serialize(entry, GDataSerializer.FORMAT_PARTIAL_UPDATE);
+        return replay(METHOD_PATCH, editUri);
+    }
+
+    public void deleteEntry(String editUri, String authToken)
+            throws HttpException, IOException {
+        InputStream is = replay(METHOD_DELETE, editUri);
+        if (is != null) {
+            is.close();
+        }
+    }
+
+    public InputStream updateMediaEntry(String editUri, String authToken,
+            InputStream mediaEntryInputStream, String contentType)
+            throws HttpException, IOException {
+        byte[] buffer = new byte[8192];
+        while (mediaEntryInputStream.read(buffer) >= 0) {
+            // drain the upload.
+        }
+        return replay(METHOD_PUT, editUri);
+    }
+
+    /**
+     * Returns the URL under which a ranged request is recorded: the media URL
+     * followed by the requested range and If-Range validator.
+     */
+    static String rangeKey(String url, long firstBytePosition, long lastBytePosition,
+            String ifRange) {
+        StringBuffer key = new StringBuffer(url);
+        key.append(" bytes=").append(firstBytePosition).append('-');
+        if (lastBytePosition >= 0) {
+            key.append(lastBytePosition);
+        }
+        if (ifRange != null) {
+            key.append(" If-Range: ").append(ifRange);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the next recorded response to the request, after the recorded
+     * time to first byte, or throws the recorded error.
+     */
+    private InputStream replay(String method, String url) throws HttpException, IOException {
+        return open(method, url, next(method, url));
+    }
+
+    /** Returns the next recorded response to the request. */
+    private synchronized Record next(String method, String url) throws IOException {
+        Recording recording = (Recording) recordings.get(method + ' ' + url);
+        if (recording == null) {
+            throw new IOException("No recorded response for " + method + ' ' + url);
+        }
+        Record record = (Record) recording.records.elementAt(recording.next);
+        recording.next = (recording.next + 1) % recording.records.size();
+        return record;
+    }
+
+    /**
+     * Returns the body of a recorded response, after the recorded time to
+     * first byte, or throws the recorded error.
+     */
+    private InputStream open(String method, String url, Record record)
+            throws HttpException, IOException {
+        double scale;
+        synchronized (this) {
+            scale = timingScale;
+        }
+
+        InputStream is = new ByteBufferInputStream(getBody(record));
+        if (scale > 0) {
+            sleepNanos((long) (record.firstByteNanos * scale));
+            long transferNanos = (long) ((record.totalNanos - record.firstByteNanos) * scale);
+            if (record.length > 0 && transferNanos > 0) {
+                is = new PacedInputStream(is, record.length, transferNanos);
+            }
+        }
+        if (record.status != 0) {
+            throw new HttpException("Recorded " + record.status + " for " + method + ' ' + url,
+                    record.status, is, record.retryAfterSeconds);
+        }
+        return is;
+    }
+
+    private ByteBuffer getBody(Record record) throws IOException {
+        if (data == null) {
+            return map(dataFile, record.offset, record.length);
+        }
+        ByteBuffer body = data.duplicate();
+        body.position((int) record.offset);
+        body.limit((int) record.offset + record.length);
+        return body;
+    }
+
+    /**
+     * Reads the index into recordings, stopping at the first incomplete
+     * record or a record whose body lies beyond the end of the data file.
+     * @return The number of records read.
+     */
+    private int readIndex(File indexFile, long dataLength) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)));
+        int count = 0;
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a recorded archive: " + indexFile);
+            }
+            while (true) {
+                String method = in.readUTF();
+                String key = method + ' ' + in.readUTF();
+                Record record = new Record(in.readInt(), in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong(), in.readInt());
+                if (METHOD_RANGE.equals(method)) {
+                    RangeResponse range = readRange(in);
+                    if (record.status == 0) {
+                        record.range = range;
+                    }
+                }
+                if (record.length < 0 || record.offset + record.length > dataLength) {
+                    break;
+                }
+                Recording recording = (Recording) recordings.get(key);
+                if (recording == null) {
+                    recording = new Recording();
+                    recordings.put(key, recording);
+                }
+                recording.records.addElement(record);
+                ++count;
+            }
+        } catch (EOFException eof) {
+            // end of the index, or a record cut short by a crash while recording.
+        } finally {
+            in.close();
+        }
+        return count;
+    }
+
+    /**
+     * Writes the part of a ranged response that is not its body, or
+     * placeholders if the request failed.
+     */
+    static void writeRange(DataOutputStream out, RangeResponse range) throws IOException {
+        if (range == null) {
+            range = new RangeResponse(null /* stream */, false /* partial */, 0, -1, -1,
+                    null /* validator */);
+        }
+        out.writeBoolean(range.isPartial());
+        out.writeLong(range.getFirstBytePosition());
+        out.writeLong(range.getLastBytePosition());
+        out.writeLong(range.getTotalLength());
+        String validator = range.getValidator();
+        out.writeBoolean(validator != null);
+        if (validator != null) {
+            out.writeUTF(validator);
+        }
+    }
+
+    private static RangeResponse readRange(DataInputStream in) throws IOException {
+        boolean partial = in.readBoolean();
+        long firstBytePosition = in.readLong();
+        long lastBytePosition = in.readLong();
+        long totalLength = in.readLong();
+        String validator = in.readBoolean() ? in.readUTF() : null;
+        return new RangeResponse(null /* stream */, partial, firstBytePosition,
+                lastBytePosition, totalLength, validator);
+    }
+
+    private static void serialize(GDataSerializer entry, int format) throws IOException {
+        try {
+            entry.serialize(new NullOutputStream(), format);
+        } catch (ParseException e) {
+            throw new IOException("Unable to serialize entry: " + e.getMessage());
+        }
+    }
+
+    private static MappedByteBuffer map(File file, long offset, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // the mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while replaying a response");
+        }
+    }
+}
@@ -0,0 +1,229 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+/**
+ * Settings that control how a {@link RetryingGDataClient} retries failed
+ * requests.  The defaults retry idempotent requests up to three times with
+ * exponential backoff, never retry entry creation, and do not hedge.
+ *
+ * Instances of this class are not thread safe; configure a policy before
+ * handing it to a client and do not modify it afterwards.
+ */
+public class RetryPolicy {
+    private int maxAttempts = 4;
+    private long initialBackoffMillis = 500;
+    private long maxBackoffMillis = 30 * 1000;
+    private double backoffMultiplier = 2.0;
+    private double jitter = 0.5;
+    private long maxRetryAfterMillis = 5 * 60 * 1000;
+    private boolean retryCreates = false;
+    private double retryBudgetRatio = 0.1;
+    private int retryBudgetMax = 10;
+    private double hedgePercentile = 0;
+    private long minHedgeDelayMillis = 50;
+
+    /**
+     * Creates a new RetryPolicy with the default settings.
+     */
+    public RetryPolicy() {
+    }
+
+    /**
+     * @return the maximum number of attempts (including the first) per request
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts the maximum number of attempts (including the first)
+     * per request; 1 disables retries
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @return the delay before the first retry, in milliseconds
+     */
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    /**
+     * @param initialBackoffMillis the delay before the first retry, in
+     * milliseconds
+     */
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * @return the largest delay between two attempts, in milliseconds
+     */
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * @param maxBackoffMillis the largest delay between two attempts, in
+     * milliseconds
+     */
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * @return the factor the delay grows by after each retry
+     */
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    /**
+     * @param backoffMultiplier the factor the delay grows by after each retry
+     */
+    public void setBackoffMultiplier(double backoffMultiplier) {
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+    /**
+     * @return the fraction of each delay that is randomized
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @param jitter the fraction (0 to 1) of each delay that is randomized, so
+     * that clients that failed together do not retry together
+     */
+    public void setJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+        this.jitter = jitter;
+    }
+
+    /**
+     * @return the longest Retry-After delay that will be honored, in
+     * milliseconds
+     */
+    public long getMaxRetryAfterMillis() {
+        return maxRetryAfterMillis;
+    }
+
+    /**
+     * @param maxRetryAfterMillis the longest Retry-After delay that will be
+     * honored, in milliseconds.  Requests asked to wait longer fail instead.
+     */
+    public void setMaxRetryAfterMillis(long maxRetryAfterMillis) {
+        this.maxRetryAfterMillis = maxRetryAfterMillis;
+    }
+
+    /**
+     * @return whether entry creation (which is not idempotent) is retried
+     */
+    public boolean getRetryCreates() {
+        return retryCreates;
+    }
+
+    /**
+     * @param retryCreates whether entry creation is retried.  A retried create
+     * can produce a duplicate entry if the first attempt reached the server.
+     */
+    public void setRetryCreates(boolean retryCreates) {
+        this.retryCreates = retryCreates;
+    }
+
+    /**
+     * @return the number of retries earned by each request
+     */
+    public double getRetryBudgetRatio() {
+        return retryBudgetRatio;
+    }
+
+    /**
+     * @param retryBudgetRatio the number of retries earned by each request.
+     * With the default of 0.1, retries can add at most 10% to the load placed
+     * on the service, so an outage does not turn into a retry storm.
+     */
+    public void setRetryBudgetRatio(double retryBudgetRatio) {
+        this.retryBudgetRatio = retryBudgetRatio;
+    }
+
+    /**
+     * @return the most retries the budget can hold, which is also its size
+     * when the client is created
+     */
+    public int getRetryBudgetMax() {
+        return retryBudgetMax;
+    }
+
+    /**
+     * @param retryBudgetMax the most retries the budget can hold, which is
+     * also its size when the client is created.  Retries earned while the
+     * budget is full are lost, so a long quiet period cannot save up enough
+     * retries for a storm.
+     */
+    public void setRetryBudgetMax(int retryBudgetMax) {
+        this.retryBudgetMax = retryBudgetMax;
+    }
+
+    /**
+     * @return the latency percentile after which a feed fetch is hedged, or 0
+     * if hedging is disabled
+     */
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * @param hedgePercentile the latency percentile (e.g., 0.95) after which a
+     * second, identical feed fetch is started.  The first response wins and
+     * the other is discarded.  0 disables hedging.
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        if (hedgePercentile < 0 || hedgePercentile >= 1) {
+            throw new IllegalArgumentException("hedgePercentile must be in [0, 1)");
+        }
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * @return the shortest delay before a hedged fetch is started
+     */
+    public long getMinHedgeDelayMillis() {
+        return minHedgeDelayMillis;
+    }
+
+    /**
+     * @param minHedgeDelayMillis the shortest delay before a hedged fetch is
+     * started, in milliseconds
+     */
+    public void setMinHedgeDelayMillis(long minHedgeDelayMillis) {
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+    }
+
+    /**
+     * Returns whether a failure with the provided HTTP status code is
+     * transient and worth retrying.
+     * @param statusCode The HTTP status code.
+     * @return Whether the request should be retried.
+     */
+    public boolean isRetryableStatus(int statusCode) {
+        switch (statusCode) {
+            case HttpException.SC_INTERNAL_SERVER_ERROR:
+            case HttpException.SC_BAD_GATEWAY:
+            case HttpException.SC_SERVICE_UNAVAILABLE:
+            case HttpException.SC_GATEWAY_TIMEOUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,454 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * {@link GDataClient} that retries transient failures (5xx responses and IO
+ * errors) according to a {@link RetryPolicy}.
+ *
+ * Only idempotent operations are retried: fetching feeds and media, updating
+ * and deleting entries, and updating media entries whose stream can be reset.
+ * Entry creation is only retried if the policy allows it.  Retries back off
+ * exponentially with jitter, honor the server's Retry-After delay, and are
+ * drawn from a budget that is refilled by successful traffic, so that a
+ * struggling service is not hit with a retry storm.
+ *
+ * If the policy enables hedging, a feed fetch that is slower than the
+ * configured latency percentile is raced against a second, identical fetch.
+ *
+ * Instances of this class are thread safe.
+ */
+public class RetryingGDataClient extends DelegatingGDataClient {
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_LATENCY_SAMPLES_FOR_HEDGING = 20;
+
+    /** A single attempt at a request. */
+    private interface Attempt {
+        Object run(int attemptNumber) throws HttpException, IOException;
+    }
+
+    private final RetryPolicy policy;
+    private final Random random = new Random();
+
+    /* Retry budget; guarded by this. */
+    private double retryBudget;
+
+    /* Recent feed fetch latencies, used to pick the hedge delay; guarded by this. */
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount = 0;
+    private int latencyIndex = 0;
+
+    /* Counters; guarded by this. */
+    private long requestCount = 0;
+    private long retryCount = 0;
+    private long retriesDeniedCount = 0;
+    private long exhaustedCount = 0;
+    private long hedgeCount = 0;
+    private long hedgeWinCount = 0;
+
+    /**
+     * Creates a new RetryingGDataClient.
+     * @param delegate The GDataClient that should be used for each attempt.
+     * @param policy The policy that controls when and how requests are retried.
+     */
+    public RetryingGDataClient(GDataClient delegate, RetryPolicy policy) {
+        super(delegate);
+        this.policy = policy;
+        this.retryBudget = policy.getRetryBudgetMax();
+    }
+
+    public InputStream getFeedAsStream(final String feedUrl, final String authToken)
+            throws HttpException, IOException {
+        return (InputStream) execute(new Attempt() {
+            public Object run(int attemptNumber) throws HttpException, IOException {
+                return fetchFeed(feedUrl, authToken);
+            }
+        }, true /* idempotent */);
+    }
+
+    public InputStream getMediaEntryAsStream(final String mediaEntryUrl, final String authToken)
+            throws HttpException, IOException {
+        return (InputStream) execute(new Attempt() {
+            public Object run(int attemptNumber) throws HttpException, IOException {
+                return getDelegate().getMediaEntryAsStream(mediaEntryUrl, authToken);
+            }
+        }, true /* idempotent */);
+    }
+
+    public RangeResponse getMediaEntryRange(final String mediaEntryUrl,
+            final String authToken, final long firstBytePosition, final long lastBytePosition,
+            final String ifRange) throws HttpException, IOException {
+        return (RangeResponse) execute(new Attempt() {
+            public Object run(int attemptNumber) throws HttpException, IOException {
+                return RetryingGDataClient.super.getMediaEntryRange(mediaEntryUrl, authToken,
+                        firstBytePosition, lastBytePosition, ifRange);
+            }
+        }, true /* idempotent */);
+    }
+
+    public InputStream createEntry(final String feedUrl, final String authToken,
+            final GDataSerializer entry) throws HttpException, IOException {
+        return (InputStream) execute(new Attempt() {
+            public Object run(int attemptNumber) throws HttpException, IOException {
+                return getDelegate().createEntry(feedUrl, authToken, entry);
+            }
+        }, policy.getRetryCreates());
+    }
+
+    public InputStream updateEntry(final String editUri, final String authToken,
+            final GDataSerializer entry) throws HttpException, IOException {
+        return (InputStream) execute(new Attempt() {
+            public Object run(int attemptNumber) throws HttpException, IOException {
+                return getDelegate().updateEntry(editUri, authToken, entry);
+            }
+        }, true /* idempotent */);
+    }
+
+    public InputStream patchEntry(final String editUri, final String authToken,
+            final GDataSerializer entry) throws HttpException, IOException {
+        // the changed fields replace those on the server, so a patch is idempotent.
+        return (InputStream) execute(new Attempt() {
+            public Object run(int attemptNumber) throws HttpException, IOException {
+                return RetryingGDataClient.super.patchEntry(editUri, authToken, entry);
+            }
+        }, true /* idempotent */);
+    }
+
+    public void deleteEntry(final String editUri, final String authToken)
+            throws HttpException, IOException {
+        execute(new Attempt() {
+            public Object run(int attemptNumber) throws HttpException, IOException {
+                try {
+                    getDelegate().deleteEntry(editUri, authToken);
+                } catch (HttpException e) {
+                    // if an earlier attempt reached the server but its response was
+                    // lost, the entry is already gone.
+                    if (attemptNumber == 1 || e.getStatusCode() != HttpException.SC_NOT_FOUND) {
+                        throw e;
+                    }
+                }
+                return null;
+            }
+        }, true /* idempotent */);
+    }
+
+    public InputStream updateMediaEntry(final String editUri, final String authToken,
+            final InputStream mediaEntryInputStream, final String contentType)
+            throws HttpException, IOException {
+        // the media can only be sent again if the stream can be rewound.
+        boolean resettable = mediaEntryInputStream.markSupported();
+        if (resettable) {
+            mediaEntryInputStream.mark(Integer.MAX_VALUE);
+        }
+        return (InputStream) execute(new Attempt() {
+            public Object run(int attemptNumber) throws HttpException, IOException {
+                if (attemptNumber > 1) {
+                    mediaEntryInputStream.reset();
+                }
+                return getDelegate().updateMediaEntry(editUri, authToken,
+                        mediaEntryInputStream, contentType);
+            }
+        }, resettable);
+    }
+
+    /**
+     * @return the number of requests made through this client
+     */
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return the number of retries made by this client
+     */
+    public synchronized long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * @return the number of retries that were not made because the retry
+     * budget was empty
+     */
+    public synchronized long getRetriesDeniedCount() {
+        return retriesDeniedCount;
+    }
+
+    /**
+     * @return the number of requests that failed after using all of their
+     * attempts
+     */
+    public synchronized long getExhaustedCount() {
+        return exhaustedCount;
+    }
+
+    /**
+     * @return the number of retries that can currently be made before the
+     * budget runs out
+     */
+    public synchronized double getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * @return the number of hedged feed fetches that were started
+     */
+    public synchronized long getHedgeCount() {
+        return hedgeCount;
+    }
+
+    /**
+     * @return the number of hedged feed fetches that finished before the
+     * original fetch
+     */
+    public synchronized long getHedgeWinCount() {
+        return hedgeWinCount;
+    }
+
+    private Object execute(Attempt attempt, boolean idempotent)
+            throws HttpException, IOException {
+        synchronized (this) {
+            ++requestCount;
+            retryBudget = Math.min(retryBudget + policy.getRetryBudgetRatio(),
+                    Math.max(policy.getRetryBudgetMax(), 1));
+        }
+
+        long backoff = policy.getInitialBackoffMillis();
+        for (int attemptNumber = 1; ; ++attemptNumber) {
+            long delay;
+            try {
+                return attempt.run(attemptNumber);
+            } catch (HttpException e) {
+                if (!idempotent || !policy.isRetryableStatus(e.getStatusCode())) {
+                    throw e;
+                }
+                delay = getDelay(backoff, e.getRetryAfterSeconds());
+                if (delay < 0 || !canRetry(attemptNumber)) {
+                    throw e;
+                }
+                closeQuietly(e.getResponseStream());
+            } catch (ConcurrencyLimitExceededException e) {
+                // load that was shed must not come back as retries.
+                throw e;
+            } catch (IOException e) {
+                // timeouts are retried, but not interruptions of the caller.
+                if (e instanceof InterruptedIOException
+                        && (!(e instanceof SocketTimeoutException)
+                                || Thread.currentThread().isInterrupted())) {
+                    throw e;
+                }
+                if (!idempotent) {
+                    throw e;
+                }
+                delay = getDelay(backoff, -1);
+                if (!canRetry(attemptNumber)) {
+                    throw e;
+                }
+            }
+            sleep(delay);
+            backoff = Math.min(policy.getMaxBackoffMillis(),
+                    (long) (backoff * policy.getBackoffMultiplier()));
+        }
+    }
+
+    /**
+     * Returns how long to wait before the next attempt, or -1 if the server
+     * asked for a longer wait than the policy allows.
+     */
+    private long getDelay(long backoff, long retryAfterSeconds) {
+        double jitter = policy.getJitter();
+        long delay = (long) (backoff * (1.0 - jitter * random.nextDouble()));
+        if (retryAfterSeconds >= 0) {
+            long retryAfterMillis = retryAfterSeconds * 1000;
+            if (retryAfterMillis > policy.getMaxRetryAfterMillis()) {
+                return -1;
+            }
+            delay = Math.max(delay, retryAfterMillis);
+        }
+        return delay;
+    }
+
+    /**
+     * Returns whether another attempt may be made, taking a retry out of the
+     * budget if so.
+     */
+    private synchronized boolean canRetry(int attemptNumber) {
+        if (attemptNumber >= policy.getMaxAttempts()) {
+            ++exhaustedCount;
+            return false;
+        }
+        if (retryBudget < 1) {
+            ++retriesDeniedCount;
+            return false;
+        }
+        retryBudget -= 1;
+        ++retryCount;
+        return true;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    private static void closeQuietly(InputStream is) {
+        if (is != null) {
+            try {
+                is.close();
+            } catch (IOException ioe) {
+                // ignore
+            }
+        }
+    }
+
+    private InputStream fetchFeed(String feedUrl, String authToken)
+            throws HttpException, IOException {
+        long hedgeDelay = getHedgeDelay();
+        if (hedgeDelay < 0) {
+            long start = System.currentTimeMillis();
+            InputStream is = getDelegate().getFeedAsStream(feedUrl, authToken);
+            recordLatency(System.currentTimeMillis() - start);
+            return is;
+        }
+        return new HedgedFetch(feedUrl, authToken).fetch(hedgeDelay);
+    }
+
+    private synchronized void recordLatency(long latency) {
+        latencies[latencyIndex] = latency;
+        latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+        if (latencyCount < LATENCY_SAMPLES) {
+            ++latencyCount;
+        }
+    }
+
+    /**
+     * Returns how long to wait before hedging a feed fetch, or -1 if the fetch
+     * should not be hedged.
+     */
+    private synchronized long getHedgeDelay() {
+        double percentile = policy.getHedgePercentile();
+        if (percentile <= 0 || latencyCount < MIN_LATENCY_SAMPLES_FOR_HEDGING) {
+            return -1;
+        }
+        long[] sorted = new long[latencyCount];
+        System.arraycopy(latencies, 0, sorted, 0, latencyCount);
+        Arrays.sort(sorted);
+        long delay = sorted[(int) (percentile * (latencyCount - 1))];
+        return Math.max(delay, policy.getMinHedgeDelayMillis());
+    }
+
+    /**
+     * Races an original feed fetch against a hedged one.  Each fetch runs on
+     * its own thread; the first successful response is returned and any
+     * later one is closed.
+     */
+    private class HedgedFetch {
+        private final String feedUrl;
+        private final String authToken;
+
+        /* guarded by this. */
+        private InputStream result = null;
+        private Exception failure = null;
+        private int outstanding = 0;
+        private boolean done = false;
+
+        HedgedFetch(String feedUrl, String authToken) {
+            this.feedUrl = feedUrl;
+            this.authToken = authToken;
+        }
+
+        synchronized InputStream fetch(long hedgeDelay) throws HttpException, IOException {
+            try {
+                start(false /* hedge */);
+                long deadline = System.currentTimeMillis() + hedgeDelay;
+                long remaining = hedgeDelay;
+                while (result == null && outstanding > 0 && remaining > 0) {
+                    wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+                if (result == null && outstanding > 0) {
+                    synchronized (RetryingGDataClient.this) {
+                        ++hedgeCount;
+                    }
+                    start(true /* hedge */);
+                }
+                while (result == null && outstanding > 0) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                done = true;
+                closeQuietly(result);
+                throw new InterruptedIOException("Interrupted while fetching " + feedUrl);
+            }
+            done = true;
+            if (result != null) {
+                return result;
+            }
+            if (failure instanceof HttpException) {
+                throw (HttpException) failure;
+            } else if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            throw (RuntimeException) failure;
+        }
+
+        private void start(final boolean hedge) {
+            ++outstanding;
+            Thread thread = new Thread("GDataHedgedFetch") {
+                public void run() {
+                    long start = System.currentTimeMillis();
+                    InputStream is = null;
+                    Exception error = null;
+                    try {
+                        is = getDelegate().getFeedAsStream(feedUrl, authToken);
+                    } catch (HttpException e) {
+                        error = e;
+                    } catch (IOException e) {
+                        error = e;
+                    } catch (RuntimeException e) {
+                        error = e;
+                    }
+                    boolean won = false;
+                    synchronized (HedgedFetch.this) {
+                        --outstanding;
+                        if (is != null && result == null && !done) {
+                            result = is;
+                            won = true;
+                        } else if (error != null && failure == null) {
+                            failure = error;
+                        }
+                        HedgedFetch.this.notifyAll();
+                    }
+                    if (won) {
+                        recordLatency(System.currentTimeMillis() - start);
+                        if (hedge) {
+                            synchronized (RetryingGDataClient.this) {
+                                ++hedgeWinCount;
+                            }
+                        }
+                    } else {
+                        closeQuietly(is);
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import com.google.wireless.gdata.data.Entry;
+
+import java.io.IOException;
+
+/**
+ * Receives the changes found by {@link IncrementalFeedSync}.  The same
+ * {@link Entry} object is reused for every call, so implementations must
+ * copy anything they want to keep.
+ *
+ * Changes may be delivered more than once, e.g. entries updated at exactly
+ * the watermark, or all entries after a sync that failed part way, so
+ * applying a change must be idempotent.
+ */
+public interface SyncHandler {
+
+    /**
+     * Called for each entry that was added or updated.
+     * @param entry The entry.
+     * @throws IOException Thrown if the change could not be applied; the sync
+     * stops and the watermark is not advanced.
+     */
+    void onEntry(Entry entry) throws IOException;
+
+    /**
+     * Called for each entry that was deleted.  Only the id and edit uri of
+     * the entry are reliable.
+     * @param entry The deleted entry.
+     * @throws IOException Thrown if the change could not be applied; the sync
+     * stops and the watermark is not advanced.
+     */
+    void onDeleted(Entry entry) throws IOException;
+
+    /**
+     * Called before a full sync of the feed, when there is no watermark or the
+     * server can no longer return the changes since it.  Every entry of the
+     * feed follows; local entries that are not delivered again before the
+     * sync completes no longer exist on the server.
+     * @throws IOException Thrown if the local data could not be prepared.
+     */
+    void onFullResync() throws IOException;
+}
@@ -0,0 +1,36 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+import java.io.IOException;
+
+/**
+ * Durable storage for the watermarks {@link IncrementalFeedSync} uses to
+ * fetch only the entries of a feed that changed since the last sync.  A
+ * watermark is an RFC 3339 timestamp, used as the updated-min of the next
+ * sync of the feed.
+ *
+ * Implementations must make {@link #setWatermark} durable before returning:
+ * after it returns, the new watermark must survive a crash.
+ *
+ * @see FileSyncWatermarkStore
+ */
+public interface SyncWatermarkStore {
+
+    /**
+     * Returns the watermark of a feed.
+     * @param feedUrl The url of the feed.
+     * @return The watermark, or null if the feed has not been synced.
+     * @throws IOException Thrown if the store cannot be read.
+     */
+    String getWatermark(String feedUrl) throws IOException;
+
+    /**
+     * Sets the watermark of a feed.
+     * @param feedUrl The url of the feed.
+     * @param watermark The new watermark, or null to forget the feed, so that
+     * the next sync is a full sync.
+     * @throws IOException Thrown if the store cannot be written.
+     */
+    void setWatermark(String feedUrl, String watermark) throws IOException;
+}
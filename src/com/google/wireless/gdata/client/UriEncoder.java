@@ -0,0 +1,117 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.client;
+
+/**
+ * Table-driven encoder for URL path segments and query parameters, with the
+ * same output as {@link java.net.URLEncoder#encode(String, String)} with
+ * UTF-8: letters, digits and ".-*_" are kept, spaces become '+', and every
+ * other character is percent-encoded as UTF-8 with uppercase hex digits.
+ *
+ * Unlike URLEncoder, it does not look up a charset or allocate an
+ * intermediate byte array per call, and it can append directly to a
+ * caller's {@link StringBuffer}.  Strings that need no encoding are returned
+ * as is.
+ */
+public final class UriEncoder {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /* true for the ASCII characters that are not encoded. */
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        UNRESERVED['.'] = true;
+        UNRESERVED['-'] = true;
+        UNRESERVED['*'] = true;
+        UNRESERVED['_'] = true;
+    }
+
+    // utility class
+    private UriEncoder() {
+    }
+
+    /**
+     * Encodes a string for use in a URL.
+     * @param s The string that should be encoded.
+     * @return The encoded string, which is s itself if nothing needed to be
+     * encoded.
+     */
+    public static String encode(String s) {
+        int length = s.length();
+        int i = 0;
+        while (i < length) {
+            char c = s.charAt(i);
+            if (c >= 128 || !UNRESERVED[c]) {
+                break;
+            }
+            ++i;
+        }
+        if (i == length) {
+            return s;
+        }
+        StringBuffer sb = new StringBuffer(length + 16);
+        sb.append(s.substring(0, i));
+        appendEncoded(sb, s, i);
+        return sb.toString();
+    }
+
+    /**
+     * Encodes a string for use in a URL and appends it to a buffer.
+     * @param sb The buffer the encoded string should be appended to.
+     * @param s The string that should be encoded.
+     */
+    public static void encode(StringBuffer sb, String s) {
+        appendEncoded(sb, s, 0);
+    }
+
+    private static void appendEncoded(StringBuffer sb, String s, int start) {
+        int length = s.length();
+        for (int i = start; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 128) {
+                if (UNRESERVED[c]) {
+                    sb.append(c);
+                } else if (c == ' ') {
+                    sb.append('+');
+                } else {
+                    appendByte(sb, c);
+                }
+            } else if (c < 0x800) {
+                appendByte(sb, 0xc0 | (c >> 6));
+                appendByte(sb, 0x80 | (c & 0x3f));
+            } else if (c >= 0xd800 && c <= 0xdfff) {
+                char low = i + 1 < length ? s.charAt(i + 1) : 0;
+                if (c <= 0xdbff && low >= 0xdc00 && low <= 0xdfff) {
+                    int cp = 0x10000 + ((c - 0xd800) << 10) + (low - 0xdc00);
+                    appendByte(sb, 0xf0 | (cp >> 18));
+                    appendByte(sb, 0x80 | ((cp >> 12) & 0x3f));
+                    appendByte(sb, 0x80 | ((cp >> 6) & 0x3f));
+                    appendByte(sb, 0x80 | (cp & 0x3f));
+                    ++i;
+                } else {
+                    // unpaired surrogate; URLEncoder substitutes '?'.
+                    appendByte(sb, '?');
+                }
+            } else {
+                appendByte(sb, 0xe0 | (c >> 12));
+                appendByte(sb, 0x80 | ((c >> 6) & 0x3f));
+                appendByte(sb, 0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private static void appendByte(StringBuffer sb, int b) {
+        sb.append('%');
+        sb.append(HEX_DIGITS[(b >> 4) & 0xf]);
+        sb.append(HEX_DIGITS[b & 0xf]);
+    }
+}
@@ -5,6 +5,15 @@ package com.google.wireless.gdata.contacts.client;
 import com.google.wireless.gdata.client.GDataClient;
 import com.google.wireless.gdata.client.GDataParserFactory;
 import com.google.wireless.gdata.client.GDataServiceClient;
+import com.google.wireless.gdata.client.HttpException;
+import com.google.wireless.gdata.client.ProgressListener;
+import com.google.wireless.gdata.contacts.data.ContactEntry;
+import com.google.wireless.gdata.data.MediaEntry;
+import com.google.wireless.gdata.data.StringUtils;
+import com.google.wireless.gdata.parser.ParseException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 
 /**
  * GDataServiceClient for accessing Google Contacts.  This client can access and
@@ -30,4 +39,53 @@ public class ContactsClient extends GDataServiceClient {
   public String getServiceName() {
     return SERVICE;
   }
+
+  /**
+   * Downloads the photo of a contact directly into a file.
+   * @param entry The contact whose photo should be fetched.
+   * @param authToken The authentication token for this user.
+   * @param channel The channel the photo should be written to, starting at
+   * the channel's current size.
+   * @param listener The listener progress should be reported to, or null.
+   * @return The number of bytes written.
+   * @throws IOException Thrown if an error occurs while communicating with
+   * the GData service or writing to the channel.
+   * @throws HttpException if the service returns an error response
+   */
+  public long getPhoto(ContactEntry entry, String authToken, FileChannel channel,
+      ProgressListener listener) throws IOException, HttpException {
+    String href = entry.getLinkPhotoHref();
+    if (StringUtils.isEmpty(href)) {
+      href = entry.getLinkEditPhotoHref();
+    }
+    if (StringUtils.isEmpty(href)) {
+      throw new IllegalArgumentException("contact has no photo link");
+    }
+    return getMediaEntry(href, authToken, channel, channel.size(), listener);
+  }
+
+  /**
+   * Uploads a new photo for a contact from a file, without reading the file
+   * onto the heap.
+   * @param entry The contact whose photo should be replaced.
+   * @param channel The channel that contains the photo.
+   * @param contentType The content type of the photo, e.g. "image/jpeg".
+   * @param authToken The authentication token for this user.
+   * @param listener The listener upload progress should be reported to, or
+   * null.
+   * @return The entry returned by the server.
+   * @throws IOException Thrown if an error occurs while communicating with
+   * the GData service.
+   * @throws HttpException if the service returns an error response
+   * @throws ParseException Thrown if the server response cannot be parsed.
+   */
+  public MediaEntry updatePhoto(ContactEntry entry, FileChannel channel, String contentType,
+      String authToken, ProgressListener listener)
+      throws IOException, HttpException, ParseException {
+    String href = entry.getLinkEditPhotoHref();
+    if (StringUtils.isEmpty(href)) {
+      throw new IllegalArgumentException("contact has no edit-photo link");
+    }
+    return updateMediaEntry(href, channel, contentType, authToken, listener);
+  }
 }
@@ -2,31 +2,61 @@
 
 package com.google.wireless.gdata.contacts.data;
 
+import com.google.wireless.gdata.data.CompactList;
 import com.google.wireless.gdata.data.Entry;
 import com.google.wireless.gdata.data.ExtendedProperty;
 import com.google.wireless.gdata.data.StringUtils;
 import com.google.wireless.gdata.parser.ParseException;
 
-import java.util.Vector;
-import java.util.Enumeration;
+import java.util.List;
 
 /**
  * Entry containing information about a contact.
  */
 public class ContactEntry extends Entry {
+  /** The email addresses of the contact. */
+  public static final int FIELD_EMAIL_ADDRESSES = FIELD_FIRST_SUBCLASS;
+  /** The IM addresses of the contact. */
+  public static final int FIELD_IM_ADDRESSES = FIELD_FIRST_SUBCLASS << 1;
+  /** The phone numbers of the contact. */
+  public static final int FIELD_PHONE_NUMBERS = FIELD_FIRST_SUBCLASS << 2;
+  /** The postal addresses of the contact. */
+  public static final int FIELD_POSTAL_ADDRESSES = FIELD_FIRST_SUBCLASS << 3;
+  /** The organizations of the contact. */
+  public static final int FIELD_ORGANIZATIONS = FIELD_FIRST_SUBCLASS << 4;
+  /** The extended properties of the contact. */
+  public static final int FIELD_EXTENDED_PROPERTIES = FIELD_FIRST_SUBCLASS << 5;
+  /** The group memberships of the contact. */
+  public static final int FIELD_GROUPS = FIELD_FIRST_SUBCLASS << 6;
+  /** The yomi name of the contact. */
+  public static final int FIELD_YOMI_NAME = FIELD_FIRST_SUBCLASS << 7;
+
+  /* The fields of the lists. */
+  private static final int LIST_FIELDS = FIELD_EMAIL_ADDRESSES | FIELD_IM_ADDRESSES
+      | FIELD_PHONE_NUMBERS | FIELD_POSTAL_ADDRESSES | FIELD_ORGANIZATIONS
+      | FIELD_EXTENDED_PROPERTIES | FIELD_GROUPS;
+
   private String linkPhotoHref;
   private String linkEditPhotoHref;
   private String linkPhotoType;
   private String linkEditPhotoType;
-  private final Vector emailAddresses = new Vector();
-  private final Vector imAddresses = new Vector();
-  private final Vector phoneNumbers = new Vector();
-  private final Vector postalAddresses = new Vector();
-  private final Vector organizations = new Vector();
-  private final Vector extendedProperties = new Vector();
-  private final Vector groups = new Vector();
+  private final CompactList emailAddresses = new CompactList();
+  private final CompactList imAddresses = new CompactList();
+  private final CompactList phoneNumbers = new CompactList();
+  private final CompactList postalAddresses = new CompactList();
+  private final CompactList organizations = new CompactList();
+  private final CompactList extendedProperties = new CompactList();
+  private final CompactList groups = new CompactList();
   private String yomiName;
 
+  /* The lists, in the order of their FIELD_* bits. */
+  private final CompactList[] lists = { emailAddresses, imAddresses, phoneNumbers,
+      postalAddresses, organizations, extendedProperties, groups };
+  /* Whether the lists have been marked clean since they were last cleared. */
+  private boolean clean = false;
+  /* Copies of the elements of the lists, taken on the first edit after markClean(), or null. */
+  private Object[][] snapshot = null;
+
   public ContactEntry() {
     super();
   }
@@ -58,62 +88,210 @@ public class ContactEntry extends Entry {
   }
 
   public void addEmailAddress(EmailAddress emailAddress) {
-    emailAddresses.addElement(emailAddress);
+    takeSnapshot();
+    emailAddresses.add(emailAddress);
+  }
+
+  /**
+   * Removes the first of the email addresses that is equal to the provided one.
+   * @return whether one was removed
+   */
+  public boolean removeEmailAddress(EmailAddress emailAddress) {
+    takeSnapshot();
+    return emailAddresses.remove(emailAddress);
+  }
+
+  /**
+   * Removes all of the email addresses.
+   */
+  public void clearEmailAddresses() {
+    takeSnapshot();
+    emailAddresses.clear();
   }
 
-  public Vector getEmailAddresses() {
-    return emailAddresses;
+  /**
+   * @return a read-only view of the email addresses
+   */
+  public List getEmailAddresses() {
+    return emailAddresses.asList();
   }
 
   public void addImAddress(ImAddress imAddress) {
-    imAddresses.addElement(imAddress);
+    takeSnapshot();
+    imAddresses.add(imAddress);
   }
 
-  public Vector getImAddresses() {
-    return imAddresses;
+  /**
+   * Removes the first of the im addresses that is equal to the provided one.
+   * @return whether one was removed
+   */
+  public boolean removeImAddress(ImAddress imAddress) {
+    takeSnapshot();
+    return imAddresses.remove(imAddress);
+  }
+
+  /**
+   * Removes all of the im addresses.
+   */
+  public void clearImAddresses() {
+    takeSnapshot();
+    imAddresses.clear();
+  }
+
+  /**
+   * @return a read-only view of the im addresses
+   */
+  public List getImAddresses() {
+    return imAddresses.asList();
   }
 
   public void addPostalAddress(PostalAddress postalAddress) {
-    postalAddresses.addElement(postalAddress);
+    takeSnapshot();
+    postalAddresses.add(postalAddress);
+  }
+
+  /**
+   * Removes the first of the postal addresses that is equal to the provided one.
+   * @return whether one was removed
+   */
+  public boolean removePostalAddress(PostalAddress postalAddress) {
+    takeSnapshot();
+    return postalAddresses.remove(postalAddress);
+  }
+
+  /**
+   * Removes all of the postal addresses.
+   */
+  public void clearPostalAddresses() {
+    takeSnapshot();
+    postalAddresses.clear();
   }
 
-  public Vector getPostalAddresses() {
-    return postalAddresses;
+  /**
+   * @return a read-only view of the postal addresses
+   */
+  public List getPostalAddresses() {
+    return postalAddresses.asList();
   }
 
   public void addPhoneNumber(PhoneNumber phoneNumber) {
-    phoneNumbers.addElement(phoneNumber);
+    takeSnapshot();
+    phoneNumbers.add(phoneNumber);
   }
 
-  public Vector getPhoneNumbers() {
-    return phoneNumbers;
+  /**
+   * Removes the first of the phone numbers that is equal to the provided one.
+   * @return whether one was removed
+   */
+  public boolean removePhoneNumber(PhoneNumber phoneNumber) {
+    takeSnapshot();
+    return phoneNumbers.remove(phoneNumber);
+  }
+
+  /**
+   * Removes all of the phone numbers.
+   */
+  public void clearPhoneNumbers() {
+    takeSnapshot();
+    phoneNumbers.clear();
+  }
+
+  /**
+   * @return a read-only view of the phone numbers
+   */
+  public List getPhoneNumbers() {
+    return phoneNumbers.asList();
   }
 
   public void addOrganization(Organization organization) {
-    organizations.addElement(organization);
+    takeSnapshot();
+    organizations.add(organization);
+  }
+
+  /**
+   * Removes the first of the organizations that is equal to the provided one.
+   * @return whether one was removed
+   */
+  public boolean removeOrganization(Organization organization) {
+    takeSnapshot();
+    return organizations.remove(organization);
+  }
+
+  /**
+   * Removes all of the organizations.
+   */
+  public void clearOrganizations() {
+    takeSnapshot();
+    organizations.clear();
   }
 
-  public Vector getExtendedProperties() {
-    return extendedProperties;
+  /**
+   * @return a read-only view of the extended properties
+   */
+  public List getExtendedProperties() {
+    return extendedProperties.asList();
   }
 
   public void addExtendedProperty(ExtendedProperty extendedProperty) {
-    extendedProperties.addElement(extendedProperty);
+    takeSnapshot();
+    extendedProperties.add(extendedProperty);
+  }
+
+  /**
+   * Removes the first of the extended properties that is equal to the provided one.
+   * @return whether one was removed
+   */
+  public boolean removeExtendedProperty(ExtendedProperty extendedProperty) {
+    takeSnapshot();
+    return extendedProperties.remove(extendedProperty);
   }
 
-  public Vector getGroups() {
-    return groups;
+  /**
+   * Removes all of the extended properties.
+   */
+  public void clearExtendedProperties() {
+    takeSnapshot();
+    extendedProperties.clear();
+  }
+
+  /**
+   * @return a read-only view of the groups
+   */
+  public List getGroups() {
+    return groups.asList();
   }
 
   public void addGroup(GroupMembershipInfo group) {
-    groups.addElement(group);
+    takeSnapshot();
+    groups.add(group);
+  }
+
+  /**
+   * Removes the first of the group memberships that is equal to the provided one.
+   * @return whether one was removed
+   */
+  public boolean removeGroup(GroupMembershipInfo group) {
+    takeSnapshot();
+    return groups.remove(group);
   }
 
-  public Vector getOrganizations() {
-    return organizations;
+  /**
+   * Removes all of the group memberships.
+   */
+  public void clearGroups() {
+    takeSnapshot();
+    groups.clear();
+  }
+
+  /**
+   * @return a read-only view of the organizations
+   */
+  public List getOrganizations() {
+    return organizations.asList();
   }
 
   public void setYomiName(String yomiName) {
+    markDirty(FIELD_YOMI_NAME, this.yomiName, yomiName);
     this.yomiName = yomiName;
   }
 
@@ -131,14 +309,89 @@ public class ContactEntry extends Entry {
     linkEditPhotoType = null;
     linkPhotoHref = null;
     linkPhotoType = null;
-    emailAddresses.removeAllElements();
-    imAddresses.removeAllElements();
-    phoneNumbers.removeAllElements();
-    postalAddresses.removeAllElements();
-    organizations.removeAllElements();
-    extendedProperties.removeAllElements();
-    groups.removeAllElements();
+    emailAddresses.clear();
+    imAddresses.clear();
+    phoneNumbers.clear();
+    postalAddresses.clear();
+    organizations.clear();
+    extendedProperties.clear();
+    groups.clear();
     yomiName = null;
+    markDirty(FIELD_YOMI_NAME);
+    // like the fields of Entry, cleared lists are dirty until marked clean.
+    clean = false;
+    snapshot = null;
+  }
+
+  /*
+  * (non-Javadoc)
+  * @see com.google.wireless.gdata.data.Entry#takeSnapshot()
+  */
+  protected void takeSnapshot() {
+    if (!clean || snapshot != null) {
+      return;
+    }
+    // the elements can be modified in place, so they are copied.
+    snapshot = new Object[lists.length][];
+    for (int i = 0; i < lists.length; i++) {
+      CompactList list = lists[i];
+      Object[] copy = new Object[list.size()];
+      for (int j = 0; j < copy.length; j++) {
+        copy[j] = copyOf(list.get(j));
+      }
+      snapshot[i] = copy;
+    }
+  }
+
+  /*
+  * (non-Javadoc)
+  * @see com.google.wireless.gdata.data.Entry#discardSnapshot()
+  */
+  protected void discardSnapshot() {
+    clean = true;
+    snapshot = null;
+  }
+
+  /*
+  * (non-Javadoc)
+  * @see com.google.wireless.gdata.data.Entry#getChangedFields()
+  */
+  protected int getChangedFields() {
+    if (!clean) {
+      return LIST_FIELDS;
+    }
+    if (snapshot == null) {
+      // not edited since it was marked clean.
+      return 0;
+    }
+    int changed = 0;
+    for (int i = 0; i < lists.length; i++) {
+      if (!sameElements(snapshot[i], lists[i])) {
+        changed |= FIELD_FIRST_SUBCLASS << i;
+      }
+    }
+    return changed;
+  }
+
+  private static boolean sameElements(Object[] copy, CompactList list) {
+    if (copy.length != list.size()) {
+      return false;
+    }
+    for (int i = 0; i < copy.length; i++) {
+      if (!copy[i].equals(list.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Object copyOf(Object element) {
+    if (element instanceof ContactsElement) {
+      return ((ContactsElement) element).clone();
+    } else if (element instanceof ExtendedProperty) {
+      return ((ExtendedProperty) element).clone();
+    }
+    return ((GroupMembershipInfo) element).clone();
   }
 
   protected void toString(StringBuffer sb) {
@@ -157,46 +410,39 @@ public class ContactEntry extends Entry {
     if (!StringUtils.isEmpty(linkEditPhotoType)) {
       sb.append(" linkEditPhotoType:").append(linkEditPhotoType).append("\n");
     }
-    for (Enumeration iter = emailAddresses.elements();
-        iter.hasMoreElements(); ) {
+    for (int i = 0; i < emailAddresses.size(); i++) {
       sb.append("  ");
-      ((EmailAddress) iter.nextElement()).toString(sb);
+      ((EmailAddress) emailAddresses.get(i)).toString(sb);
       sb.append("\n");
     }
-    for (Enumeration iter = imAddresses.elements();
-        iter.hasMoreElements(); ) {
+    for (int i = 0; i < imAddresses.size(); i++) {
       sb.append("  ");
-      ((ImAddress) iter.nextElement()).toString(sb);
+      ((ImAddress) imAddresses.get(i)).toString(sb);
       sb.append("\n");
     }
-    for (Enumeration iter = postalAddresses.elements();
-        iter.hasMoreElements(); ) {
+    for (int i = 0; i < postalAddresses.size(); i++) {
       sb.append("  ");
-      ((PostalAddress) iter.nextElement()).toString(sb);
+      ((PostalAddress) postalAddresses.get(i)).toString(sb);
       sb.append("\n");
     }
-    for (Enumeration iter = phoneNumbers.elements();
-        iter.hasMoreElements(); ) {
+    for (int i = 0; i < phoneNumbers.size(); i++) {
       sb.append("  ");
-      ((PhoneNumber) iter.nextElement()).toString(sb);
+      ((PhoneNumber) phoneNumbers.get(i)).toString(sb);
       sb.append("\n");
     }
-    for (Enumeration iter = organizations.elements();
-        iter.hasMoreElements(); ) {
+    for (int i = 0; i < organizations.size(); i++) {
       sb.append("  ");
-      ((Organization) iter.nextElement()).toString(sb);
+      ((Organization) organizations.get(i)).toString(sb);
       sb.append("\n");
     }
-    for (Enumeration iter = extendedProperties.elements();
-        iter.hasMoreElements(); ) {
+    for (int i = 0; i < extendedProperties.size(); i++) {
       sb.append("  ");
-      ((ExtendedProperty) iter.nextElement()).toString(sb);
+      ((ExtendedProperty) extendedProperties.get(i)).toString(sb);
       sb.append("\n");
     }
-    for (Enumeration iter = groups.elements();
-        iter.hasMoreElements(); ) {
+    for (int i = 0; i < groups.size(); i++) {
       sb.append("  ");
-      ((GroupMembershipInfo) iter.nextElement()).toString(sb);
+      ((GroupMembershipInfo) groups.get(i)).toString(sb);
       sb.append("\n");
     }
     if (!StringUtils.isEmpty(yomiName)) {
@@ -206,26 +452,26 @@ public class ContactEntry extends Entry {
 
   public void validate() throws ParseException {
     super.validate();
-    for (Enumeration iter = emailAddresses.elements(); iter.hasMoreElements(); ) {
-      ((EmailAddress) iter.nextElement()).validate();
+    for (int i = 0; i < emailAddresses.size(); i++) {
+      ((EmailAddress) emailAddresses.get(i)).validate();
     }
-    for (Enumeration iter = imAddresses.elements(); iter.hasMoreElements(); ) {
-      ((ImAddress) iter.nextElement()).validate();
+    for (int i = 0; i < imAddresses.size(); i++) {
+      ((ImAddress) imAddresses.get(i)).validate();
     }
-    for (Enumeration iter = postalAddresses.elements(); iter.hasMoreElements(); ) {
-      ((PostalAddress) iter.nextElement()).validate();
+    for (int i = 0; i < postalAddresses.size(); i++) {
+      ((PostalAddress) postalAddresses.get(i)).validate();
     }
-    for (Enumeration iter = phoneNumbers.elements(); iter.hasMoreElements(); ) {
-      ((PhoneNumber) iter.nextElement()).validate();
+    for (int i = 0; i < phoneNumbers.size(); i++) {
+      ((PhoneNumber) phoneNumbers.get(i)).validate();
     }
-    for (Enumeration iter = organizations.elements(); iter.hasMoreElements(); ) {
-      ((Organization) iter.nextElement()).validate();
+    for (int i = 0; i < organizations.size(); i++) {
+      ((Organization) organizations.get(i)).validate();
     }
-    for (Enumeration iter = extendedProperties.elements(); iter.hasMoreElements(); ) {
-      ((ExtendedProperty) iter.nextElement()).validate();
+    for (int i = 0; i < extendedProperties.size(); i++) {
+      ((ExtendedProperty) extendedProperties.get(i)).validate();
     }
-    for (Enumeration iter = groups.elements(); iter.hasMoreElements(); ) {
-      ((GroupMembershipInfo) iter.nextElement()).validate();
+    for (int i = 0; i < groups.size(); i++) {
+      ((GroupMembershipInfo) groups.get(i)).validate();
     }
   }
 }
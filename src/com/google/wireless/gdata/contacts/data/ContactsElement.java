@@ -1,5 +1,6 @@
 package com.google.wireless.gdata.contacts.data;
 
+import com.google.wireless.gdata.data.StringUtils;
 import com.google.wireless.gdata.parser.ParseException;
 
 /**
@@ -19,7 +20,7 @@ import com.google.wireless.gdata.parser.ParseException;
 /**
  * Contains attributes that are common to all elements in a ContactEntry.
  */
-public abstract class ContactsElement {
+public abstract class ContactsElement implements Cloneable {
   public static final byte TYPE_NONE = -1;
   private byte type = TYPE_NONE;
 
@@ -63,6 +64,31 @@ public abstract class ContactsElement {
     return sb.toString();
   }
 
+  public boolean equals(Object o) {
+    if (o == null || o.getClass() != getClass()) {
+      return false;
+    }
+    ContactsElement other = (ContactsElement) o;
+    return type == other.type && isPrimary == other.isPrimary
+        && StringUtils.equals(label, other.label);
+  }
+
+  public int hashCode() {
+    return type * 31 + (label == null ? 0 : label.hashCode());
+  }
+
+  /**
+   * @return a copy of this element
+   */
+  public Object clone() {
+    try {
+      return super.clone();
+    } catch (CloneNotSupportedException e) {
+      // cannot happen, this class is Cloneable.
+      throw new IllegalStateException(e.toString());
+    }
+  }
+
   public void validate() throws ParseException {
     if ((label == null && type == TYPE_NONE) || (label != null && type != TYPE_NONE)) {
       throw new ParseException("exactly one of label or type must be set");
@@ -2,6 +2,8 @@
 
 package com.google.wireless.gdata.contacts.data;
 
+import com.google.wireless.gdata.data.StringUtils;
+
 /**
  * The EmailAddress GData type.
  */
@@ -25,4 +27,18 @@ public class EmailAddress extends ContactsElement {
     super.toString(sb);
     if (address != null) sb.append(" address:").append(address);
   }
+
+  public boolean equals(Object o) {
+    if (!super.equals(o)) {
+      return false;
+    }
+    EmailAddress other = (EmailAddress) o;
+    return StringUtils.equals(address, other.address);
+  }
+
+  public int hashCode() {
+    int hash = super.hashCode();
+    hash = hash * 31 + (address == null ? 0 : address.hashCode());
+    return hash;
+  }
 }
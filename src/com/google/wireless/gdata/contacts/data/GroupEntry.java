@@ -7,6 +7,9 @@ import com.google.wireless.gdata.data.StringUtils;
  * Entry containing information about a contact group.
  */
 public class GroupEntry extends Entry {
+  /** The system group of the group. */
+  public static final int FIELD_SYSTEM_GROUP = FIELD_FIRST_SUBCLASS;
+
   // If this is a system group then this field will be set with the name of the system group.
   private String systemGroup = null;
 
@@ -22,9 +25,20 @@ public class GroupEntry extends Entry {
   public void clear() {
     super.clear();
     systemGroup = null;
+    markDirty(FIELD_SYSTEM_GROUP);
+  }
+
+  /*
+  * (non-Javadoc)
+  * @see com.google.wireless.gdata.data.Entry#getChangedFields()
+  */
+  protected int getChangedFields() {
+    // the system group is tracked by its setter.
+    return 0;
   }
 
   public void setSystemGroup(String systemGroup) {
+    markDirty(FIELD_SYSTEM_GROUP, this.systemGroup, systemGroup);
     this.systemGroup = systemGroup;
   }
 
@@ -4,7 +4,7 @@ import com.google.wireless.gdata.data.StringUtils;
 import com.google.wireless.gdata.parser.ParseException;
 
 /** The groupMembershipInfo GData type. */
-public class GroupMembershipInfo {
+public class GroupMembershipInfo implements Cloneable {
   private String group;
   private boolean deleted;
 
@@ -30,6 +30,30 @@ public class GroupMembershipInfo {
     sb.append(" deleted:").append(deleted);
   }
 
+  public boolean equals(Object o) {
+    if (!(o instanceof GroupMembershipInfo)) {
+      return false;
+    }
+    GroupMembershipInfo other = (GroupMembershipInfo) o;
+    return deleted == other.deleted && StringUtils.equals(group, other.group);
+  }
+
+  public int hashCode() {
+    return (group == null ? 0 : group.hashCode()) * 31 + (deleted ? 1 : 0);
+  }
+
+  /**
+   * @return a copy of this membership
+   */
+  public Object clone() {
+    try {
+      return super.clone();
+    } catch (CloneNotSupportedException e) {
+      // cannot happen, this class is Cloneable.
+      throw new IllegalStateException(e.toString());
+    }
+  }
+
   public void validate() throws ParseException {
     if (StringUtils.isEmpty(group)) {
       throw new ParseException("the group must be present");
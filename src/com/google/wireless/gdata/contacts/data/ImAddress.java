@@ -2,6 +2,8 @@
 
 package com.google.wireless.gdata.contacts.data;
 
+import com.google.wireless.gdata.data.StringUtils;
+
 /**
  * The ImAddress gdata type
  */
@@ -56,4 +58,22 @@ public class ImAddress extends ContactsElement {
     if (protocolCustom != null) sb.append(" protocolCustom:").append(protocolCustom);
     if (address != null) sb.append(" address:").append(address);
   }
+
+  public boolean equals(Object o) {
+    if (!super.equals(o)) {
+      return false;
+    }
+    ImAddress other = (ImAddress) o;
+    return protocolPredefined == other.protocolPredefined
+        && StringUtils.equals(protocolCustom, other.protocolCustom)
+        && StringUtils.equals(address, other.address);
+  }
+
+  public int hashCode() {
+    int hash = super.hashCode();
+    hash = hash * 31 + protocolPredefined;
+    hash = hash * 31 + (protocolCustom == null ? 0 : protocolCustom.hashCode());
+    hash = hash * 31 + (address == null ? 0 : address.hashCode());
+    return hash;
+  }
 }
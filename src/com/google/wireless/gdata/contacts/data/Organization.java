@@ -1,5 +1,6 @@
 package com.google.wireless.gdata.contacts.data;
 
+import com.google.wireless.gdata.data.StringUtils;
 import com.google.wireless.gdata.parser.ParseException;
 
 /** The Organization GData type. */
@@ -33,6 +34,21 @@ public class Organization extends ContactsElement {
     if (title != null) sb.append(" title:").append(title);
   }
 
+  public boolean equals(Object o) {
+    if (!super.equals(o)) {
+      return false;
+    }
+    Organization other = (Organization) o;
+    return StringUtils.equals(name, other.name) && StringUtils.equals(title, other.title);
+  }
+
+  public int hashCode() {
+    int hash = super.hashCode();
+    hash = hash * 31 + (name == null ? 0 : name.hashCode());
+    hash = hash * 31 + (title == null ? 0 : title.hashCode());
+    return hash;
+  }
+
   public void validate() throws ParseException {
     super.validate();
 
@@ -2,6 +2,8 @@
 
 package com.google.wireless.gdata.contacts.data;
 
+import com.google.wireless.gdata.data.StringUtils;
+
 /**
  * The PhoneNumber gdata type
  */
@@ -30,4 +32,18 @@ public class PhoneNumber extends ContactsElement {
     super.toString(sb);
     if (phoneNumber != null) sb.append(" phoneNumber:").append(phoneNumber);
   }
+
+  public boolean equals(Object o) {
+    if (!super.equals(o)) {
+      return false;
+    }
+    PhoneNumber other = (PhoneNumber) o;
+    return StringUtils.equals(phoneNumber, other.phoneNumber);
+  }
+
+  public int hashCode() {
+    int hash = super.hashCode();
+    hash = hash * 31 + (phoneNumber == null ? 0 : phoneNumber.hashCode());
+    return hash;
+  }
 }
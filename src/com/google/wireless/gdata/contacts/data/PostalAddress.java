@@ -2,6 +2,8 @@
 
 package com.google.wireless.gdata.contacts.data;
 
+import com.google.wireless.gdata.data.StringUtils;
+
 /**
  * The PostalAddress gdata type
  */
@@ -25,4 +27,18 @@ public class PostalAddress extends ContactsElement {
     super.toString(sb);
     if (value != null) sb.append(" value:").append(value);
   }
+
+  public boolean equals(Object o) {
+    if (!super.equals(o)) {
+      return false;
+    }
+    PostalAddress other = (PostalAddress) o;
+    return StringUtils.equals(value, other.value);
+  }
+
+  public int hashCode() {
+    int hash = super.hashCode();
+    hash = hash * 31 + (value == null ? 0 : value.hashCode());
+    return hash;
+  }
 }
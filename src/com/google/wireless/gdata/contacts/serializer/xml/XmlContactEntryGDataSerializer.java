@@ -21,8 +21,8 @@ import com.google.wireless.gdata.serializer.xml.XmlEntryGDataSerializer;
 import org.xmlpull.v1.XmlSerializer;
 
 import java.io.IOException;
-import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
 
 /**
  *  Serializes Google Contact entries into the Atom XML format.
@@ -52,50 +52,99 @@ public class XmlContactEntryGDataSerializer extends XmlEntryGDataSerializer {
     ContactEntry entry = getContactEntry();
     entry.validate();
 
-    serializeLink(serializer, XmlContactsGDataParser.LINK_REL_EDIT_PHOTO,
-        entry.getLinkEditPhotoHref(), entry.getLinkEditPhotoType());
-    serializeLink(serializer, XmlContactsGDataParser.LINK_REL_PHOTO,
-        entry.getLinkPhotoHref(), entry.getLinkPhotoType());
+    if (format != FORMAT_PARTIAL_UPDATE) {
+      serializeLink(serializer, XmlContactsGDataParser.LINK_REL_EDIT_PHOTO,
+          entry.getLinkEditPhotoHref(), entry.getLinkEditPhotoType());
+      serializeLink(serializer, XmlContactsGDataParser.LINK_REL_PHOTO,
+          entry.getLinkPhotoHref(), entry.getLinkPhotoType());
+    }
 
     // Serialize the contact specific parts of this entry.  Note that
     // gd:ContactSection and gd:geoPt are likely to be deprecated, and
     // are not currently serialized.
-    Enumeration eachEmail = entry.getEmailAddresses().elements();
-    while (eachEmail.hasMoreElements()) {
-      serialize(serializer, (EmailAddress) eachEmail.nextElement());
+    if (isSerialized(format, ContactEntry.FIELD_EMAIL_ADDRESSES)) {
+      List eachEmail = entry.getEmailAddresses();
+      for (int i = 0; i < eachEmail.size(); i++) {
+        serialize(serializer, (EmailAddress) eachEmail.get(i));
+      }
+    }
+
+    if (isSerialized(format, ContactEntry.FIELD_IM_ADDRESSES)) {
+      List eachIm = entry.getImAddresses();
+      for (int i = 0; i < eachIm.size(); i++) {
+        serialize(serializer, (ImAddress) eachIm.get(i));
+      }
     }
 
-    Enumeration eachIm = entry.getImAddresses().elements();
-    while (eachIm.hasMoreElements()) {
-      serialize(serializer, (ImAddress) eachIm.nextElement());
+    if (isSerialized(format, ContactEntry.FIELD_PHONE_NUMBERS)) {
+      List eachPhone = entry.getPhoneNumbers();
+      for (int i = 0; i < eachPhone.size(); i++) {
+        serialize(serializer, (PhoneNumber) eachPhone.get(i));
+      }
     }
 
-    Enumeration eachPhone = entry.getPhoneNumbers().elements();
-    while (eachPhone.hasMoreElements()) {
-      serialize(serializer, (PhoneNumber) eachPhone.nextElement());
+    if (isSerialized(format, ContactEntry.FIELD_POSTAL_ADDRESSES)) {
+      List eachAddress = entry.getPostalAddresses();
+      for (int i = 0; i < eachAddress.size(); i++) {
+        serialize(serializer, (PostalAddress) eachAddress.get(i));
+      }
     }
 
-    Enumeration eachAddress = entry.getPostalAddresses().elements();
-    while (eachAddress.hasMoreElements()) {
-      serialize(serializer, (PostalAddress) eachAddress.nextElement());
+    if (isSerialized(format, ContactEntry.FIELD_ORGANIZATIONS)) {
+      List eachOrganization = entry.getOrganizations();
+      for (int i = 0; i < eachOrganization.size(); i++) {
+        serialize(serializer, (Organization) eachOrganization.get(i));
+      }
     }
 
-    Enumeration eachOrganization = entry.getOrganizations().elements();
-    while (eachOrganization.hasMoreElements()) {
-      serialize(serializer, (Organization) eachOrganization.nextElement());
+    if (isSerialized(format, ContactEntry.FIELD_EXTENDED_PROPERTIES)) {
+      List eachExtendedProperty = entry.getExtendedProperties();
+      for (int i = 0; i < eachExtendedProperty.size(); i++) {
+        serialize(serializer, (ExtendedProperty) eachExtendedProperty.get(i));
+      }
     }
 
-    Enumeration eachExtendedProperty = entry.getExtendedProperties().elements();
-    while (eachExtendedProperty.hasMoreElements()) {
-      serialize(serializer, (ExtendedProperty) eachExtendedProperty.nextElement());
+    if (isSerialized(format, ContactEntry.FIELD_GROUPS)) {
+      List eachGroup = entry.getGroups();
+      for (int i = 0; i < eachGroup.size(); i++) {
+        serialize(serializer, (GroupMembershipInfo) eachGroup.get(i));
+      }
     }
 
-    Enumeration eachGroup = entry.getGroups().elements();
-    while (eachGroup.hasMoreElements()) {
-      serialize(serializer, (GroupMembershipInfo) eachGroup.nextElement());
+    if (isSerialized(format, ContactEntry.FIELD_YOMI_NAME)) {
+      serializeYomiName(serializer, entry.getYomiName());
     }
+  }
 
-    serializeYomiName(serializer, entry.getYomiName());
+  /* (non-Javadoc)
+  * @see XmlEntryGDataSerializer#appendFieldSelectors
+  */
+  protected void appendFieldSelectors(StringBuffer sb, int fields) {
+    super.appendFieldSelectors(sb, fields);
+    if ((fields & ContactEntry.FIELD_EMAIL_ADDRESSES) != 0) {
+      appendFieldSelector(sb, "gd:email");
+    }
+    if ((fields & ContactEntry.FIELD_IM_ADDRESSES) != 0) {
+      appendFieldSelector(sb, "gd:im");
+    }
+    if ((fields & ContactEntry.FIELD_PHONE_NUMBERS) != 0) {
+      appendFieldSelector(sb, "gd:phoneNumber");
+    }
+    if ((fields & ContactEntry.FIELD_POSTAL_ADDRESSES) != 0) {
+      appendFieldSelector(sb, "gd:postalAddress");
+    }
+    if ((fields & ContactEntry.FIELD_ORGANIZATIONS) != 0) {
+      appendFieldSelector(sb, "gd:organization");
+    }
+    if ((fields & ContactEntry.FIELD_EXTENDED_PROPERTIES) != 0) {
+      appendFieldSelector(sb, "gd:extendedProperty");
+    }
+    if ((fields & ContactEntry.FIELD_GROUPS) != 0) {
+      appendFieldSelector(sb, "gContact:groupMembershipInfo");
+    }
+    if ((fields & ContactEntry.FIELD_YOMI_NAME) != 0) {
+      appendFieldSelector(sb, "gContact:yomiName");
+    }
   }
 
   private static void serialize(XmlSerializer serializer, EmailAddress email)
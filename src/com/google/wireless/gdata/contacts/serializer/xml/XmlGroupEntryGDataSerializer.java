@@ -39,7 +39,19 @@ public class XmlGroupEntryGDataSerializer extends XmlEntryGDataSerializer {
     GroupEntry entry = getGroupEntry();
     entry.validate();
 
-    serializeSystemGroup(entry, serializer);
+    if (isSerialized(format, GroupEntry.FIELD_SYSTEM_GROUP)) {
+      serializeSystemGroup(entry, serializer);
+    }
+  }
+
+  /* (non-Javadoc)
+  * @see XmlEntryGDataSerializer#appendFieldSelectors
+  */
+  protected void appendFieldSelectors(StringBuffer sb, int fields) {
+    super.appendFieldSelectors(sb, fields);
+    if ((fields & GroupEntry.FIELD_SYSTEM_GROUP) != 0) {
+      appendFieldSelector(sb, "gContact:systemGroup");
+    }
   }
 
   private void serializeSystemGroup(GroupEntry entry, XmlSerializer serializer) throws IOException {
@@ -0,0 +1,123 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.data;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Unsynchronized list for the repeated elements of an entry, such as the
+ * attendees of an event or the email addresses of a contact.
+ *
+ * No array is allocated until the first element is added, and the array
+ * then grows from a single slot, since most entries have only one or two of
+ * each element.  Clearing the list keeps the array so that entries reused
+ * across a feed do not reallocate.
+ *
+ * Callers outside the entry see the list through {@link #asList()}, a
+ * read-only view.  Instances of this class are not thread safe.
+ */
+public final class CompactList {
+    private static final Object[] EMPTY = new Object[0];
+
+    private Object[] elements = EMPTY;
+    private int size = 0;
+
+    /** Read-only view of a CompactList. */
+    private static class ListView extends AbstractList {
+        private final CompactList list;
+
+        ListView(CompactList list) {
+            this.list = list;
+        }
+
+        public Object get(int index) {
+            return list.get(index);
+        }
+
+        public int size() {
+            return list.size;
+        }
+    }
+
+    /**
+     * Creates a new, empty CompactList.
+     */
+    public CompactList() {
+    }
+
+    /**
+     * Appends an element.
+     * @param element The element.
+     */
+    public void add(Object element) {
+        if (size == elements.length) {
+            Object[] larger = new Object[size == 0 ? 1 : size * 2];
+            System.arraycopy(elements, 0, larger, 0, size);
+            elements = larger;
+        }
+        elements[size++] = element;
+    }
+
+    /**
+     * Removes the first element equal to the provided one.
+     * @param element The element.
+     * @return Whether an element was removed.
+     */
+    public boolean remove(Object element) {
+        for (int i = 0; i < size; i++) {
+            if (element == null ? elements[i] == null : element.equals(elements[i])) {
+                System.arraycopy(elements, i + 1, elements, i, size - i - 1);
+                elements[--size] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an element.
+     * @param index The index of the element.
+     * @return The element.
+     * @throws IndexOutOfBoundsException Thrown if the index is not less than
+     * {@link #size()}.
+     */
+    public Object get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return elements[index];
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return whether the list has no elements
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every element, keeping the allocated array.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            elements[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns a read-only view of this list, which reflects later changes.
+     * @return The view.
+     */
+    public List asList() {
+        return new ListView(this);
+    }
+}
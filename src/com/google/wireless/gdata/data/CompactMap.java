@@ -0,0 +1,320 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.data;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Unsynchronized map for the small keyed collections of an entry, such as
+ * the extended properties of an event or the columns of a list row.
+ *
+ * Keys and values are kept in insertion order in a pair of parallel arrays.
+ * Maps with up to {@link #LINEAR_SCAN_LIMIT} entries are searched linearly;
+ * larger maps add an open-addressing table of indexes into the arrays,
+ * probed linearly.  Nothing is allocated until the first entry is added, and
+ * clearing the map keeps the arrays so that entries reused across a feed do
+ * not reallocate.  Keys must not be null.  Entries cannot be removed one at
+ * a time.
+ *
+ * Callers outside the entry see the map through {@link #asMap()} and
+ * {@link #keyList()}, read-only views that iterate in insertion order.
+ * Instances of this class are not thread safe.
+ */
+public final class CompactMap {
+    /** Maps up to this size are searched without a hash table. */
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private Object[] keys = EMPTY;
+    private Object[] values = EMPTY;
+    private int size = 0;
+    /* index + 1 of the entry in each slot, 0 for an empty slot; null while small. */
+    private int[] table = null;
+
+    /** Read-only list of the keys of a CompactMap. */
+    private static class KeyList extends AbstractList {
+        private final CompactMap map;
+
+        KeyList(CompactMap map) {
+            this.map = map;
+        }
+
+        public Object get(int index) {
+            return map.keyAt(index);
+        }
+
+        public int size() {
+            return map.size;
+        }
+    }
+
+    /** Read-only view of a CompactMap. */
+    private static class MapView extends AbstractMap {
+        private final CompactMap map;
+
+        MapView(CompactMap map) {
+            this.map = map;
+        }
+
+        public Object get(Object key) {
+            return key == null ? null : map.get(key);
+        }
+
+        public boolean containsKey(Object key) {
+            return key != null && map.indexOf(key) >= 0;
+        }
+
+        public int size() {
+            return map.size;
+        }
+
+        public Set entrySet() {
+            return new AbstractSet() {
+                public int size() {
+                    return map.size;
+                }
+
+                public Iterator iterator() {
+                    return new Iterator() {
+                        private int next = 0;
+
+                        public boolean hasNext() {
+                            return next < map.size;
+                        }
+
+                        public Object next() {
+                            if (next >= map.size) {
+                                throw new NoSuchElementException();
+                            }
+                            return new MapEntry(map.keys[next], map.values[next++]);
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /** Immutable entry returned by the map view. */
+    private static class MapEntry implements Map.Entry {
+        private final Object key;
+        private final Object value;
+
+        MapEntry(Object key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry e = (Map.Entry) o;
+            return key.equals(e.getKey())
+                    && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        public int hashCode() {
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Creates a new, empty CompactMap.
+     */
+    public CompactMap() {
+    }
+
+    /**
+     * Returns the value for a key.
+     * @param key The key.
+     * @return The value, or null if the key is not in the map.
+     */
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    /**
+     * @return whether the key is in the map
+     */
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Sets the value for a key.  A new key is added after the existing ones.
+     * @param key The key.
+     * @param value The value.
+     * @return The previous value, or null if the key was not in the map.
+     */
+    public Object put(Object key, Object value) {
+        if (key == null) {
+            throw new NullPointerException("key must not be null");
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        if (size == keys.length) {
+            int capacity = size == 0 ? 2 : size * 2;
+            Object[] newKeys = new Object[capacity];
+            Object[] newValues = new Object[capacity];
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            System.arraycopy(values, 0, newValues, 0, size);
+            keys = newKeys;
+            values = newValues;
+        }
+        keys[size] = key;
+        values[size] = value;
+        ++size;
+        if (table != null) {
+            if (size * 4 > table.length * 3) {
+                rehash(table.length * 2);
+            } else {
+                insert(size - 1);
+            }
+        } else if (size > LINEAR_SCAN_LIMIT) {
+            rehash(LINEAR_SCAN_LIMIT * 4);
+        }
+        return null;
+    }
+
+    /**
+     * @return the key of the entry at index, in insertion order
+     */
+    public Object keyAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return keys[index];
+    }
+
+    /**
+     * @return the value of the entry at index, in insertion order
+     */
+    public Object valueAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return whether the map has no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every entry, keeping the allocated arrays.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        size = 0;
+        if (table != null) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns a read-only view of this map, which reflects later changes.
+     * @return The view.
+     */
+    public Map asMap() {
+        return new MapView(this);
+    }
+
+    /**
+     * Returns a read-only list of the keys of this map, in insertion order,
+     * which reflects later changes.
+     * @return The keys.
+     */
+    public List keyList() {
+        return new KeyList(this);
+    }
+
+    private int indexOf(Object key) {
+        if (table == null) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (keys[index].equals(key)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            insert(i);
+        }
+    }
+
+    private void insert(int index) {
+        int mask = table.length - 1;
+        int slot = hash(keys[index]) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private static int hash(Object key) {
+        // spread the bits, since String hashes of similar names differ mostly in
+        // the low bits.
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
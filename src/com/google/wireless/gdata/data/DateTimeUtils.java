@@ -0,0 +1,176 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.data;
+
+/**
+ * Utility class for reading and writing the RFC 3339 timestamps used by
+ * GData (e.g. "2008-04-01T09:30:00.000-07:00" or "2008-04-01").  Works
+ * directly on the characters, without allocating Calendar or DateFormat
+ * objects.
+ */
+public final class DateTimeUtils {
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    // utility class
+    private DateTimeUtils() {
+    }
+
+    /**
+     * Parses an RFC 3339 date or date-time.  A date without a time is
+     * midnight UTC; a date-time without an offset is treated as UTC.
+     *
+     * @param value The timestamp.
+     * @param defaultValue The value to return if the timestamp is missing or
+     * malformed.
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    public static long parseRfc3339(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        int length = value.length();
+        if (length < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return defaultValue;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return defaultValue;
+        }
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+        if (length == 10) {
+            return millis;
+        }
+
+        char separator = value.charAt(10);
+        if ((separator != 'T' && separator != 't' && separator != ' ') || length < 19
+                || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return defaultValue;
+        }
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = digits(value, 17, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return defaultValue;
+        }
+        millis += ((hour * 60L + minute) * 60L + second) * 1000L;
+
+        int i = 19;
+        if (i < length && value.charAt(i) == '.') {
+            // keep up to millisecond precision, ignore the rest.
+            int scale = 100;
+            ++i;
+            int start = i;
+            while (i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+                if (scale > 0) {
+                    millis += (value.charAt(i) - '0') * scale;
+                    scale /= 10;
+                }
+                ++i;
+            }
+            if (i == start) {
+                return defaultValue;
+            }
+        }
+        if (i == length) {
+            return millis;
+        }
+
+        char zone = value.charAt(i);
+        if ((zone == 'Z' || zone == 'z') && i + 1 == length) {
+            return millis;
+        }
+        if ((zone != '+' && zone != '-') || i + 6 != length || value.charAt(i + 3) != ':') {
+            return defaultValue;
+        }
+        int offsetHours = digits(value, i + 1, 2);
+        int offsetMinutes = digits(value, i + 4, 2);
+        if (offsetHours < 0 || offsetMinutes < 0) {
+            return defaultValue;
+        }
+        long offset = (offsetHours * 60L + offsetMinutes) * MILLIS_PER_MINUTE;
+        return zone == '+' ? millis - offset : millis + offset;
+    }
+
+    /**
+     * Formats a timestamp as an RFC 3339 date-time in UTC with millisecond
+     * precision, e.g. "2008-04-01T16:30:00.000Z".
+     *
+     * @param millis The timestamp in milliseconds since the epoch.
+     * @return The formatted timestamp.
+     */
+    public static String formatRfc3339(long millis) {
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        long millisOfDay = millis - days * MILLIS_PER_DAY;
+
+        // civil-from-days; see daysFromCivil.
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+                - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuffer sb = new StringBuffer(24);
+        pad(sb, (int) year, 4);
+        sb.append('-');
+        pad(sb, month, 2);
+        sb.append('-');
+        pad(sb, day, 2);
+        sb.append('T');
+        pad(sb, (int) (millisOfDay / 3600000), 2);
+        sb.append(':');
+        pad(sb, (int) (millisOfDay / 60000 % 60), 2);
+        sb.append(':');
+        pad(sb, (int) (millisOfDay / 1000 % 60), 2);
+        sb.append('.');
+        pad(sb, (int) (millisOfDay % 1000), 3);
+        sb.append('Z');
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of days between 1970-01-01 and the given date in the
+     * proleptic Gregorian calendar (H. Hinnant's days_from_civil).
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static long floorDiv(long a, long b) {
+        long q = a / b;
+        return (a % b != 0 && ((a < 0) != (b < 0))) ? q - 1 : q;
+    }
+
+    /** Parses count decimal digits at start, or returns -1. */
+    private static int digits(String value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static void pad(StringBuffer sb, int value, int width) {
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            sb.append('0');
+        }
+        sb.append(digits);
+    }
+}
@@ -12,6 +12,32 @@ import com.google.wireless.gdata.parser.ParseException;
 // APIs.
 // TODO: comment that setId(), etc., only used for parsing code.
 public class Entry {
+    /** The title of the entry. */
+    public static final int FIELD_TITLE = 0x01;
+    /** The summary of the entry. */
+    public static final int FIELD_SUMMARY = 0x02;
+    /** The content of the entry. */
+    public static final int FIELD_CONTENT = 0x04;
+    /** The author of the entry and their email. */
+    public static final int FIELD_AUTHOR = 0x08;
+    /** The category of the entry and its scheme. */
+    public static final int FIELD_CATEGORY = 0x10;
+    /**
+     * The fields of a subclass that does not track its changes, which are
+     * always dirty.  Such entries have to be updated in full.
+     */
+    public static final int FIELD_EXTRA = 0x40000000;
+
+    /**
+     * The first field bit available to subclasses, which may use the bits
+     * from this one up to {@link #FIELD_EXTRA}, exclusive.
+     */
+    protected static final int FIELD_FIRST_SUBCLASS = 0x100;
+
+    /* The fields cleared by clear(). */
+    private static final int ENTRY_FIELDS =
+            FIELD_TITLE | FIELD_SUMMARY | FIELD_CONTENT | FIELD_AUTHOR | FIELD_CATEGORY;
+
     private String id = null;
     private String title = null;
     private String editUri = null;
@@ -25,6 +51,10 @@ public class Entry {
     private String publicationDate = null;
     private String updateDate = null;
     private boolean deleted = false;
+    private String batchId = null;
+    private int batchStatusCode = -1;
+    private String batchStatusReason = null;
+    private int dirtyFields = 0;
     
     /**
      * Creates a new empty entry.
@@ -49,6 +79,106 @@ public class Entry {
         publicationDate = null;
         updateDate = null;
         deleted = false;
+        batchId = null;
+        batchStatusCode = -1;
+        batchStatusReason = null;
+        dirtyFields = ENTRY_FIELDS;
+    }
+
+    /**
+     * Marks every field of this entry as clean, e.g. once it has been parsed
+     * or sent to the server.  Later changes are tracked against the current
+     * values of the fields.
+     */
+    public void markClean() {
+        dirtyFields = 0;
+        discardSnapshot();
+    }
+
+    /**
+     * Prepares this entry for changes that it cannot see, such as elements
+     * of its lists being modified in place.  Must be called before such
+     * changes for them to be reported by {@link #getDirtyFields()}; changes
+     * made through the entry's own methods are tracked without it.
+     */
+    public void beginEdit() {
+        takeSnapshot();
+    }
+
+    /**
+     * @return true if any field changed since {@link #markClean()}
+     */
+    public boolean isDirty() {
+        return getDirtyFields() != 0;
+    }
+
+    /**
+     * @param fields the FIELD_* bits of the fields to check
+     * @return true if any of the fields changed since {@link #markClean()}
+     */
+    public boolean isDirty(int fields) {
+        return (getDirtyFields() & fields) != 0;
+    }
+
+    /**
+     * Returns the fields that changed since {@link #markClean()}, as a
+     * combination of FIELD_* bits of this class and its subclasses.  Fields
+     * whose setters were called with their current value are not dirty.
+     * @return the FIELD_* bits of the dirty fields
+     */
+    public int getDirtyFields() {
+        return dirtyFields | getChangedFields();
+    }
+
+    /**
+     * Marks fields as dirty.  Used by the setters of subclasses.
+     * @param fields the FIELD_* bits of the fields that changed
+     */
+    protected void markDirty(int fields) {
+        dirtyFields |= fields;
+    }
+
+    /**
+     * Marks a field as dirty if its value changes.
+     * @param field the FIELD_* bit of the field
+     * @param oldValue the current value of the field
+     * @param newValue the value being set
+     */
+    protected void markDirty(int field, String oldValue, String newValue) {
+        if (oldValue == null ? newValue != null : !oldValue.equals(newValue)) {
+            dirtyFields |= field;
+        }
+    }
+
+    /**
+     * Hook for subclasses that track changes by comparing the values of
+     * fields to a snapshot, e.g. lists whose elements may be modified in
+     * place.  Called by {@link #beginEdit()}, and by subclasses before they
+     * change such fields.  Only the first call after {@link #markClean()}
+     * should take the snapshot.
+     */
+    protected void takeSnapshot() {
+        // no-op in this class.
+    }
+
+    /**
+     * Hook for subclasses that take snapshots with {@link #takeSnapshot()}.
+     * Called by {@link #markClean()} to drop the snapshot, since the current
+     * values of the fields are now the clean ones.
+     */
+    protected void discardSnapshot() {
+        // no-op in this class.
+    }
+
+    /**
+     * Hook for subclasses that track changes by comparing the values of
+     * fields to the snapshot taken by {@link #takeSnapshot()}.  Subclasses
+     * that track all of their changes must override this method.
+     * @return the FIELD_* bits of the fields that differ from the snapshot;
+     * {@link #FIELD_EXTRA} in this class
+     */
+    protected int getChangedFields() {
+        return FIELD_EXTRA;
     }
 
     /**
@@ -62,6 +192,7 @@ public class Entry {
      * @param author the author to set
      */
     public void setAuthor(String author) {
+        markDirty(FIELD_AUTHOR, this.author, author);
         this.author = author;
     }
 
@@ -76,6 +207,7 @@ public class Entry {
      * @param category the category to set
      */
     public void setCategory(String category) {
+        markDirty(FIELD_CATEGORY, this.category, category);
         this.category = category;
     }
 
@@ -90,6 +222,7 @@ public class Entry {
      * @param categoryScheme the categoryScheme to set
      */
     public void setCategoryScheme(String categoryScheme) {
+        markDirty(FIELD_CATEGORY, this.categoryScheme, categoryScheme);
         this.categoryScheme = categoryScheme;
     }
 
@@ -104,6 +237,7 @@ public class Entry {
      * @param content the content to set
      */
     public void setContent(String content) {
+        markDirty(FIELD_CONTENT, this.content, content);
         this.content = content;
     }
 
@@ -175,6 +309,7 @@ public class Entry {
      * @param summary the summary to set
      */
     public void setSummary(String summary) {
+        markDirty(FIELD_SUMMARY, this.summary, summary);
         this.summary = summary;
     }
 
@@ -189,6 +324,7 @@ public class Entry {
      * @param title the title to set
      */
     public void setTitle(String title) {
+        markDirty(FIELD_TITLE, this.title, title);
         this.title = title;
     }
 
@@ -219,6 +355,50 @@ public class Entry {
     public void setDeleted(boolean isDeleted) {
         deleted = isDeleted;
     }
+
+    /**
+     * @return the batch:id of this entry in a batch response, or null
+     */
+    public String getBatchId() {
+        return batchId;
+    }
+
+    /**
+     * @param batchId the batch:id to set
+     */
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+
+    /**
+     * @return the HTTP status code of the batch:status of this entry in a
+     * batch response, or -1
+     */
+    public int getBatchStatusCode() {
+        return batchStatusCode;
+    }
+
+    /**
+     * @param batchStatusCode the batch:status code to set
+     */
+    public void setBatchStatusCode(int batchStatusCode) {
+        this.batchStatusCode = batchStatusCode;
+    }
+
+    /**
+     * @return the reason of the batch:status of this entry in a batch
+     * response, or null
+     */
+    public String getBatchStatusReason() {
+        return batchStatusReason;
+    }
+
+    /**
+     * @param batchStatusReason the batch:status reason to set
+     */
+    public void setBatchStatusReason(String batchStatusReason) {
+        this.batchStatusReason = batchStatusReason;
+    }
  
     /**
      * Appends the name and value to this StringBuffer, if value is not null.
@@ -258,6 +438,10 @@ public class Entry {
         appendIfNotNull(sb, "PUBLICATION DATE", publicationDate);
         appendIfNotNull(sb, "UPDATE DATE", updateDate);
         appendIfNotNull(sb, "DELETED", String.valueOf(deleted));
+        appendIfNotNull(sb, "BATCH ID", batchId);
+        if (batchStatusCode != -1) {
+            appendIfNotNull(sb, "BATCH STATUS", batchStatusCode + " " + batchStatusReason);
+        }
     }
 
     /**
@@ -283,6 +467,7 @@ public class Entry {
      * @param email the email to set
      */
     public void setEmail(String email) {
+        markDirty(FIELD_AUTHOR, this.email, email);
         this.email = email;
     }
 
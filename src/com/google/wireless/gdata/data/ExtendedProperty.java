@@ -5,7 +5,7 @@ import com.google.wireless.gdata.parser.ParseException;
 /**
  * The extendedProperty gdata type
  */
-public class ExtendedProperty {
+public class ExtendedProperty implements Cloneable {
   private String name;
   private String value;
   private String xmlBlob;
@@ -41,6 +41,34 @@ public class ExtendedProperty {
     if (xmlBlob != null) sb.append(" xmlBlob:").append(xmlBlob);
   }
 
+  public boolean equals(Object o) {
+    if (!(o instanceof ExtendedProperty)) {
+      return false;
+    }
+    ExtendedProperty other = (ExtendedProperty) o;
+    return StringUtils.equals(name, other.name) && StringUtils.equals(value, other.value)
+        && StringUtils.equals(xmlBlob, other.xmlBlob);
+  }
+
+  public int hashCode() {
+    int hash = name == null ? 0 : name.hashCode();
+    hash = hash * 31 + (value == null ? 0 : value.hashCode());
+    hash = hash * 31 + (xmlBlob == null ? 0 : xmlBlob.hashCode());
+    return hash;
+  }
+
+  /**
+   * @return a copy of this property
+   */
+  public Object clone() {
+    try {
+      return super.clone();
+    } catch (CloneNotSupportedException e) {
+      // cannot happen, this class is Cloneable.
+      throw new IllegalStateException(e.toString());
+    }
+  }
+
   public void validate() throws ParseException {
     if (name == null) {
       throw new ParseException("name must not be null");
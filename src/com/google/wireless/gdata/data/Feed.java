@@ -18,6 +18,7 @@ public class Feed {
     private String lastUpdated;
     private String category;
     private String categoryScheme;
+    private String nextLink;
 
     /**
      * Creates a new, empty feed.
@@ -119,4 +120,19 @@ public class Feed {
         this.title = title;
     }
 
+    /**
+     * @return the url of the next page of this feed (the rel="next" link), or
+     * null if this is the last page
+     */
+    public String getNextLink() {
+        return nextLink;
+    }
+
+    /**
+     * @param nextLink the url of the next page of this feed
+     */
+    public void setNextLink(String nextLink) {
+        this.nextLink = nextLink;
+    }
+
 }
@@ -0,0 +1,143 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.data;
+
+/**
+ * Assigns a small int code to each distinct string, so that columns of
+ * repeated strings (ids, titles, emails, column names) can be stored as
+ * int arrays.  Codes are assigned in order, starting at 0, and never change.
+ *
+ * Strings are kept in an array indexed by code; lookups go through an
+ * open-addressing table of codes, probed linearly.  Instances of this class
+ * are not thread safe.
+ */
+public final class StringDictionary {
+    /** The code of null, which is never stored. */
+    public static final int NULL_CODE = -1;
+
+    private String[] strings;
+    private int[] hashes;
+    private int size = 0;
+    /* code + 1 in each slot, 0 for an empty slot. */
+    private int[] table;
+
+    /**
+     * Creates a new, empty StringDictionary.
+     */
+    public StringDictionary() {
+        this(16);
+    }
+
+    /**
+     * Creates a new, empty StringDictionary.
+     * @param expectedSize How many strings the dictionary is expected to hold.
+     */
+    public StringDictionary(int expectedSize) {
+        int capacity = Math.max(4, expectedSize);
+        strings = new String[capacity];
+        hashes = new int[capacity];
+        int tableSize = 8;
+        while (tableSize * 3 < capacity * 4) {
+            tableSize *= 2;
+        }
+        table = new int[tableSize];
+    }
+
+    /**
+     * Returns the code for a string, adding the string if it is new.
+     * @param s The string, or null.
+     * @return The code, or {@link #NULL_CODE} if s is null.
+     */
+    public int intern(String s) {
+        if (s == null) {
+            return NULL_CODE;
+        }
+        int hash = hash(s);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int code = table[slot] - 1;
+            if (hashes[code] == hash && strings[code].equals(s)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == strings.length) {
+            String[] newStrings = new String[size * 2];
+            int[] newHashes = new int[size * 2];
+            System.arraycopy(strings, 0, newStrings, 0, size);
+            System.arraycopy(hashes, 0, newHashes, 0, size);
+            strings = newStrings;
+            hashes = newHashes;
+        }
+        int code = size++;
+        strings[code] = s;
+        hashes[code] = hash;
+        if (size * 4 > table.length * 3) {
+            rehash(table.length * 2);
+        } else {
+            table[slot] = code + 1;
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code for a string without adding it.
+     * @param s The string, or null.
+     * @return The code, or {@link #NULL_CODE} if s is null or not in the
+     * dictionary.
+     */
+    public int lookup(String s) {
+        if (s == null) {
+            return NULL_CODE;
+        }
+        int hash = hash(s);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int code = table[slot] - 1;
+            if (hashes[code] == hash && strings[code].equals(s)) {
+                return code;
+            }
+        }
+        return NULL_CODE;
+    }
+
+    /**
+     * Returns the string for a code.
+     * @param code A code returned by {@link #intern}.
+     * @return The string, or null for {@link #NULL_CODE}.
+     */
+    public String get(int code) {
+        if (code == NULL_CODE) {
+            return null;
+        }
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("Code: " + code + ", size: " + size);
+        }
+        return strings[code];
+    }
+
+    /**
+     * @return the number of strings in the dictionary
+     */
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int tableSize) {
+        table = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = hashes[code] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = code + 1;
+        }
+    }
+
+    private static int hash(String s) {
+        int h = s.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
@@ -6,6 +6,15 @@ package com.google.wireless.gdata.data;
  * Utility class for working with and manipulating Strings.
  */
 public final class StringUtils {
+    /* The powers of ten that are exactly representable as doubles. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /* The largest mantissa that is exactly representable as a double. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
     // utility class
     private StringUtils() {
     }
@@ -20,6 +29,16 @@ public final class StringUtils {
         return ((string == null) || (string.length() == 0));
     }
 
+    /**
+     * Returns whether two Strings are equal, treating two nulls as equal.
+     * @param a The first String, or null.
+     * @param b The second String, or null.
+     * @return Whether the Strings are equal.
+     */
+    public static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
     /**
      * Returns {@code true} if the given string is null, empty, or comprises only
      * whitespace characters, as defined by {@link Character#isWhitespace(char)}.
@@ -51,4 +70,95 @@ public final class StringUtils {
         }
         return defaultValue;
     }
+
+    /**
+     * Parses a decimal number, such as the numeric value of a spreadsheet
+     * cell.
+     *
+     * Numbers of up to 15 or so significant digits with a small exponent are
+     * converted directly, as an exact mantissa multiplied or divided by an
+     * exact power of ten, which rounds correctly.  Anything else is left to
+     * {@link Double#parseDouble}.
+     *
+     * @param string The String to parse, or null.
+     * @param defaultValue The value to return if string is null or is not a
+     * number.
+     * @return The number.
+     */
+    public static double parseDouble(String string, double defaultValue) {
+        if (string == null) {
+            return defaultValue;
+        }
+        int length = string.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+            negative = string.charAt(i) == '-';
+            ++i;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        boolean sawPoint = false;
+        boolean exact = true;
+        for (; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (mantissa < MAX_EXACT_MANTISSA / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (sawPoint) {
+                        --exponent;
+                    }
+                } else {
+                    // too many digits for the mantissa to stay exact.
+                    exact = false;
+                    break;
+                }
+            } else if (c == '.' && !sawPoint) {
+                sawPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (exact && sawDigit && i < length
+                && (string.charAt(i) == 'e' || string.charAt(i) == 'E')) {
+            ++i;
+            boolean negativeExponent = false;
+            if (i < length && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+                negativeExponent = string.charAt(i) == '-';
+                ++i;
+            }
+            int explicitExponent = 0;
+            int start = i;
+            for (; i < length && explicitExponent < 1000; i++) {
+                char c = string.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                explicitExponent = explicitExponent * 10 + (c - '0');
+            }
+            if (i == start) {
+                exact = false;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (exact && sawDigit && i == length
+                && exponent >= -22 && exponent <= 22) {
+            double value = (double) mantissa;
+            if (exponent < 0) {
+                value /= POWERS_OF_TEN[-exponent];
+            } else {
+                value *= POWERS_OF_TEN[exponent];
+            }
+            return negative ? -value : value;
+        }
+
+        try {
+            return Double.parseDouble(string);
+        } catch (NumberFormatException nfe) {
+            return defaultValue;
+        }
+    }
 }
@@ -0,0 +1,216 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.parser.xml;
+
+/**
+ * Records the most recent elements seen by a parser into a fixed-size ring
+ * buffer, so that the context of a parse failure can be reported without
+ * logging every element of every feed.  What is recorded depends on the
+ * parser the tracer is attached to: {@link XmlGDataParser} records the start
+ * of each entry and the start tags of the entry's direct children, but not
+ * the elements nested inside them, which its subclasses read themselves.
+ * {@link SimplePullParser} records every start tag, end tag and text block
+ * returned by {@link SimplePullParser#nextTagOrText}, for code that parses
+ * with it directly.
+ *
+ * All storage is allocated up front; recording an element stores a few
+ * primitives and a reference to the element name the pull parser already
+ * created.  Nothing is formatted until {@link #dump} is called, which the
+ * parsers do only when they throw a parse exception.
+ *
+ * Entries can be sampled by position (every nth entry) or by a hash of their
+ * id.  Id sampling is decided when the entry's &lt;id&gt; is seen; anything
+ * recorded for the entry before that is discarded if the entry is not
+ * sampled.
+ *
+ * A tracer is attached to a single parser, per feed, with
+ * {@link XmlGDataParser#setParseTracer} or
+ * {@link SimplePullParser#setParseTracer}.  Instances of this class are not
+ * thread safe.
+ */
+public class ParseTracer {
+  private static final byte EVENT_START_TAG = 1;
+  private static final byte EVENT_END_TAG = 2;
+  private static final byte EVENT_TEXT = 3;
+  private static final byte EVENT_ENTRY = 4;
+
+  private final int capacity;
+  private final byte[] types;
+  private final int[] depths;
+  private final String[] names;
+  private final int[] values;
+  private final long[] times;
+
+  /* The slot the next event goes into, and how many slots hold events. */
+  private int next = 0;
+  private int valid = 0;
+
+  private int entryInterval = 1;
+  private int idHashModulus = 0;
+
+  private boolean recording = true;
+  private int entryIndex = -1;
+  private int eventsInEntry = 0;
+  private boolean entryIdPending = false;
+
+  /**
+   * Creates a new ParseTracer.
+   * @param capacity How many of the most recent events should be kept.
+   */
+  public ParseTracer(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.capacity = capacity;
+    types = new byte[capacity];
+    depths = new int[capacity];
+    names = new String[capacity];
+    values = new int[capacity];
+    times = new long[capacity];
+  }
+
+  /**
+   * Traces only every nth entry of the feed.  Elements recorded outside of
+   * entries are not sampled.
+   * @param interval The sampling interval; 1 traces every entry.
+   */
+  public void setEntrySampling(int interval) {
+    entryInterval = Math.max(1, interval);
+  }
+
+  /**
+   * Traces only entries whose id hashes to 0 modulo the given value, so
+   * that the same entries are traced every time a feed is parsed.
+   * @param modulus The sampling modulus, or 0 to disable id sampling.
+   */
+  public void setIdHashSampling(int modulus) {
+    idHashModulus = Math.max(0, modulus);
+  }
+
+  /**
+   * Records the start of an entry and decides whether it is sampled.
+   */
+  public void beginEntry() {
+    ++entryIndex;
+    recording = entryIndex % entryInterval == 0;
+    entryIdPending = recording && idHashModulus > 0;
+    eventsInEntry = 0;
+    record(EVENT_ENTRY, 0, null, entryIndex);
+  }
+
+  /**
+   * Records the id of the current entry, applying id sampling.
+   * @param id The entry's id.
+   */
+  public void entryId(String id) {
+    if (!entryIdPending) {
+      return;
+    }
+    entryIdPending = false;
+    if (id == null || (id.hashCode() & 0x7fffffff) % idHashModulus != 0) {
+      // not sampled: forget what was recorded for this entry.
+      int discard = Math.min(eventsInEntry, valid);
+      next = (next - discard + capacity) % capacity;
+      valid -= discard;
+      recording = false;
+    }
+  }
+
+  /**
+   * Records a start tag.
+   * @param depth The depth of the element.
+   * @param name The name of the element.
+   * @param attributeCount The number of attributes on the element.
+   */
+  public void startTag(int depth, String name, int attributeCount) {
+    record(EVENT_START_TAG, depth, name, attributeCount);
+  }
+
+  /**
+   * Records an end tag.
+   * @param depth The depth of the element.
+   * @param name The name of the element, or null if not known.
+   */
+  public void endTag(int depth, String name) {
+    record(EVENT_END_TAG, depth, name, 0);
+  }
+
+  /**
+   * Records a text block.
+   * @param depth The depth of the text.
+   * @param length The length of the text.
+   */
+  public void text(int depth, int length) {
+    record(EVENT_TEXT, depth, null, length);
+  }
+
+  /**
+   * Discards everything that has been recorded.
+   */
+  public void clear() {
+    for (int i = 0; i < capacity; i++) {
+      names[i] = null;
+    }
+    next = 0;
+    valid = 0;
+    eventsInEntry = 0;
+  }
+
+  /**
+   * Formats the recorded events, oldest first, one per line.  Times are
+   * shown in microseconds since the previous event.
+   * @return The formatted trace.
+   */
+  public String dump() {
+    StringBuffer sb = new StringBuffer(valid * 32 + 32);
+    sb.append("parse trace, last ").append(valid).append(" events:\n");
+    int start = (next - valid + capacity) % capacity;
+    long previous = valid > 0 ? times[start] : 0;
+    for (int n = 0; n < valid; n++) {
+      int i = (start + n) % capacity;
+      sb.append('+').append((times[i] - previous) / 1000).append("us ");
+      previous = times[i];
+      for (int d = 0; d < depths[i]; d++) {
+        sb.append("  ");
+      }
+      switch (types[i]) {
+        case EVENT_ENTRY:
+          sb.append("[entry ").append(values[i]).append(']');
+          break;
+        case EVENT_START_TAG:
+          sb.append('<').append(names[i]);
+          if (values[i] > 0) {
+            sb.append(" (").append(values[i]).append(" attrs)");
+          }
+          sb.append('>');
+          break;
+        case EVENT_END_TAG:
+          sb.append("</").append(names[i] == null ? "" : names[i]).append('>');
+          break;
+        case EVENT_TEXT:
+          sb.append("text (").append(values[i]).append(" chars)");
+          break;
+        default:
+          break;
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  private void record(byte type, int depth, String name, int value) {
+    if (!recording) {
+      return;
+    }
+    types[next] = type;
+    depths[next] = depth;
+    names[next] = name;
+    values[next] = value;
+    times[next] = System.nanoTime();
+    next = (next + 1) % capacity;
+    if (valid < capacity) {
+      ++valid;
+    }
+    ++eventsInEntry;
+  }
+}
@@ -35,6 +35,7 @@ public class SimplePullParser {
 
   private final XmlPullParser mParser;
   private String mCurrentStartTag;
+  private ParseTracer mTracer;
 
   /**
    * Constructs a new SimplePullParser to parse the xml
@@ -43,6 +44,27 @@ public class SimplePullParser {
   public SimplePullParser(XmlPullParser parser) {
     mParser = parser;
     mCurrentStartTag = null;
+    mTracer = null;
+  }
+
+  /**
+   * Sets the tracer that records the elements returned by this parser.  Its
+   * trace is included in the message of any ParseException thrown by
+   * {@link #nextTagOrText}.
+   *
+   * @param tracer the tracer, or null to stop tracing
+   */
+  public void setParseTracer(ParseTracer tracer) {
+    mTracer = tracer;
+  }
+
+  /**
+   * Returns the tracer recording the elements returned by this parser.
+   *
+   * @return the tracer, or null if this parser is not being traced
+   */
+  public ParseTracer getParseTracer() {
+    return mTracer;
   }
 
   /**
@@ -67,6 +89,9 @@ public class SimplePullParser {
       try {
         eventType = mParser.next();
       } catch (XmlPullParserException e) {
+        if (mTracer != null) {
+          throw new ParseException(e.getMessage() + "\n" + mTracer.dump(), e);
+        }
         throw new ParseException(e);
       }
       int depth = mParser.getDepth();
@@ -74,33 +99,16 @@ public class SimplePullParser {
 
       if (eventType == XmlPullParser.START_TAG && depth == parentDepth + 1) {
         mCurrentStartTag = mParser.getName();
-          // TODO: this is an example of how to do logging of the XML
-//                if (mLogTag != null && Log.isLoggable(mLogTag, Log.DEBUG)) {
-//                    StringBuilder sb = new StringBuilder();
-//                    for (int i = 0; i < depth; i++) sb.append("  ");
-//                    sb.append("<").append(mParser.getName());
-//                    int count = mParser.getAttributeCount();
-//                    for (int i = 0; i < count; i++) {
-//                        sb.append(" ");
-//                        sb.append(mParser.getAttributeName(i));
-//                        sb.append("=\"");
-//                        sb.append(mParser.getAttributeValue(i));
-//                        sb.append("\"");
-//                    }
-//                    sb.append(">");
-//                    Log.d(mLogTag, sb.toString());
-//                }
+        if (mTracer != null) {
+          mTracer.startTag(depth, mCurrentStartTag, mParser.getAttributeCount());
+        }
         return mParser.getName();
       }
 
       if (eventType == XmlPullParser.END_TAG && depth == parentDepth) {
-          // TODO: this is an example of how to do logging of the XML
-//                if (mLogTag != null && Log.isLoggable(mLogTag, Log.DEBUG)) {
-//                    StringBuilder sb = new StringBuilder();
-//                    for (int i = 0; i < depth; i++) sb.append("  ");
-//                    sb.append("</>"); // Not quite valid xml but it gets the job done.
-//                    Log.d(mLogTag, sb.toString());
-//                }
+        if (mTracer != null) {
+          mTracer.endTag(depth, mParser.getName());
+        }
         return null;
       }
 
@@ -113,6 +121,9 @@ public class SimplePullParser {
           continue;
         }
         String text = mParser.getText();
+        if (mTracer != null) {
+          mTracer.text(depth, text.length());
+        }
         textBuffer.append(text);
         return TEXT_TAG;
       }
@@ -203,7 +214,8 @@ public class SimplePullParser {
     String value = mParser.getAttributeValue(namespace, name);
     if (null == value) {
       throw new ParseException(
-          "missing '" + name + "' attribute on '" + mCurrentStartTag + "' element");
+          "missing '" + name + "' attribute on '" + mCurrentStartTag + "' element"
+          + (mTracer == null ? "" : "\n" + mTracer.dump()));
     }
     return value;
   }
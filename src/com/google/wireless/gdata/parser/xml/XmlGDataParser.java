@@ -2,6 +2,8 @@
 
 package com.google.wireless.gdata.parser.xml;
 
+import com.google.wireless.gdata.GDataEventListener;
+import com.google.wireless.gdata.GDataEvents;
 import com.google.wireless.gdata.data.Entry;
 import com.google.wireless.gdata.data.Feed;
 import com.google.wireless.gdata.data.StringUtils;
@@ -37,10 +39,25 @@ public class XmlGDataParser implements GDataParser {
   public static final String NAMESPACE_GD_URI =
       "http://schemas.google.com/g/2005";
 
+  /** Namespace prefix for GData batch operations */
+  public static final String NAMESPACE_BATCH = "batch";
+
+  /** Namespace URI for GData batch operations */
+  public static final String NAMESPACE_BATCH_URI =
+      "http://schemas.google.com/gdata/batch";
+
   private final InputStream is;
   private final XmlPullParser parser;
   private boolean isInBadState;
 
+  /* For GDataEvents: when init() started (-1 if not tracing), entries read. */
+  private long feedStartNanos = -1;
+  private int entryCount = 0;
+  private String entryType = null;
+
+  /* Traces elements for parse failure reports; null if not tracing. */
+  private ParseTracer tracer = null;
+
   /**
    * Creates a new XmlGDataParser for a feed in the provided InputStream.
    * @param is The InputStream that should be parsed.
@@ -66,6 +83,9 @@ public class XmlGDataParser implements GDataParser {
   * @see com.google.wireless.gdata.parser.GDataParser#init()
   */
   public final Feed init() throws ParseException {
+    if (GDataEvents.getListener() != null) {
+      feedStartNanos = System.nanoTime();
+    }
     int eventType;
     try {
       eventType = parser.getEventType();
@@ -116,6 +136,25 @@ public class XmlGDataParser implements GDataParser {
     throw new ParseException("No <feed> found in document.");
   }
 
+  /**
+   * Sets the tracer that records the entries of this feed and the direct
+   * children of each entry; elements nested deeper are not recorded.  Its
+   * trace is included in the message of any ParseException thrown while
+   * parsing an entry.
+   * @param tracer The tracer, or null to stop tracing.
+   */
+  public void setParseTracer(ParseTracer tracer) {
+    this.tracer = tracer;
+  }
+
+  /**
+   * Returns the tracer recording the entries of this feed.
+   * @return The tracer, or null if this feed is not being traced.
+   */
+  public ParseTracer getParseTracer() {
+    return tracer;
+  }
+
   /**
    * Returns the {@link XmlPullParser} being used to parse this feed.
    */
@@ -185,6 +224,9 @@ public class XmlGDataParser implements GDataParser {
             if (!StringUtils.isEmpty(categoryScheme)) {
               feed.setCategoryScheme(categoryScheme);
             }
+          } else if ("link".equals(name)
+              && "next".equals(parser.getAttributeValue(null /* ns */, "rel"))) {
+            feed.setNextLink(parser.getAttributeValue(null /* ns */, "href"));
           } else if ("entry".equals(name)) {
             // stop parsing here.
             // TODO: pay attention to depth?
@@ -261,10 +303,18 @@ public class XmlGDataParser implements GDataParser {
       entry.clear();
     }
 
+    if (tracer != null) {
+      tracer.beginEntry();
+    }
+    GDataEventListener listener = GDataEvents.getListener();
+    long start = listener == null ? 0 : System.nanoTime();
+    boolean parsed = false;
     try {
       parser.next();
       handleEntry(entry);
       entry.validate();
+      entry.markClean();
+      parsed = true;
     } catch (ParseException xppe1) {
       try {
         if (hasMoreData()) skipToNextEntry();
@@ -273,7 +323,7 @@ public class XmlGDataParser implements GDataParser {
         // set isInBadState to ensure that the next call to hasMoreData() will return false.
         isInBadState = true;
       }
-      throw new ParseException("Could not parse <entry>, " + entry, xppe1);
+      throw new ParseException("Could not parse <entry>, " + entry + getTrace(), xppe1);
     } catch (XmlPullParserException xppe1) {
       try {
         if (hasMoreData()) skipToNextEntry();
@@ -282,8 +332,14 @@ public class XmlGDataParser implements GDataParser {
         // set isInBadState to ensure that the next call to hasMoreData() will return false.
         isInBadState = true;
       }
-      throw new ParseException("Could not parse <entry>, " + entry, xppe1);
+      throw new ParseException("Could not parse <entry>, " + entry + getTrace(), xppe1);
+    } finally {
+      if (listener != null) {
+        entryType = entry.getClass().getName();
+        listener.onEntryParse(entryType, System.nanoTime() - start, parsed);
+      }
     }
+    ++entryCount;
     return entry;
   }
 
@@ -320,16 +376,35 @@ public class XmlGDataParser implements GDataParser {
         case XmlPullParser.START_TAG:
           String name = parser.getName();
           if ("entry".equals(name)) {
+            GDataEventListener listener = GDataEvents.getListener();
+            long start = listener == null ? 0 : System.nanoTime();
+            boolean parsed = false;
+            if (tracer != null) {
+              tracer.beginEntry();
+            }
             try {
               parser.next();
               handleEntry(entry);
+              entry.markClean();
+              parsed = true;
               return entry;
+            } catch (ParseException pe) {
+              if (tracer == null) {
+                throw pe;
+              }
+              throw new ParseException("Unable to parse <entry>." + getTrace(),
+                  pe);
             } catch (XmlPullParserException xppe) {
-              throw new ParseException("Unable to parse <entry>.",
+              throw new ParseException("Unable to parse <entry>." + getTrace(),
                   xppe);
             } catch (IOException ioe) {
-              throw new ParseException("Unable to parse <entry>.",
+              throw new ParseException("Unable to parse <entry>." + getTrace(),
                   ioe);
+            } finally {
+              if (listener != null) {
+                listener.onEntryParse(entry.getClass().getName(),
+                    System.nanoTime() - start, parsed);
+              }
             }
           }
           break;
@@ -347,6 +422,14 @@ public class XmlGDataParser implements GDataParser {
     throw new ParseException("No <entry> found in document.");
   }
 
+  /**
+   * Returns the current trace, formatted to be appended to an exception
+   * message, or "" if this feed is not being traced.
+   */
+  private String getTrace() {
+    return tracer == null ? "" : "\n" + tracer.dump();
+  }
+
   /**
    * Skips the rest of the current entry until the parser reaches the next entry, if any.
    * Does nothing if the parser is already at the beginning of an entry.
@@ -390,8 +473,19 @@ public class XmlGDataParser implements GDataParser {
           if ("entry".equals(name)) {
             // stop parsing here.
             return;
+          }
+          if (tracer != null) {
+            tracer.startTag(parser.getDepth(), name, parser.getAttributeCount());
+          }
+          String batchName = getBatchElementName(name);
+          if (batchName != null) {
+            // checked first, since batch:id would otherwise be taken for the id.
+            handleBatchElement(batchName, entry);
           } else if ("id".equals(name)) {
             entry.setId(XmlUtils.extractChildText(parser));
+            if (tracer != null) {
+              tracer.entryId(entry.getId());
+            }
           } else if ("title".equals(name)) {
             entry.setTitle(XmlUtils.extractChildText(parser));
           } else if ("link".equals(name)) {
@@ -448,6 +542,32 @@ public class XmlGDataParser implements GDataParser {
     }
   }
 
+  /**
+   * Returns the local name of the current element if it is in the batch
+   * namespace, whether or not the parser processes namespaces, or null.
+   */
+  private String getBatchElementName(String name) {
+    if (NAMESPACE_BATCH_URI.equals(parser.getNamespace())) {
+      return name;
+    }
+    if (name.startsWith(NAMESPACE_BATCH + ":")) {
+      return name.substring(NAMESPACE_BATCH.length() + 1);
+    }
+    return null;
+  }
+
+  private void handleBatchElement(String name, Entry entry)
+      throws XmlPullParserException, IOException {
+    if ("id".equals(name)) {
+      entry.setBatchId(XmlUtils.extractChildText(parser));
+    } else if ("status".equals(name)) {
+      entry.setBatchStatusCode(StringUtils.parseInt(
+          parser.getAttributeValue(null /* ns */, "code"), -1));
+      entry.setBatchStatusReason(
+          parser.getAttributeValue(null /* ns */, "reason"));
+    }
+  }
+
   private void handleAuthor(Entry entry)
       throws XmlPullParserException, IOException {
 
@@ -493,6 +613,17 @@ public class XmlGDataParser implements GDataParser {
   * @see com.google.wireless.gdata.parser.GDataParser#close()
   */
   public void close() {
+    if (feedStartNanos >= 0) {
+      GDataEventListener listener = GDataEvents.getListener();
+      if (listener != null) {
+        if (entryType == null) {
+          entryType = createEntry().getClass().getName();
+        }
+        listener.onFeedParse(entryType, entryCount,
+            System.nanoTime() - feedStartNanos);
+      }
+      feedStartNanos = -1;
+    }
     if (is != null) {
       try {
         is.close();
@@ -30,6 +30,13 @@ public interface GDataSerializer {
      */
     public static final int FORMAT_UPDATE = 2;
 
+    /**
+     * Serialize only the data of an existing entry that changed since it was
+     * parsed, for a partial update.  The gd:fields attribute of the entry
+     * names the elements that replace those stored on the server.
+     */
+    public static final int FORMAT_PARTIAL_UPDATE = 3;
+
     /**
      * Returns the Content-Type for this serialization format.
      * @return The Content-Type for this serialization format.
@@ -43,6 +50,7 @@ public interface GDataSerializer {
      * @see #FORMAT_FULL
      * @see #FORMAT_CREATE
      * @see #FORMAT_UPDATE
+     * @see #FORMAT_PARTIAL_UPDATE
      * 
      * @param out The {@link OutputStream} to which the entry should be 
      * serialized.
@@ -0,0 +1,83 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.serializer.xml;
+
+import com.google.wireless.gdata.client.BatchRequest;
+import com.google.wireless.gdata.parser.ParseException;
+import com.google.wireless.gdata.parser.xml.XmlGDataParser;
+import com.google.wireless.gdata.serializer.GDataSerializer;
+
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serializes a batch of operations on the entries of a feed as a single
+ * Atom feed, each entry carrying its batch:operation and batch:id.
+ */
+public class XmlBatchGDataSerializer implements GDataSerializer {
+
+  private final XmlEntryGDataSerializer[] entries;
+  private final String[] operations;
+  private final String[] batchIds;
+
+  /**
+   * Creates a new XmlBatchGDataSerializer.  The entries must belong to the
+   * same feed; the namespaces of the first are declared for all of them.
+   *
+   * @param entries The serializers of the entries, which must be
+   * {@link XmlEntryGDataSerializer}s.
+   * @param operations The batch:operation type of each entry.
+   * @param batchIds The batch:id of each entry.
+   */
+  public XmlBatchGDataSerializer(GDataSerializer[] entries, String[] operations,
+      String[] batchIds) {
+    if (entries.length == 0 || entries.length != operations.length
+        || entries.length != batchIds.length) {
+      throw new IllegalArgumentException("Expected one operation and id per entry");
+    }
+    this.entries = new XmlEntryGDataSerializer[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      if (!(entries[i] instanceof XmlEntryGDataSerializer)) {
+        throw new IllegalArgumentException("Expected XmlEntryGDataSerializer!");
+      }
+      this.entries[i] = (XmlEntryGDataSerializer) entries[i];
+    }
+    this.operations = operations;
+    this.batchIds = batchIds;
+  }
+
+  /* (non-Javadoc)
+  * @see GDataSerializer#getContentType()
+  */
+  public String getContentType() {
+    return "application/atom+xml";
+  }
+
+  /* (non-Javadoc)
+  * @see GDataSerializer#serialize(java.io.OutputStream)
+  */
+  public void serialize(OutputStream out, int format)
+      throws IOException, ParseException {
+    XmlSerializer serializer = entries[0].createXmlSerializer();
+    serializer.setOutput(out, "UTF-8");
+    serializer.startDocument("UTF-8", Boolean.FALSE);
+
+    entries[0].declareEntryNamespaces(serializer);
+    serializer.setPrefix(XmlGDataParser.NAMESPACE_BATCH,
+        XmlGDataParser.NAMESPACE_BATCH_URI);
+    serializer.startTag(XmlGDataParser.NAMESPACE_ATOM_URI, "feed");
+
+    for (int i = 0; i < entries.length; i++) {
+      // the format follows from each entry's operation.
+      int entryFormat = BatchRequest.OPERATION_INSERT.equals(operations[i])
+          ? FORMAT_CREATE : FORMAT_UPDATE;
+      entries[i].serializeEntry(serializer, entryFormat, operations[i], batchIds[i]);
+    }
+
+    serializer.endTag(XmlGDataParser.NAMESPACE_ATOM_URI, "feed");
+    serializer.endDocument();
+    serializer.flush();
+  }
+}
@@ -2,6 +2,9 @@
 
 package com.google.wireless.gdata.serializer.xml;
 
+import com.google.wireless.gdata.GDataEventListener;
+import com.google.wireless.gdata.GDataEvents;
+import com.google.wireless.gdata.client.BatchRequest;
 import com.google.wireless.gdata.data.Entry;
 import com.google.wireless.gdata.data.ExtendedProperty;
 import com.google.wireless.gdata.data.StringUtils;
@@ -13,6 +16,7 @@ import com.google.wireless.gdata.serializer.GDataSerializer;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlSerializer;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -21,12 +25,34 @@ import java.io.OutputStream;
  */
 public class XmlEntryGDataSerializer implements GDataSerializer {
 
+  /** Counts the bytes written, for {@link GDataEvents}. */
+  private static class CountingOutputStream extends FilterOutputStream {
+    long count = 0;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    public void write(int b) throws IOException {
+      out.write(b);
+      ++count;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+
   /** The XmlParserFactory that is used to create the XmlSerializer */
   private final XmlParserFactory factory;
 
   /** The entry being serialized. */
   private final Entry entry;
 
+  /** The dirty fields of the entry, for {@link #FORMAT_PARTIAL_UPDATE}. */
+  private int dirtyFields = 0;
+
   /**
    * Creates a new XmlEntryGDataSerializer that will serialize the provided
    * entry.
@@ -59,28 +85,90 @@ public class XmlEntryGDataSerializer implements GDataSerializer {
   */
   public void serialize(OutputStream out, int format)
       throws IOException, ParseException {
-    XmlSerializer serializer = null;
-    try {
-      serializer = factory.createSerializer();
-    } catch (XmlPullParserException e) {
-      throw new ParseException("Unable to create XmlSerializer.", e);
+    GDataEventListener listener = GDataEvents.getListener();
+    if (listener == null) {
+      serializeEntry(out, format);
+      return;
     }
+    long start = System.nanoTime();
+    CountingOutputStream counter = new CountingOutputStream(out);
+    serializeEntry(counter, format);
+    listener.onSerialize(entry.getClass().getName(), format, counter.count,
+        System.nanoTime() - start);
+  }
+
+  private void serializeEntry(OutputStream out, int format)
+      throws IOException, ParseException {
+    XmlSerializer serializer = createXmlSerializer();
     // TODO: make the output compact
 
     serializer.setOutput(out, "UTF-8");
     serializer.startDocument("UTF-8", new Boolean(false));
 
     declareEntryNamespaces(serializer);
+    serializeEntry(serializer, format, null /* batchOperation */, null /* batchId */);
+
+    serializer.endDocument();
+    serializer.flush();
+  }
+
+  /**
+   * Serializes the entry as an element of a document that is already being
+   * written, such as a batch feed.  The namespaces the entry uses must have
+   * been declared, see {@link #declareEntryNamespaces}.
+   *
+   * @param serializer The XmlSerializer writing the document.
+   * @param format The serialization format for the entry.
+   * @param batchOperation The batch:operation type of the entry, such as
+   * "update", or null if the entry is not part of a batch.  Only the id and
+   * edit link of an entry to delete are written.
+   * @param batchId The batch:id of the entry, or null.
+   * @throws ParseException Thrown if the entry cannot be serialized.
+   * @throws IOException Thrown if the entry cannot be written.
+   */
+  public void serializeEntry(XmlSerializer serializer, int format,
+      String batchOperation, String batchId)
+      throws IOException, ParseException {
     serializer.startTag(XmlGDataParser.NAMESPACE_ATOM_URI, "entry");
 
-    serializeEntryContents(serializer, format);
+    if (format == FORMAT_PARTIAL_UPDATE) {
+      dirtyFields = entry.getDirtyFields();
+      StringBuffer selectors = new StringBuffer();
+      appendFieldSelectors(selectors, dirtyFields);
+      if (selectors.length() > 0) {
+        serializer.attribute(XmlGDataParser.NAMESPACE_GD_URI, "fields", selectors.toString());
+      }
+    }
+
+    if (batchId != null) {
+      serializer.startTag(XmlGDataParser.NAMESPACE_BATCH_URI, "id");
+      serializer.text(batchId);
+      serializer.endTag(XmlGDataParser.NAMESPACE_BATCH_URI, "id");
+    }
+    if (batchOperation != null) {
+      serializer.startTag(XmlGDataParser.NAMESPACE_BATCH_URI, "operation");
+      serializer.attribute(null /* ns */, "type", batchOperation);
+      serializer.endTag(XmlGDataParser.NAMESPACE_BATCH_URI, "operation");
+    }
+
+    if (BatchRequest.OPERATION_DELETE.equals(batchOperation)) {
+      serializeId(serializer, entry.getId());
+      serializeLink(serializer, "edit" /* rel */, entry.getEditUri(), null /* type */);
+    } else {
+      serializeEntryContents(serializer, format);
+    }
 
     serializer.endTag(XmlGDataParser.NAMESPACE_ATOM_URI, "entry");
-    serializer.endDocument();
-    serializer.flush();
   }
 
-  private final void declareEntryNamespaces(XmlSerializer serializer)
+  /**
+   * Declares the namespaces used by the entry, before the start tag of the
+   * document's root element.
+   *
+   * @param serializer The XmlSerializer writing the document.
+   * @throws IOException Thrown if the declarations cannot be written.
+   */
+  public final void declareEntryNamespaces(XmlSerializer serializer)
       throws IOException {
     serializer.setPrefix("" /* default ns */,
         XmlGDataParser.NAMESPACE_ATOM_URI);
@@ -89,6 +177,17 @@ public class XmlEntryGDataSerializer implements GDataSerializer {
     declareExtraEntryNamespaces(serializer);
   }
 
+  /**
+   * Creates an XmlSerializer from this serializer's factory.
+   */
+  XmlSerializer createXmlSerializer() throws ParseException {
+    try {
+      return factory.createSerializer();
+    } catch (XmlPullParserException e) {
+      throw new ParseException("Unable to create XmlSerializer.", e);
+    }
+  }
+
   protected void declareExtraEntryNamespaces(XmlSerializer serializer)
       throws IOException {
     // no-op in this class
@@ -106,28 +205,40 @@ public class XmlEntryGDataSerializer implements GDataSerializer {
       serializeId(serializer, entry.getId());
     }
 
-    serializeTitle(serializer, entry.getTitle());
+    if (isSerialized(format, Entry.FIELD_TITLE)) {
+      serializeTitle(serializer, entry.getTitle());
+    }
 
     if (format != FORMAT_CREATE) {
       serializeLink(serializer, "edit" /* rel */, entry.getEditUri(), null /* type */);
+    }
+    if (format != FORMAT_CREATE && format != FORMAT_PARTIAL_UPDATE) {
       serializeLink(serializer, "alternate" /* rel */, entry.getHtmlUri(), "text/html" /* type */);
     }
 
-    serializeSummary(serializer, entry.getSummary());
+    if (isSerialized(format, Entry.FIELD_SUMMARY)) {
+      serializeSummary(serializer, entry.getSummary());
+    }
 
-    serializeContent(serializer, entry.getContent());
+    if (isSerialized(format, Entry.FIELD_CONTENT)) {
+      serializeContent(serializer, entry.getContent());
+    }
 
-    serializeAuthor(serializer, entry.getAuthor(), entry.getEmail());
+    if (isSerialized(format, Entry.FIELD_AUTHOR)) {
+      serializeAuthor(serializer, entry.getAuthor(), entry.getEmail());
+    }
 
-    serializeCategory(serializer,
-        entry.getCategory(), entry.getCategoryScheme());
+    if (isSerialized(format, Entry.FIELD_CATEGORY)) {
+      serializeCategory(serializer,
+          entry.getCategory(), entry.getCategoryScheme());
+    }
 
     if (format == FORMAT_FULL) {
       serializePublicationDate(serializer,
           entry.getPublicationDate());
     }
 
-    if (format != FORMAT_CREATE) {
+    if (format != FORMAT_CREATE && format != FORMAT_PARTIAL_UPDATE) {
       serializeUpdateDate(serializer,
           entry.getUpdateDate());
     }
@@ -149,6 +260,42 @@ public class XmlEntryGDataSerializer implements GDataSerializer {
     // no-op in this class.
   }
 
+  /**
+   * Returns whether fields of the entry should be written.  In
+   * {@link #FORMAT_PARTIAL_UPDATE} only the dirty fields are.
+   * @param format The serialization format for the entry.
+   * @param fields The FIELD_* bits of the fields, see {@link Entry}.
+   * @return true if the fields should be written
+   */
+  protected boolean isSerialized(int format, int fields) {
+    return format != FORMAT_PARTIAL_UPDATE || (dirtyFields & fields) != 0;
+  }
+
+  /**
+   * Appends the gd:fields selectors of the elements written for dirty
+   * fields, which replace those of the entry stored on the server.
+   * Subclasses that track their own fields should append theirs too.
+   * @param sb The comma separated selectors.
+   * @param fields The FIELD_* bits of the dirty fields.
+   */
+  protected void appendFieldSelectors(StringBuffer sb, int fields) {
+    if ((fields & Entry.FIELD_TITLE) != 0) appendFieldSelector(sb, "title");
+    if ((fields & Entry.FIELD_SUMMARY) != 0) appendFieldSelector(sb, "summary");
+    if ((fields & Entry.FIELD_CONTENT) != 0) appendFieldSelector(sb, "content");
+    if ((fields & Entry.FIELD_AUTHOR) != 0) appendFieldSelector(sb, "author");
+    if ((fields & Entry.FIELD_CATEGORY) != 0) appendFieldSelector(sb, "category");
+  }
+
+  /**
+   * Appends a selector to the comma separated gd:fields selectors.
+   */
+  protected static void appendFieldSelector(StringBuffer sb, String selector) {
+    if (sb.length() > 0) {
+      sb.append(',');
+    }
+    sb.append(selector);
+  }
+
   // TODO: make these helper methods protected so sublcasses can use them?
 
   private static void serializeId(XmlSerializer serializer,
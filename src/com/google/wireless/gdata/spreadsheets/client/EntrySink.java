@@ -0,0 +1,22 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.spreadsheets.client;
+
+import com.google.wireless.gdata.data.Entry;
+
+import java.io.IOException;
+
+/**
+ * Receives the entries loaded by {@link WorksheetLoader}, in feed order, on
+ * the thread that called the loader.
+ */
+public interface EntrySink {
+
+    /**
+     * Called for each entry.
+     * @param entry The entry.
+     * @throws IOException Thrown if the entry could not be stored; the load
+     * stops.
+     */
+    void onEntry(Entry entry) throws IOException;
+}
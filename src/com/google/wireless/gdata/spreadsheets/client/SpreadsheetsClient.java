@@ -6,17 +6,15 @@ import com.google.wireless.gdata.client.GDataParserFactory;
 import com.google.wireless.gdata.client.GDataServiceClient;
 import com.google.wireless.gdata.client.HttpException;
 import com.google.wireless.gdata.data.Entry;
-import com.google.wireless.gdata.data.StringUtils;
 import com.google.wireless.gdata.parser.GDataParser;
 import com.google.wireless.gdata.parser.ParseException;
-import com.google.wireless.gdata.serializer.GDataSerializer;
 import com.google.wireless.gdata.spreadsheets.data.CellEntry;
+import com.google.wireless.gdata.spreadsheets.data.ListAggregation;
 import com.google.wireless.gdata.spreadsheets.data.ListEntry;
 import com.google.wireless.gdata.spreadsheets.data.SpreadsheetEntry;
 import com.google.wireless.gdata.spreadsheets.data.WorksheetEntry;
 
 import java.io.IOException;
-import java.io.InputStream;
 
 /**
  * GDataServiceClient for accessing Google Spreadsheets. This client can
@@ -87,29 +85,7 @@ public class SpreadsheetsClient extends GDataServiceClient {
      */
     private GDataParser getParserForTypedFeed(Class feedEntryClass, String feedUri,
             String authToken) throws ParseException, IOException, HttpException {
-        GDataClient gDataClient = getGDataClient();
-        GDataParserFactory gDataParserFactory = getGDataParserFactory();
-
-        InputStream is = gDataClient.getFeedAsStream(feedUri, authToken);
-        return gDataParserFactory.createParser(feedEntryClass, is);
-    }
-
-    /* (non-javadoc)
-     * @see GDataServiceClient#createEntry
-     */
-    public Entry createEntry(String feedUri, String authToken, Entry entry)
-            throws ParseException, IOException, HttpException {
-
-        GDataParserFactory factory = getGDataParserFactory();
-        GDataSerializer serializer = factory.createSerializer(entry);
-
-        InputStream is = getGDataClient().createEntry(feedUri, authToken, serializer);
-        GDataParser parser = factory.createParser(entry.getClass(), is);
-        try {
-            return parser.parseStandaloneEntry();
-        } finally {
-            parser.close();
-        }
+        return super.getParserForFeed(feedEntryClass, feedUri, authToken);
     }
 
     /**
@@ -144,10 +120,7 @@ public class SpreadsheetsClient extends GDataServiceClient {
      */
     public GDataParser getParserForFeed(Class feedEntryClass, String feedUri, String authToken)
             throws ParseException, IOException, HttpException {
-        GDataClient gDataClient = getGDataClient();
-        GDataParserFactory gDataParserFactory = getGDataParserFactory();
-        InputStream is = gDataClient.getFeedAsStream(feedUri, authToken);
-        return gDataParserFactory.createParser(feedEntryClass, is);
+        return super.getParserForFeed(feedEntryClass, feedUri, authToken);
     }
 
     /**
@@ -165,6 +138,31 @@ public class SpreadsheetsClient extends GDataServiceClient {
         return getParserForTypedFeed(ListEntry.class, feedUri, authToken);
     }
 
+    /**
+     * Streams a List (row-based) feed through an aggregation, without
+     * retaining its rows. To aggregate pages of a feed in parallel, aggregate
+     * each page into its own ListAggregation and merge the results.
+     * 
+     * @param feedUri the URI of the feed to be fetched and parsed
+     * @param authToken the current authToken to use for the request
+     * @param aggregation the aggregation the rows should be added to
+     * @return the number of rows read
+     * @throws HttpException if an http error is encountered
+     * @throws ParseException if the response from the server could not be
+     *         parsed
+     */
+    public int aggregateListFeed(String feedUri, String authToken,
+            ListAggregation aggregation)
+            throws ParseException, IOException, HttpException {
+        GDataParser parser = getParserForListFeed(feedUri, authToken);
+        try {
+            parser.init();
+            return aggregation.aggregate(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
     /**
      * Returns a parser for a Spreadsheets meta-feed.
      * 
@@ -213,21 +211,7 @@ public class SpreadsheetsClient extends GDataServiceClient {
      */
     public Entry updateEntry(Entry entry, String authToken)
             throws ParseException, IOException, HttpException {
-        GDataParserFactory factory = getGDataParserFactory();
-        GDataSerializer serializer = factory.createSerializer(entry);
-
-        String editUri = entry.getEditUri();
-        if (StringUtils.isEmpty(editUri)) {
-            throw new ParseException("No edit URI -- cannot update.");
-        }
-
-        InputStream is = getGDataClient().updateEntry(editUri, authToken, serializer);
-        GDataParser parser = factory.createParser(entry.getClass(), is);
-        try {
-            return parser.parseStandaloneEntry();
-        } finally {
-            parser.close();
-        }
+        return super.updateEntry(entry, authToken);
     }
 
     public String getBaseFeedUrl() {
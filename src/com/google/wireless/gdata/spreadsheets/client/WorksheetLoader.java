@@ -0,0 +1,300 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.spreadsheets.client;
+
+import com.google.wireless.gdata.client.HttpException;
+import com.google.wireless.gdata.client.QueryParams;
+import com.google.wireless.gdata.data.Entry;
+import com.google.wireless.gdata.data.Feed;
+import com.google.wireless.gdata.parser.GDataParser;
+import com.google.wireless.gdata.parser.ParseException;
+import com.google.wireless.gdata.spreadsheets.data.CellEntry;
+import com.google.wireless.gdata.spreadsheets.data.CellGrid;
+import com.google.wireless.gdata.spreadsheets.data.ListEntry;
+import com.google.wireless.gdata.spreadsheets.data.WorksheetEntry;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Vector;
+
+/**
+ * Loads a whole worksheet by splitting it into slices of rows, fetched and
+ * parsed in parallel.  Cells feeds are sliced with the min-row and max-row
+ * parameters, list feeds with start-index and max-results windows, using the
+ * row count of the {@link WorksheetEntry}.  A slice that the server splits
+ * into several pages is read by following its rel="next" links.
+ *
+ * A fixed number of worker threads each fetch and parse one slice at a
+ * time.  The entries are handed to an {@link EntrySink} on the caller's
+ * thread, in row order, as soon as the slices before them have been
+ * delivered.  Workers stay at most a few slices ahead of the slice being
+ * delivered, so the memory used is bounded by the slice size rather than by
+ * the size of the worksheet.
+ *
+ * Instances of this class are thread safe.
+ */
+public class WorksheetLoader {
+    /** The first row returned by a cells feed. */
+    public static final String MIN_ROW_PARAM = "min-row";
+
+    /** The last row returned by a cells feed. */
+    public static final String MAX_ROW_PARAM = "max-row";
+
+    /* How many slices each worker may fetch ahead of the slice being delivered. */
+    private static final int SLICES_AHEAD_PER_WORKER = 2;
+
+    /** A slice of the worksheet, fetched by a worker. */
+    private static class Slice {
+        final String url;
+        /* The most entries the slice holds, or -1 if it ends with the feed. */
+        final int limit;
+        Vector entries = null;
+        Exception failure = null;
+        boolean done = false;
+
+        Slice(String url, int limit) {
+            this.url = url;
+            this.limit = limit;
+        }
+
+        boolean isFull(Vector entries) {
+            return limit >= 0 && entries.size() >= limit;
+        }
+    }
+
+    /** The state of one load, shared by the caller and the workers. */
+    private class Load {
+        final Class entryClass;
+        final String authToken;
+        final Slice[] slices;
+        /* The next slice a worker should take; guarded by this. */
+        int next = 0;
+        /* The slice being delivered; guarded by this. */
+        int delivering = 0;
+        boolean cancelled = false;
+
+        Load(Class entryClass, String authToken, String[] urls, int[] limits) {
+            this.entryClass = entryClass;
+            this.authToken = authToken;
+            slices = new Slice[urls.length];
+            for (int i = 0; i < urls.length; i++) {
+                slices[i] = new Slice(urls[i], limits == null ? -1 : limits[i]);
+            }
+        }
+
+        /** Returns the next slice to fetch, or null once there are none. */
+        synchronized Slice take() throws InterruptedException {
+            while (!cancelled && next < slices.length
+                    && next - delivering >= parallelism * SLICES_AHEAD_PER_WORKER) {
+                wait();
+            }
+            if (cancelled || next == slices.length) {
+                return null;
+            }
+            return slices[next++];
+        }
+
+        synchronized void finish(Slice slice, Vector entries, Exception failure) {
+            slice.entries = entries;
+            slice.failure = failure;
+            slice.done = true;
+            notifyAll();
+        }
+
+        /** Waits for slice i to be fetched. */
+        synchronized Slice await(int i) throws InterruptedIOException {
+            delivering = i;
+            notifyAll();
+            try {
+                while (!slices[i].done) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while loading a worksheet");
+            }
+            return slices[i];
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        void fetch(Slice slice) {
+            Vector entries = new Vector();
+            // replaced unless an Error escapes, so the caller never waits forever.
+            Exception failure = new IOException("Could not load " + slice.url);
+            GDataParser parser = null;
+            try {
+                String url = slice.url;
+                // the server may cap the page size below the size of the slice.
+                while (url != null) {
+                    parser = client.getParserForFeed(entryClass, url, authToken);
+                    Feed feed = parser.init();
+                    while (parser.hasMoreData() && !slice.isFull(entries)) {
+                        entries.addElement(parser.readNextEntry(null));
+                    }
+                    parser.close();
+                    parser = null;
+                    url = feed == null || slice.isFull(entries) ? null : feed.getNextLink();
+                }
+                failure = null;
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                if (parser != null) {
+                    parser.close();
+                }
+                finish(slice, entries, failure);
+            }
+        }
+    }
+
+    private final SpreadsheetsClient client;
+    private final int parallelism;
+    private final int rowsPerSlice;
+
+    /**
+     * Creates a new WorksheetLoader.
+     * @param client The client used to fetch the slices.
+     * @param parallelism How many slices may be fetched at the same time.
+     * @param rowsPerSlice How many rows each slice holds.
+     */
+    public WorksheetLoader(SpreadsheetsClient client, int parallelism, int rowsPerSlice) {
+        if (parallelism < 1 || rowsPerSlice < 1) {
+            throw new IllegalArgumentException("parallelism and rowsPerSlice must be positive");
+        }
+        this.client = client;
+        this.parallelism = parallelism;
+        this.rowsPerSlice = rowsPerSlice;
+    }
+
+    /**
+     * Loads the cells of a worksheet into a grid.
+     * @param worksheet The worksheet, with its cells feed uri and row count.
+     * @param authToken The authentication token for this user.
+     * @param grid The grid the cells should be added to.
+     * @return The number of cells loaded.
+     */
+    public int loadCells(WorksheetEntry worksheet, String authToken, final CellGrid grid)
+            throws ParseException, IOException, HttpException {
+        return loadCells(worksheet, authToken, new EntrySink() {
+            public void onEntry(Entry entry) {
+                grid.add((CellEntry) entry);
+            }
+        });
+    }
+
+    /**
+     * Loads the cells of a worksheet, in row order.
+     * @param worksheet The worksheet, with its cells feed uri and row count.
+     * @param authToken The authentication token for this user.
+     * @param sink The sink the {@link CellEntry}s should be handed to.
+     * @return The number of cells loaded.
+     */
+    public int loadCells(WorksheetEntry worksheet, String authToken, EntrySink sink)
+            throws ParseException, IOException, HttpException {
+        String feedUri = worksheet.getCellFeedUri();
+        int rowCount = worksheet.getRowCount();
+        if (rowCount <= 0) {
+            return load(CellEntry.class, new String[] { feedUri }, null /* limits */,
+                    authToken, sink);
+        }
+        String[] urls = new String[(rowCount + rowsPerSlice - 1) / rowsPerSlice];
+        QueryParams params = client.createQueryParams();
+        if (worksheet.getColCount() > 0) {
+            // so that a slice is usually read as a single page.
+            params.setMaxResults(Integer.toString(rowsPerSlice * worksheet.getColCount()));
+        }
+        for (int i = 0; i < urls.length; i++) {
+            int minRow = 1 + i * rowsPerSlice;
+            params.setParamValue(MIN_ROW_PARAM, Integer.toString(minRow));
+            params.setParamValue(MAX_ROW_PARAM,
+                    Integer.toString(Math.min(rowCount, minRow + rowsPerSlice - 1)));
+            urls[i] = params.generateQueryUrl(feedUri);
+        }
+        // the row range bounds each slice, so its next links can be followed.
+        return load(CellEntry.class, urls, null /* limits */, authToken, sink);
+    }
+
+    /**
+     * Loads the rows of a worksheet's list feed, in order.
+     * @param worksheet The worksheet, with its list feed uri and row count.
+     * @param authToken The authentication token for this user.
+     * @param sink The sink the {@link ListEntry}s should be handed to.
+     * @return The number of rows loaded.
+     */
+    public int loadRows(WorksheetEntry worksheet, String authToken, EntrySink sink)
+            throws ParseException, IOException, HttpException {
+        String feedUri = worksheet.getListFeedUri();
+        // the first row of the worksheet holds the column names.
+        int rowCount = worksheet.getRowCount() - 1;
+        if (rowCount <= 0) {
+            return load(ListEntry.class, new String[] { feedUri }, null /* limits */,
+                    authToken, sink);
+        }
+        String[] urls = new String[(rowCount + rowsPerSlice - 1) / rowsPerSlice];
+        int[] limits = new int[urls.length];
+        QueryParams params = client.createQueryParams();
+        params.setMaxResults(Integer.toString(rowsPerSlice));
+        for (int i = 0; i < urls.length; i++) {
+            params.setStartIndex(Integer.toString(1 + i * rowsPerSlice));
+            urls[i] = params.generateQueryUrl(feedUri);
+            // a window's next link leads into the next window, so it is only
+            // followed until the window is full.  The last window reads any
+            // rows added since the row count was taken.
+            limits[i] = i == urls.length - 1 ? -1 : rowsPerSlice;
+        }
+        return load(ListEntry.class, urls, limits, authToken, sink);
+    }
+
+    private int load(Class entryClass, String[] urls, int[] limits, String authToken,
+            EntrySink sink) throws ParseException, IOException, HttpException {
+        final Load load = new Load(entryClass, authToken, urls, limits);
+        int workers = Math.min(parallelism, urls.length);
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread("GDataWorksheetLoader") {
+                public void run() {
+                    try {
+                        Slice slice;
+                        while ((slice = load.take()) != null) {
+                            load.fetch(slice);
+                        }
+                    } catch (InterruptedException e) {
+                        load.cancel();
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int count = 0;
+        try {
+            for (int i = 0; i < urls.length; i++) {
+                Slice slice = load.await(i);
+                Exception failure = slice.failure;
+                if (failure instanceof ParseException) {
+                    throw (ParseException) failure;
+                } else if (failure instanceof HttpException) {
+                    throw (HttpException) failure;
+                } else if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                } else if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                Vector entries = slice.entries;
+                // release the slice as it is delivered.
+                slice.entries = null;
+                for (int j = 0; j < entries.size(); j++) {
+                    sink.onEntry((Entry) entries.elementAt(j));
+                }
+                count += entries.size();
+            }
+        } finally {
+            load.cancel();
+        }
+        return count;
+    }
+}
@@ -2,6 +2,7 @@
 package com.google.wireless.gdata.spreadsheets.data;
 
 import com.google.wireless.gdata.data.Entry;
+import com.google.wireless.gdata.data.StringUtils;
 
 /**
  * Represents an entry in a GData Spreadsheets Cell-based feed.
@@ -16,6 +17,9 @@ public class CellEntry extends Entry {
     /** The cell entry's numericValue attribute */
     private String numericValue = null;
 
+    /** The numericValue attribute, decoded; NaN if absent or not a number. */
+    private double numericDouble = Double.NaN;
+
     /** The spreadsheet row of the cell */
     private int row = -1;
 
@@ -26,7 +30,21 @@ public class CellEntry extends Entry {
     public CellEntry() {
         super();
     }
-    
+
+    /*
+     * (non-Javadoc)
+     * @see com.google.wireless.gdata.data.Entry#clear()
+     */
+    public void clear() {
+        super.clear();
+        col = -1;
+        inputValue = null;
+        numericValue = null;
+        numericDouble = Double.NaN;
+        row = -1;
+        value = null;
+    }
+
     /**
      * Fetches the cell's spreadsheet column.
      * 
@@ -56,6 +74,17 @@ public class CellEntry extends Entry {
         return numericValue;
     }
 
+    /**
+     * Fetches the cell's numericValue attribute as a double, decoded when the
+     * attribute was set.
+     * 
+     * @return the cell's numeric value, or NaN if the cell has no numeric
+     *         value or it is not a number
+     */
+    public double getNumericValueAsDouble() {
+        return numericDouble;
+    }
+
     /**
      * Fetches the cell's spreadsheet row.
      * 
@@ -112,6 +141,7 @@ public class CellEntry extends Entry {
      */
     public void setNumericValue(String numericValue) {
         this.numericValue = numericValue;
+        this.numericDouble = StringUtils.parseDouble(numericValue, Double.NaN);
     }
 
     /**
@@ -0,0 +1,458 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.spreadsheets.data;
+
+import com.google.wireless.gdata.data.StringUtils;
+import com.google.wireless.gdata.parser.GDataParser;
+import com.google.wireless.gdata.parser.ParseException;
+
+import java.io.IOException;
+
+/**
+ * Sparse, in-memory index of the cells of a worksheet, for random access to
+ * the contents of a cell feed without scanning its entries.
+ *
+ * Each populated cell has an index, assigned in the order cells are added;
+ * its row, column and values are kept in parallel arrays, so the memory used
+ * is proportional to the number of populated cells.  Numeric values are
+ * also kept decoded, in a double column, for aggregation without parsing.
+ * A cell is found by its row and column through an open-addressing table
+ * keyed by the row and column packed into a long.  Row, column and range
+ * queries go through sorted copies of the keys (row-major and column-major),
+ * which are built when first needed after a cell is added.
+ *
+ * Instances of this class are not thread safe.
+ */
+public class CellGrid {
+    private int size = 0;
+    private int[] rows;
+    private int[] cols;
+    private String[] values;
+    private String[] inputValues;
+    private String[] numericValues;
+    private double[] numbers;
+
+    /* index + 1 of the cell in each slot, 0 for an empty slot. */
+    private int[] table;
+
+    /* The row-major keys, sorted, and the matching cell indexes; null if stale. */
+    private long[] byRowKeys = null;
+    private int[] byRowCells = null;
+    /* The column-major keys, sorted, and the matching cell indexes; null if stale. */
+    private long[] byColKeys = null;
+    private int[] byColCells = null;
+
+    /**
+     * Creates a new, empty CellGrid.
+     * @param expectedCells How many cells the grid is expected to hold.
+     */
+    public CellGrid(int expectedCells) {
+        int capacity = Math.max(16, expectedCells);
+        rows = new int[capacity];
+        cols = new int[capacity];
+        values = new String[capacity];
+        inputValues = new String[capacity];
+        numericValues = new String[capacity];
+        numbers = new double[capacity];
+        int tableSize = 16;
+        while (tableSize * 3 < capacity * 4) {
+            tableSize *= 2;
+        }
+        table = new int[tableSize];
+    }
+
+    /**
+     * Reads every remaining entry from a cells feed parser into the grid,
+     * reusing a single {@link CellEntry}.  The caller is responsible for
+     * closing the parser.
+     * @param parser A parser for a cells feed, after {@link GDataParser#init}.
+     * @return The number of entries read.
+     */
+    public int ingest(GDataParser parser) throws ParseException, IOException {
+        int count = 0;
+        CellEntry entry = null;
+        while (parser.hasMoreData()) {
+            entry = (CellEntry) parser.readNextEntry(entry);
+            add(entry);
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Adds a cell, replacing the values of any cell already at its row and
+     * column.
+     * @param entry The cell.
+     * @return The index of the cell.
+     */
+    public int add(CellEntry entry) {
+        return put(entry.getRow(), entry.getCol(), entry.getValue(),
+                entry.getInputValue(), entry.getNumericValue(),
+                entry.getNumericValueAsDouble());
+    }
+
+    /**
+     * Sets the values of a cell, adding the cell if it is not in the grid.
+     * @param row The row of the cell, starting at 1.
+     * @param col The column of the cell, starting at 1.
+     * @param value The computed value.
+     * @param inputValue The input value, such as a formula.
+     * @param numericValue The numeric value, or null.
+     * @return The index of the cell.
+     */
+    public int put(int row, int col, String value, String inputValue,
+            String numericValue) {
+        return put(row, col, value, inputValue, numericValue,
+                StringUtils.parseDouble(numericValue, Double.NaN));
+    }
+
+    /**
+     * Finds a cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The index of the cell, or -1 if it is not in the grid.
+     */
+    public int indexOf(int row, int col) {
+        int mask = table.length - 1;
+        int index;
+        for (int slot = hash(key(row, col)) & mask; (index = table[slot] - 1) >= 0;
+                slot = (slot + 1) & mask) {
+            if (rows[index] == row && cols[index] == col) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the computed value of the cell at row and col, or null if the
+     * cell is not in the grid
+     */
+    public String getValue(int row, int col) {
+        int index = indexOf(row, col);
+        return index >= 0 ? values[index] : null;
+    }
+
+    /**
+     * @return the numeric value of the cell at row and col, or NaN if the
+     * cell is not in the grid or has no numeric value
+     */
+    public double getNumericValueAsDouble(int row, int col) {
+        int index = indexOf(row, col);
+        return index >= 0 ? numbers[index] : Double.NaN;
+    }
+
+    /**
+     * @return the number of cells
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the row of the cell at index
+     */
+    public int getRow(int index) {
+        checkIndex(index);
+        return rows[index];
+    }
+
+    /**
+     * @return the column of the cell at index
+     */
+    public int getCol(int index) {
+        checkIndex(index);
+        return cols[index];
+    }
+
+    /**
+     * @return the computed value of the cell at index
+     */
+    public String getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * @return the input value of the cell at index
+     */
+    public String getInputValue(int index) {
+        checkIndex(index);
+        return inputValues[index];
+    }
+
+    /**
+     * @return the numeric value of the cell at index, or null
+     */
+    public String getNumericValue(int index) {
+        checkIndex(index);
+        return numericValues[index];
+    }
+
+    /**
+     * @return the numeric value of the cell at index, or NaN if it has none
+     */
+    public double getNumericValueAsDouble(int index) {
+        checkIndex(index);
+        return numbers[index];
+    }
+
+    /**
+     * Returns the cells of a row.
+     * @param row The row.
+     * @return The indexes of the cells, in column order.
+     */
+    public int[] getRowCells(int row) {
+        sortByRow();
+        return slice(byRowKeys, byRowCells, key(row, 0), key(row, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the cells of a column.
+     * @param col The column.
+     * @return The indexes of the cells, in row order.
+     */
+    public int[] getColumnCells(int col) {
+        sortByCol();
+        return slice(byColKeys, byColCells, key(col, 0), key(col, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the cells within a rectangle.
+     * @param minRow The first row, inclusive.
+     * @param minCol The first column, inclusive.
+     * @param maxRow The last row, inclusive.
+     * @param maxCol The last column, inclusive.
+     * @return The indexes of the cells, in row-major order.
+     */
+    public int[] getRange(int minRow, int minCol, int maxRow, int maxCol) {
+        sortByRow();
+        int[] result = new int[16];
+        int n = 0;
+        int i = lowerBound(byRowKeys, key(minRow, minCol));
+        while (i < size) {
+            int row = (int) (byRowKeys[i] >>> 32);
+            if (row > maxRow) {
+                break;
+            }
+            int col = (int) byRowKeys[i];
+            if (col < minCol) {
+                // skip to the first column of the range in this row.
+                i = lowerBound(byRowKeys, key(row, minCol));
+            } else if (col > maxCol) {
+                // skip to the next row.
+                i = lowerBound(byRowKeys, key(row + 1, minCol));
+            } else {
+                if (n == result.length) {
+                    int[] larger = new int[n * 2];
+                    System.arraycopy(result, 0, larger, 0, n);
+                    result = larger;
+                }
+                result[n++] = byRowCells[i++];
+            }
+        }
+        int[] cells = new int[n];
+        System.arraycopy(result, 0, cells, 0, n);
+        return cells;
+    }
+
+    /**
+     * Shrinks the arrays to the number of cells, e.g. once all cells have been
+     * added.
+     */
+    public void trimToSize() {
+        grow(size);
+    }
+
+    private int put(int row, int col, String value, String inputValue,
+            String numericValue, double number) {
+        if (row < 1 || col < 1) {
+            throw new IllegalArgumentException("Row and column must be positive: "
+                    + row + ", " + col);
+        }
+        long key = key(row, col);
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        int index;
+        while ((index = table[slot] - 1) >= 0) {
+            if (rows[index] == row && cols[index] == col) {
+                setValues(index, value, inputValue, numericValue, number);
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == rows.length) {
+            grow(Math.max(16, size * 2));
+        }
+        index = size++;
+        rows[index] = row;
+        cols[index] = col;
+        setValues(index, value, inputValue, numericValue, number);
+        if (size * 4 > table.length * 3) {
+            rehash(table.length * 2);
+        } else {
+            table[slot] = index + 1;
+        }
+        byRowKeys = null;
+        byRowCells = null;
+        byColKeys = null;
+        byColCells = null;
+        return index;
+    }
+
+    private void setValues(int index, String value, String inputValue, String numericValue,
+            double number) {
+        values[index] = value;
+        inputValues[index] = inputValue;
+        numericValues[index] = numericValue;
+        numbers[index] = number;
+    }
+
+    private void grow(int capacity) {
+        int[] newRows = new int[capacity];
+        int[] newCols = new int[capacity];
+        String[] newValues = new String[capacity];
+        String[] newInputValues = new String[capacity];
+        String[] newNumericValues = new String[capacity];
+        double[] newNumbers = new double[capacity];
+        System.arraycopy(rows, 0, newRows, 0, size);
+        System.arraycopy(cols, 0, newCols, 0, size);
+        System.arraycopy(values, 0, newValues, 0, size);
+        System.arraycopy(inputValues, 0, newInputValues, 0, size);
+        System.arraycopy(numericValues, 0, newNumericValues, 0, size);
+        System.arraycopy(numbers, 0, newNumbers, 0, size);
+        rows = newRows;
+        cols = newCols;
+        values = newValues;
+        inputValues = newInputValues;
+        numericValues = newNumericValues;
+        numbers = newNumbers;
+    }
+
+    private void rehash(int tableSize) {
+        table = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = hash(key(rows[index], cols[index])) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index + 1;
+        }
+    }
+
+    private void sortByRow() {
+        if (byRowKeys != null) {
+            return;
+        }
+        long[] keys = new long[size];
+        int[] cells = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = key(rows[i], cols[i]);
+            cells[i] = i;
+        }
+        sort(keys, cells, 0, size - 1);
+        byRowKeys = keys;
+        byRowCells = cells;
+    }
+
+    private void sortByCol() {
+        if (byColKeys != null) {
+            return;
+        }
+        long[] keys = new long[size];
+        int[] cells = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = key(cols[i], rows[i]);
+            cells[i] = i;
+        }
+        sort(keys, cells, 0, size - 1);
+        byColKeys = keys;
+        byColCells = cells;
+    }
+
+    private int[] slice(long[] keys, int[] cells, long from, long to) {
+        int start = lowerBound(keys, from);
+        int end = lowerBound(keys, to);
+        int[] result = new int[end - start];
+        System.arraycopy(cells, start, result, 0, end - start);
+        return result;
+    }
+
+    /** Returns the index of the first of the size sorted keys not less than key. */
+    private int lowerBound(long[] keys, long key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    /** Sorts keys[lo..hi], moving the matching cells along with them. */
+    private static void sort(long[] keys, int[] cells, int lo, int hi) {
+        while (hi - lo > 16) {
+            long pivot = keys[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    ++i;
+                }
+                while (keys[j] > pivot) {
+                    --j;
+                }
+                if (i <= j) {
+                    long k = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = k;
+                    int c = cells[i];
+                    cells[i++] = cells[j];
+                    cells[j--] = c;
+                }
+            }
+            // recurse into the smaller half to bound the stack depth.
+            if (j - lo < hi - i) {
+                sort(keys, cells, lo, j);
+                lo = i;
+            } else {
+                sort(keys, cells, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            long k = keys[i];
+            int c = cells[i];
+            int j = i - 1;
+            while (j >= lo && keys[j] > k) {
+                keys[j + 1] = keys[j];
+                cells[j + 1] = cells[j];
+                --j;
+            }
+            keys[j + 1] = k;
+            cells[j + 1] = c;
+        }
+    }
+
+    private static long key(int major, int minor) {
+        return ((long) major << 32) | (minor & 0xffffffffL);
+    }
+
+    private static int hash(long key) {
+        // mix the row into the column, since most keys share a few rows.
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h >>> 32);
+    }
+}
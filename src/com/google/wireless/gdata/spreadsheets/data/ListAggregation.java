@@ -0,0 +1,351 @@
+// Copyright 2008 The Android Open Source Project
+
+package com.google.wireless.gdata.spreadsheets.data;
+
+import com.google.wireless.gdata.data.CompactMap;
+import com.google.wireless.gdata.data.StringDictionary;
+import com.google.wireless.gdata.data.StringUtils;
+import com.google.wireless.gdata.parser.GDataParser;
+import com.google.wireless.gdata.parser.ParseException;
+
+import java.io.IOException;
+
+/**
+ * Computes counts, sums, minimums and maximums of the columns of a list
+ * feed, optionally grouped by the values of other columns, as the rows are
+ * parsed.  Rows are not retained: a single {@link ListEntry} is reused for
+ * the whole feed, so the memory used depends only on the number of groups.
+ *
+ * The aggregates and group columns are declared up front.  Values that are
+ * not numbers are ignored by sums, minimums and maximums.  The results of
+ * aggregations with the same declarations can be merged, e.g. those of pages
+ * of a feed that were fetched in parallel.
+ *
+ * Instances of this class are not thread safe.
+ */
+public class ListAggregation {
+    /** Counts the rows with a value for the column, or every row. */
+    public static final int FUNCTION_COUNT = 0;
+    /** Sums the numeric values of the column. */
+    public static final int FUNCTION_SUM = 1;
+    /** The smallest numeric value of the column. */
+    public static final int FUNCTION_MIN = 2;
+    /** The largest numeric value of the column. */
+    public static final int FUNCTION_MAX = 3;
+
+    /* Separates the values of a composite group key. */
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final String[] groupColumns;
+    private int aggregateCount = 0;
+    private int[] functions = new int[4];
+    private String[] columns = new String[4];
+
+    /* Maps each group key to its group, as an Integer. */
+    private final CompactMap groups = new CompactMap();
+    private int groupCount = 0;
+    /* The group column values of each group, groupColumns.length per group. */
+    private String[] groupValues = new String[16];
+    /* The running value and count of each aggregate, aggregateCount per group. */
+    private double[] results = new double[16];
+    private long[] counts = new long[16];
+
+    /* Column ordinals, resolved against the dictionary of the last row. */
+    private StringDictionary resolvedDictionary = null;
+    private int resolvedSize = -1;
+    private int[] groupOrdinals;
+    private int[] columnOrdinals = new int[4];
+
+    /**
+     * Creates a new ListAggregation without groups: a single group holds the
+     * results for every row.
+     */
+    public ListAggregation() {
+        this(new String[0]);
+    }
+
+    /**
+     * Creates a new ListAggregation.
+     * @param groupColumns The names of the columns to group rows by.
+     */
+    public ListAggregation(String[] groupColumns) {
+        this.groupColumns = groupColumns;
+        this.groupOrdinals = new int[groupColumns.length];
+    }
+
+    /**
+     * Declares an aggregate.  Every aggregate must be declared before the
+     * first row is added.
+     * @param function One of the FUNCTION_* constants.
+     * @param column The name of the column, or null to count every row.
+     * @return The index of the aggregate, for {@link #getResult}.
+     */
+    public int addAggregate(int function, String column) {
+        if (function < FUNCTION_COUNT || function > FUNCTION_MAX) {
+            throw new IllegalArgumentException("Unknown function: " + function);
+        }
+        if (column == null && function != FUNCTION_COUNT) {
+            throw new IllegalArgumentException("Only counts may omit the column");
+        }
+        if (groupCount > 0) {
+            throw new IllegalStateException("Rows have already been added");
+        }
+        if (aggregateCount == functions.length) {
+            int[] newFunctions = new int[aggregateCount * 2];
+            String[] newColumns = new String[aggregateCount * 2];
+            System.arraycopy(functions, 0, newFunctions, 0, aggregateCount);
+            System.arraycopy(columns, 0, newColumns, 0, aggregateCount);
+            functions = newFunctions;
+            columns = newColumns;
+            columnOrdinals = new int[aggregateCount * 2];
+        }
+        functions[aggregateCount] = function;
+        columns[aggregateCount] = column;
+        resolvedDictionary = null;
+        return aggregateCount++;
+    }
+
+    /**
+     * Reads every remaining row from a list feed parser into the
+     * aggregation.  The caller is responsible for closing the parser.
+     * @param parser A parser for a list feed, after {@link GDataParser#init}.
+     * @return The number of rows read.
+     */
+    public int aggregate(GDataParser parser) throws ParseException, IOException {
+        int rows = 0;
+        ListEntry entry = null;
+        while (parser.hasMoreData()) {
+            entry = (ListEntry) parser.readNextEntry(entry);
+            add(entry);
+            ++rows;
+        }
+        return rows;
+    }
+
+    /**
+     * Adds a row to the aggregation.
+     * @param row The row, which is not retained.
+     */
+    public void add(ListEntry row) {
+        resolve(row.getColumns());
+        int group = findGroup(row);
+        int base = group * aggregateCount;
+        for (int a = 0; a < aggregateCount; a++) {
+            int ordinal = columnOrdinals[a];
+            if (columns[a] == null) {
+                ++counts[base + a];
+                continue;
+            }
+            String value = row.getValue(ordinal);
+            if (StringUtils.isEmpty(value)) {
+                continue;
+            }
+            if (functions[a] == FUNCTION_COUNT) {
+                ++counts[base + a];
+                continue;
+            }
+            double number = StringUtils.parseDouble(value, Double.NaN);
+            if (number != number) {
+                // not a number.
+                continue;
+            }
+            accumulate(base + a, functions[a], number, 1);
+        }
+    }
+
+    /**
+     * Adds the results of another aggregation to this one.
+     * @param other An aggregation with the same group columns and aggregates.
+     * @throws IllegalArgumentException Thrown if the declarations differ.
+     */
+    public void merge(ListAggregation other) {
+        checkCompatible(other);
+        int k = groupColumns.length;
+        String[] values = new String[k];
+        for (int otherGroup = 0; otherGroup < other.groupCount; otherGroup++) {
+            System.arraycopy(other.groupValues, otherGroup * k, values, 0, k);
+            int group = findGroup(values);
+            int base = group * aggregateCount;
+            int otherBase = otherGroup * aggregateCount;
+            for (int a = 0; a < aggregateCount; a++) {
+                long count = other.counts[otherBase + a];
+                if (functions[a] == FUNCTION_COUNT) {
+                    counts[base + a] += count;
+                } else if (count > 0) {
+                    accumulate(base + a, functions[a], other.results[otherBase + a], count);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of groups seen so far
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Returns the value of a group column for a group.
+     * @param group The group, less than {@link #getGroupCount()}.
+     * @param groupColumn The index of the column in the group columns.
+     * @return The value, or the empty string if the rows of the group had no
+     * value for the column.
+     */
+    public String getGroupValue(int group, int groupColumn) {
+        checkGroup(group);
+        if (groupColumn < 0 || groupColumn >= groupColumns.length) {
+            throw new IndexOutOfBoundsException("Group column: " + groupColumn);
+        }
+        return groupValues[group * groupColumns.length + groupColumn];
+    }
+
+    /**
+     * Returns the result of an aggregate for a group.
+     * @param group The group, less than {@link #getGroupCount()}.
+     * @param aggregate The index returned by {@link #addAggregate}.
+     * @return The result; NaN for the minimum or maximum of a group without
+     * numeric values.
+     */
+    public double getResult(int group, int aggregate) {
+        checkGroup(group);
+        if (aggregate < 0 || aggregate >= aggregateCount) {
+            throw new IndexOutOfBoundsException("Aggregate: " + aggregate);
+        }
+        int index = group * aggregateCount + aggregate;
+        switch (functions[aggregate]) {
+            case FUNCTION_COUNT:
+                return counts[index];
+            case FUNCTION_SUM:
+                return results[index];
+            default:
+                return counts[index] > 0 ? results[index] : Double.NaN;
+        }
+    }
+
+    /**
+     * Returns the number of values that an aggregate of a group was computed
+     * from, e.g. to compute an average from a sum.
+     * @param group The group, less than {@link #getGroupCount()}.
+     * @param aggregate The index returned by {@link #addAggregate}.
+     * @return The number of values.
+     */
+    public long getValueCount(int group, int aggregate) {
+        checkGroup(group);
+        if (aggregate < 0 || aggregate >= aggregateCount) {
+            throw new IndexOutOfBoundsException("Aggregate: " + aggregate);
+        }
+        return counts[group * aggregateCount + aggregate];
+    }
+
+    private void accumulate(int index, int function, double number, long count) {
+        long previous = counts[index];
+        counts[index] = previous + count;
+        if (function == FUNCTION_SUM) {
+            results[index] += number;
+        } else if (previous == 0
+                || (function == FUNCTION_MIN ? number < results[index] : number > results[index])) {
+            results[index] = number;
+        }
+    }
+
+    /** Looks up the ordinals of the declared columns in a row's dictionary. */
+    private void resolve(StringDictionary dictionary) {
+        // new columns may appear in later rows, so also re-resolve on growth.
+        if (dictionary == resolvedDictionary && dictionary.size() == resolvedSize) {
+            return;
+        }
+        for (int j = 0; j < groupColumns.length; j++) {
+            groupOrdinals[j] = dictionary.lookup(groupColumns[j]);
+        }
+        for (int a = 0; a < aggregateCount; a++) {
+            columnOrdinals[a] = dictionary.lookup(columns[a]);
+        }
+        resolvedDictionary = dictionary;
+        resolvedSize = dictionary.size();
+    }
+
+    private int findGroup(ListEntry row) {
+        int k = groupColumns.length;
+        if (k == 0) {
+            return groupCount == 0 ? newGroup("", null) : 0;
+        }
+        if (k == 1) {
+            String value = groupValue(row, 0);
+            Integer group = (Integer) groups.get(value);
+            return group != null ? group.intValue() : newGroup(value, new String[] { value });
+        }
+        String[] values = new String[k];
+        for (int j = 0; j < k; j++) {
+            values[j] = groupValue(row, j);
+        }
+        return findGroup(values);
+    }
+
+    private int findGroup(String[] values) {
+        if (values.length == 0) {
+            return groupCount == 0 ? newGroup("", null) : 0;
+        }
+        String key = values[0];
+        if (values.length > 1) {
+            StringBuffer sb = new StringBuffer(key);
+            for (int j = 1; j < values.length; j++) {
+                sb.append(KEY_SEPARATOR).append(values[j]);
+            }
+            key = sb.toString();
+        }
+        Integer group = (Integer) groups.get(key);
+        return group != null ? group.intValue() : newGroup(key, values.clone());
+    }
+
+    private String groupValue(ListEntry row, int groupColumn) {
+        String value = row.getValue(groupOrdinals[groupColumn]);
+        return value == null ? "" : value;
+    }
+
+    private int newGroup(String key, String[] values) {
+        int k = groupColumns.length;
+        int group = groupCount++;
+        if (groupCount * k > groupValues.length) {
+            String[] larger = new String[groupCount * k * 2];
+            System.arraycopy(groupValues, 0, larger, 0, group * k);
+            groupValues = larger;
+        }
+        if (groupCount * aggregateCount > results.length) {
+            int capacity = groupCount * aggregateCount * 2;
+            double[] newResults = new double[capacity];
+            long[] newCounts = new long[capacity];
+            System.arraycopy(results, 0, newResults, 0, group * aggregateCount);
+            System.arraycopy(counts, 0, newCounts, 0, group * aggregateCount);
+            results = newResults;
+            counts = newCounts;
+        }
+        if (k > 0) {
+            System.arraycopy(values, 0, groupValues, group * k, k);
+        }
+        groups.put(key, Integer.valueOf(group));
+        return group;
+    }
+
+    private void checkCompatible(ListAggregation other) {
+        boolean compatible = groupColumns.length == other.groupColumns.length
+                && aggregateCount == other.aggregateCount;
+        for (int j = 0; compatible && j < groupColumns.length; j++) {
+            compatible = groupColumns[j].equals(other.groupColumns[j]);
+        }
+        for (int a = 0; compatible && a < aggregateCount; a++) {
+            compatible = functions[a] == other.functions[a]
+                    && (columns[a] == null
+                            ? other.columns[a] == null : columns[a].equals(other.columns[a]));
+        }
+        if (!compatible) {
+            throw new IllegalArgumentException("Aggregations declare different results");
+        }
+    }
+
+    private void checkGroup(int group) {
+        if (group < 0 || group >= groupCount) {
+            throw new IndexOutOfBoundsException("Group: " + group + ", count: " + groupCount);
+        }
+    }
+}
@@ -2,37 +2,108 @@
 package com.google.wireless.gdata.spreadsheets.data;
 
 import com.google.wireless.gdata.data.Entry;
+import com.google.wireless.gdata.data.StringDictionary;
 import com.google.wireless.gdata.data.StringUtils;
 
-import java.util.Enumeration;
-import java.util.Hashtable;
-import java.util.Vector;
+import java.util.AbstractList;
+import java.util.List;
 
 /**
  * Represents an entry in a GData Spreadsheets List feed.
+ *
+ * The column names of a row are kept in a {@link StringDictionary}, which
+ * the rows of a feed share; each row holds only an array of values indexed
+ * by column ordinal.  Columns are ordered by when they were first set in any
+ * row sharing the dictionary, which for a parsed feed is the order of the
+ * worksheet's columns.
  */
 public class ListEntry extends Entry {
-    /** Map containing the values in the row. */
-    private Hashtable values = new Hashtable();
-    
-    /** Caches the list of names, so they don't need to be recomputed. */
-    private Vector names = null;
+    private static final String[] EMPTY = new String[0];
+
+    /** The column names, possibly shared with other rows. */
+    private final StringDictionary columns;
+
+    /** The values of the row, indexed by column ordinal; null if not set. */
+    private String[] values = EMPTY;
+
+    /** The number of non-null values. */
+    private int valueCount = 0;
+
+    /** Read-only list of the names of the columns set in a row. */
+    private static class NameList extends AbstractList {
+        private final ListEntry entry;
+
+        NameList(ListEntry entry) {
+            this.entry = entry;
+        }
+
+        public Object get(int index) {
+            if (index < 0 || index >= entry.valueCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: "
+                        + entry.valueCount);
+            }
+            String[] values = entry.values;
+            if (entry.valueCount == values.length) {
+                // every column is set, as in most rows of a feed.
+                return entry.columns.get(index);
+            }
+            for (int ordinal = 0; ; ordinal++) {
+                if (values[ordinal] != null && index-- == 0) {
+                    return entry.columns.get(ordinal);
+                }
+            }
+        }
+
+        public int size() {
+            return entry.valueCount;
+        }
+    }
+
+    /** Default constructor, for a row with its own column names. */
+    public ListEntry() {
+        this(new StringDictionary());
+    }
+
+    /**
+     * Creates a new ListEntry sharing column names with other rows.
+     *
+     * @param columns the column names
+     */
+    public ListEntry(StringDictionary columns) {
+        super();
+        this.columns = columns;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.google.wireless.gdata.data.Entry#clear()
+     */
+    public void clear() {
+        super.clear();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+        valueCount = 0;
+    }
+
+    /**
+     * Fetches the column names of this row, which may be shared with other
+     * rows.
+     *
+     * @return the column names, indexed by ordinal
+     */
+    public StringDictionary getColumns() {
+        return columns;
+    }
 
     /**
      * Retrieves the column names present in this row.
      * 
-     * @return a Set of Strings, one per column where data exists
+     * @return a read-only List of Strings, one per column where data exists,
+     *         in column order
      */
-    public Vector getNames() {
-        if (names != null) {
-            return names;
-        }
-        names = new Vector();
-        Enumeration e = values.keys();
-        while (e.hasMoreElements()) {
-            names.add(e.nextElement());
-        }
-        return names;
+    public List getNames() {
+        return new NameList(this);
     }
 
     /**
@@ -58,13 +129,26 @@ public class ListEntry extends Entry {
         if (StringUtils.isEmpty(name)) {
             return defaultValue;
         }
-        String val = (String) values.get(name);
+        String val = getValue(columns.lookup(name));
         if (val == null) {
             return defaultValue;
         }
         return val;
     }
 
+    /**
+     * Fetches the value for a column by ordinal, avoiding the name lookup.
+     *
+     * @param ordinal the ordinal of the column in {@link #getColumns()}
+     * @return the value of the column, or null if the column is not present
+     */
+    public String getValue(int ordinal) {
+        if (ordinal < 0 || ordinal >= values.length) {
+            return null;
+        }
+        return values[ordinal];
+    }
+
     /**
      * Sets the value of a column.
      * 
@@ -72,6 +156,18 @@ public class ListEntry extends Entry {
      * @param value the value for the column
      */
     public void setValue(String name, String value) {
-        values.put(name, value == null ? "" : value);
+        if (name == null) {
+            throw new NullPointerException("name must not be null");
+        }
+        int ordinal = columns.intern(name);
+        if (ordinal >= values.length) {
+            String[] larger = new String[columns.size()];
+            System.arraycopy(values, 0, larger, 0, values.length);
+            values = larger;
+        }
+        if (values[ordinal] == null) {
+            ++valueCount;
+        }
+        values[ordinal] = value == null ? "" : value;
     }
 }
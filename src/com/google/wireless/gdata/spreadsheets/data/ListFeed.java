@@ -9,6 +9,8 @@ import com.google.wireless.gdata.data.Feed;
 public class ListFeed extends Feed {
     private String editUri;
 
+    private String batchUri;
+
     /** Default constructor. */
     public ListFeed() {
         super();
@@ -32,4 +34,22 @@ public class ListFeed extends Feed {
     public void setEditUri(String editUri) {
         this.editUri = editUri;
     }
+
+    /**
+     * Fetches the URI to which batches of row changes should be posted.
+     * 
+     * @return the batch URI for this feed, or null
+     */
+    public String getBatchUri() {
+        return batchUri;
+    }
+
+    /**
+     * Sets the URI to which batches of row changes should be posted.
+     * 
+     * @param batchUri the new batch URI for this feed
+     */
+    public void setBatchUri(String batchUri) {
+        this.batchUri = batchUri;
+    }
 }
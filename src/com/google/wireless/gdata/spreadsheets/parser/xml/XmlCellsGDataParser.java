@@ -27,6 +27,12 @@ public class XmlCellsGDataParser extends XmlGDataParser {
     private static final String CELL_FEED_POST_REL =
             "http://schemas.google.com/g/2005#post";
 
+    /**
+     * The rel ID used by the server to identify the URLs for batch POSTs
+     */
+    private static final String CELL_FEED_BATCH_REL =
+            "http://schemas.google.com/g/2005#batch";
+
     /**
      * Creates a new XmlCellsGDataParser.
      * 
@@ -120,6 +126,8 @@ public class XmlCellsGDataParser extends XmlGDataParser {
         if (!(StringUtils.isEmpty(rel) || StringUtils.isEmpty(href))) {
             if (CELL_FEED_POST_REL.equals(rel)) {
                 cellFeed.setEditUri(href);
+            } else if (CELL_FEED_BATCH_REL.equals(rel)) {
+                cellFeed.setBatchUri(href);
             }
         }
     }
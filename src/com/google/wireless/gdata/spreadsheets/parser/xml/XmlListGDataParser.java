@@ -3,6 +3,7 @@ package com.google.wireless.gdata.spreadsheets.parser.xml;
 
 import com.google.wireless.gdata.data.Entry;
 import com.google.wireless.gdata.data.Feed;
+import com.google.wireless.gdata.data.StringDictionary;
 import com.google.wireless.gdata.data.StringUtils;
 import com.google.wireless.gdata.data.XmlUtils;
 import com.google.wireless.gdata.parser.ParseException;
@@ -27,6 +28,15 @@ public class XmlListGDataParser extends XmlGDataParser {
     private static final String LIST_FEED_POST_REL =
             "http://schemas.google.com/g/2005#post";
 
+    /**
+     * The rel ID used by the server to identify the URLs for batch POSTs
+     */
+    private static final String LIST_FEED_BATCH_REL =
+            "http://schemas.google.com/g/2005#batch";
+
+    /** The column names, shared by the rows of the feed. */
+    private final StringDictionary columns = new StringDictionary();
+
     /**
      * Creates a new XmlListGDataParser.
      * 
@@ -41,9 +51,10 @@ public class XmlListGDataParser extends XmlGDataParser {
 
     /* (non-JavaDoc)
      * Creates a new Entry that can handle the data parsed by this class.
+     * Every row of the feed shares the parser's column names.
      */
     protected Entry createEntry() {
-        return new ListEntry();
+        return new ListEntry(columns);
     }
 
     /* (non-JavaDoc)
@@ -103,6 +114,8 @@ public class XmlListGDataParser extends XmlGDataParser {
         if (!(StringUtils.isEmpty(rel) || StringUtils.isEmpty(href))) {
             if (LIST_FEED_POST_REL.equals(rel)) {
                 listFeed.setEditUri(href);
+            } else if (LIST_FEED_BATCH_REL.equals(rel)) {
+                listFeed.setBatchUri(href);
             }
         }
     }
@@ -1,6 +1,7 @@
 package com.google.wireless.gdata.spreadsheets.serializer.xml;
 
 import com.google.wireless.gdata.data.Entry;
+import com.google.wireless.gdata.data.StringDictionary;
 import com.google.wireless.gdata.parser.ParseException;
 import com.google.wireless.gdata.parser.xml.XmlParserFactory;
 import com.google.wireless.gdata.serializer.xml.XmlEntryGDataSerializer;
@@ -9,8 +10,6 @@ import com.google.wireless.gdata.spreadsheets.data.ListEntry;
 import org.xmlpull.v1.XmlSerializer;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.Vector;
 
 /**
  * A serializer for handling GData Spreadsheets List entries.
@@ -50,14 +49,14 @@ public class XmlListEntryGDataSerializer extends XmlEntryGDataSerializer {
     protected void serializeExtraEntryContents(XmlSerializer serializer,
             int format) throws ParseException, IOException {
         ListEntry entry = (ListEntry) getEntry();
-        Vector names = entry.getNames();
+        StringDictionary columns = entry.getColumns();
         String name = null;
         String value = null;
-        Iterator it = names.iterator();
-        while (it.hasNext()) {
-            name = (String) it.next();
-            value = entry.getValue(name);
+        // in column order, so that rows sharing columns serialize alike.
+        for (int ordinal = 0; ordinal < columns.size(); ordinal++) {
+            value = entry.getValue(ordinal);
             if (value != null) {
+                name = columns.get(ordinal);
                 serializer.startTag(NAMESPACE_GSX_URI, name);
                 serializer.text(value);
                 serializer.endTag(NAMESPACE_GSX_URI, name);